@@ -0,0 +1,39 @@
+package com.cinema.benchmark;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试的公共设置，子类继承这些注解：
+ * 每个参数组合在独立的 JVM 中运行（服务都是单例，数据按参数重新生成）；
+ * 使用内存存储、零延迟的模拟支付网关，并关闭快照和增量同步，结果不依赖数据库和本地文件，可以在不同提交之间对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g",
+        "-Dstorage.type=memory",
+        "-Dsnapshot.enabled=false",
+        "-Dsync.enabled=false",
+        "-Dpayment.simulated.min-latency-ms=0",
+        "-Dpayment.simulated.max-latency-ms=0"
+})
+public abstract class BenchmarkBase {
+
+    /**
+     * 服务的控制台输出（通知、座位图刷新等）重定向到空输出流：测量业务处理而不是终端 I/O，也避免 JMH 转发大量日志
+     */
+    static void silenceConsole() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+}
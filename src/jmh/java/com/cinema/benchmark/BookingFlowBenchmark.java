@@ -0,0 +1,29 @@
+package com.cinema.benchmark;
+
+import com.cinema.model.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.List;
+
+/**
+ * 下单流程：同一用户在 hotShow 上预订两个座位，再支付并退票（或直接取消），座位回到空闲，下一次调用可以重复预订
+ * 每一步都会保存全部场次（CinemaManager.saveShows），对比 shows=1 和 shows=10000 可以看出排片规模对下单延迟的影响
+ */
+public class BookingFlowBenchmark extends BenchmarkBase {
+    private static final List<String> SEATS = List.of("6-10", "6-11");
+
+    @Benchmark
+    public Order reservePayRefund(CatalogState catalog) throws Exception {
+        Order order = catalog.bookingService.reserveOrder(catalog.user, catalog.hotShow, SEATS);
+        catalog.bookingService.processReservedOrderPayment(order);
+        catalog.bookingService.cancelOrder(order);
+        return order;
+    }
+
+    @Benchmark
+    public Order reserveCancel(CatalogState catalog) throws Exception {
+        Order order = catalog.bookingService.reserveOrder(catalog.user, catalog.hotShow, SEATS);
+        catalog.bookingService.cancelOrder(order);
+        return order;
+    }
+}
@@ -0,0 +1,79 @@
+package com.cinema.benchmark;
+
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import com.cinema.service.BookingService;
+import com.cinema.service.CinemaManager;
+import com.cinema.strategy.StandardPricing;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 生成的排片数据：shows 个场次，每 100 个场次一个放映厅（12 排 × 20 列），每个厅的场次间隔 4 小时，
+ * 电影每 50 个场次一部；默认数据中的场次先全部删除，只保留默认用户
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+    public static final int ROOM_ROWS = 12;
+    public static final int ROOM_COLS = 20;
+
+    @Param({"1", "10000"})
+    public int shows;
+
+    public BookingService bookingService;
+    public CinemaManager manager;
+    public User user;
+    public Show hotShow;       // 第一个生成的场次
+    public String hotTitle;    // hotShow 的电影名
+    public LocalDate hotDate;  // hotShow 的放映日期
+
+    @Setup
+    public void setUp() {
+        BenchmarkBase.silenceConsole();
+        bookingService = BookingService.getInstance(new StandardPricing());
+        manager = CinemaManager.getInstance();
+        for (Show show : manager.getAllShows()) {
+            manager.removeShow(show.getId());
+        }
+        user = manager.getUser("test");
+
+        int roomCount = (shows + 99) / 100;
+        int movieCount = (shows + 49) / 50;
+        List<ScreeningRoom> rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            ScreeningRoom room = new ScreeningRoom(String.format("BENCH-ROOM-%03d", i), "基准厅" + i, ROOM_ROWS, ROOM_COLS);
+            manager.addScreeningRoom(room);
+            rooms.add(room);
+        }
+        List<Movie> movies = new ArrayList<>(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            Movie movie = new Movie(String.format("BENCH-MOV-%04d", i), "基准电影" + i, LocalDate.of(2024, 1, 1),
+                    List.of("演员"), "导演", 120, 8.0, "简介", MovieGenre.fromDescription("科幻"), null, null);
+            manager.addMovie(movie);
+            movies.add(movie);
+        }
+
+        LocalDateTime first = LocalDate.now().plusDays(1).atTime(9, 0);
+        List<Show> batch = new ArrayList<>(shows);
+        for (int i = 0; i < shows; i++) {
+            ScreeningRoom room = rooms.get(i / 100);
+            LocalDateTime start = first.plusHours(4L * (i % 100));
+            batch.add(new Show(String.format("BENCH-SHOW-%05d", i), movies.get(i % movieCount), room, start, 45.0 + i % 3 * 5));
+        }
+        manager.addShows(batch);
+
+        hotShow = batch.get(0);
+        hotTitle = hotShow.getMovieTitle();
+        hotDate = hotShow.getStartTime().toLocalDate();
+    }
+}
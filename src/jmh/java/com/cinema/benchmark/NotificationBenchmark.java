@@ -0,0 +1,46 @@
+package com.cinema.benchmark;
+
+import com.cinema.model.User;
+import com.cinema.service.NotificationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 订单通知 NotificationService.sendOrderUpdate：轮流发给 1000 个用户
+ * 通知列表只增不减，每轮迭代换一批新用户，使各轮从相同的状态开始
+ */
+public class NotificationBenchmark extends BenchmarkBase {
+    private static final int USERS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class NotificationState {
+        final NotificationService service = NotificationService.getInstance();
+        final User[] users = new User[USERS];
+        int iteration;
+        int next;
+
+        @Setup
+        public void silence() {
+            silenceConsole();
+        }
+
+        @Setup(Level.Iteration)
+        public void newUsers() {
+            iteration++;
+            for (int i = 0; i < USERS; i++) {
+                users[i] = new User("BENCH-" + iteration + "-" + i, "用户" + i, "123456", "13800000000", "bench@cinema.com");
+            }
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public void sendOrderUpdate(NotificationState state) {
+        User user = state.users[state.next];
+        state.next = (state.next + 1) % USERS;
+        state.service.sendOrderUpdate(user, null, "支付成功！您的座位已锁定。");
+    }
+}
@@ -0,0 +1,55 @@
+package com.cinema.benchmark;
+
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+import com.cinema.strategy.PremiumPricing;
+import com.cinema.strategy.PricingStrategy;
+import com.cinema.strategy.StandardPricing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 定价策略：对一个 12 排 × 20 列场次的全部座位（含优惠座、VIP 座）计算票价
+ * 场次在周六晚上 19:30，周末、晚场和黄金时段的加价分支都会执行
+ */
+public class PricingBenchmark extends BenchmarkBase {
+
+    @State(Scope.Benchmark)
+    public static class PricingState {
+        @Param({"standard", "premium"})
+        public String strategy;
+
+        PricingStrategy pricing;
+        Show show;
+        List<Seat> seats;
+
+        @Setup
+        public void setUp() {
+            pricing = "premium".equals(strategy) ? new PremiumPricing() : new StandardPricing();
+            Movie movie = new Movie("BENCH-MOV", "基准电影", LocalDate.of(2024, 1, 1), List.of("演员"),
+                    "导演", 120, 8.0, "简介", MovieGenre.fromDescription("科幻"), null, null);
+            ScreeningRoom room = new ScreeningRoom("BENCH-ROOM", "基准厅", CatalogState.ROOM_ROWS, CatalogState.ROOM_COLS);
+            show = new Show("BENCH-SHOW", movie, room, LocalDateTime.of(2024, 6, 1, 19, 30), 45.0);
+            seats = show.getSeats();
+        }
+    }
+
+    @Benchmark
+    public double calculatePrice(PricingState state) {
+        double total = 0;
+        for (Seat seat : state.seats) {
+            total += state.pricing.calculatePrice(state.show, seat);
+        }
+        return total;
+    }
+}
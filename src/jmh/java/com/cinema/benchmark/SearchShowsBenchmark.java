@@ -0,0 +1,27 @@
+package com.cinema.benchmark;
+
+import com.cinema.model.Show;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.List;
+
+/**
+ * 场次搜索 CinemaManager.searchShows：按电影名和日期、只按日期、只按电影名
+ */
+public class SearchShowsBenchmark extends BenchmarkBase {
+
+    @Benchmark
+    public List<Show> byTitleAndDate(CatalogState catalog) {
+        return catalog.manager.searchShows(catalog.hotTitle, catalog.hotDate);
+    }
+
+    @Benchmark
+    public List<Show> byDate(CatalogState catalog) {
+        return catalog.manager.searchShows(null, catalog.hotDate);
+    }
+
+    @Benchmark
+    public List<Show> byTitle(CatalogState catalog) {
+        return catalog.manager.searchShows(catalog.hotTitle, null);
+    }
+}
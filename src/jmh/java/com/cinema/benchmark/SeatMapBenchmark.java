@@ -0,0 +1,62 @@
+package com.cinema.benchmark;
+
+import com.cinema.controller.ShowController;
+import com.cinema.model.Order;
+import com.cinema.service.CompactSeatMapEncoder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 座位图接口 GET /api/shows/{id}/seats 的响应生成，以及 JSON 序列化和紧凑座位图编码的对比：
+ * hotShow 的前 4 排已售出，第 5 排已预订
+ */
+public class SeatMapBenchmark extends BenchmarkBase {
+
+    @State(Scope.Benchmark)
+    public static class SeatMapState {
+        final ShowController controller = new ShowController();
+        final ObjectMapper mapper = new ObjectMapper();
+        CatalogState catalog;
+        String showId;
+
+        @Setup
+        public void setUp(CatalogState catalog) throws Exception {
+            this.catalog = catalog;
+            showId = catalog.hotShow.getId();
+            for (int row = 1; row <= 5; row++) {
+                List<String> seats = new ArrayList<>();
+                for (int col = 1; col <= CatalogState.ROOM_COLS; col++) {
+                    seats.add(row + "-" + col);
+                }
+                Order order = catalog.bookingService.reserveOrder(catalog.user, catalog.hotShow, seats);
+                if (row < 5) {
+                    catalog.bookingService.processReservedOrderPayment(order);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> getShowSeats(SeatMapState state) {
+        return state.controller.getShowSeats(state.showId);
+    }
+
+    // 逐座位 JSON 数组：生成响应并序列化
+    @Benchmark
+    public byte[] showSeatsJson(SeatMapState state) throws JsonProcessingException {
+        return state.mapper.writeValueAsBytes(state.controller.getShowSeats(state.showId));
+    }
+
+    @Benchmark
+    public byte[] compactSeatMap(SeatMapState state) {
+        return CompactSeatMapEncoder.encode(state.catalog.hotShow, state.catalog.bookingService.getPricingStrategy());
+    }
+}
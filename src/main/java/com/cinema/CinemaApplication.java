@@ -1,15 +1,26 @@
 package com.cinema;
 
+import com.cinema.config.AppConfig;
+import com.cinema.config.NodeRole;
 import com.cinema.service.BookingService;
 import com.cinema.service.CinemaManager;
+import com.cinema.service.SnapshotService;
+import com.cinema.service.SyncService;
 import com.cinema.storage.SimpleDatabaseConnection;
 import com.cinema.strategy.StandardPricing;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @SpringBootApplication
 public class CinemaApplication {
     public static void main(String[] args) {
+        // 只读副本模式：--replica 参数等同于 -Dcinema.node.role=replica
+        // 该参数需要在传给数据库密码解析之前移除（密码取自第一个命令行参数）
+        args = applyNodeRoleArgs(args);
+
         try {
             // =========================================================
             // 🔴 核心修复：在 Spring 启动前，手动初始化遗留的单例服务
@@ -28,8 +39,20 @@ public class CinemaApplication {
             CinemaManager.getInstance();
             System.out.println("✅ CinemaManager 初始化完成");
 
+            // 4. 从快照恢复时先追赶快照之后的变更，再开始定期写快照；退出时写最后一次
+            SnapshotService.getInstance().completeStartup();
+            Runtime.getRuntime().addShutdownHook(new Thread(SnapshotService.getInstance()::shutdown, "state-snapshot-shutdown"));
+
+            // 5. 启动增量同步轮询 (应用其他节点写入 change_log 的变更；只读副本必须开启)
+            if (AppConfig.getBoolean("sync.enabled", true) || NodeRole.isReplica()) {
+                SyncService.getInstance().startPolling();
+            }
+            if (NodeRole.isReplica()) {
+                System.out.println("✅ 以只读副本模式启动，写请求将被拒绝或转发到主节点");
+            }
+
             // =========================================================
-            // 4. 启动 Spring Boot
+            // 6. 启动 Spring Boot
             SpringApplication.run(CinemaApplication.class, args);
 
         } catch (Throwable e) {
@@ -37,4 +60,16 @@ public class CinemaApplication {
             e.printStackTrace();
         }
     }
+
+    private static String[] applyNodeRoleArgs(String[] args) {
+        List<String> remaining = new ArrayList<>();
+        for (String arg : args) {
+            if ("--replica".equals(arg)) {
+                System.setProperty(NodeRole.CONFIG_KEY, "replica");
+            } else {
+                remaining.add(arg);
+            }
+        }
+        return remaining.toArray(new String[0]);
+    }
 }
\ No newline at end of file
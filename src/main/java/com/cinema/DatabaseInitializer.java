@@ -1,13 +1,13 @@
 package com.cinema;
 
 import com.cinema.config.DbPasswordResolver;
+import com.cinema.storage.SchemaMigrator;
 import com.cinema.storage.SimpleDatabaseConnection;
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Properties;
 
 public class DatabaseInitializer {
@@ -16,6 +16,10 @@ public class DatabaseInitializer {
     public static void main(String[] args) {
         try {
             System.out.println("开始初始化数据库...");
+
+            // --reset：删表重建；其余参数仍按原规则读取（第一个参数为数据库密码）
+            boolean reset = Arrays.asList(args).contains("--reset");
+            args = Arrays.stream(args).filter(arg -> !"--reset".equals(arg)).toArray(String[]::new);
             
             // 加载数据库密码：首先尝试从命令行参数获取，然后从配置文件获取
             dbPassword = loadPassword(args);
@@ -45,8 +49,8 @@ public class DatabaseInitializer {
                 return;
             }
             
-            // 读取并执行SQL脚本
-            executeSqlScript("schema.sql");
+            // 迁移表结构（不删除已有数据；--reset 时先删表重建）
+            migrateSchema(reset);
             
             // 🔴 新增：初始化用户数据（管理员和测试用户）
             initializeUserData();
@@ -73,53 +77,32 @@ public class DatabaseInitializer {
         }
     }
     
-    private static void executeSqlScript(String scriptFile) {
-        try (Connection conn = SimpleDatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-            
-            // 先删除所有表（按依赖关系倒序）
-            dropTablesIfExists(stmt);
-            
-            // 读取SQL脚本文件
-            InputStream inputStream = DatabaseInitializer.class.getClassLoader().getResourceAsStream(scriptFile);
-            if (inputStream == null) {
-                throw new RuntimeException("无法找到SQL脚本文件: " + scriptFile);
-            }
-            
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            StringBuilder sqlBuilder = new StringBuilder();
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("--")) {
-                    continue; // 跳过空行和注释
-                }
-                sqlBuilder.append(line).append("\n");
-                
-                // 如果遇到分号，执行SQL语句
-                if (line.endsWith(";")) {
-                    String sql = sqlBuilder.toString();
-                    try {
-                        stmt.execute(sql);
-                        System.out.println("执行SQL: " + sql.substring(0, Math.min(50, sql.length())) + "...");
-                    } catch (Exception e) {
-                        System.err.println("SQL执行失败: " + e.getMessage());
-                    }
-                    sqlBuilder.setLength(0); // 清空StringBuilder
+    /**
+     * 按版本执行 db/migration 下尚未执行的迁移脚本；带 --reset 参数时先删除除 users 以外的表，从 V1 重新建表
+     */
+    private static void migrateSchema(boolean reset) {
+        try {
+            if (reset) {
+                try (Connection conn = SimpleDatabaseConnection.getConnection();
+                     Statement stmt = conn.createStatement()) {
+                    dropTablesIfExists(stmt);
                 }
             }
-            
-            reader.close();
-            
+            int applied = SchemaMigrator.migrate();
+            System.out.println("数据库结构已是 V" + SchemaMigrator.currentVersion() + "（本次执行 " + applied + " 个迁移）");
         } catch (Exception e) {
-            throw new RuntimeException("执行SQL脚本失败", e);
+            throw new RuntimeException("执行数据库迁移失败", e);
         }
     }
     
     private static void dropTablesIfExists(Statement stmt) throws SQLException {
         // 🔴 修改：删除订单相关表，但保留 users 用户表
         String[] tables = {
+            "schema_version",   // 删除迁移记录，之后从 V1 重新建表
+            "outbox_events",    // 删除发件箱
+            "idempotency_keys", // 删除幂等键
+            "change_log",   // 删除变更日志（目录数据重建后版本重新计数）
+            "comments",     // 删除评论
             "order_seats",  // 删除订单座位
             "orders",       // 删除订单
             // "users",      // ✅ 不删除用户表，保留用户数据
@@ -129,6 +112,7 @@ public class DatabaseInitializer {
             "movies"        // 删除电影（会重新初始化）
         };
         
+        stmt.execute("SET FOREIGN_KEY_CHECKS = 0");
         for (String table : tables) {
             try {
                 stmt.execute("DROP TABLE IF EXISTS " + table);
@@ -137,6 +121,7 @@ public class DatabaseInitializer {
                 // 忽略删除失败的情况
             }
         }
+        stmt.execute("SET FOREIGN_KEY_CHECKS = 1");
     }
     
     /**
@@ -3,6 +3,7 @@ package com.cinema;
 import com.cinema.ui.ConsoleUI;
 import com.cinema.service.BookingService;
 import com.cinema.service.CinemaManager;
+import com.cinema.service.SnapshotService;
 import com.cinema.storage.SimpleDatabaseConnection;
 import com.cinema.strategy.StandardPricing;
 import java.io.Console;
@@ -36,6 +37,9 @@ public class Main {
             
             // Then initialize CinemaManager
             CinemaManager cinemaManager = CinemaManager.getInstance();
+
+            // 从快照恢复时追赶快照之后的变更，并开始定期写快照
+            SnapshotService.getInstance().completeStartup();
             
             // Start the console UI
             ConsoleUI ui = new ConsoleUI();
@@ -46,6 +50,7 @@ public class Main {
         } finally {
             // 确保程序退出时关闭数据库连接
             try {
+                SnapshotService.getInstance().shutdown();
                 CinemaManager cinemaManager = CinemaManager.getInstance();
                 cinemaManager.shutdown();
                 BookingService bookingService = BookingService.getInstance(null);
@@ -0,0 +1,69 @@
+package com.cinema;
+
+import com.cinema.service.CinemaManager;
+import com.cinema.service.ScheduleImportService;
+import com.cinema.storage.SimpleDatabaseConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量排片命令行工具
+ * 用法: java -cp cinema.jar com.cinema.ScheduleImporter <排片文件.csv|.json> [--partial] [数据库密码]
+ * 默认任一行有错整批不导入，加 --partial 只导入校验通过的行
+ */
+public class ScheduleImporter {
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("用法: ScheduleImporter <排片文件.csv|.json> [--partial] [数据库密码]");
+            System.exit(1);
+        }
+        boolean atomic = true;
+        List<String> dbArgs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if ("--partial".equals(args[i])) {
+                atomic = false;
+            } else {
+                dbArgs.add(args[i]);
+            }
+        }
+
+        int exitCode = 0;
+        try {
+            Path file = Paths.get(args[0]);
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            SimpleDatabaseConnection.setCommandLineArgs(dbArgs.toArray(new String[0]));
+            // 一次性导入直接从数据库加载最新的排片做冲突检查，不使用服务进程的状态快照
+            System.setProperty("snapshot.enabled", "false");
+
+            ScheduleImportService importService = ScheduleImportService.getInstance();
+            Map<String, Object> report = file.toString().toLowerCase().endsWith(".json")
+                    ? importService.importJson(content, atomic)
+                    : importService.importCsv(content, atomic);
+
+            System.out.println("共 " + report.get("total") + " 行，导入 " + report.get("imported")
+                    + " 场，错误 " + report.get("failed") + " 行，耗时 " + report.get("elapsedMillis") + " ms");
+            if (report.containsKey("batchError")) {
+                System.out.println("导入失败: " + report.get("batchError"));
+            }
+            for (Object error : (List<?>) report.get("errors")) {
+                Map<?, ?> item = (Map<?, ?>) error;
+                System.out.println("  第 " + item.get("row") + " 行: " + item.get("message"));
+            }
+            if ((Integer) report.get("imported") == 0) {
+                exitCode = 2;
+            }
+        } catch (Exception e) {
+            System.err.println("批量排片失败: " + e.getMessage());
+            exitCode = 1;
+        } finally {
+            CinemaManager.getInstance().shutdown();
+        }
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,68 @@
+package com.cinema.config;
+
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * 应用运行参数读取工具
+ * 统一从 config.properties 读取，允许通过同名 JVM 系统属性 (-Dkey=value) 覆盖
+ */
+public final class AppConfig {
+    private static final Properties PROPS = new Properties();
+
+    static {
+        try (InputStream in = AppConfig.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (in != null) {
+                PROPS.load(in);
+            }
+        } catch (Exception e) {
+            System.err.println("加载 config.properties 失败: " + e.getMessage());
+        }
+    }
+
+    private AppConfig() {
+        // Utility class
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = PROPS.getProperty(key);
+        }
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("配置项 " + key + " 不是合法整数，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("配置项 " + key + " 不是合法整数，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        try {
+            return Double.parseDouble(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("配置项 " + key + " 不是合法数字，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+}
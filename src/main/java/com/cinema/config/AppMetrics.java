@@ -0,0 +1,95 @@
+package com.cinema.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 应用指标注册工具
+ * 服务层单例在 Spring 启动前创建，拿不到注入的 MeterRegistry，统一注册到 Micrometer 的全局注册表；
+ * Spring Boot 启动后把 Prometheus 注册表加入全局注册表（management.metrics.use-global-registry 默认开启），
+ * 之前注册的指标一并导出，由 /actuator/prometheus 拉取。未启动 Spring 时（单元测试、基准测试）全局注册表为空，记录为空操作
+ */
+public final class AppMetrics {
+
+    private AppMetrics() {
+        // Utility class
+    }
+
+    public static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+
+    /**
+     * 带直方图桶的计时器（Prometheus 端用 histogram_quantile 计算分位数），范围 100 微秒到 30 秒
+     */
+    public static Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry());
+    }
+
+    public static Counter counter(String name, String description, String... tags) {
+        return Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry());
+    }
+
+    /**
+     * 拉取时读取 obj 当前值的仪表；保持对 obj 的强引用（默认为弱引用，obj 被回收后读数为 NaN）
+     */
+    public static <T> Gauge gauge(String name, String description, T obj, ToDoubleFunction<T> value) {
+        return Gauge.builder(name, obj, value)
+                .description(description)
+                .strongReference(true)
+                .register(registry());
+    }
+
+    /**
+     * 一类操作的计时：成功和失败分开计时（outcome 标签），失败时再按异常类型计数（name.failures）
+     * 成功计时器在构造时注册好，记录时不再查找；失败计时器在第一次失败时注册，从未失败的操作不多导出一组直方图
+     * 调用方用 System.nanoTime() 取开始时间
+     */
+    public static final class Operation {
+        private final String name;
+        private final Tags tags;
+        private final String description;
+        private final Timer success;
+        private volatile Timer failure;
+
+        public Operation(String name, String description, String operation, String... tags) {
+            this.name = name;
+            this.description = description;
+            this.tags = Tags.of(tags).and("operation", operation);
+            this.success = timer(name, description, this.tags.and("outcome", "success"));
+        }
+
+        public void success(long startNanos) {
+            success.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void failure(long startNanos, Throwable error) {
+            if (failure == null) {
+                failure = timer(name, description, tags.and("outcome", "failure"));
+            }
+            failure.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            Counter.builder(name + ".failures")
+                    .tags(tags)
+                    .tag("exception", error.getClass().getSimpleName())
+                    .register(registry())
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.cinema.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 本机访问拦截器
+ * JFR 录制包含进程内存中的数据，只允许从本机（回环地址）调用，远程请求返回 HTTP 403；
+ * jfr.local-only=false 时不限制（例如只在内网暴露管理端口时）
+ */
+@Component
+public class LocalOnlyInterceptor implements HandlerInterceptor {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!AppConfig.getBoolean("jfr.local-only", true) || isLoopback(request.getRemoteAddr())) {
+            return true;
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", false);
+        body.put("code", 403);
+        body.put("message", "该接口只允许从本机访问");
+        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE + ";charset=UTF-8");
+        response.getOutputStream().write(objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            // getRemoteAddr 是 IP 字面量，不会触发 DNS 查询
+            return address != null && InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
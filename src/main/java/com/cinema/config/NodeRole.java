@@ -0,0 +1,21 @@
+package com.cinema.config;
+
+/**
+ * 节点角色
+ * PRIMARY 处理全部读写；REPLICA 为只读副本，从主节点的变更日志追赶数据，只在本地内存中提供查询
+ */
+public enum NodeRole {
+    PRIMARY,
+    REPLICA;
+
+    public static final String CONFIG_KEY = "cinema.node.role";
+
+    public static NodeRole current() {
+        String role = AppConfig.get(CONFIG_KEY, "primary");
+        return "replica".equalsIgnoreCase(role) ? REPLICA : PRIMARY;
+    }
+
+    public static boolean isReplica() {
+        return current() == REPLICA;
+    }
+}
@@ -0,0 +1,102 @@
+package com.cinema.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 只读副本拦截器
+ * 副本节点只在本地内存中提供查询；下单、支付、退票等写请求在配置了 cinema.replica.primary-url 时转发给主节点，
+ * 否则直接拒绝 (HTTP 503)，避免副本产生与主节点不一致的写入
+ */
+@Component
+public class ReplicaModeInterceptor implements HandlerInterceptor {
+
+    // 使用 POST 但不修改数据的接口，副本可以自己处理（JFR 录制和 SQL 统计针对的都是本节点自己，JFR 接口另由 LocalOnlyInterceptor 限制为本机访问）
+    private static final Set<String> READ_ONLY_POSTS = Set.of("/api/login", "/api/chat/ask",
+            "/api/admin/jfr/start", "/api/admin/jfr/stop", "/api/admin/sql-profile/reset");
+    private static final String[] FORWARDED_HEADERS = {HttpHeaders.CONTENT_TYPE, HttpHeaders.AUTHORIZATION, "Idempotency-Key"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(3))
+            .build();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!NodeRole.isReplica() || isReadRequest(request)) {
+            return true;
+        }
+
+        String primaryUrl = AppConfig.get("cinema.replica.primary-url", null);
+        if (primaryUrl != null) {
+            forwardToPrimary(primaryUrl, request, response);
+        } else {
+            Map<String, Object> body = new HashMap<>();
+            body.put("success", false);
+            body.put("code", 503);
+            body.put("message", "当前为只读副本节点，不处理写操作，请访问主节点");
+            writeJson(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, body);
+        }
+        return false;
+    }
+
+    private boolean isReadRequest(HttpServletRequest request) {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return READ_ONLY_POSTS.contains(path);
+    }
+
+    private void forwardToPrimary(String primaryUrl, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String query = request.getQueryString();
+        URI target = URI.create(primaryUrl.replaceAll("/+$", "") + path + (query != null ? "?" + query : ""));
+
+        byte[] body = request.getInputStream().readAllBytes();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofMillis(AppConfig.getLong("cinema.replica.forward-timeout-ms", 10000L)))
+                .method(request.getMethod(), HttpRequest.BodyPublishers.ofByteArray(body));
+        for (String header : FORWARDED_HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                builder.header(header, value);
+            }
+        }
+
+        try {
+            HttpResponse<byte[]> primaryResponse = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            response.setStatus(primaryResponse.statusCode());
+            primaryResponse.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(response::setContentType);
+            response.getOutputStream().write(primaryResponse.body());
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("code", 502);
+            error.put("message", "转发到主节点失败: " + e.getMessage());
+            writeJson(response, HttpServletResponse.SC_BAD_GATEWAY, error);
+        }
+    }
+
+    private void writeJson(HttpServletResponse response, int status, Map<String, Object> body) throws Exception {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE + ";charset=UTF-8");
+        response.getOutputStream().write(objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -7,7 +7,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 /**
  * Spring Web MVC 配置类
- * 注册HTTP拦截器以修复代理问题
+ * 注册HTTP拦截器以修复代理问题，限制 JFR 接口只能本机访问，并在只读副本模式下拦截写请求
  */
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
@@ -15,9 +15,21 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private HttpResponseInterceptor httpResponseInterceptor;
 
+    @Autowired
+    private ReplicaModeInterceptor replicaModeInterceptor;
+
+    @Autowired
+    private LocalOnlyInterceptor localOnlyInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(httpResponseInterceptor)
                 .addPathPatterns("/api/**");
+        // JFR 录制只允许本机访问（在副本放行之前检查）
+        registry.addInterceptor(localOnlyInterceptor)
+                .addPathPatterns("/api/admin/jfr", "/api/admin/jfr/**");
+        // 只读副本：拒绝或转发写请求
+        registry.addInterceptor(replicaModeInterceptor)
+                .addPathPatterns("/api/**");
     }
 }
@@ -0,0 +1,187 @@
+package com.cinema.controller;
+
+import com.cinema.model.User;
+import com.cinema.service.CinemaManager;
+import com.cinema.service.FlightRecorderService;
+import com.cinema.service.JournalShipper;
+import com.cinema.service.OutboxRelay;
+import com.cinema.service.SalesAnalyticsService;
+import com.cinema.service.SnapshotService;
+import com.cinema.storage.SqlProfiler;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final int MAX_BUCKETS = 24 * 31;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * 销售统计面板：收入、票数、退款、上座率（按电影/场次/放映厅/销售日/定价策略）及按小时的时间序列
+     * 销售日和小时桶按下单时间归属，退款计入订单下单时所在的桶而不是退款发生的时间（timeBasis=orderCreateTime）
+     * 数据由 SalesAnalyticsService 随订单状态变化增量维护，查询不遍历订单
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> getStats(@RequestParam(defaultValue = "24") int buckets) {
+        int hours = Math.max(1, Math.min(buckets, MAX_BUCKETS));
+        return buildResponse(200, "获取成功", SalesAnalyticsService.getInstance().getDashboard(hours));
+    }
+
+    /**
+     * 发件箱状态：积压条数 pending、最早一条未发布事件已等待的毫秒数 oldestPendingAgeMillis（发布延迟）、累计发布条数
+     */
+    @GetMapping("/outbox")
+    public Map<String, Object> getOutboxStats() {
+        return buildResponse(200, "获取成功", OutboxRelay.getInstance().getStats());
+    }
+
+    /**
+     * 状态快照：本次启动是否从快照恢复、读取和追赶耗时、最近一次写入的耗时、大小和水位
+     */
+    @GetMapping("/snapshot")
+    public Map<String, Object> getSnapshotStats() {
+        return buildResponse(200, "获取成功", SnapshotService.getInstance().getStats());
+    }
+
+    /**
+     * 订单日志：最新序号、已刷盘序号、段数、未写库的记录数，以及是否正在补写（数据库不可用期间）
+     */
+    @GetMapping("/journal")
+    public Map<String, Object> getJournalStats() {
+        return buildResponse(200, "获取成功", JournalShipper.getInstance().getStats());
+    }
+
+    /**
+     * 用户列表：按用户ID顺序分页查询数据库，page 从 1 开始，每页最多 200 条；不返回密码
+     */
+    @GetMapping("/users")
+    public Map<String, Object> getUsers(@RequestParam(defaultValue = "1") int page,
+                                        @RequestParam(defaultValue = "20") int size) {
+        if (page < 1 || size < 1) {
+            return buildResponse(400, "page 和 size 必须大于 0", null);
+        }
+        size = Math.min(size, MAX_PAGE_SIZE);
+        CinemaManager manager = CinemaManager.getInstance();
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (User user : manager.getUsersPage(page, size)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", user.getId());
+            item.put("name", user.getName());
+            item.put("phone", user.getPhone());
+            item.put("email", user.getEmail());
+            item.put("role", user.getRole().name());
+            list.add(item);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("page", page);
+        data.put("size", size);
+        data.put("total", manager.countUsers());
+        data.put("list", list);
+        return buildResponse(200, "获取成功", data);
+    }
+
+    /**
+     * JFR 飞行记录状态：state（NONE / RUNNING / STOPPED）、开始时间、时长、录制文件及大小
+     */
+    @GetMapping("/jfr")
+    public Map<String, Object> getRecordingStats() {
+        return buildResponse(200, "获取成功", FlightRecorderService.getInstance().getStats());
+    }
+
+    /**
+     * 开始 JFR 录制，seconds 秒后自动停止（不超过 jfr.max-duration-seconds）；已有录制在进行时返回 409
+     */
+    @PostMapping("/jfr/start")
+    public Map<String, Object> startRecording(@RequestParam(defaultValue = "60") int seconds) {
+        try {
+            return buildResponse(200, "录制已开始", FlightRecorderService.getInstance().start(seconds));
+        } catch (IllegalStateException e) {
+            return buildResponse(409, e.getMessage(), FlightRecorderService.getInstance().getStats());
+        } catch (Exception e) {
+            return buildResponse(500, "开始录制失败: " + e.getMessage(), null);
+        }
+    }
+
+    /**
+     * 停止 JFR 录制并下载录制文件（已到时自动停止的直接下载），用 JDK Mission Control 或 jfr print 查看
+     */
+    @PostMapping("/jfr/stop")
+    public ResponseEntity<?> stopRecording() {
+        return recordingFile(FlightRecorderService.getInstance().stop());
+    }
+
+    /**
+     * 重新下载最近一次的录制文件
+     */
+    @GetMapping("/jfr/download")
+    public ResponseEntity<?> downloadRecording() {
+        return recordingFile(FlightRecorderService.getInstance().getLastFile());
+    }
+
+    /**
+     * JDBC 语句统计：按 sort（total / avg / max / count / rows）排序的前 top 种 SQL 形状，
+     * 含执行次数、总/平均/最大耗时、行数、批量大小、失败和慢语句次数，以及最近的慢语句及其调用位置
+     */
+    @GetMapping("/sql-profile")
+    public Map<String, Object> getSqlProfile(@RequestParam(defaultValue = "20") int top,
+                                             @RequestParam(defaultValue = "total") String sort) {
+        if (top <= 0) {
+            return buildResponse(400, "top 必须大于 0", null);
+        }
+        try {
+            return buildResponse(200, "获取成功", SqlProfiler.getInstance().getReport(Math.min(top, MAX_PAGE_SIZE), sort));
+        } catch (IllegalArgumentException e) {
+            return buildResponse(400, e.getMessage(), null);
+        }
+    }
+
+    /**
+     * 清空 SQL 统计，从现在开始重新统计（如压测前）
+     */
+    @PostMapping("/sql-profile/reset")
+    public Map<String, Object> resetSqlProfile() {
+        SqlProfiler.getInstance().reset();
+        return buildResponse(200, "已清空", null);
+    }
+
+    private ResponseEntity<?> recordingFile(Path file) {
+        if (file == null) {
+            return ResponseEntity.status(404).body(buildResponse(404, "没有可下载的录制（未录制或仍在录制中）", null));
+        }
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(Files.size(file))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                    .body(new FileSystemResource(file));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body(buildResponse(500, "读取录制文件失败: " + e.getMessage(), null));
+        }
+    }
+
+    private Map<String, Object> buildResponse(int code, String msg, Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", code == 200);
+        response.put("code", code);
+        response.put("message", msg);
+        response.put("data", data);
+        return response;
+    }
+}
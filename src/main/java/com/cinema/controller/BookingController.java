@@ -6,11 +6,16 @@ import com.cinema.model.User;
 import com.cinema.model.Seat;
 import com.cinema.service.BookingService;
 import com.cinema.service.CinemaManager;
+import com.cinema.service.IdempotencyService;
+import com.cinema.service.PaymentService;
 import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 // 请求参数类
@@ -20,6 +25,13 @@ class BookingRequest {
     public List<String> seatIds; // 例如 ["1-1", "1-2"]
 }
 
+class BestAvailableRequest {
+    public String userId;
+    public String showId;
+    public int count;
+    public boolean allowSplit; // 没有足够的相邻座位时是否允许分开就座
+}
+
 class PayRequest {
     public String orderId;
 }
@@ -31,10 +43,20 @@ class RefundRequest {
 @RestController
 @RequestMapping("/api/booking")
 public class BookingController {
+    // 客户端超时重试时沿用同一个键，重复请求返回第一次的响应
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENCY_REPLAYED_HEADER = "Idempotency-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
 
     // 1. 创建订单 (锁座)
     @PostMapping("/create")
-    public Map<String, Object> createOrder(@RequestBody BookingRequest req) {
+    public Map<String, Object> createOrder(@RequestBody BookingRequest req,
+                                           @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                           HttpServletResponse httpResponse) {
+        return idempotent(idempotencyKey, req.userId, "create", req, httpResponse, () -> doCreateOrder(req));
+    }
+
+    private Map<String, Object> doCreateOrder(BookingRequest req) {
         Map<String, Object> response = new HashMap<>();
         try {
             CinemaManager cinemaManager = CinemaManager.getInstance();
@@ -71,9 +93,61 @@ public class BookingController {
         return response;
     }
 
+    // 1.1 自动选座 (给我N个最好的连座)
+    @PostMapping("/best-available")
+    public Map<String, Object> reserveBestAvailable(@RequestBody BestAvailableRequest req,
+                                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                    HttpServletResponse httpResponse) {
+        return idempotent(idempotencyKey, req.userId, "best-available", req, httpResponse,
+                () -> doReserveBestAvailable(req));
+    }
+
+    private Map<String, Object> doReserveBestAvailable(BestAvailableRequest req) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            CinemaManager cinemaManager = CinemaManager.getInstance();
+            BookingService bookingService = BookingService.getInstance();
+
+            User user = cinemaManager.getUser(req.userId);
+            Show show = cinemaManager.getShow(req.showId);
+
+            if (user == null) {
+                throw new RuntimeException("用户ID无效");
+            }
+            if (show == null) {
+                throw new RuntimeException("场次ID无效");
+            }
+
+            // 由服务端在场次锁内选座并锁定，客户端无需反复重试已被占用的座位
+            Order order = bookingService.reserveBestAvailable(user, show, req.count, req.allowSplit);
+
+            response.put("success", true);
+            response.put("code", 200);
+            response.put("message", "已为您选好座位，请在15分钟内支付");
+            response.put("data", Map.of(
+                    "orderId", order.getOrderId(),
+                    "seats", order.getSeatIds(),
+                    "totalAmount", order.getTotalAmount(),
+                    "createTime", order.getCreateTime()
+            ));
+
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("code", 400);
+            response.put("message", "选座失败: " + e.getMessage());
+        }
+        return response;
+    }
+
     // 2. 支付订单
     @PostMapping("/pay")
-    public Map<String, Object> payOrder(@RequestBody PayRequest req) {
+    public Map<String, Object> payOrder(@RequestBody PayRequest req,
+                                        @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                        HttpServletResponse httpResponse) {
+        return idempotent(idempotencyKey, orderOwner(req.orderId), "pay", req, httpResponse, () -> doPayOrder(req));
+    }
+
+    private Map<String, Object> doPayOrder(PayRequest req) {
         Map<String, Object> response = new HashMap<>();
         try {
             BookingService bookingService = BookingService.getInstance();
@@ -83,12 +157,17 @@ public class BookingController {
                 throw new RuntimeException("订单不存在");
             }
 
-            // 执行支付逻辑，处理 RESERVED -> PAID 状态转换
-            bookingService.processReservedOrderPayment(order);
+            // 提交支付网关后立即返回，订单进入 PAYING，扣款结果由后台批量处理（成功变为 PAID，失败取消并释放座位）
+            String paymentId = PaymentService.getInstance().initiate(order);
 
             response.put("success", true);
-            response.put("code", 200);
-            response.put("message", "支付成功");
+            response.put("code", 202);
+            response.put("message", "支付处理中，请稍后查看订单状态");
+            response.put("data", Map.of(
+                    "orderId", order.getOrderId(),
+                    "paymentId", paymentId,
+                    "status", order.getStatus().toString()
+            ));
 
         } catch (Exception e) {
             response.put("success", false);
@@ -98,6 +177,27 @@ public class BookingController {
         return response;
     }
 
+    // 2.1 查询订单状态 (支付后轮询)
+    @GetMapping("/status")
+    public Map<String, Object> getOrderStatus(@RequestParam String orderId) {
+        Map<String, Object> response = new HashMap<>();
+        Order order = BookingService.getInstance().getOrder(orderId);
+        if (order == null) {
+            response.put("success", false);
+            response.put("code", 404);
+            response.put("message", "订单不存在");
+            return response;
+        }
+        response.put("success", true);
+        response.put("code", 200);
+        response.put("data", Map.of(
+                "orderId", order.getOrderId(),
+                "status", order.getStatus().toString(),
+                "version", order.getVersion()
+        ));
+        return response;
+    }
+
     // 3. 用户查询自己的订单
     @GetMapping("/my-orders")
     public Map<String, Object> getMyOrders(@RequestParam String userId) {
@@ -143,7 +243,14 @@ public class BookingController {
 
     // 4. 退票接口
     @PostMapping("/refund")
-    public Map<String, Object> refundOrder(@RequestBody RefundRequest req) {
+    public Map<String, Object> refundOrder(@RequestBody RefundRequest req,
+                                           @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                           HttpServletResponse httpResponse) {
+        return idempotent(idempotencyKey, orderOwner(req.orderId), "refund", req, httpResponse,
+                () -> doRefundOrder(req));
+    }
+
+    private Map<String, Object> doRefundOrder(RefundRequest req) {
         Map<String, Object> response = new HashMap<>();
         try {
             BookingService bookingService = BookingService.getInstance();
@@ -200,4 +307,47 @@ public class BookingController {
         }
         return response;
     }
-}
\ No newline at end of file
+
+    // 支付、退票的请求只有订单号，键归属于订单的用户；订单不存在时不属于任何用户
+    private static String orderOwner(String orderId) {
+        Order order = orderId != null ? BookingService.getInstance().getOrder(orderId) : null;
+        return order != null && order.getUser() != null ? order.getUser().getId() : "";
+    }
+
+    // 带 Idempotency-Key 时同一用户的同一个键只执行一次，重试和并发的重复请求返回第一次的响应；不带时直接执行
+    // 同一个键再次使用时，请求体的任一字段不同都视为不同请求
+    private Map<String, Object> idempotent(String idempotencyKey, String userId, String endpoint, Object request,
+                                           HttpServletResponse httpResponse, Supplier<Map<String, Object>> action) {
+        if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+            return action.get();
+        }
+        Map<String, Object> response = new HashMap<>();
+        String key = idempotencyKey.trim();
+        if (key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            response.put("success", false);
+            response.put("code", 400);
+            response.put("message", "Idempotency-Key 长度不能超过 " + MAX_IDEMPOTENCY_KEY_LENGTH);
+            return response;
+        }
+
+        IdempotencyService.Result result = IdempotencyService.getInstance().execute(
+                userId, key, endpoint, IdempotencyService.fingerprintOf(request), action);
+        switch (result.getOutcome()) {
+            case REPLAYED:
+                httpResponse.setHeader(IDEMPOTENCY_REPLAYED_HEADER, "true");
+                return result.getResponse();
+            case MISMATCH:
+                response.put("success", false);
+                response.put("code", 422);
+                response.put("message", "该 Idempotency-Key 已用于其他请求");
+                return response;
+            case IN_PROGRESS:
+                response.put("success", false);
+                response.put("code", 409);
+                response.put("message", "相同 Idempotency-Key 的请求仍在处理中，请稍后重试");
+                return response;
+            default:
+                return result.getResponse();
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.cinema.controller;
 
 import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
 import com.cinema.service.CinemaManager;
+import com.cinema.service.ScheduleService;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -36,4 +41,81 @@ public class ScreeningRoomController {
         response.put("data", roomList);
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * 放映厅某天的日程（默认今天）：每个场次的开场、散场和清场结束时间
+     */
+    @GetMapping("/{id}/timeline")
+    public Map<String, Object> getTimeline(@PathVariable String id,
+                                           @RequestParam(required = false) String date) {
+        CinemaManager manager = CinemaManager.getInstance();
+        if (manager.getScreeningRoom(id) == null) {
+            return buildResponse(404, "放映厅不存在", null);
+        }
+        LocalDate day;
+        try {
+            day = date != null && !date.isEmpty() ? LocalDate.parse(date) : LocalDate.now();
+        } catch (Exception e) {
+            return buildResponse(400, "日期格式应为 yyyy-MM-dd", null);
+        }
+
+        Map<String, Show> showsById = new HashMap<>();
+        for (Show show : manager.getAllShows()) {
+            showsById.put(show.getId(), show);
+        }
+        ScheduleService scheduleService = ScheduleService.getInstance();
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("roomId", id);
+        payload.put("date", day.toString());
+        payload.put("cleaningBufferMinutes", scheduleService.getCleaningBufferMinutes());
+        payload.put("shows", scheduleService.getTimeline(id, day, showsById));
+        return buildResponse(200, "获取成功", payload);
+    }
+
+    /**
+     * 某天能放下一部 duration 分钟影片的空闲时段，可直接传 movieId 取影片时长
+     */
+    @GetMapping("/{id}/free-slots")
+    public Map<String, Object> getFreeSlots(@PathVariable String id,
+                                            @RequestParam String date,
+                                            @RequestParam(required = false) Integer duration,
+                                            @RequestParam(required = false) String movieId) {
+        CinemaManager manager = CinemaManager.getInstance();
+        if (manager.getScreeningRoom(id) == null) {
+            return buildResponse(404, "放映厅不存在", null);
+        }
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (Exception e) {
+            return buildResponse(400, "日期格式应为 yyyy-MM-dd", null);
+        }
+        int minutes;
+        if (duration != null) {
+            minutes = duration;
+        } else if (movieId != null && manager.getMovie(movieId) != null) {
+            minutes = manager.getMovie(movieId).getDuration();
+        } else {
+            return buildResponse(400, "请提供影片时长 duration 或有效的 movieId", null);
+        }
+        if (minutes <= 0) {
+            return buildResponse(400, "影片时长必须大于0", null);
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("roomId", id);
+        payload.put("date", day.toString());
+        payload.put("durationMinutes", minutes);
+        payload.put("slots", ScheduleService.getInstance().findFreeSlots(id, day, minutes));
+        return buildResponse(200, "获取成功", payload);
+    }
+
+    private Map<String, Object> buildResponse(int code, String msg, Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", code == 200);
+        response.put("code", code);
+        response.put("message", msg);
+        response.put("data", data);
+        return response;
+    }
+}
@@ -0,0 +1,145 @@
+package com.cinema.controller;
+
+import com.cinema.model.ChangeLogEntry;
+import com.cinema.model.Movie;
+import com.cinema.model.Order;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
+import com.cinema.service.BookingService;
+import com.cinema.service.CinemaManager;
+import com.cinema.service.SyncService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    private static final int MAX_LIMIT = 2000;
+
+    /**
+     * 增量同步：返回 version 大于 since 的目录变更
+     * 同一实体的多次变更只保留最后一次，UPSERT 附带实体当前数据，客户端按 nextSince 继续拉取
+     */
+    @GetMapping
+    public Map<String, Object> getChanges(@RequestParam(defaultValue = "0") long since,
+                                          @RequestParam(defaultValue = "500") int limit) {
+        SyncService syncService = SyncService.getInstance();
+        CinemaManager manager = CinemaManager.getInstance();
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+        long latestVersion = syncService.getLatestVersion();
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("since", since);
+        payload.put("latestVersion", latestVersion);
+
+        // 变更日志被重建（版本回退）时，客户端需要全量重新加载
+        if (since > latestVersion) {
+            payload.put("reset", true);
+            payload.put("nextSince", latestVersion);
+            payload.put("hasMore", false);
+            payload.put("changes", new ArrayList<>());
+            return buildResponse(200, "版本已失效，请全量刷新", payload);
+        }
+
+        List<ChangeLogEntry> changes = syncService.getChangesSince(since, pageSize);
+
+        // 按实体去重，保留最后一次变更；订单变更对客户端而言只是所属场次的余票变化，折算为该场次的 UPSERT
+        Map<String, ChangeLogEntry> latestByEntity = new LinkedHashMap<>();
+        for (ChangeLogEntry change : changes) {
+            if (ChangeLogEntry.TYPE_ORDER.equals(change.getEntityType())) {
+                Order order = BookingService.getInstance().getOrder(change.getEntityId());
+                if (order == null) {
+                    continue;
+                }
+                change = new ChangeLogEntry(change.getVersion(), ChangeLogEntry.TYPE_SHOW, order.getShow().getId(),
+                        ChangeLogEntry.OP_UPSERT, change.getNodeId(), change.getChangedAt(), change.getAgeMillis());
+            }
+            String key = change.getEntityType() + ":" + change.getEntityId();
+            latestByEntity.remove(key);
+            latestByEntity.put(key, change);
+        }
+
+        List<Map<String, Object>> deltas = new ArrayList<>();
+        for (ChangeLogEntry change : latestByEntity.values()) {
+            Object data = change.isDelete() ? null : toEntityData(manager, change);
+            Map<String, Object> item = new HashMap<>();
+            item.put("v", change.getVersion());
+            item.put("type", change.getEntityType());
+            item.put("id", change.getEntityId());
+            // 实体在内存中已不存在（之后被删除），按删除下发
+            item.put("op", data == null ? ChangeLogEntry.OP_DELETE : change.getOp());
+            if (data != null) {
+                item.put("data", data);
+            }
+            deltas.add(item);
+        }
+
+        long nextSince = changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion();
+        payload.put("reset", false);
+        payload.put("nextSince", nextSince);
+        payload.put("hasMore", nextSince < latestVersion);
+        payload.put("changes", deltas);
+        return buildResponse(200, "获取成功", payload);
+    }
+
+    /**
+     * 本节点的复制状态（角色、已应用版本、复制延迟），只读副本据此监控与主节点的差距
+     */
+    @GetMapping("/status")
+    public Map<String, Object> getStatus() {
+        return buildResponse(200, "获取成功", SyncService.getInstance().getReplicationStatus());
+    }
+
+    private Object toEntityData(CinemaManager manager, ChangeLogEntry change) {
+        switch (change.getEntityType()) {
+            case ChangeLogEntry.TYPE_MOVIE: {
+                Movie movie = manager.getMovie(change.getEntityId());
+                return movie != null ? new MovieDTO(movie) : null;
+            }
+            case ChangeLogEntry.TYPE_SHOW: {
+                Show show = manager.getShow(change.getEntityId());
+                if (show == null) return null;
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", show.getId());
+                item.put("movieId", show.getMovieId());
+                item.put("roomId", show.getScreeningRoomId());
+                item.put("startTime", show.getStartTime().toString());
+                item.put("basePrice", show.getBasePrice());
+                item.put("availableSeats", show.getAvailableSeatsCount());
+                item.put("totalSeats", show.getTotalSeats());
+                return item;
+            }
+            case ChangeLogEntry.TYPE_ROOM: {
+                ScreeningRoom room = manager.getScreeningRoom(change.getEntityId());
+                if (room == null) return null;
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", room.getId());
+                item.put("name", room.getName());
+                item.put("rows", room.getRows());
+                item.put("cols", room.getColumns());
+                item.put("capacity", room.getTotalSeats());
+                return item;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private Map<String, Object> buildResponse(int code, String msg, Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", code == 200);
+        response.put("code", code);
+        response.put("message", msg);
+        response.put("data", data);
+        return response;
+    }
+}
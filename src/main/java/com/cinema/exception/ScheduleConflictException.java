@@ -0,0 +1,25 @@
+package com.cinema.exception;
+
+/**
+ * 排片冲突异常
+ * 新场次（含清场时间）与同一放映厅已有场次时间重叠时抛出
+ * 为非受检异常，CinemaManager.addShow 的现有调用方无需修改签名
+ */
+public class ScheduleConflictException extends RuntimeException {
+    private final String roomId;
+    private final String conflictingShowId;
+
+    public ScheduleConflictException(String roomId, String conflictingShowId, String message) {
+        super(message);
+        this.roomId = roomId;
+        this.conflictingShowId = conflictingShowId;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public String getConflictingShowId() {
+        return conflictingShowId;
+    }
+}
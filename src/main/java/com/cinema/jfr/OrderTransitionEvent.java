@@ -0,0 +1,51 @@
+package com.cinema.jfr;
+
+import com.cinema.model.Order;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 订单状态转换（按版本号 CAS）的 JFR 事件；并发请求抢同一订单时失败的一方 outcome 为 conflict
+ */
+@Name("com.cinema.OrderTransition")
+@Label("订单状态转换")
+@Category({"Cinema", "Booking"})
+@StackTrace(false)
+public class OrderTransitionEvent extends Event {
+
+    @Label("订单号")
+    public String orderId;
+
+    @Label("场次ID")
+    public String showId;
+
+    @Label("座位数")
+    public int seatCount;
+
+    @Label("原状态")
+    public String fromStatus;
+
+    @Label("目标状态")
+    public String toStatus;
+
+    @Label("结果")
+    @Description("success / conflict")
+    public String outcome;
+
+    public void finish(Order order, Order.OrderStatus from, Order.OrderStatus to, boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.orderId = order.getOrderId();
+            this.showId = order.getShow() != null ? order.getShow().getId() : null;
+            this.seatCount = order.getSeats().size();
+            this.fromStatus = from.name();
+            this.toStatus = to.name();
+            this.outcome = success ? "success" : "conflict";
+            commit();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.cinema.jfr;
+
+import com.cinema.model.Show;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 锁座（下单、预订、自动选座）的 JFR 事件，持续时间包含等待场次锁和写库；
+ * 按线程和时间与 jdk.JavaMonitorEnter（锁竞争）、jdk.GarbageCollection 对照，可以看出是哪个场次的开售在排队
+ */
+@Name("com.cinema.SeatAcquisition")
+@Label("锁座")
+@Category({"Cinema", "Booking"})
+@Description("锁定座位并生成订单")
+@StackTrace(false)
+public class SeatAcquisitionEvent extends Event {
+
+    @Label("场次ID")
+    public String showId;
+
+    @Label("电影")
+    public String movieTitle;
+
+    @Label("座位数")
+    public int seatCount;
+
+    @Label("方式")
+    @Description("create / reserve / best-available")
+    public String mode;
+
+    @Label("结果")
+    @Description("success 或失败的异常类名")
+    public String outcome;
+
+    /**
+     * 结束计时，正在录制且超过阈值时才填写字段并提交
+     */
+    public void finish(Show show, int seatCount, String mode, Throwable error) {
+        end();
+        if (shouldCommit()) {
+            this.showId = show != null ? show.getId() : null;
+            this.movieTitle = show != null ? show.getMovieTitle() : null;
+            this.seatCount = seatCount;
+            this.mode = mode;
+            this.outcome = error == null ? "success" : error.getClass().getSimpleName();
+            commit();
+        }
+    }
+}
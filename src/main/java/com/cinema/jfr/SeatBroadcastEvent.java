@@ -0,0 +1,44 @@
+package com.cinema.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 座位更新 WebSocket 广播的 JFR 事件，持续时间为把消息交给该场次所有连接的时间（发送本身是异步的）；
+ * 推送内容只是刷新通知，不带座位，因此记录的是连接数而不是座位数
+ */
+@Name("com.cinema.SeatBroadcast")
+@Label("座位更新广播")
+@Category({"Cinema", "WebSocket"})
+@StackTrace(false)
+public class SeatBroadcastEvent extends Event {
+
+    @Label("场次ID")
+    public String showId;
+
+    @Label("连接数")
+    public int sessions;
+
+    @Label("合并数")
+    @Description("上一帧未发完、被合并为一帧的连接数")
+    public int coalesced;
+
+    @Label("结果")
+    @Description("success，或有连接提交发送失败时为 failed")
+    public String outcome;
+
+    public void finish(String showId, int sessions, int coalesced, int failures) {
+        end();
+        if (shouldCommit()) {
+            this.showId = showId;
+            this.sessions = sessions;
+            this.coalesced = coalesced;
+            this.outcome = failures == 0 ? "success" : "failed";
+            commit();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.cinema.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 数据存储方法调用的 JFR 事件；订单和场次相关的调用带场次ID和座位数，批量调用的场次ID为空
+ */
+@Name("com.cinema.StorageCall")
+@Label("数据存储调用")
+@Category({"Cinema", "Storage"})
+@StackTrace(false)
+public class StorageCallEvent extends Event {
+
+    @Label("方法")
+    public String operation;
+
+    @Label("存储类型")
+    @Description("mysql / embedded / memory")
+    public String storage;
+
+    @Label("场次ID")
+    public String showId;
+
+    @Label("座位数")
+    public int seatCount;
+
+    @Label("结果")
+    @Description("success 或异常类名；实现内部吞掉的数据库错误只体现在返回值上")
+    public String outcome;
+
+    public void finish(String operation, String storage, String showId, int seatCount, Throwable error) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.storage = storage;
+            this.showId = showId;
+            this.seatCount = seatCount;
+            this.outcome = error == null ? "success" : error.getClass().getSimpleName();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cinema.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * 变更日志记录
+ * 对应 change_log 表中的一行，version 由数据库单调递增分配，用于"从某版本之后发生了什么变化"的增量同步
+ */
+public class ChangeLogEntry implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String TYPE_MOVIE = "MOVIE";
+    public static final String TYPE_SHOW = "SHOW";
+    public static final String TYPE_ROOM = "ROOM";
+    public static final String TYPE_ORDER = "ORDER"; // 订单状态及其座位变化，供只读副本同步座位图
+
+    public static final String OP_UPSERT = "UPSERT";
+    public static final String OP_DELETE = "DELETE";
+
+    private final long version;
+    private final String entityType;
+    private final String entityId;
+    private final String op;
+    private final String nodeId; // 产生该变更的节点，轮询时跳过本节点自己的变更
+    private final LocalDateTime changedAt;
+    private final long ageMillis; // 读取时该变更已提交多久（按数据库时钟计算，避免节点间时钟偏差）
+
+    public ChangeLogEntry(long version, String entityType, String entityId, String op, String nodeId,
+                          LocalDateTime changedAt, long ageMillis) {
+        this.version = version;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.op = op;
+        this.nodeId = nodeId;
+        this.changedAt = changedAt;
+        this.ageMillis = ageMillis;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public long getAgeMillis() {
+        return ageMillis;
+    }
+
+    public boolean isDelete() {
+        return OP_DELETE.equals(op);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeLogEntry{" +
+                "version=" + version +
+                ", entityType='" + entityType + '\'' +
+                ", entityId='" + entityId + '\'' +
+                ", op='" + op + '\'' +
+                ", nodeId='" + nodeId + '\'' +
+                '}';
+    }
+}
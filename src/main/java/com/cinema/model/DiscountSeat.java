@@ -7,6 +7,10 @@ public class DiscountSeat extends Seat implements java.io.Serializable {
         super(row, col, basePrice); // 使用传入的价格（已经是折扣价）
     }
     
+    DiscountSeat(Show owner, int index, int row, int col) {
+        super(owner, index, row, col);
+    }
+
     @Override
     public String toString() {
         return "DiscountSeat{" +
@@ -0,0 +1,44 @@
+package com.cinema.model;
+
+/**
+ * 幂等键记录
+ * 对应 idempotency_keys 表中的一行：客户端提供的 Idempotency-Key、所属接口、请求指纹以及第一次执行的响应（JSON）
+ * 同一个键的重试直接返回保存的响应，不再重复执行下单/支付/退票
+ */
+public class IdempotencyRecord implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+    private final String endpoint;
+    private final String fingerprint; // 请求参数摘要，同一个键用于不同请求时拒绝
+    private final String responseJson;
+    private final long createdAtMillis;
+
+    public IdempotencyRecord(String key, String endpoint, String fingerprint, String responseJson, long createdAtMillis) {
+        this.key = key;
+        this.endpoint = endpoint;
+        this.fingerprint = fingerprint;
+        this.responseJson = responseJson;
+        this.createdAtMillis = createdAtMillis;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getResponseJson() {
+        return responseJson;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+}
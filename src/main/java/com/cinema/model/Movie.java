@@ -215,6 +215,24 @@ public class Movie implements java.io.Serializable {
         return new ConcurrentHashMap<>(showSchedule);
     }
 
+    /**
+     * 用另一份数据（如从数据库重新加载的同一电影）覆盖本对象的展示信息和评论
+     * 场次安排 showSchedule 保持不变，已关联的场次仍引用当前对象
+     */
+    public void copyDetailsFrom(Movie other) {
+        this.title = other.title;
+        this.releaseTime = other.releaseTime;
+        this.actors = new ArrayList<>(other.actors);
+        this.director = other.director;
+        this.duration = other.duration;
+        this.rating = other.rating;
+        this.description = other.description;
+        this.genre = other.genre;
+        this.trailerUrl = other.trailerUrl;
+        this.coverUrl = other.coverUrl;
+        this.comments = new CopyOnWriteArrayList<>(other.comments);
+    }
+
     @Override
     public String toString() {
         return String.format("Movie{id='%s', title='%s', director='%s', duration=%d分钟, rating=%.1f, genre=%s}",
@@ -1,7 +1,13 @@
 package com.cinema.model;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Order implements java.io.Serializable {
     private static final long serialVersionUID = 1L;
@@ -10,26 +16,57 @@ public class Order implements java.io.Serializable {
     private List<Seat> seats;
     private LocalDateTime createTime;
     private LocalDateTime lockTime; // 预订锁定时间
-    private OrderStatus status;
+    // 状态和版本号放在一个不可变对象里整体 CAS，状态每变化一次版本号加一，持久化时按版本号做条件更新
+    private final AtomicReference<State> state;
     private double totalAmount;
     private User user;
+    private String pricingStrategy; // 下单时使用的定价策略名称
 
     public enum OrderStatus {
         PENDING,
         RESERVED,
+        PAYING,   // 已提交支付网关，等待扣款结果
         PAID,
         CANCELLED,
         REFUNDED,
         EXPIRED
     }
 
+    // 允许的状态转换；CANCELLED、REFUNDED、EXPIRED 为终态
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        TRANSITIONS.put(OrderStatus.PENDING, EnumSet.of(OrderStatus.PAID, OrderStatus.CANCELLED, OrderStatus.EXPIRED));
+        TRANSITIONS.put(OrderStatus.RESERVED, EnumSet.of(OrderStatus.PAYING, OrderStatus.PAID, OrderStatus.CANCELLED, OrderStatus.EXPIRED));
+        TRANSITIONS.put(OrderStatus.PAYING, EnumSet.of(OrderStatus.PAID, OrderStatus.CANCELLED, OrderStatus.EXPIRED));
+        TRANSITIONS.put(OrderStatus.PAID, EnumSet.of(OrderStatus.REFUNDED, OrderStatus.CANCELLED));
+        TRANSITIONS.put(OrderStatus.CANCELLED, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(OrderStatus.REFUNDED, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(OrderStatus.EXPIRED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    private static final class State implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        final OrderStatus status;
+        final long version;
+
+        State(OrderStatus status, long version) {
+            this.status = status;
+            this.version = version;
+        }
+    }
+
+    public static boolean canTransition(OrderStatus from, OrderStatus to) {
+        return TRANSITIONS.getOrDefault(from, Collections.emptySet()).contains(to);
+    }
+
     public Order(String orderId, Show show, List<Seat> seats, LocalDateTime createTime, OrderStatus status) {
         this.orderId = orderId;
         this.show = show;
         this.seats = seats;
         this.createTime = createTime;
         this.lockTime = null; // 初始为空，预订时设置
-        this.status = status;
+        this.state = new AtomicReference<>(new State(status, 0L));
         this.totalAmount = calculateTotal();
     }
 
@@ -67,11 +104,46 @@ public class Order implements java.io.Serializable {
     }
 
     public OrderStatus getStatus() {
-        return status;
+        return state.get().status;
+    }
+
+    public long getVersion() {
+        return state.get().version;
     }
 
+    /**
+     * 不检查转换规则直接设置状态（版本号加一），仅用于测试和数据修复；业务代码使用 {@link #transition}
+     */
     public void setStatus(OrderStatus status) {
-        this.status = status;
+        state.updateAndGet(s -> new State(status, s.version + 1));
+    }
+
+    /**
+     * 状态转换：当前状态为 from 且转换合法时 CAS 为 to，版本号加一
+     * @return 转换前的版本号（持久化时作为条件更新的期望版本），状态已变化或转换不合法时返回 -1
+     */
+    public long transition(OrderStatus from, OrderStatus to) {
+        State current = state.get();
+        if (current.status != from || !canTransition(from, to)) {
+            return -1;
+        }
+        return state.compareAndSet(current, new State(to, current.version + 1)) ? current.version : -1;
+    }
+
+    /**
+     * 采用数据库或其他节点上的状态；版本号比本地旧时忽略（版本号相同但状态不同时以数据库为准）
+     * @return 是否采用
+     */
+    public boolean restoreState(OrderStatus status, long version) {
+        while (true) {
+            State current = state.get();
+            if (version < current.version || (version == current.version && status == current.status)) {
+                return false;
+            }
+            if (state.compareAndSet(current, new State(status, version))) {
+                return true;
+            }
+        }
     }
 
     public double getTotalAmount() {
@@ -86,6 +158,14 @@ public class Order implements java.io.Serializable {
         this.user = user;
     }
 
+    public String getPricingStrategy() {
+        return pricingStrategy;
+    }
+
+    public void setPricingStrategy(String pricingStrategy) {
+        this.pricingStrategy = pricingStrategy;
+    }
+
     public double calculateTotal() {
         double total = 0.0;
         // 直接使用座位的基础价格，该价格已经由 Show 根据场次设置正确
@@ -97,27 +177,16 @@ public class Order implements java.io.Serializable {
     }
 
     public boolean processPayment() {
-        if (status == OrderStatus.PENDING) {
-            status = OrderStatus.PAID;
-            return true;
-        }
-        return false;
+        return transition(OrderStatus.PENDING, OrderStatus.PAID) >= 0;
     }
 
     public boolean cancel() {
-        if (status == OrderStatus.PENDING || status == OrderStatus.PAID) {
-            status = OrderStatus.CANCELLED;
-            return true;
-        }
-        return false;
+        return transition(OrderStatus.PENDING, OrderStatus.CANCELLED) >= 0
+                || transition(OrderStatus.PAID, OrderStatus.CANCELLED) >= 0;
     }
 
     public boolean refund() {
-        if (status == OrderStatus.PAID) {
-            status = OrderStatus.REFUNDED;
-            return true;
-        }
-        return false;
+        return transition(OrderStatus.PAID, OrderStatus.REFUNDED) >= 0;
     }
 
     public int getSeatCount() {
@@ -143,7 +212,7 @@ public class Order implements java.io.Serializable {
     
     // 检查预订是否过期（15分钟）
     public boolean isExpired() {
-        if (lockTime == null || status != OrderStatus.RESERVED) {
+        if (lockTime == null || getStatus() != OrderStatus.RESERVED) {
             return false;
         }
         return LocalDateTime.now().isAfter(lockTime.plusMinutes(15));
@@ -151,7 +220,7 @@ public class Order implements java.io.Serializable {
     
     // 获取剩余锁定时间（分钟）
     public long getRemainingLockMinutes() {
-        if (lockTime == null || status != OrderStatus.RESERVED) {
+        if (lockTime == null || getStatus() != OrderStatus.RESERVED) {
             return 0;
         }
         LocalDateTime expireTime = lockTime.plusMinutes(15);
@@ -169,7 +238,8 @@ public class Order implements java.io.Serializable {
                 ", showTime=" + show.getStartTime() +
                 ", seats=" + getSeatIds() +
                 ", createTime=" + createTime +
-                ", status=" + status +
+                ", status=" + getStatus() +
+                ", version=" + getVersion() +
                 ", totalAmount=" + totalAmount +
                 '}';
     }
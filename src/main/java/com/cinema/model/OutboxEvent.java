@@ -0,0 +1,86 @@
+package com.cinema.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 发件箱事件
+ * 对应 outbox_events 表中的一行，与订单状态变化在同一事务中写入，由 OutboxRelay 提交后再发布；
+ * 发布至少一次，eventId 全局唯一，接收方据此去重
+ */
+public class OutboxEvent implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String TYPE_SEAT_UPDATE = "SEAT_UPDATE";               // 场次座位图变化，推送给 WebSocket 客户端
+    public static final String TYPE_ORDER_NOTIFICATION = "ORDER_NOTIFICATION"; // 订单状态通知，写入用户通知列表
+
+    private final long id; // 数据库自增序号，新建事件为 0
+    private final String eventId;
+    private final String eventType;
+    private final String orderId;
+    private final String showId;
+    private final String userId;
+    private final String message;
+    private final LocalDateTime createdAt;
+    private final long ageMillis; // 读取时事件已提交多久（按数据库时钟计算）
+
+    public OutboxEvent(long id, String eventId, String eventType, String orderId, String showId, String userId,
+                       String message, LocalDateTime createdAt, long ageMillis) {
+        this.id = id;
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.orderId = orderId;
+        this.showId = showId;
+        this.userId = userId;
+        this.message = message;
+        this.createdAt = createdAt;
+        this.ageMillis = ageMillis;
+    }
+
+    public static OutboxEvent seatUpdate(Order order) {
+        return new OutboxEvent(0L, UUID.randomUUID().toString(), TYPE_SEAT_UPDATE, order.getOrderId(),
+                order.getShow().getId(), null, null, LocalDateTime.now(), 0L);
+    }
+
+    public static OutboxEvent orderNotification(Order order, String message) {
+        return new OutboxEvent(0L, UUID.randomUUID().toString(), TYPE_ORDER_NOTIFICATION, order.getOrderId(),
+                order.getShow().getId(), order.getUser() != null ? order.getUser().getId() : null, message,
+                LocalDateTime.now(), 0L);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getShowId() {
+        return showId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getAgeMillis() {
+        return ageMillis;
+    }
+}
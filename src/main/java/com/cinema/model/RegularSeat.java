@@ -11,13 +11,17 @@ public class RegularSeat extends Seat implements java.io.Serializable {
         super(row, col, basePrice);
     }
 
+    RegularSeat(Show owner, int index, int row, int col) {
+        super(owner, index, row, col);
+    }
+
     @Override
     public String toString() {
         return "RegularSeat{" +
                 "row=" + row +
                 ", col=" + col +
-                ", status=" + status +
-                ", basePrice=" + basePrice +
+                ", status=" + getStatus() +
+                ", basePrice=" + getBasePrice() +
                 '}';
     }
 }
\ No newline at end of file
@@ -11,6 +11,8 @@ public class ScreeningRoom implements java.io.Serializable {
     private Seat[][] seatLayout;
     private int totalRows;
     private int totalCols;
+    // 由座位布局生成的共享模板，布局变化时重建
+    private transient volatile SeatLayoutTemplate seatTemplate;
 
     public ScreeningRoom(String id, String name, int totalRows, int totalCols) {
         this.id = id;
@@ -70,6 +72,19 @@ public class ScreeningRoom implements java.io.Serializable {
 
     public void setSeatLayout(Seat[][] seatLayout) {
         this.seatLayout = seatLayout;
+        this.seatTemplate = null;
+    }
+
+    /**
+     * 本厅所有场次共享的座位模板（位置和类型）
+     */
+    public SeatLayoutTemplate getSeatTemplate() {
+        SeatLayoutTemplate template = seatTemplate;
+        if (template == null) {
+            template = new SeatLayoutTemplate(seatLayout);
+            seatTemplate = template;
+        }
+        return template;
     }
 
     public int getTotalRows() {
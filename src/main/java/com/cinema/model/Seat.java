@@ -1,11 +1,19 @@
 package com.cinema.model;
 
+/**
+ * 座位
+ * 放映厅布局中的座位自己保存状态和价格；场次中的座位是轻量视图，
+ * 状态和价格读写都转到所属场次的紧凑数组（见 Show、SeatLayoutTemplate），不单独保存
+ */
 public abstract class Seat implements java.io.Serializable {
     private static final long serialVersionUID = 1L;
     protected int row;
     protected int col;
     protected SeatStatus status;
     protected double basePrice;
+    // 所属场次及座位编号，仅场次座位视图使用，不参与序列化
+    private transient Show owner;
+    private int index;
 
     public enum SeatStatus {
         AVAILABLE,
@@ -20,6 +28,14 @@ public abstract class Seat implements java.io.Serializable {
         this.status = SeatStatus.AVAILABLE;
     }
 
+    // 场次座位视图
+    Seat(Show owner, int index, int row, int col) {
+        this.row = row;
+        this.col = col;
+        this.owner = owner;
+        this.index = index;
+    }
+
     public int getRow() {
         return row;
     }
@@ -37,43 +53,58 @@ public abstract class Seat implements java.io.Serializable {
     }
 
     public SeatStatus getStatus() {
-        return status;
+        return owner != null ? owner.getSeatStatus(index) : status;
     }
 
     public void setStatus(SeatStatus status) {
-        this.status = status;
+        changeStatus(status);
+    }
+
+    /**
+     * 所有状态变化都经过这里；场次座位由场次更新状态数组和余座索引
+     */
+    private void changeStatus(SeatStatus newStatus) {
+        if (owner != null) {
+            owner.setSeatStatus(index, newStatus);
+        } else {
+            this.status = newStatus;
+        }
     }
 
     public double getBasePrice() {
-        return basePrice;
+        return owner != null ? owner.getSeatPrice(index) : basePrice;
     }
 
     public void setBasePrice(double basePrice) {
-        this.basePrice = basePrice;
+        if (owner != null) {
+            owner.setSeatPrice(index, basePrice);
+        } else {
+            this.basePrice = basePrice;
+        }
     }
 
     public boolean isAvailable() {
-        return status == SeatStatus.AVAILABLE;
+        return getStatus() == SeatStatus.AVAILABLE;
     }
 
     public boolean isLocked() {
-        return status == SeatStatus.LOCKED;
+        return getStatus() == SeatStatus.LOCKED;
     }
 
     public void lock() {
-        this.status = SeatStatus.LOCKED;
+        changeStatus(SeatStatus.LOCKED);
     }
 
     public void unlock() {
-        this.status = SeatStatus.AVAILABLE;
+        changeStatus(SeatStatus.AVAILABLE);
     }
 
     public void sell() {
-        this.status = SeatStatus.SOLD;
+        changeStatus(SeatStatus.SOLD);
     }
     
     public void book() {
-        this.status = SeatStatus.SOLD;
+        changeStatus(SeatStatus.SOLD);
     }
 
     public String getSeatId() {
@@ -85,8 +116,8 @@ public abstract class Seat implements java.io.Serializable {
         return "Seat{" +
                 "row=" + row +
                 ", col=" + col +
-                ", status=" + status +
-                ", basePrice=" + basePrice +
+                ", status=" + getStatus() +
+                ", basePrice=" + getBasePrice() +
                 '}';
     }
 
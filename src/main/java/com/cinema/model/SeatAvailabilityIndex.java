@@ -0,0 +1,282 @@
+package com.cinema.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 场次余座索引
+ * 按排维护连续空座段（起始列、长度）和该排最长空座段，座位每次状态变化只重算所在的一排；
+ * 查找 N 个相邻座位时先用每排最长空座段跳过放不下的排，不再扫描整个座位图
+ * 同时按座位类型维护总数/余座计数和已售计数，余票查询无需遍历座位
+ * 座位是否空闲直接读场次的状态数组，座位类型读放映厅共享模板，索引本身不再保存座位图
+ * 行列号与 Seat 一致，从 1 开始
+ */
+public class SeatAvailabilityIndex implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    // 偏离中心一排比偏离中心一列对观影体验影响更大
+    private static final double ROW_WEIGHT = 2.0;
+
+    // 座位类型下标，名称与座位图接口中的 type 一致
+    public static final int CLASS_REGULAR = 0;
+    public static final int CLASS_VIP = 1;
+    public static final int CLASS_DISCOUNT = 2;
+    private static final String[] CLASS_NAMES = {"regular", "vip", "discount"};
+    private static final byte AVAILABLE = (byte) Seat.SeatStatus.AVAILABLE.ordinal();
+
+    private final int rows;
+    private final int cols;
+    private final double centerRow;
+    private final double centerCol;
+    private final SeatLayoutTemplate template;
+    private final byte[] statuses; // 与场次共享，Seat.SeatStatus 的序号
+    private final int[][] runStarts;  // 每排空座段的起始列
+    private final int[][] runLengths; // 每排空座段的长度
+    private final int[] maxRun;       // 每排最长空座段
+    private final int[] totalByClass = new int[CLASS_NAMES.length];
+    private final int[] freeByClass = new int[CLASS_NAMES.length];
+    private int freeCount;
+    private int soldCount;
+
+    /**
+     * 新场次的索引，所有座位均为可售状态
+     * 空座段数组只会整体替换不会原地修改，初始时各排共用同一组
+     */
+    public SeatAvailabilityIndex(SeatLayoutTemplate template, byte[] statuses) {
+        this.template = template;
+        this.statuses = statuses;
+        this.rows = template.getRows();
+        this.cols = template.getCols();
+        this.centerRow = (rows + 1) / 2.0;
+        this.centerCol = (cols + 1) / 2.0;
+        this.runStarts = new int[rows][];
+        this.runLengths = new int[rows][];
+        this.maxRun = new int[rows];
+        int[] fullRowStarts = cols > 0 ? new int[]{1} : new int[0];
+        int[] fullRowLengths = cols > 0 ? new int[]{cols} : new int[0];
+        for (int r = 0; r < rows; r++) {
+            runStarts[r] = fullRowStarts;
+            runLengths[r] = fullRowLengths;
+            maxRun[r] = cols;
+        }
+        for (int i = 0; i < template.size(); i++) {
+            totalByClass[template.getSeatClass(i)]++;
+        }
+        System.arraycopy(totalByClass, 0, freeByClass, 0, totalByClass.length);
+        this.freeCount = rows * cols;
+    }
+
+    public static int classOf(Seat seat) {
+        if (seat instanceof VIPSeat) return CLASS_VIP;
+        if (seat instanceof DiscountSeat) return CLASS_DISCOUNT;
+        return CLASS_REGULAR;
+    }
+
+    public static String className(int seatClass) {
+        return CLASS_NAMES[seatClass];
+    }
+
+    /**
+     * 座位状态变化后由场次调用，此时状态数组已更新
+     */
+    public synchronized void onSeatStatusChanged(int index, Seat.SeatStatus oldStatus, Seat.SeatStatus newStatus) {
+        if (oldStatus == Seat.SeatStatus.SOLD) soldCount--;
+        if (newStatus == Seat.SeatStatus.SOLD) soldCount++;
+
+        boolean wasFree = oldStatus == Seat.SeatStatus.AVAILABLE;
+        boolean nowFree = newStatus == Seat.SeatStatus.AVAILABLE;
+        if (wasFree == nowFree) {
+            return;
+        }
+        int delta = nowFree ? 1 : -1;
+        freeCount += delta;
+        freeByClass[template.getSeatClass(index)] += delta;
+        rebuildRow(index / cols);
+    }
+
+    // 重新计算一排的空座段，O(列数)
+    private void rebuildRow(int r) {
+        int[] starts = new int[(cols + 1) / 2];
+        int[] lengths = new int[starts.length];
+        int count = 0;
+        int longest = 0;
+        int offset = r * cols;
+        int c = 0;
+        while (c < cols) {
+            if (statuses[offset + c] != AVAILABLE) {
+                c++;
+                continue;
+            }
+            int start = c;
+            while (c < cols && statuses[offset + c] == AVAILABLE) {
+                c++;
+            }
+            starts[count] = start + 1;
+            lengths[count] = c - start;
+            longest = Math.max(longest, c - start);
+            count++;
+        }
+        runStarts[r] = Arrays.copyOf(starts, count);
+        runLengths[r] = Arrays.copyOf(lengths, count);
+        maxRun[r] = longest;
+    }
+
+    /**
+     * 查找 count 个最佳座位
+     * 优先返回同一排相邻的一段；没有足够长的空座段且允许拆分时，依次取当前能放下的最大分组，
+     * 每组都尽量靠近中心。余座不足时返回空列表
+     */
+    public synchronized List<SeatBlock> findBestBlocks(int count, boolean allowSplit) {
+        List<SeatBlock> result = new ArrayList<>();
+        if (count <= 0 || count > freeCount) {
+            return result;
+        }
+        SeatBlock whole = bestPlacement(count, runStarts, runLengths, maxRun);
+        if (whole != null) {
+            result.add(whole);
+            return result;
+        }
+        if (!allowSplit) {
+            return result;
+        }
+
+        // 在索引的浅拷贝上逐组划出座位，被修改的排换成新数组，不影响实际索引
+        int[][] starts = runStarts.clone();
+        int[][] lengths = runLengths.clone();
+        int[] rowMax = maxRun.clone();
+        int remaining = count;
+        while (remaining > 0) {
+            int largest = 0;
+            for (int r = 0; r < rows; r++) {
+                largest = Math.max(largest, rowMax[r]);
+            }
+            SeatBlock block = bestPlacement(Math.min(remaining, largest), starts, lengths, rowMax);
+            result.add(block);
+            carve(block, starts, lengths, rowMax);
+            remaining -= block.getLength();
+        }
+        return result;
+    }
+
+    private SeatBlock bestPlacement(int n, int[][] starts, int[][] lengths, int[] rowMax) {
+        SeatBlock best = null;
+        double bestScore = Double.MAX_VALUE;
+        int ideal = (int) Math.round(centerCol - (n - 1) / 2.0);
+        for (int r = 0; r < rows; r++) {
+            if (rowMax[r] < n) {
+                continue;
+            }
+            double rowDistance = Math.abs((r + 1) - centerRow) * ROW_WEIGHT;
+            if (rowDistance >= bestScore) {
+                continue;
+            }
+            for (int i = 0; i < starts[r].length; i++) {
+                int runStart = starts[r][i];
+                int runLength = lengths[r][i];
+                if (runLength < n) {
+                    continue;
+                }
+                // 段内最靠近中心列的起点
+                int start = Math.max(runStart, Math.min(ideal, runStart + runLength - n));
+                double score = rowDistance + Math.abs(start + (n - 1) / 2.0 - centerCol);
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = new SeatBlock(r + 1, start, n);
+                }
+            }
+        }
+        return best;
+    }
+
+    // 从空座段中划掉一组座位，原空座段被拆成左右两段
+    private void carve(SeatBlock block, int[][] starts, int[][] lengths, int[] rowMax) {
+        int r = block.getRow() - 1;
+        List<int[]> runs = new ArrayList<>();
+        for (int i = 0; i < starts[r].length; i++) {
+            int runStart = starts[r][i];
+            int runEnd = runStart + lengths[r][i];
+            if (block.getStartCol() >= runStart && block.getStartCol() < runEnd) {
+                int blockEnd = block.getStartCol() + block.getLength();
+                if (block.getStartCol() > runStart) {
+                    runs.add(new int[]{runStart, block.getStartCol() - runStart});
+                }
+                if (runEnd > blockEnd) {
+                    runs.add(new int[]{blockEnd, runEnd - blockEnd});
+                }
+            } else {
+                runs.add(new int[]{runStart, lengths[r][i]});
+            }
+        }
+        starts[r] = new int[runs.size()];
+        lengths[r] = new int[runs.size()];
+        rowMax[r] = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            starts[r][i] = runs.get(i)[0];
+            lengths[r][i] = runs.get(i)[1];
+            rowMax[r] = Math.max(rowMax[r], runs.get(i)[1]);
+        }
+    }
+
+    public synchronized int getFreeCount() {
+        return freeCount;
+    }
+
+    public synchronized int getSoldCount() {
+        return soldCount;
+    }
+
+    public synchronized int getTotalCount(int seatClass) {
+        return totalByClass[seatClass];
+    }
+
+    public synchronized int getFreeCount(int seatClass) {
+        return freeByClass[seatClass];
+    }
+
+    /**
+     * 全场最长的连续空座段
+     */
+    public synchronized int getLargestFreeBlock() {
+        int largest = 0;
+        for (int r = 0; r < rows; r++) {
+            largest = Math.max(largest, maxRun[r]);
+        }
+        return largest;
+    }
+
+    public synchronized int getMaxRun(int row) {
+        return row >= 1 && row <= rows ? maxRun[row - 1] : 0;
+    }
+
+    /**
+     * 同一排中连续的一组座位
+     */
+    public static final class SeatBlock {
+        private final int row;
+        private final int startCol;
+        private final int length;
+
+        public SeatBlock(int row, int startCol, int length) {
+            this.row = row;
+            this.startCol = startCol;
+            this.length = length;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public int getStartCol() {
+            return startCol;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return "SeatBlock{row=" + row + ", cols=" + startCol + "-" + (startCol + length - 1) + '}';
+        }
+    }
+}
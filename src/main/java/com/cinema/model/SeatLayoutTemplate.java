@@ -0,0 +1,60 @@
+package com.cinema.model;
+
+/**
+ * 放映厅座位模板（享元）
+ * 只保存座位图尺寸和每个座位的类型，创建后不再修改，由同一放映厅的所有场次共享；
+ * 场次自己只保存每个座位的状态和价格覆盖值
+ * 座位按行优先编号：index = (row - 1) * cols + (col - 1)，行列号从 1 开始
+ */
+public final class SeatLayoutTemplate implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int rows;
+    private final int cols;
+    private final byte[] seatClasses; // SeatAvailabilityIndex.CLASS_*
+
+    SeatLayoutTemplate(Seat[][] seatLayout) {
+        this.rows = seatLayout.length;
+        this.cols = rows > 0 ? seatLayout[0].length : 0;
+        this.seatClasses = new byte[rows * cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                seatClasses[r * cols + c] = (byte) SeatAvailabilityIndex.classOf(seatLayout[r][c]);
+            }
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int size() {
+        return seatClasses.length;
+    }
+
+    public int getSeatClass(int index) {
+        return seatClasses[index];
+    }
+
+    /**
+     * 行列号转座位编号，越界返回 -1
+     */
+    public int indexOf(int row, int col) {
+        if (row < 1 || row > rows || col < 1 || col > cols) {
+            return -1;
+        }
+        return (row - 1) * cols + (col - 1);
+    }
+
+    public int rowOf(int index) {
+        return index / cols + 1;
+    }
+
+    public int colOf(int index) {
+        return index % cols + 1;
+    }
+}
@@ -2,7 +2,10 @@ package com.cinema.model;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Show implements java.io.Serializable {
     private static final long serialVersionUID = 1L;
@@ -13,7 +16,25 @@ public class Show implements java.io.Serializable {
     private double basePrice;
     private double discountPrice; // 优惠座位价格
     private double vipPrice; // VIP座位价格
-    private List<Seat> seats;
+    // 座位位置和类型来自放映厅共享的模板，场次只保存每个座位的状态和价格覆盖值，
+    // Seat 对象按需创建为视图，不常驻内存
+    private SeatLayoutTemplate seatTemplate;
+    private byte[] seatStatuses;     // 按座位编号保存 Seat.SeatStatus 的序号
+    private double[] priceOverrides; // 锁座时按定价策略写入的价格，未覆盖为 NaN，首次覆盖时才分配
+    private SeatAvailabilityIndex availability; // 按排维护的余座索引，随座位状态变化增量更新
+    private static final Seat.SeatStatus[] STATUSES = Seat.SeatStatus.values();
+    private volatile ShowStatus status = ShowStatus.SCHEDULED;
+    private int archivedSoldSeats; // 归档时冻结的已售座位数
+
+    /**
+     * 场次生命周期：排片 -> 开售 -> 开场 -> 结束，由 ShowLifecycleService 按时间推进
+     */
+    public enum ShowStatus {
+        SCHEDULED,
+        ON_SALE,
+        STARTED,
+        FINISHED
+    }
 
     public Show(String id, Movie movie, ScreeningRoom screeningRoom, LocalDateTime startTime, double basePrice) {
         this.id = id;
@@ -23,7 +44,6 @@ public class Show implements java.io.Serializable {
         this.basePrice = basePrice;
         this.discountPrice = basePrice * 0.8; // 默认优惠价格为基准价格的80%
         this.vipPrice = basePrice + 10.0; // 默认VIP价格为基准价格+10元
-        this.seats = new ArrayList<>();
         initializeSeats();
     }
     
@@ -37,7 +57,6 @@ public class Show implements java.io.Serializable {
         this.basePrice = basePrice;
         this.discountPrice = discountPrice;
         this.vipPrice = vipPrice;
-        this.seats = new ArrayList<>();
         initializeSeats();
     }
     
@@ -50,31 +69,91 @@ public class Show implements java.io.Serializable {
         this.basePrice = basePrice;
         this.discountPrice = basePrice * 0.8;
         this.vipPrice = basePrice + 10.0;
-        this.seats = new ArrayList<>();
         // 不调用initializeSeats()
     }
 
     private void initializeSeats() {
-        Seat[][] roomSeats = screeningRoom.getSeatLayout();
-        for (int row = 0; row < roomSeats.length; row++) {
-            for (int col = 0; col < roomSeats[row].length; col++) {
-                // 创建新的座位实例，确保价格正确
-                Seat roomSeat = roomSeats[row][col];
-                Seat showSeat;
-                
-                if (roomSeat instanceof VIPSeat) {
-                    showSeat = new VIPSeat(roomSeat.getRow(), roomSeat.getCol(), vipPrice);
-                } else if (roomSeat instanceof DiscountSeat) {
-                    showSeat = new DiscountSeat(roomSeat.getRow(), roomSeat.getCol(), discountPrice);
-                } else {
-                    showSeat = new RegularSeat(roomSeat.getRow(), roomSeat.getCol(), basePrice);
-                }
-                
-                seats.add(showSeat);
-            }
+        seatTemplate = screeningRoom.getSeatTemplate();
+        seatStatuses = new byte[seatTemplate.size()]; // 全为 AVAILABLE
+        availability = new SeatAvailabilityIndex(seatTemplate, seatStatuses);
+    }
+
+    // 按座位类型创建指向本场次状态的座位视图
+    private Seat seatView(int index) {
+        int row = seatTemplate.rowOf(index);
+        int col = seatTemplate.colOf(index);
+        switch (seatTemplate.getSeatClass(index)) {
+            case SeatAvailabilityIndex.CLASS_VIP:
+                return new VIPSeat(this, index, row, col);
+            case SeatAvailabilityIndex.CLASS_DISCOUNT:
+                return new DiscountSeat(this, index, row, col);
+            default:
+                return new RegularSeat(this, index, row, col);
         }
     }
 
+    // 已归档场次的座位状态已释放，一律视为不可售
+    Seat.SeatStatus getSeatStatus(int index) {
+        byte[] statuses = seatStatuses;
+        return statuses != null ? STATUSES[statuses[index]] : Seat.SeatStatus.SOLD;
+    }
+
+    synchronized void setSeatStatus(int index, Seat.SeatStatus newStatus) {
+        if (seatStatuses == null) {
+            return;
+        }
+        Seat.SeatStatus oldStatus = STATUSES[seatStatuses[index]];
+        if (oldStatus == newStatus) {
+            return;
+        }
+        seatStatuses[index] = (byte) newStatus.ordinal();
+        availability.onSeatStatusChanged(index, oldStatus, newStatus);
+    }
+
+    /**
+     * 座位价格：有覆盖值用覆盖值，否则按座位类型取场次价格（VIP 座位另加溢价）
+     */
+    synchronized double getSeatPrice(int index) {
+        if (priceOverrides != null && !Double.isNaN(priceOverrides[index])) {
+            return priceOverrides[index];
+        }
+        switch (seatTemplate.getSeatClass(index)) {
+            case SeatAvailabilityIndex.CLASS_VIP:
+                return vipPrice + VIPSeat.PRICE_PREMIUM;
+            case SeatAvailabilityIndex.CLASS_DISCOUNT:
+                return discountPrice;
+            default:
+                return basePrice;
+        }
+    }
+
+    synchronized void setSeatPrice(int index, double price) {
+        if (seatStatuses == null) {
+            return;
+        }
+        if (priceOverrides == null) {
+            priceOverrides = new double[seatStatuses.length];
+            Arrays.fill(priceOverrides, Double.NaN);
+        }
+        priceOverrides[index] = price;
+    }
+
+    /**
+     * 按行列读取座位状态，不创建座位对象；越界返回 null
+     */
+    public Seat.SeatStatus getSeatStatus(int row, int col) {
+        int index = seatTemplate != null ? seatTemplate.indexOf(row, col) : -1;
+        return index >= 0 ? getSeatStatus(index) : null;
+    }
+
+    /**
+     * 按行列读取座位类型（SeatAvailabilityIndex.CLASS_*），越界返回 -1
+     */
+    public int getSeatClass(int row, int col) {
+        int index = seatTemplate != null ? seatTemplate.indexOf(row, col) : -1;
+        return index >= 0 ? seatTemplate.getSeatClass(index) : -1;
+    }
+
     public String getId() {
         return id;
     }
@@ -123,6 +202,37 @@ public class Show implements java.io.Serializable {
         return startTime;
     }
 
+    // 散场时间：开场时间加影片时长
+    public LocalDateTime getEndTime() {
+        return movie != null ? startTime.plusMinutes(movie.getDuration()) : startTime;
+    }
+
+    public ShowStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ShowStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * 归档已结束的场次：冻结已售座位数后释放座位状态、价格覆盖和余座索引，
+     * 只保留场次基本信息和共享的座位模板
+     */
+    public synchronized void archive() {
+        if (seatStatuses == null) {
+            return;
+        }
+        archivedSoldSeats = getSoldSeatsCount();
+        seatStatuses = null;
+        priceOverrides = null;
+        availability = null;
+    }
+
+    public boolean isArchived() {
+        return seatTemplate != null && seatStatuses == null;
+    }
+
     public void setStartTime(LocalDateTime startTime) {
         this.startTime = startTime;
     }
@@ -154,39 +264,32 @@ public class Show implements java.io.Serializable {
         updateSeatPrices();
     }
 
-    private void updateSeatPrices() {
-        for (Seat seat : seats) {
-            if (seat instanceof VIPSeat) {
-                seat.setBasePrice(vipPrice);
-            } else if (seat instanceof DiscountSeat) {
-                seat.setBasePrice(discountPrice);
-            } else {
-                seat.setBasePrice(basePrice);
-            }
-        }
+    // 场次价格变化后所有座位回到按类型定价
+    private synchronized void updateSeatPrices() {
+        priceOverrides = null;
     }
 
     public List<Seat> getSeats() {
-        return new ArrayList<>(seats);
+        List<Seat> seats = new ArrayList<>(getTotalSeats());
+        for (int i = 0; i < getTotalSeats() && !isArchived(); i++) {
+            seats.add(seatView(i));
+        }
+        return seats;
     }
 
     public List<Seat> getAvailableSeats() {
         List<Seat> availableSeats = new ArrayList<>();
-        for (Seat seat : seats) {
-            if (seat.isAvailable()) {
-                availableSeats.add(seat);
+        for (int i = 0; i < getTotalSeats() && !isArchived(); i++) {
+            if (seatStatuses[i] == Seat.SeatStatus.AVAILABLE.ordinal()) {
+                availableSeats.add(seatView(i));
             }
         }
         return availableSeats;
     }
 
     public Seat getSeat(int row, int col) {
-        for (Seat seat : seats) {
-            if (seat.getRow() == row && seat.getCol() == col) {
-                return seat;
-            }
-        }
-        return null;
+        int index = seatTemplate != null ? seatTemplate.indexOf(row, col) : -1;
+        return index >= 0 ? seatView(index) : null;
     }
     
     public Seat getSeat(String seatId) {
@@ -203,7 +306,62 @@ public class Show implements java.io.Serializable {
         }
     }
 
-    public boolean hostSell(List<Seat> selectedSeats) {
+    /**
+     * 查找 count 个最佳座位（靠近放映厅中心排、中心列，优先同排相邻）
+     * allowSplit 为 true 时，没有足够长的相邻空座会拆成几组；余座不足时返回空列表
+     * 只做查找不锁座，调用方需在 synchronized (show) 内查找并锁定，保证原子性
+     */
+    public List<Seat> findBestAvailableSeats(int count, boolean allowSplit) {
+        List<Seat> result = new ArrayList<>();
+        if (availability == null) {
+            return result;
+        }
+        for (SeatAvailabilityIndex.SeatBlock block : availability.findBestBlocks(count, allowSplit)) {
+            for (int col = block.getStartCol(); col < block.getStartCol() + block.getLength(); col++) {
+                result.add(getSeat(block.getRow(), col));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 全场最长的连续空座段
+     */
+    public int getLargestFreeBlock() {
+        SeatAvailabilityIndex index = availability;
+        return index != null ? index.getLargestFreeBlock() : 0;
+    }
+
+    /**
+     * 余座汇总：各类型座位的余座/总数、最长连续空座段和上座率，全部来自余座索引的计数器
+     */
+    public Map<String, Object> getAvailabilitySummary() {
+        Map<String, Object> summary = new HashMap<>();
+        int total = getTotalSeats();
+        int free = getAvailableSeatsCount();
+        Map<String, Object> byClass = new HashMap<>();
+        SeatAvailabilityIndex index = availability;
+        if (index != null) {
+            for (int k = SeatAvailabilityIndex.CLASS_REGULAR; k <= SeatAvailabilityIndex.CLASS_DISCOUNT; k++) {
+                if (index.getTotalCount(k) > 0) {
+                    Map<String, Object> counts = new HashMap<>();
+                    counts.put("available", index.getFreeCount(k));
+                    counts.put("total", index.getTotalCount(k));
+                    byClass.put(SeatAvailabilityIndex.className(k), counts);
+                }
+            }
+        }
+        summary.put("availableSeats", free);
+        summary.put("totalSeats", total);
+        summary.put("soldSeats", getSoldSeatsCount());
+        summary.put("availableByClass", byClass);
+        summary.put("largestFreeBlock", getLargestFreeBlock());
+        // 上座率按已售和锁定的座位计算，保留一位小数
+        summary.put("occupancyPercent", total == 0 ? 0.0 : Math.round((total - free) * 1000.0 / total) / 10.0);
+        return summary;
+    }
+
+    public synchronized boolean hostSell(List<Seat> selectedSeats) {
         for (Seat seat : selectedSeats) {
             if (!seat.isAvailable()) {
                 return false;
@@ -217,22 +375,28 @@ public class Show implements java.io.Serializable {
         return true;
     }
 
+    // 座位图行数（来自放映厅尺寸）
+    public int getRows() {
+        return seatTemplate != null ? seatTemplate.getRows() : 0;
+    }
+
+    // 座位图列数
+    public int getCols() {
+        return seatTemplate != null ? seatTemplate.getCols() : 0;
+    }
+
     public int getTotalSeats() {
-        return seats.size();
+        return seatTemplate != null ? seatTemplate.size() : 0;
     }
 
     public int getAvailableSeatsCount() {
-        return getAvailableSeats().size();
+        SeatAvailabilityIndex index = availability;
+        return index != null ? index.getFreeCount() : 0;
     }
 
     public int getSoldSeatsCount() {
-        int count = 0;
-        for (Seat seat : seats) {
-            if (seat.getStatus() == Seat.SeatStatus.SOLD) {
-                count++;
-            }
-        }
-        return count;
+        SeatAvailabilityIndex index = availability;
+        return index != null ? index.getSoldCount() : archivedSoldSeats;
     }
 
     @Override
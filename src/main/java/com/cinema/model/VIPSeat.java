@@ -1,7 +1,7 @@
 package com.cinema.model;
 
 public class VIPSeat extends Seat implements java.io.Serializable {
-    private static final double PRICE_PREMIUM = 10.0; // VIP座位比普通座位贵10元
+    static final double PRICE_PREMIUM = 10.0; // VIP座位比普通座位贵10元
 
     public VIPSeat(int row, int col) {
         super(row, col, 50.0 + PRICE_PREMIUM); // 默认基准价格50元 + 10元
@@ -11,13 +11,17 @@ public class VIPSeat extends Seat implements java.io.Serializable {
         super(row, col, basePrice + PRICE_PREMIUM);
     }
 
+    VIPSeat(Show owner, int index, int row, int col) {
+        super(owner, index, row, col);
+    }
+
     @Override
     public String toString() {
         return "VIPSeat{" +
                 "row=" + row +
                 ", col=" + col +
-                ", status=" + status +
-                ", basePrice=" + basePrice +
+                ", status=" + getStatus() +
+                ", basePrice=" + getBasePrice() +
                 '}';
     }
 }
\ No newline at end of file
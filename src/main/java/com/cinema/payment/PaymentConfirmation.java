@@ -0,0 +1,45 @@
+package com.cinema.payment;
+
+/**
+ * 支付网关返回的支付结果（回调或对账查询）
+ */
+public class PaymentConfirmation {
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        PENDING, // 网关仍在处理
+        UNKNOWN  // 网关没有该支付号的记录
+    }
+
+    private final String paymentId;
+    private final String orderId;
+    private final Status status;
+    private final String message;
+
+    public PaymentConfirmation(String paymentId, String orderId, Status status, String message) {
+        this.paymentId = paymentId;
+        this.orderId = orderId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public String getPaymentId() {
+        return paymentId;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isFinal() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+}
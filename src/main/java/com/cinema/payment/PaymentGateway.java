@@ -0,0 +1,19 @@
+package com.cinema.payment;
+
+import java.util.function.Consumer;
+
+/**
+ * 支付网关
+ * charge 只负责发起扣款并立即返回，扣款结果由网关稍后通过回调通知；
+ * 回调可能丢失或迟到，调用方超时后用 query 向网关对账
+ */
+public interface PaymentGateway {
+    String getName();
+
+    void charge(PaymentRequest request, Consumer<PaymentConfirmation> callback);
+
+    /**
+     * 查询支付结果；网关仍在处理时返回 PENDING，网关不认识该支付号时返回 UNKNOWN
+     */
+    PaymentConfirmation query(String paymentId);
+}
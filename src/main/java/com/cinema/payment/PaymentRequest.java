@@ -0,0 +1,32 @@
+package com.cinema.payment;
+
+/**
+ * 发往支付网关的扣款请求；同一订单的支付号固定，网关据此去重，重启后也能按支付号对账
+ */
+public class PaymentRequest {
+    private final String paymentId;
+    private final String orderId;
+    private final double amount;
+
+    public PaymentRequest(String paymentId, String orderId, double amount) {
+        this.paymentId = paymentId;
+        this.orderId = orderId;
+        this.amount = amount;
+    }
+
+    public static String paymentIdOf(String orderId) {
+        return "PAY-" + orderId;
+    }
+
+    public String getPaymentId() {
+        return paymentId;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+}
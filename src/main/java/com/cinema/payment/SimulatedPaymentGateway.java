@@ -0,0 +1,96 @@
+package com.cinema.payment;
+
+import com.cinema.config.AppConfig;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 本地模拟支付网关
+ * 每笔扣款在 [minLatency, maxLatency] 毫秒后出结果，按 failureRate 随机拒绝，按 callbackLossRate 随机丢弃回调（只能靠对账查询拿到结果）
+ * 结果只保存在内存中，重启后查询返回 UNKNOWN
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+    private final long minLatencyMillis;
+    private final long maxLatencyMillis;
+    private final double failureRate;
+    private final double callbackLossRate;
+    private final ConcurrentMap<String, PaymentConfirmation> results = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    public SimulatedPaymentGateway(long minLatencyMillis, long maxLatencyMillis, double failureRate, double callbackLossRate) {
+        this.minLatencyMillis = Math.max(0L, minLatencyMillis);
+        this.maxLatencyMillis = Math.max(this.minLatencyMillis, maxLatencyMillis);
+        this.failureRate = failureRate;
+        this.callbackLossRate = callbackLossRate;
+        this.scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "payment-gateway-sim");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static SimulatedPaymentGateway fromConfig() {
+        return new SimulatedPaymentGateway(
+                AppConfig.getLong("payment.simulated.min-latency-ms", 100L),
+                AppConfig.getLong("payment.simulated.max-latency-ms", 2000L),
+                AppConfig.getDouble("payment.simulated.failure-rate", 0.0),
+                AppConfig.getDouble("payment.simulated.callback-loss-rate", 0.0));
+    }
+
+    @Override
+    public String getName() {
+        return "Simulated";
+    }
+
+    @Override
+    public void charge(PaymentRequest request, Consumer<PaymentConfirmation> callback) {
+        String paymentId = request.getPaymentId();
+        PaymentConfirmation done = results.get(paymentId);
+        if (done != null) {
+            // 重复扣款请求不会重复扣款，直接回调已有结果
+            scheduler.execute(() -> callback.accept(done));
+            return;
+        }
+        if (!inFlight.add(paymentId)) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = minLatencyMillis == maxLatencyMillis
+                ? minLatencyMillis : random.nextLong(minLatencyMillis, maxLatencyMillis + 1);
+        scheduler.schedule(() -> {
+            ThreadLocalRandom r = ThreadLocalRandom.current();
+            boolean success = r.nextDouble() >= failureRate;
+            PaymentConfirmation confirmation = new PaymentConfirmation(paymentId, request.getOrderId(),
+                    success ? PaymentConfirmation.Status.SUCCEEDED : PaymentConfirmation.Status.FAILED,
+                    success ? "支付成功" : "支付被拒绝");
+            results.put(paymentId, confirmation);
+            inFlight.remove(paymentId);
+            if (r.nextDouble() >= callbackLossRate) {
+                callback.accept(confirmation);
+            }
+        }, latency, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public PaymentConfirmation query(String paymentId) {
+        PaymentConfirmation done = results.get(paymentId);
+        if (done != null) {
+            return done;
+        }
+        PaymentConfirmation.Status status = inFlight.contains(paymentId)
+                ? PaymentConfirmation.Status.PENDING : PaymentConfirmation.Status.UNKNOWN;
+        return new PaymentConfirmation(paymentId, null, status, null);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
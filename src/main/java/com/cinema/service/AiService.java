@@ -1,5 +1,6 @@
 package com.cinema.service;
 
+import com.cinema.config.AppMetrics;
 import com.cinema.model.Movie;
 import com.cinema.model.Show;
 import org.springframework.http.HttpEntity;
@@ -25,6 +26,10 @@ public class AiService {
 
     private static final Properties AI_CONFIG = new Properties();
 
+    // 指标：大模型接口调用（成功、失败按异常类型）和本地模拟回答的耗时
+    private static final AppMetrics.Operation LLM_CALLS = new AppMetrics.Operation("cinema.ai", "智能客服回答耗时", "llm");
+    private static final AppMetrics.Operation MOCK_CALLS = new AppMetrics.Operation("cinema.ai", "智能客服回答耗时", "mock");
+
     static {
         try (InputStream in = AiService.class
                 .getClassLoader()
@@ -75,7 +80,10 @@ public class AiService {
         if (useRealAi()) {
             return callLlmApi(systemContext, userQuestion);
         } else {
-            return mockAiResponse(userQuestion, systemContext);
+            long start = System.nanoTime();
+            String answer = mockAiResponse(userQuestion, systemContext);
+            MOCK_CALLS.success(start);
+            return answer;
         }
     }
 
@@ -116,6 +124,7 @@ public class AiService {
      * 调用 OpenRouter API (带代理配置)
      */
     private String callLlmApi(String systemContext, String userQuestion) {
+        long start = System.nanoTime();
         try {
             // ======================================================
             // 🔴 关键修改：配置本地代理 (解决国内无法访问的问题)
@@ -166,6 +175,7 @@ public class AiService {
             HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
 
             ResponseEntity<Map> response = restTemplate.postForEntity(apiUrl(), request, Map.class);
+            LLM_CALLS.success(start);
 
 
             Map<String, Object> responseBody = response.getBody();
@@ -179,6 +189,7 @@ public class AiService {
             return "AI 没有返回有效内容";
 
         } catch (Exception e) {
+            LLM_CALLS.failure(start, e);
             e.printStackTrace(); // 🔴 请看控制台具体的报错信息
             return "AI 连接失败 (" + e.getMessage() + ")，请检查网络或代理设置。";
         }
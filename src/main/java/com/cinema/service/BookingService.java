@@ -1,16 +1,28 @@
 package com.cinema.service;
 
+import com.cinema.config.AppConfig;
+import com.cinema.config.AppMetrics;
+import com.cinema.config.NodeRole;
+import com.cinema.jfr.OrderTransitionEvent;
+import com.cinema.jfr.SeatAcquisitionEvent;
 import com.cinema.model.*;
-import com.cinema.storage.MySQLDataStorage; // 引入 MySQL 存储
+import com.cinema.storage.DataStorage;
+import com.cinema.storage.DataStorageFactory;
 import com.cinema.strategy.PricingStrategy;
 import com.cinema.exception.*;
+import com.cinema.payment.PaymentConfirmation;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import com.cinema.ws.SeatWebSocketServer;
 
 public class BookingService {
@@ -23,10 +35,28 @@ public class BookingService {
     // 2. 引入其他服务 (通知、显示)
     private final NotificationService notificationService;
     private final DisplayService displayService;
+    private final SalesAnalyticsService analytics;
+    private final OutboxRelay outboxRelay; // 座位推送和订单通知经发件箱在写库提交后发布
+    private final JournalShipper journalShipper; // 写库前先写本地订单日志，数据库不可用时由它补写
 
     // 3. 切换数据存储
-    private final MySQLDataStorage mysqlDataStorage;
+    private final DataStorage dataStorage;
     private final boolean useMySQL;
+    private final boolean readOnly; // 只读副本节点：不写库，订单状态由主节点的变更日志同步
+    private final int maxSeatsPerOrder;
+    // 订单号中的时间戳：同一毫秒内的订单依次加一，避免并发下单生成相同的订单号
+    private final AtomicLong lastOrderStamp = new AtomicLong();
+
+    // 指标：各业务操作的次数和耗时直方图（cinema.booking），失败按异常类型计数（cinema.booking.failures）
+    private static final AppMetrics.Operation CREATE_ORDER = operationMetrics("createOrder");
+    private static final AppMetrics.Operation PROCESS_PAYMENT = operationMetrics("processPayment");
+    private static final AppMetrics.Operation CANCEL_ORDER = operationMetrics("cancelOrder");
+    private static final AppMetrics.Operation RESERVE_ORDER = operationMetrics("reserveOrder");
+    private static final AppMetrics.Operation RESERVE_BEST_AVAILABLE = operationMetrics("reserveBestAvailable");
+    private static final AppMetrics.Operation PAY_RESERVED_ORDER = operationMetrics("processReservedOrderPayment");
+    private static final AppMetrics.Operation BEGIN_PAYMENT = operationMetrics("beginPayment");
+    private static final AppMetrics.Operation COMPLETE_PAYMENTS = operationMetrics("completePayments");
+    private static final AppMetrics.Operation CHECK_EXPIRED = operationMetrics("checkExpiredOrders");
 
     private BookingService(PricingStrategy pricingStrategy) {
         this.orders = new ConcurrentHashMap<>();
@@ -35,13 +65,16 @@ public class BookingService {
         // 初始化服务
         this.notificationService = NotificationService.getInstance();
         this.displayService = DisplayService.getInstance();
+        this.analytics = SalesAnalyticsService.getInstance();
+        this.outboxRelay = OutboxRelay.getInstance();
+        this.journalShipper = JournalShipper.getInstance();
 
         // 初始化数据库
-        MySQLDataStorage mysqlStorage = null;
+        DataStorage storage = null;
         boolean connected = false;
         try {
-            mysqlStorage = new MySQLDataStorage();
-            System.out.println("✓ BookingService使用MySQL数据库存储");
+            storage = DataStorageFactory.create();
+            System.out.println("✓ BookingService使用数据存储: " + DataStorageFactory.type());
             connected = true;
         } catch (Exception e) {
             System.err.println("✗ MySQL连接失败: " + e.getMessage());
@@ -49,11 +82,34 @@ public class BookingService {
             // 保持原代码逻辑：连接失败则抛出异常
             throw new RuntimeException("MySQL连接失败", e);
         }
-        this.mysqlDataStorage = mysqlStorage;
+        this.dataStorage = storage;
         this.useMySQL = connected;
+        this.readOnly = NodeRole.isReplica();
+        this.maxSeatsPerOrder = Math.max(1, AppConfig.getInt("booking.max-seats-per-order", 10));
 
         loadOrders();
         rebuildUserOrderRelations();
+        // 用历史订单重建销售统计（含已归档场次的座位容量）
+        List<Show> allShows = CinemaManager.getInstance().getAllShows();
+        allShows.addAll(CinemaManager.getInstance().getArchivedShows());
+        analytics.rebuild(allShows, orders.values());
+
+        // 继续跟踪重启前已提交网关、尚未拿到结果的支付
+        if (!readOnly) {
+            List<Order> paying = new ArrayList<>();
+            for (Order order : orders.values()) {
+                if (order.getStatus() == Order.OrderStatus.PAYING) {
+                    paying.add(order);
+                }
+            }
+            PaymentService paymentService = PaymentService.getInstance();
+            paymentService.resume(paying);
+            paymentService.start();
+            // 只有主节点写发件箱，也只由主节点发布（启动时先补发上次退出前未发布的事件）
+            outboxRelay.start();
+            // 补写订单日志中未写库的记录（包括启动时重放的）
+            journalShipper.start();
+        }
     }
 
     public static synchronized BookingService getInstance(PricingStrategy pricingStrategy) {
@@ -63,6 +119,10 @@ public class BookingService {
         return instance;
     }
 
+    private static AppMetrics.Operation operationMetrics(String operation) {
+        return new AppMetrics.Operation("cinema.booking", "订单业务操作耗时", operation);
+    }
+
     public static BookingService getInstance() {
         if (instance == null) {
             // 异常信息调整，更清晰地提示未初始化
@@ -100,36 +160,52 @@ public class BookingService {
         if (!show.getStartTime().isAfter(LocalDateTime.now())) {
             throw new InvalidBookingException("场次已开始，无法下单", show.getId());
         }
+        if (ShowLifecycleService.getInstance().statusAt(show, LocalDateTime.now()) == Show.ShowStatus.SCHEDULED) {
+            throw new InvalidBookingException("场次尚未开售", show.getId());
+        }
+    }
+
+    private void ensureSeatCount(int count) throws InvalidBookingException {
+        if (count > maxSeatsPerOrder) {
+            throw new InvalidBookingException("每个订单最多选择 " + maxSeatsPerOrder + " 个座位");
+        }
+    }
+
+    private long nextOrderStamp() {
+        return lastOrderStamp.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
     }
 
     // ================== 订单管理：创建 ==================
     public Order createOrder(User user, Show show, List<String> seatIds) throws InvalidBookingException, SeatNotAvailableException {
+        SeatAcquisitionEvent event = new SeatAcquisitionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            Order result = doCreateOrder(user, show, seatIds);
+            CREATE_ORDER.success(start);
+            event.finish(show, seatIds != null ? seatIds.size() : 0, "create", null);
+            return result;
+        } catch (Exception e) {
+            CREATE_ORDER.failure(start, e);
+            event.finish(show, seatIds != null ? seatIds.size() : 0, "create", e);
+            throw e;
+        }
+    }
+
+    private Order doCreateOrder(User user, Show show, List<String> seatIds) throws InvalidBookingException, SeatNotAvailableException {
         // 简化校验，采用上段代码的校验逻辑
         if (show == null || user == null || seatIds == null || seatIds.isEmpty()) {
             throw new InvalidBookingException("参数无效");
         }
 
+        ensureSeatCount(seatIds.size());
         ensureShowNotStarted(show);
 
-        ensureShowNotStarted(show);
-
-        List<Seat> selectedSeats = new ArrayList<>();
         // 锁座逻辑
-        for (String seatId : seatIds) {
-            Seat seat = show.getSeat(seatId);
-            if (seat == null || !seat.isAvailable()) {
-                throw new SeatNotAvailableException(seatId, "座位不可用");
-            }
-            // 使用定价策略计算实际价格并更新座位价格
-            double actualPrice = calculateSeatPrice(show, seat);
-            seat.setBasePrice(actualPrice);
-            // 暂时锁定座位
-            seat.lock();
-            selectedSeats.add(seat);
-        }
+        List<Seat> selectedSeats = lockSeats(show, seatIds);
 
         Order order = new Order(
-                "ORD-" + System.currentTimeMillis(),
+                "ORD-" + nextOrderStamp(),
                 show,
                 selectedSeats,
                 LocalDateTime.now(),
@@ -137,57 +213,79 @@ public class BookingService {
         );
 
         order.setUser(user);
-        orders.put(order.getOrderId(), order);
-        user.addOrder(order);
+        order.setPricingStrategy(pricingStrategy.getClass().getSimpleName());
 
-        // 持久化订单和场次状态
-        saveOrder(order);
+        // 持久化订单和场次状态；座位推送和通知随订单写入发件箱，提交后由 OutboxRelay 发布
+        saveNewOrder(order, orderEvents(order, "订单已创建..."));
         CinemaManager.getInstance().saveShows();
-
-        // 🔔 [新增] 广播通知：告诉该场次的所有人，座位变了
-        SeatWebSocketServer.fireUpdate(show.getId(), "UPDATE"); // 发送简单的更新信号
-
-        notificationService.sendOrderUpdate(user, order, "订单已创建...");
         return order;
     }
 
     // ================== 订单管理：处理/支付 ==================
     public void processPayment(Order order) throws PaymentFailedException {
+        long start = System.nanoTime();
+        try {
+            doProcessPayment(order);
+            PROCESS_PAYMENT.success(start);
+        } catch (Exception e) {
+            PROCESS_PAYMENT.failure(start, e);
+            throw e;
+        }
+    }
+
+    private void doProcessPayment(Order order) throws PaymentFailedException {
         if (order == null || order.getStatus() != Order.OrderStatus.PENDING) {
             throw new PaymentFailedException(order == null ? "" : order.getOrderId(), 0, "Unknown", "订单状态无效或已处理");
         }
 
-        // 模拟支付逻辑
-        boolean success = true;
+        // 通过支付网关扣款（同步等待结果）
+        PaymentConfirmation result = PaymentService.getInstance().chargeAndWait(order);
+        boolean success = result.getStatus() == PaymentConfirmation.Status.SUCCEEDED;
 
         if (success) {
-            order.setStatus(Order.OrderStatus.PAID);
+            long fromVersion = changeStatus(order, Order.OrderStatus.PENDING, Order.OrderStatus.PAID);
+            if (fromVersion < 0) {
+                throw new PaymentFailedException(order.getOrderId(), 0, "Unknown", "订单状态无效或已处理");
+            }
             for (Seat seat : order.getSeats()) {
                 seat.sell(); // 标记为已售出
             }
-            saveOrder(order);
+            // 座位推送和通知随状态一起写入发件箱
+            persistTransition(order, fromVersion, orderEvents(order, "支付成功！您的座位已锁定。"));
             CinemaManager.getInstance().saveShows();
 
-            SeatWebSocketServer.fireUpdate(order.getShow().getId(), "UPDATE");
-
-            // 3. 触发通知服务
-            notificationService.sendOrderUpdate(order.getUser(), order, "支付成功！您的座位已锁定。");
-
-            // 4. 触发显示服务 (更新座位图)
+            // 触发显示服务 (更新座位图)
             displayService.updateSeatDisplay(order.getShow());
 
 
         } else {
-            // 支付失败时应释放座位
-            for (Seat seat : order.getSeats()) {
-                seat.unlock();
+            // 支付失败时取消订单并释放座位
+            long fromVersion = changeStatus(order, Order.OrderStatus.PENDING, Order.OrderStatus.CANCELLED);
+            if (fromVersion >= 0) {
+                for (Seat seat : order.getSeats()) {
+                    seat.unlock();
+                }
+                persistTransition(order, fromVersion, orderEvents(order, null));
+                CinemaManager.getInstance().saveShows();
             }
-            throw new PaymentFailedException(order.getOrderId(), order.getTotalAmount(), "Online", "支付被拒绝");
+            throw new PaymentFailedException(order.getOrderId(), order.getTotalAmount(), "Online",
+                    result.getMessage() != null ? result.getMessage() : "支付被拒绝");
         }
     }
 
     // ================== 订单管理：取消/退款 ==================
     public void cancelOrder(Order order) throws InvalidBookingException {
+        long start = System.nanoTime();
+        try {
+            doCancelOrder(order);
+            CANCEL_ORDER.success(start);
+        } catch (Exception e) {
+            CANCEL_ORDER.failure(start, e);
+            throw e;
+        }
+    }
+
+    private void doCancelOrder(Order order) throws InvalidBookingException {
         if (order == null) throw new InvalidBookingException("订单为空");
 
         if (!orders.containsKey(order.getOrderId())) {
@@ -195,18 +293,25 @@ public class BookingService {
         }
 
         // 统一处理 PENDING, PAID 状态的取消
-        if (order.getStatus() == Order.OrderStatus.CANCELLED || order.getStatus() == Order.OrderStatus.REFUNDED) {
+        Order.OrderStatus current = order.getStatus();
+        if (current == Order.OrderStatus.CANCELLED || current == Order.OrderStatus.REFUNDED) {
             throw new InvalidBookingException("订单已经取消或已退款", "订单号: " + order.getOrderId());
         }
 
-        boolean isRefund = (order.getStatus() == Order.OrderStatus.PAID);
-
+        boolean isRefund = (current == Order.OrderStatus.PAID);
+        Order.OrderStatus target;
         if (isRefund) {
-            order.setStatus(Order.OrderStatus.REFUNDED);
-        } else if (order.getStatus() == Order.OrderStatus.PENDING || order.getStatus() == Order.OrderStatus.RESERVED) {
-            order.setStatus(Order.OrderStatus.CANCELLED);
+            target = Order.OrderStatus.REFUNDED;
+        } else if (current == Order.OrderStatus.PENDING || current == Order.OrderStatus.RESERVED) {
+            target = Order.OrderStatus.CANCELLED;
         } else {
-            throw new InvalidBookingException("无法取消此状态的订单", "订单号: " + order.getOrderId() + ", 状态: " + order.getStatus());
+            throw new InvalidBookingException("无法取消此状态的订单", "订单号: " + order.getOrderId() + ", 状态: " + current);
+        }
+
+        // 与支付、超时并发时只有一方能改变状态，失败的一方不再改动座位
+        long fromVersion = changeStatus(order, current, target);
+        if (fromVersion < 0) {
+            throw new InvalidBookingException("订单状态已变化，请刷新后重试", "订单号: " + order.getOrderId() + ", 状态: " + order.getStatus());
         }
 
         // 释放座位
@@ -214,17 +319,128 @@ public class BookingService {
             seat.unlock();
         }
 
-        saveOrder(order);
+        // 座位推送和通知随状态一起写入发件箱
+        String msg = isRefund ? "退票成功，款项将原路返回。" : "订单已取消。";
+        persistTransition(order, fromVersion, orderEvents(order, msg));
         CinemaManager.getInstance().saveShows(); // 保存场次状态
 
-        SeatWebSocketServer.fireUpdate(order.getShow().getId(), "UPDATE");
+        // 触发显示服务 (座位变回空闲)
+        displayService.updateSeatDisplay(order.getShow());
+    }
 
-        // 3. 触发通知服务
-        String msg = isRefund ? "退票成功，款项将原路返回。" : "订单已取消。";
-        notificationService.sendOrderUpdate(order.getUser(), order, msg);
+    /**
+     * 按转换表 CAS 修改订单状态并同步更新销售统计
+     * @return 转换前的版本号；订单已不是 from 状态（被并发请求改变）或转换不合法时返回 -1，调用方不得再改动座位
+     */
+    private long changeStatus(Order order, Order.OrderStatus from, Order.OrderStatus to) {
+        OrderTransitionEvent event = new OrderTransitionEvent();
+        event.begin();
+        long fromVersion = order.transition(from, to);
+        if (fromVersion >= 0) {
+            analytics.recordTransition(order, from, to);
+        }
+        event.finish(order, from, to, fromVersion >= 0);
+        return fromVersion;
+    }
 
-        // 4. 触发显示服务 (座位变回空闲)
-        displayService.updateSeatDisplay(order.getShow());
+    /**
+     * 按版本号条件写入状态转换，events 在同一事务中写入发件箱；
+     * 数据库中的订单已被其他节点修改时不覆盖（事件随之丢弃），改为以数据库中的状态为准
+     */
+    private void persistTransition(Order order, long fromVersion, List<OutboxEvent> events) {
+        persistTransitions(Collections.singletonMap(order, fromVersion), events);
+    }
+
+    // 一批状态转换先连同各自的事件写订单日志（一次刷盘），再用一个事务写库；
+    // 写库失败时事件先直接发布，状态和事件由 JournalShipper 补写，补写后经发件箱再发布一次（接收方按 eventId 去重）
+    private void persistTransitions(Map<Order, Long> fromVersions, List<OutboxEvent> events) {
+        if (fromVersions.isEmpty()) {
+            return;
+        }
+        if (!useMySQL || readOnly) {
+            outboxRelay.publishNow(events);
+            return;
+        }
+        Map<Order, List<OutboxEvent>> journaled = new LinkedHashMap<>();
+        for (Order order : fromVersions.keySet()) {
+            journaled.put(order, eventsOf(order, events));
+        }
+        Map<Order, Long> sequences = journalShipper.record(journaled);
+        Set<String> conflicts = journalShipper.isBacklogged() ? null : dataStorage.updateOrderStatusBatch(fromVersions, events);
+        if (conflicts == null) {
+            for (Order order : fromVersions.keySet()) {
+                Long sequence = sequences.get(order);
+                if (sequence != null) {
+                    journalShipper.deferred(sequence);
+                } else {
+                    System.err.println("✗ 订单 " + order.getOrderId() + " 的状态变化 " + order.getStatus()
+                            + " 写库失败，也没有写入订单日志，只保存在内存中");
+                }
+            }
+            outboxRelay.publishNow(events);
+            return;
+        }
+        // 版本冲突的订单以数据库为准，日志记录也不再补写
+        for (Long sequence : sequences.values()) {
+            journalShipper.applied(sequence);
+        }
+        outboxRelay.wakeUp();
+        for (Map.Entry<Order, Long> entry : fromVersions.entrySet()) {
+            if (conflicts.contains(entry.getKey().getOrderId())) {
+                resolveConflict(entry.getKey(), entry.getValue(), journaled.get(entry.getKey()));
+            }
+        }
+    }
+
+    private static List<OutboxEvent> eventsOf(Order order, List<OutboxEvent> events) {
+        List<OutboxEvent> orderEvents = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            if (event.getOrderId().equals(order.getOrderId())) {
+                orderEvents.add(event);
+            }
+        }
+        return orderEvents;
+    }
+
+    // 条件更新未命中：数据库中没有该订单时连同事件补写，否则以数据库中的状态为准
+    private void resolveConflict(Order order, long fromVersion, List<OutboxEvent> events) {
+        Order loaded = dataStorage.loadOrder(order.getOrderId());
+        if (loaded == null) {
+            // 下单时写库失败，数据库中还没有该订单，补写整单
+            saveOrder(order, events);
+            return;
+        }
+        System.err.println("订单 " + order.getOrderId() + " 版本冲突（期望 " + fromVersion + "，数据库 " + loaded.getVersion()
+                + "），以数据库状态 " + loaded.getStatus() + " 为准");
+        if (applyLoadedState(order, loaded)) {
+            SeatWebSocketServer.fireUpdate(order.getShow().getId(), "UPDATE");
+        }
+    }
+
+    // 采用从数据库加载的订单状态（版本号更新时），并按状态设置座位
+    private boolean applyLoadedState(Order order, Order loaded) {
+        Order.OrderStatus oldStatus = order.getStatus();
+        if (!order.restoreState(loaded.getStatus(), loaded.getVersion())) {
+            return false;
+        }
+        analytics.recordTransition(order, oldStatus, order.getStatus());
+        applySeatStates(order);
+        return true;
+    }
+
+    private void applySeatStates(Order order) {
+        switch (order.getStatus()) {
+            case PAID:
+                for (Seat seat : order.getSeats()) seat.sell();
+                break;
+            case PENDING:
+            case RESERVED:
+            case PAYING:
+                for (Seat seat : order.getSeats()) seat.lock();
+                break;
+            default:
+                for (Seat seat : order.getSeats()) seat.unlock();
+        }
     }
 
     // ================== 订单管理：查询 ==================
@@ -257,42 +473,148 @@ public class BookingService {
     // 预订座位（锁定15分钟） - 逻辑与 createOrder 类似，但状态为 RESERVED
     public Order reserveOrder(User user, Show show, List<String> seatIds)
             throws InvalidBookingException, SeatNotAvailableException {
+        SeatAcquisitionEvent event = new SeatAcquisitionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            Order result = doReserveOrder(user, show, seatIds);
+            RESERVE_ORDER.success(start);
+            event.finish(show, seatIds != null ? seatIds.size() : 0, "reserve", null);
+            return result;
+        } catch (Exception e) {
+            RESERVE_ORDER.failure(start, e);
+            event.finish(show, seatIds != null ? seatIds.size() : 0, "reserve", e);
+            throw e;
+        }
+    }
+
+    private Order doReserveOrder(User user, Show show, List<String> seatIds)
+            throws InvalidBookingException, SeatNotAvailableException {
         // ... (预订逻辑，略) ...
         // 注意：原第一段代码没有这个方法，但第二段有，故保留，并确保 seat.lock() 被调用。
 
         if (show == null || user == null || seatIds == null || seatIds.isEmpty()) {
             throw new InvalidBookingException("参数无效");
         }
+        ensureSeatCount(seatIds.size());
+        ensureShowNotStarted(show);
+
+        List<Seat> selectedSeats = lockSeats(show, seatIds);
+        return createReservation(user, show, selectedSeats);
+    }
 
-        List<Seat> selectedSeats = new ArrayList<>();
-        for (String seatId : seatIds) {
-            Seat seat = show.getSeat(seatId);
-            if (seat == null || !seat.isAvailable()) {
-                throw new SeatNotAvailableException(seatId, "座位不可用");
+    /**
+     * 自动选座并预订：由场次的余座索引选出 count 个最靠近中心的座位（优先同排相邻），
+     * 查找与锁定在同一把场次锁内完成，避免并发下选中的座位被别人抢先锁定
+     * allowSplit 为 true 时，没有足够长的相邻空座会拆成几组
+     */
+    public Order reserveBestAvailable(User user, Show show, int count, boolean allowSplit)
+            throws InvalidBookingException, SeatNotAvailableException {
+        SeatAcquisitionEvent event = new SeatAcquisitionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            Order result = doReserveBestAvailable(user, show, count, allowSplit);
+            RESERVE_BEST_AVAILABLE.success(start);
+            event.finish(show, count, "best-available", null);
+            return result;
+        } catch (Exception e) {
+            RESERVE_BEST_AVAILABLE.failure(start, e);
+            event.finish(show, count, "best-available", e);
+            throw e;
+        }
+    }
+
+    private Order doReserveBestAvailable(User user, Show show, int count, boolean allowSplit)
+            throws InvalidBookingException, SeatNotAvailableException {
+        if (show == null || user == null || count <= 0) {
+            throw new InvalidBookingException("参数无效");
+        }
+        ensureSeatCount(count);
+        ensureShowNotStarted(show);
+
+        List<Seat> selectedSeats;
+        synchronized (show) {
+            selectedSeats = show.findBestAvailableSeats(count, allowSplit);
+            if (selectedSeats.isEmpty()) {
+                throw new SeatNotAvailableException(count + "个座位",
+                        allowSplit ? "余座不足" : "没有足够的相邻座位，可允许分开就座后重试");
+            }
+            for (Seat seat : selectedSeats) {
+                seat.setBasePrice(calculateSeatPrice(show, seat));
+                seat.lock();
             }
-            // 使用定价策略计算实际价格并更新座位价格
-            double actualPrice = calculateSeatPrice(show, seat);
-            seat.setBasePrice(actualPrice);
-            seat.lock(); // 锁定座位
-            selectedSeats.add(seat);
         }
+        return createReservation(user, show, selectedSeats);
+    }
 
-        String orderId = "RESERVE-" + System.currentTimeMillis();
+    /**
+     * 原子锁座：在场次锁内先检查全部座位再统一锁定，任一座位不可用则一个都不锁
+     */
+    private List<Seat> lockSeats(Show show, List<String> seatIds) throws SeatNotAvailableException {
+        synchronized (show) {
+            List<Seat> selectedSeats = new ArrayList<>();
+            for (String seatId : seatIds) {
+                Seat seat = show.getSeat(seatId);
+                if (seat == null || !seat.isAvailable()) {
+                    throw new SeatNotAvailableException(seatId, "座位不可用");
+                }
+                if (selectedSeats.contains(seat)) {
+                    throw new SeatNotAvailableException(seatId, "座位重复选择");
+                }
+                selectedSeats.add(seat);
+            }
+            for (Seat seat : selectedSeats) {
+                // 使用定价策略计算实际价格并更新座位价格
+                seat.setBasePrice(calculateSeatPrice(show, seat));
+                seat.lock(); // 锁定座位
+            }
+            return selectedSeats;
+        }
+    }
+
+    // 为已锁定的座位生成预订订单（锁定15分钟）
+    private Order createReservation(User user, Show show, List<Seat> selectedSeats) throws InvalidBookingException {
+        String orderId = "RESERVE-" + nextOrderStamp();
         Order order = new Order(orderId, show, selectedSeats, LocalDateTime.now(), Order.OrderStatus.RESERVED);
         order.setLockTime(LocalDateTime.now());
         order.setUser(user);
+        order.setPricingStrategy(pricingStrategy.getClass().getSimpleName());
 
-        orders.put(orderId, order);
-        user.addOrder(order);
-        saveOrder(order);
+        saveNewOrder(order, orderEvents(order, "座位已预留，请在15分钟内支付。"));
         CinemaManager.getInstance().saveShows();
-
-        notificationService.sendOrderUpdate(user, order, "座位已预留，请在15分钟内支付。");
         return order;
     }
 
+    // 新订单先写库（或订单日志）再登记到内存；两者都失败时释放已锁定的座位，下单失败，避免订单只存在于内存中、重启后丢失
+    private void saveNewOrder(Order order, List<OutboxEvent> events) throws InvalidBookingException {
+        if (!saveOrder(order, events)) {
+            synchronized (order.getShow()) {
+                for (Seat seat : order.getSeats()) {
+                    seat.unlock();
+                }
+            }
+            SeatWebSocketServer.fireUpdate(order.getShow().getId(), "UPDATE");
+            throw new InvalidBookingException("订单暂时无法保存，请稍后重试", order.getOrderId());
+        }
+        orders.put(order.getOrderId(), order);
+        order.getUser().addOrder(order);
+        analytics.recordTransition(order, null, order.getStatus());
+    }
+
     // 支付预订订单 - 逻辑与 processPayment 类似
     public void processReservedOrderPayment(Order order) throws PaymentFailedException, InvalidBookingException {
+        long start = System.nanoTime();
+        try {
+            doProcessReservedOrderPayment(order);
+            PAY_RESERVED_ORDER.success(start);
+        } catch (Exception e) {
+            PAY_RESERVED_ORDER.failure(start, e);
+            throw e;
+        }
+    }
+
+    private void doProcessReservedOrderPayment(Order order) throws PaymentFailedException, InvalidBookingException {
         if (order == null) {
             throw new InvalidBookingException("订单不存在");
         }
@@ -307,21 +629,143 @@ public class BookingService {
             throw new PaymentFailedException(order.getOrderId(), order.getTotalAmount(), "Online", "预订已过期，请重新下单");
         }
 
-        // 模拟支付成功
-        order.setStatus(Order.OrderStatus.PAID);
+        // 通过支付网关扣款（同步等待结果）
+        PaymentConfirmation result = PaymentService.getInstance().chargeAndWait(order);
+        if (result.getStatus() != PaymentConfirmation.Status.SUCCEEDED) {
+            cancelOrder(order);
+            throw new PaymentFailedException(order.getOrderId(), order.getTotalAmount(), "Online",
+                    result.getMessage() != null ? result.getMessage() : "支付被拒绝");
+        }
+
+        // 与取消、超时并发时只有一方能改变状态
+        long fromVersion = changeStatus(order, Order.OrderStatus.RESERVED, Order.OrderStatus.PAID);
+        if (fromVersion < 0) {
+            throw new InvalidBookingException("订单状态已变化，无法支付", "订单号: " + order.getOrderId() + ", 状态: " + order.getStatus());
+        }
         for (Seat seat : order.getSeats()) {
             seat.sell(); // 确认座位（将锁定状态改为已售出）
         }
 
-        saveOrder(order);
+        persistTransition(order, fromVersion, orderEvents(order, "支付成功！您的座位已锁定。"));
         CinemaManager.getInstance().saveShows();
 
-        notificationService.sendOrderUpdate(order.getUser(), order, "支付成功！您的座位已锁定。");
         displayService.updateSeatDisplay(order.getShow());
     }
 
+    // ================== 异步支付 (由 PaymentService 调用) ==================
+
+    /**
+     * 发起支付前的订单处理：RESERVED → PAYING 并写库，座位保持锁定直到拿到扣款结果
+     */
+    public void beginPayment(Order order) throws PaymentFailedException, InvalidBookingException {
+        long start = System.nanoTime();
+        try {
+            doBeginPayment(order);
+            BEGIN_PAYMENT.success(start);
+        } catch (Exception e) {
+            BEGIN_PAYMENT.failure(start, e);
+            throw e;
+        }
+    }
+
+    private void doBeginPayment(Order order) throws PaymentFailedException, InvalidBookingException {
+        if (order == null) {
+            throw new InvalidBookingException("订单不存在");
+        }
+        if (order.getStatus() == Order.OrderStatus.PAYING) {
+            throw new InvalidBookingException("订单正在支付中，请勿重复提交", "订单号: " + order.getOrderId());
+        }
+        if (order.getStatus() != Order.OrderStatus.RESERVED) {
+            throw new InvalidBookingException("订单状态不是预订状态");
+        }
+        if (order.isExpired()) {
+            cancelOrder(order);
+            throw new PaymentFailedException(order.getOrderId(), order.getTotalAmount(), "Online", "预订已过期，请重新下单");
+        }
+
+        long fromVersion = changeStatus(order, Order.OrderStatus.RESERVED, Order.OrderStatus.PAYING);
+        if (fromVersion < 0) {
+            throw new InvalidBookingException("订单状态已变化，无法支付", "订单号: " + order.getOrderId() + ", 状态: " + order.getStatus());
+        }
+        // 座位仍是锁定状态，只发通知
+        List<OutboxEvent> events = new ArrayList<>();
+        events.add(OutboxEvent.orderNotification(order, "支付处理中，请稍候。"));
+        persistTransition(order, fromVersion, events);
+    }
+
+    /**
+     * 批量应用扣款结果：成功的订单 PAYING → PAID 并售出座位，失败的订单 PAYING → CANCELLED 并释放座位；
+     * 整批只写一次库、保存一次场次，每个场次只推送一次座位更新
+     */
+    public void completePayments(List<Order> paid, List<Order> failed) {
+        long start = System.nanoTime();
+        try {
+            doCompletePayments(paid, failed);
+            COMPLETE_PAYMENTS.success(start);
+        } catch (Exception e) {
+            COMPLETE_PAYMENTS.failure(start, e);
+            throw e;
+        }
+    }
+
+    private void doCompletePayments(List<Order> paid, List<Order> failed) {
+        Map<Order, Long> fromVersions = new LinkedHashMap<>();
+        Set<Show> touchedShows = new LinkedHashSet<>();
+        List<OutboxEvent> events = new ArrayList<>();
+
+        for (Order order : paid) {
+            long fromVersion = changeStatus(order, Order.OrderStatus.PAYING, Order.OrderStatus.PAID);
+            if (fromVersion < 0) {
+                continue;
+            }
+            for (Seat seat : order.getSeats()) {
+                seat.sell();
+            }
+            fromVersions.put(order, fromVersion);
+            touchedShows.add(order.getShow());
+            events.addAll(orderEvents(order, "支付成功！您的座位已锁定。"));
+        }
+        for (Order order : failed) {
+            long fromVersion = changeStatus(order, Order.OrderStatus.PAYING, Order.OrderStatus.CANCELLED);
+            if (fromVersion < 0) {
+                continue;
+            }
+            for (Seat seat : order.getSeats()) {
+                seat.unlock();
+            }
+            fromVersions.put(order, fromVersion);
+            touchedShows.add(order.getShow());
+            events.addAll(orderEvents(order, "支付失败，订单已取消，座位已释放。"));
+        }
+        if (fromVersions.isEmpty()) {
+            return;
+        }
+
+        // 事件随整批状态写入发件箱，OutboxRelay 发布时同一场次的座位推送合并为一次
+        persistTransitions(fromVersions, events);
+        CinemaManager.getInstance().saveShows();
+        for (Show show : touchedShows) {
+            displayService.updateSeatDisplay(show);
+        }
+    }
+
     // 检查并处理过期的预订
     public void checkExpiredOrders() {
+        long start = System.nanoTime();
+        try {
+            doCheckExpiredOrders();
+            CHECK_EXPIRED.success(start);
+        } catch (Exception e) {
+            CHECK_EXPIRED.failure(start, e);
+            throw e;
+        }
+    }
+
+    private void doCheckExpiredOrders() {
+        // 只读副本不自行处理过期，过期结果由主节点写入变更日志后同步过来
+        if (readOnly) {
+            return;
+        }
         // ... (保持原逻辑，并在过期时调用 notificationService 和 displayService) ...
         List<Order> expiredOrders = new ArrayList<>();
 
@@ -334,73 +778,143 @@ public class BookingService {
 
         if (!expiredOrders.isEmpty()) {
             for (Order order : expiredOrders) {
+                // 更新订单状态；期间已被支付或取消的订单跳过
+                long fromVersion = changeStatus(order, Order.OrderStatus.RESERVED, Order.OrderStatus.EXPIRED);
+                if (fromVersion < 0) {
+                    fromVersion = changeStatus(order, Order.OrderStatus.PENDING, Order.OrderStatus.EXPIRED);
+                }
+                if (fromVersion < 0) {
+                    continue;
+                }
+
                 // 释放座位
                 for (Seat seat : order.getSeats()) {
                     seat.unlock();
                 }
 
-                // 更新订单状态
-                order.setStatus(Order.OrderStatus.EXPIRED);
-
                 // 从用户订单列表中移除 (注意：第一段代码没有移除逻辑，此处沿用第二段代码的保留逻辑)
                 if (order.getUser() != null) {
                     // 移除订单关联，但保留订单记录
                     order.getUser().removeOrder(order);
                 }
 
-                // 持久化更新
-                saveOrder(order);
+                // 持久化更新，座位推送和通知随状态写入发件箱
+                persistTransition(order, fromVersion, orderEvents(order, "订单因超时已自动取消。"));
                 CinemaManager.getInstance().saveShows();
 
-                // 触发通知和显示服务
-                notificationService.sendOrderUpdate(order.getUser(), order, "订单因超时已自动取消。");
+                // 触发显示服务
                 displayService.updateSeatDisplay(order.getShow());
             }
             // 批量保存订单和场次状态 (已在循环内 saveOrder 和 saveShows)
         }
     }
 
-    // ================== 数据持久化 (使用 MySQLDataStorage) ==================
+    // ================== 数据持久化 (使用 DataStorage) ==================
     private void loadOrders() {
         if (useMySQL) {
-            orders.putAll(mysqlDataStorage.loadOrders());
+            // CinemaManager 从快照恢复时订单也取自快照，否则逐行从数据库加载
+            Map<String, Order> restored = SnapshotService.getInstance().takeRestoredOrders();
+            orders.putAll(restored != null ? restored : dataStorage.loadOrders());
+            // 上次退出前写入订单日志、尚未写库的订单变化
+            for (Order order : journalShipper.replay(orders)) {
+                applySeatStates(order);
+            }
         }
     }
 
     public void saveOrder(Order order) {
-        if (useMySQL) {
-            mysqlDataStorage.saveOrders(orders); // 简化处理，保存所有
+        if (useMySQL && !readOnly) {
+            dataStorage.saveOrder(order); // 只写入变化的订单，并记录变更日志
+        }
+    }
+
+    // 先把订单和事件写入订单日志，再写入订单并在同一事务中写入发件箱事件，提交后唤醒 OutboxRelay；
+    // 不写库或写库失败时先直接发布事件，写库失败的订单和事件由 JournalShipper 补写；没有写入日志的订单不等补写，直接写库
+    // 返回 false 表示订单既没有写库也没有写入日志（只在内存中）
+    private boolean saveOrder(Order order, List<OutboxEvent> events) {
+        if (useMySQL && !readOnly) {
+            long sequence = journalShipper.record(order, events);
+            if ((sequence < 0 || !journalShipper.isBacklogged()) && dataStorage.saveOrder(order, events)) {
+                journalShipper.applied(sequence);
+                outboxRelay.wakeUp();
+                return true;
+            }
+            if (sequence < 0) {
+                System.err.println("✗ 订单 " + order.getOrderId() + " 写库失败，也没有写入订单日志");
+                return false;
+            }
+            journalShipper.deferred(sequence);
         }
+        outboxRelay.publishNow(events);
+        return true;
+    }
+
+    // 订单变化对外发出的事件：场次座位推送，message 不为空时再加一条用户通知
+    private List<OutboxEvent> orderEvents(Order order, String message) {
+        List<OutboxEvent> events = new ArrayList<>(2);
+        events.add(OutboxEvent.seatUpdate(order));
+        if (message != null) {
+            events.add(OutboxEvent.orderNotification(order, message));
+        }
+        return events;
     }
 
     public void saveOrders() {
-        if (useMySQL) {
-            mysqlDataStorage.saveOrders(orders);
+        if (useMySQL && !readOnly) {
+            dataStorage.saveOrders(orders);
         }
     }
 
+    // 加载订单时已经通过 CinemaManager.getUser 按主键取得用户，这里只补上用户的订单列表
     private void rebuildUserOrderRelations() {
-        CinemaManager cinemaManager = CinemaManager.getInstance();
         for (Order order : orders.values()) {
-            if (order.getUser() != null) {
-                User user = cinemaManager.getUser(order.getUser().getId());
-                if (user != null) {
-                    order.setUser(user);
-                    if (!user.getOrders().contains(order)) {
-                        user.addOrder(order);
-                    }
-                }
+            User user = order.getUser();
+            if (user != null && !user.getOrders().contains(order)) {
+                user.addOrder(order);
             }
         }
     }
 
+    // ================== 增量同步：应用其他节点的订单变更 ==================
+
+    /**
+     * 应用一条来自其他节点的订单变更：重新加载订单，版本号比本地新时按其状态设置本地场次的座位，使座位图与主节点一致
+     */
+    public void applyRemoteOrderChange(ChangeLogEntry change) {
+        if (!useMySQL || change.isDelete()) {
+            return;
+        }
+        Order loaded = dataStorage.loadOrder(change.getEntityId());
+        if (loaded == null) {
+            return;
+        }
+
+        Order order = orders.get(loaded.getOrderId());
+        if (order == null) {
+            order = loaded;
+            orders.put(order.getOrderId(), order);
+            analytics.recordTransition(order, null, order.getStatus());
+            if (order.getUser() != null && !order.getUser().getOrders().contains(order)) {
+                order.getUser().addOrder(order);
+            }
+            applySeatStates(order);
+        } else if (!applyLoadedState(order, loaded)) {
+            return; // 本地版本不比变更旧，已经应用过
+        }
+
+        SeatWebSocketServer.fireUpdate(order.getShow().getId(), "UPDATE");
+    }
+
     // ================== 关闭资源 ==================
     /**
      * 关闭数据库连接
      */
     public void shutdown() {
-        if (useMySQL && mysqlDataStorage != null) {
-            mysqlDataStorage.close();
+        PaymentService.getInstance().shutdown();
+        outboxRelay.shutdown();
+        journalShipper.shutdown();
+        if (useMySQL && dataStorage != null) {
+            dataStorage.close();
             System.out.println("✓ BookingService已关闭MySQL连接");
         }
     }
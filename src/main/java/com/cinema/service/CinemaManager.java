@@ -1,11 +1,17 @@
 package com.cinema.service;
 
+import com.cinema.config.AppConfig;
+import com.cinema.config.NodeRole;
 import com.cinema.model.*;
-import com.cinema.storage.MySQLDataStorage;
+import com.cinema.storage.DataStorage;
+import com.cinema.storage.DataStorageFactory;
+import com.cinema.storage.StateSnapshot;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -15,43 +21,59 @@ public class CinemaManager {
     private final Map<String, Movie> movies;
     private final Map<String, ScreeningRoom> rooms;
     private final Map<String, Show> shows;
-    private final Map<String, User> users;
+    private final UserCache users; // 按需加载的用户缓存，启动时不再全量加载
 
-    private final MySQLDataStorage mysqlDataStorage; // 数据库存储
+    private final DataStorage dataStorage; // 数据库存储
     private final boolean useMySQL;
+    private volatile long snapshotVersion; // 启动加载数据时对应的变更日志版本
+    private final boolean readOnly; // 只读副本节点：数据只从数据库加载和同步，不回写
 
     // 引入显示服务 (新增功能)
     private final DisplayService displayService;
+    // 每个放映厅的排片区间树，用于冲突检测和空闲时段查询
+    private final ScheduleService scheduleService;
+    // 场次生命周期（开售、开场、散场）和已散场场次的归档
+    private final ShowLifecycleService lifecycleService;
+    private final ShowArchive archive = new ShowArchive();
 
     private CinemaManager() {
         this.movies = new ConcurrentHashMap<>();
         this.rooms = new ConcurrentHashMap<>();
         this.shows = new ConcurrentHashMap<>();
-        this.users = new ConcurrentHashMap<>();
 
         // 引入显示服务 (初始化)
         this.displayService = DisplayService.getInstance();
+        this.scheduleService = ScheduleService.getInstance();
+        this.lifecycleService = ShowLifecycleService.getInstance();
 
         // 尝试使用MySQL，如果失败则使用文件存储
         boolean mysqlAvailable = false;
-        MySQLDataStorage mysqlStorage = null;
+        DataStorage storage = null;
         try {
-            mysqlStorage = new MySQLDataStorage();
+            storage = DataStorageFactory.create();
             mysqlAvailable = true;
-            System.out.println("✓ CinemaManager使用MySQL数据库存储");
+            System.out.println("✓ CinemaManager使用数据存储: " + DataStorageFactory.type());
         } catch (Exception e) {
             System.err.println("✗ MySQL连接失败，使用文件存储: " + e.getMessage());
-            mysqlStorage = null;
+            storage = null;
         }
-        this.mysqlDataStorage = mysqlStorage;
+        this.dataStorage = storage;
         this.useMySQL = mysqlAvailable;
+        this.readOnly = NodeRole.isReplica();
+        // 没有数据库时缓存就是唯一的存储，不能淘汰
+        this.users = new UserCache(useMySQL ? AppConfig.getInt("users.cache-size", 10000) : Integer.MAX_VALUE);
 
         loadData();
 
-        // 如果没有数据，则初始化默认数据
-        if (movies.isEmpty() && rooms.isEmpty() && users.isEmpty()) {
+        // 如果没有数据，则初始化默认数据（只读副本不写库，等待主节点初始化）
+        if (!readOnly && movies.isEmpty() && rooms.isEmpty() && countUsers() == 0) {
             initializeDefaultData();
         }
+        // 按当前时间校正场次状态，已散场的直接归档
+        applyLifecycle(new ArrayList<>(shows.values()), LocalDateTime.now());
+        // 已有场次直接登记，不做冲突检查
+        scheduleService.rebuild(shows.values());
+        lifecycleService.start();
     }
 
     public static synchronized CinemaManager getInstance() {
@@ -168,7 +190,7 @@ public class CinemaManager {
                 "admin@cinema.com",
                 User.UserRole.ADMIN
         );
-        users.put(admin.getId(), admin);
+        users.put(admin);
         // Create default normal user
         User testUser = new User(
                 "test",          // 用户 ID（唯一）
@@ -178,7 +200,7 @@ public class CinemaManager {
                 "test@cinema.com",   // 邮箱
                 User.UserRole.CUSTOMER  // 普通用户角色
         );
-        users.put(testUser.getId(), testUser);
+        users.put(testUser);
 
         saveAllData(); // 初始化后保存数据
     }
@@ -188,7 +210,9 @@ public class CinemaManager {
     public void addMovie(Movie movie) {
         if (movie != null && movie.getId() != null) {
             movies.put(movie.getId(), movie);
-            saveMovies();
+            if (useMySQL && dataStorage != null) {
+                dataStorage.saveMovie(movie);
+            }
             // 触发显示更新
             displayService.updateMovieDisplay(movie, "新增上映");
         }
@@ -206,10 +230,15 @@ public class CinemaManager {
             }
             for (Show show : showsToRemove) {
                 shows.remove(show.getId());
+                SalesAnalyticsService.getInstance().unregisterShow(show);
+                scheduleService.release(show.getId());
             }
+            archive.removeByMovie(movieId).forEach(SalesAnalyticsService.getInstance()::unregisterShow);
 
-            saveMovies();
-            saveShows();
+            // 数据库外键会级联删除该电影的场次和评论
+            if (useMySQL && dataStorage != null) {
+                dataStorage.deleteMovie(movieId);
+            }
             // 触发显示更新
             displayService.updateMovieDisplay(movie, "下架");
         }
@@ -232,8 +261,10 @@ public class CinemaManager {
                 movie.setRating(Math.round(avg * 10.0) / 10.0);
             }
 
-            // 🔴 关键：调用 saveMovies 触发数据库写入
-            saveMovies();
+            // 🔴 关键：保存该电影（含评论）触发数据库写入
+            if (useMySQL && dataStorage != null) {
+                dataStorage.saveMovie(movie);
+            }
             System.out.println("评论已添加并保存到数据库");
         }
     }
@@ -241,21 +272,65 @@ public class CinemaManager {
     // ================== 场次管理 (集成 DisplayService) ==================
     public void addShow(Show show) {
         if (show != null && show.getId() != null) {
-            shows.put(show.getId(), show);
+            // 与同厅已有场次重叠时抛出 ScheduleConflictException，内存和数据库均不修改
+            scheduleService.reserve(show);
+            LocalDateTime now = LocalDateTime.now();
+            show.setStatus(lifecycleService.statusAt(show, now));
+            lifecycleService.schedule(show, now);
+            Show previous = shows.put(show.getId(), show);
             show.getMovie().addShow(show.getStartTime().toLocalDate(), show);
-            saveShows();
-            saveMovies();
+            SalesAnalyticsService.getInstance().unregisterShow(previous);
+            SalesAnalyticsService.getInstance().registerShow(show);
+            if (useMySQL && dataStorage != null) {
+                dataStorage.saveShow(show);
+            }
             // 触发显示更新（更新该场次的座位图显示）
             displayService.updateSeatDisplay(show);
         }
     }
 
+    /**
+     * 批量排片：先统一占用放映厅时段，再用一个事务批量写库，成功后一次性更新内存索引
+     * 时段冲突抛出 ScheduleConflictException，写库失败抛出 IllegalStateException，两种情况内存和数据库均不修改
+     */
+    public void addShows(List<Show> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        scheduleService.reserveAll(batch);
+        LocalDateTime now = LocalDateTime.now();
+        for (Show show : batch) {
+            show.setStatus(lifecycleService.statusAt(show, now));
+            lifecycleService.schedule(show, now);
+        }
+        if (useMySQL && dataStorage != null && !dataStorage.saveShowsBatch(batch)) {
+            batch.forEach(show -> scheduleService.release(show.getId()));
+            throw new IllegalStateException("批量保存场次失败，已回滚");
+        }
+        SalesAnalyticsService analytics = SalesAnalyticsService.getInstance();
+        for (Show show : batch) {
+            shows.put(show.getId(), show);
+            show.getMovie().addShow(show.getStartTime().toLocalDate(), show);
+            analytics.registerShow(show);
+        }
+    }
+
     public void removeShow(String showId) {
         Show show = shows.remove(showId);
+        if (show == null && (show = archive.remove(showId)) != null) {
+            SalesAnalyticsService.getInstance().unregisterShow(show);
+            if (useMySQL && dataStorage != null) {
+                dataStorage.deleteShow(showId);
+            }
+            return;
+        }
         if (show != null) {
             show.getMovie().removeShow(show.getStartTime().toLocalDate(), show);
-            saveShows();
-            saveMovies();
+            SalesAnalyticsService.getInstance().unregisterShow(show);
+            scheduleService.release(showId);
+            if (useMySQL && dataStorage != null) {
+                dataStorage.deleteShow(showId);
+            }
             // 触发显示更新（移除该场次的座位图显示）
             displayService.updateSeatDisplay(show);
         }
@@ -266,26 +341,42 @@ public class CinemaManager {
     public void addScreeningRoom(ScreeningRoom room) {
         if (room != null && room.getId() != null) {
             rooms.put(room.getId(), room);
-            saveRooms();
+            if (useMySQL && dataStorage != null) {
+                dataStorage.saveScreeningRoom(room);
+            }
         }
     }
 
     public void removeScreeningRoom(String roomId) {
-        rooms.remove(roomId);
-        saveRooms();
+        if (rooms.remove(roomId) != null && useMySQL && dataStorage != null) {
+            dataStorage.deleteScreeningRoom(roomId);
+        }
     }
 
-    // 🔴 确保注册时调用 saveUsers
+    /**
+     * 注册用户：放入缓存并单行写入数据库
+     */
     public void addUser(User user) {
         if (user != null && user.getId() != null) {
-            users.put(user.getId(), user);
-            saveUsers(); // 这会调用 MySQLDataStorage.saveUsers
+            users.put(user);
+            saveUser(user);
+        }
+    }
+
+    /**
+     * 单行保存一个用户（修改角色、密码等之后调用）
+     */
+    public void saveUser(User user) {
+        if (useMySQL && dataStorage != null) {
+            dataStorage.saveUser(user);
         }
     }
 
     public void removeUser(String userId) {
         users.remove(userId);
-        saveUsers();
+        if (useMySQL && dataStorage != null) {
+            dataStorage.deleteUser(userId);
+        }
     }
 
     // ================== 查询方法 (保留) ==================
@@ -309,14 +400,77 @@ public class CinemaManager {
         return new ArrayList<>(rooms.values());
     }
 
+    /**
+     * 按ID查找场次，包括已归档的场次（订单仍需要关联它们）
+     */
     public Show getShow(String showId) {
-        return shows.get(showId);
+        Show show = shows.get(showId);
+        return show != null ? show : archive.get(showId);
     }
 
+    /**
+     * 全部未散场的场次
+     */
     public List<Show> getAllShows() {
         return new ArrayList<>(shows.values());
     }
 
+    public List<Show> getArchivedShows() {
+        return new ArrayList<>(archive.values());
+    }
+
+    /**
+     * 历史场次分页（按开场时间倒序），每项为场次摘要和销售统计
+     */
+    public Map<String, Object> getShowHistory(String movieId, int page, int size) {
+        return archive.page(movieId, page, size);
+    }
+
+    // ================== 场次生命周期 ==================
+
+    /**
+     * 处理到期的状态转换，由 ShowLifecycleService 的后台线程定时调用
+     */
+    public void advanceShowLifecycle(LocalDateTime now) {
+        applyLifecycle(lifecycleService.pollDue(now), now);
+    }
+
+    /**
+     * 按时间重新计算场次状态：状态有变化的批量写库，散场的归档，其余登记下一次转换
+     */
+    private void applyLifecycle(List<Show> candidates, LocalDateTime now) {
+        List<Show> changed = new ArrayList<>();
+        for (Show show : candidates) {
+            if (shows.get(show.getId()) != show) {
+                continue; // 已删除、已归档或被新对象替换
+            }
+            Show.ShowStatus status = lifecycleService.statusAt(show, now);
+            if (status != show.getStatus()) {
+                show.setStatus(status);
+                changed.add(show);
+            }
+            if (status == Show.ShowStatus.FINISHED) {
+                archiveShow(show);
+            } else {
+                lifecycleService.schedule(show, now);
+            }
+        }
+        if (!changed.isEmpty() && !readOnly && useMySQL && dataStorage != null) {
+            dataStorage.saveShowsBatch(changed);
+        }
+    }
+
+    // 散场的场次移出活动场次和排片索引，释放座位状态；销售统计保留
+    private void archiveShow(Show show) {
+        if (!shows.remove(show.getId(), show)) {
+            return;
+        }
+        show.getMovie().removeShow(show.getStartTime().toLocalDate(), show);
+        scheduleService.release(show.getId());
+        show.archive();
+        archive.add(show);
+    }
+
     public List<Show> getShowsByMovie(String movieId) {
         List<Show> movieShows = new ArrayList<>();
         for (Show show : shows.values()) {
@@ -337,12 +491,39 @@ public class CinemaManager {
         return dateShows;
     }
 
+    /**
+     * 按主键查找用户：先查缓存，未命中时从数据库加载并放入缓存（如其他节点注册的用户、已被淘汰的用户）
+     */
     public User getUser(String userId) {
-        return users.get(userId);
+        if (userId == null) {
+            return null;
+        }
+        User user = users.get(userId);
+        if (user != null || !useMySQL || dataStorage == null) {
+            return user;
+        }
+        User loaded = dataStorage.loadUser(userId);
+        return loaded != null ? users.putIfAbsent(loaded) : null;
     }
 
-    public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+    /**
+     * 按用户ID顺序分页查询用户，page 从 1 开始；结果不放入缓存，避免翻页把常用用户挤出缓存
+     */
+    public List<User> getUsersPage(int page, int size) {
+        int offset = Math.max(0, page - 1) * size;
+        if (useMySQL && dataStorage != null) {
+            return dataStorage.loadUsersPage(offset, size);
+        }
+        List<User> all = users.values();
+        all.sort(Comparator.comparing(User::getId));
+        return new ArrayList<>(all.subList(Math.min(offset, all.size()), Math.min(offset + size, all.size())));
+    }
+
+    public long countUsers() {
+        if (useMySQL && dataStorage != null) {
+            return dataStorage.countUsers();
+        }
+        return users.size();
     }
 
     public List<Show> searchShows(String movieTitle, LocalDate date) {
@@ -360,38 +541,153 @@ public class CinemaManager {
         return matchingShows;
     }
 
+    // ================== 增量同步：应用其他节点的变更 ==================
+
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    /**
+     * 应用一条来自其他节点的目录变更：从数据库按主键重新加载实体并更新内存索引，不再回写数据库
+     * 已存在的电影/场次在原对象上原地更新，保证订单、场次之间的引用不失效
+     */
+    public void applyRemoteChange(ChangeLogEntry change) {
+        if (!useMySQL || dataStorage == null) {
+            return;
+        }
+        String id = change.getEntityId();
+        switch (change.getEntityType()) {
+            case ChangeLogEntry.TYPE_MOVIE:
+                if (change.isDelete()) {
+                    Movie removed = movies.remove(id);
+                    if (removed != null) {
+                        archive.removeByMovie(id).forEach(SalesAnalyticsService.getInstance()::unregisterShow);
+                        shows.values().removeIf(show -> {
+                            if (!show.getMovieId().equals(id)) {
+                                return false;
+                            }
+                            SalesAnalyticsService.getInstance().unregisterShow(show);
+                            scheduleService.release(show.getId());
+                            return true;
+                        });
+                        displayService.updateMovieDisplay(removed, "下架(同步)");
+                    }
+                } else {
+                    Movie loaded = dataStorage.loadMovie(id);
+                    if (loaded == null) {
+                        return;
+                    }
+                    Movie existing = movies.putIfAbsent(id, loaded);
+                    if (existing != null) {
+                        existing.copyDetailsFrom(loaded);
+                    }
+                    displayService.updateMovieDisplay(existing != null ? existing : loaded, "更新(同步)");
+                }
+                break;
+            case ChangeLogEntry.TYPE_ROOM:
+                if (change.isDelete()) {
+                    rooms.remove(id);
+                } else {
+                    ScreeningRoom loaded = dataStorage.loadScreeningRoom(id);
+                    if (loaded == null) {
+                        return;
+                    }
+                    ScreeningRoom existing = rooms.putIfAbsent(id, loaded);
+                    if (existing != null) {
+                        // 已有场次引用该放映厅的座位布局，只同步名称
+                        existing.setName(loaded.getName());
+                    }
+                }
+                break;
+            case ChangeLogEntry.TYPE_SHOW:
+                if (change.isDelete()) {
+                    Show removed = shows.remove(id);
+                    if (removed != null) {
+                        removed.getMovie().removeShow(removed.getStartTime().toLocalDate(), removed);
+                        SalesAnalyticsService.getInstance().unregisterShow(removed);
+                        scheduleService.release(id);
+                    } else if ((removed = archive.remove(id)) != null) {
+                        SalesAnalyticsService.getInstance().unregisterShow(removed);
+                    }
+                } else {
+                    Show loaded = dataStorage.loadShow(id, movies, rooms);
+                    if (loaded == null || archive.get(id) != null) {
+                        // 已归档的场次只会收到散场状态的更新，无需处理
+                        return;
+                    }
+                    Show existing = shows.get(id);
+                    if (existing == null) {
+                        shows.put(id, loaded);
+                        loaded.getMovie().addShow(loaded.getStartTime().toLocalDate(), loaded);
+                        SalesAnalyticsService.getInstance().registerShow(loaded);
+                        scheduleService.index(loaded);
+                    } else {
+                        existing.getMovie().removeShow(existing.getStartTime().toLocalDate(), existing);
+                        existing.setStartTime(loaded.getStartTime());
+                        existing.setBasePrice(loaded.getBasePrice());
+                        existing.getMovie().addShow(existing.getStartTime().toLocalDate(), existing);
+                        scheduleService.index(existing);
+                    }
+                    applyLifecycle(List.of(shows.get(id)), LocalDateTime.now());
+                }
+                break;
+            default:
+                System.err.println("未知的变更类型: " + change);
+        }
+    }
+
     // ================== 数据持久化 (保留) ==================
 
     private void loadData() {
-        if (useMySQL && mysqlDataStorage != null) {
-            movies.putAll(mysqlDataStorage.loadMovies());
-            rooms.putAll(mysqlDataStorage.loadScreeningRooms());
-            shows.putAll(mysqlDataStorage.loadShows());
-            users.putAll(mysqlDataStorage.loadUsers());
+        if (useMySQL && dataStorage != null) {
+            // 有可用的快照文件时从快照恢复，快照水位之后的变更由 SnapshotService 启动完成时追赶
+            StateSnapshot.Contents snapshot = SnapshotService.getInstance().restore();
+            if (snapshot != null) {
+                snapshotVersion = snapshot.getWatermark();
+                snapshot.getRooms().forEach(room -> rooms.put(room.getId(), room));
+                snapshot.getMovies().forEach(movie -> movies.put(movie.getId(), movie));
+                for (Show show : snapshot.getShows()) {
+                    show.getMovie().addShow(show.getStartTime().toLocalDate(), show);
+                    shows.put(show.getId(), show);
+                }
+                return;
+            }
+            // 先记录快照前的变更版本，再加载数据：之后的变更由 SyncService 追赶（重复应用是幂等的）
+            snapshotVersion = dataStorage.loadLatestChangeVersion();
+            movies.putAll(dataStorage.loadMovies());
+            rooms.putAll(dataStorage.loadScreeningRooms());
+            shows.putAll(dataStorage.loadShows());
         }
     }
 
     public void saveMovies() {
-        if (useMySQL && mysqlDataStorage != null) {
-            mysqlDataStorage.saveMovies(movies);
+        if (useMySQL && dataStorage != null) {
+            dataStorage.saveMovies(movies);
         }
     }
 
     public void saveRooms() {
-        if (useMySQL && mysqlDataStorage != null) {
-            mysqlDataStorage.saveScreeningRooms(rooms);
+        if (useMySQL && dataStorage != null) {
+            dataStorage.saveScreeningRooms(rooms);
         }
     }
 
     public void saveShows() {
-        if (useMySQL && mysqlDataStorage != null) {
-            mysqlDataStorage.saveShows(shows);
+        if (useMySQL && dataStorage != null) {
+            dataStorage.saveShows(shows);
         }
     }
 
+    /**
+     * 保存缓存中的用户（未缓存的用户没有被修改过，不需要保存）
+     */
     public void saveUsers() {
-        if (useMySQL && mysqlDataStorage != null) {
-            mysqlDataStorage.saveUsers(users);
+        if (useMySQL && dataStorage != null) {
+            Map<String, User> cached = new LinkedHashMap<>();
+            for (User user : users.values()) {
+                cached.put(user.getId(), user);
+            }
+            dataStorage.saveUsers(cached);
         }
     }
 
@@ -399,6 +695,9 @@ public class CinemaManager {
      * 保存所有核心数据，包括订单数据
      */
     public void saveAllData() {
+        if (readOnly) {
+            return;
+        }
         saveMovies();
         saveRooms();
         saveShows();
@@ -416,9 +715,10 @@ public class CinemaManager {
      */
     public void shutdown() {
         System.out.println("正在关闭 CinemaManager...");
+        lifecycleService.shutdown();
         saveAllData();
-        if (useMySQL && mysqlDataStorage != null) {
-            mysqlDataStorage.close();
+        if (useMySQL && dataStorage != null) {
+            dataStorage.close();
             System.out.println("✓ MySQL 连接已关闭。");
         }
         // 由于 DisplayService 是单例，其资源的释放应在其自身的 shutdown 方法中处理（如果需要）
@@ -0,0 +1,197 @@
+package com.cinema.service;
+
+import com.cinema.model.Seat;
+import com.cinema.model.SeatAvailabilityIndex;
+import com.cinema.model.Show;
+import com.cinema.strategy.PricingStrategy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 紧凑座位图编码
+ * 替代逐座位的 JSON 数组，一个 500 座的厅通常只需几十到两百多字节（与 JSON 的耗时对比见 SeatMapBenchmark），格式如下（大端序）：
+ * <pre>
+ * magic "SM"(2) | version(1) | rows(2) | cols(2)
+ * classCount(1) | classCount × [classCode(1) | 价格，单位分(4)]
+ * 座位类型段 | 座位状态段
+ * </pre>
+ * 每段为 encoding(1) | length(2) | data：encoding=0 时每座 2 位、按行优先打包；
+ * encoding=1 时为游程编码，每字节高 2 位为取值、低 6 位为(游程长度-1)。两种编码取较短者
+ * 座位类型：0 普通 1 VIP 2 优惠；座位状态：0 可售 1 锁定 2 已售；两段中 3 均表示该位置没有座位
+ */
+public final class CompactSeatMapEncoder {
+    public static final byte VERSION = 1;
+
+    public static final int STATUS_AVAILABLE = 0;
+    public static final int STATUS_LOCKED = 1;
+    public static final int STATUS_SOLD = 2;
+    public static final int CLASS_REGULAR = SeatAvailabilityIndex.CLASS_REGULAR;
+    public static final int CLASS_VIP = SeatAvailabilityIndex.CLASS_VIP;
+    public static final int CLASS_DISCOUNT = SeatAvailabilityIndex.CLASS_DISCOUNT;
+    public static final int NO_SEAT = 3;
+
+    private static final int ENCODING_PACKED = 0;
+    private static final int ENCODING_RLE = 1;
+    private static final int MAX_RUN = 64;
+    private static final int HEADER_BYTES = 8;
+    private static final int SECTION_HEADER_BYTES = 3;
+
+    private CompactSeatMapEncoder() {
+    }
+
+    /**
+     * 编码场次当前的座位图
+     * 按行列读取一次座位类型和状态到快照数组，再从快照统计各段长度、分配结果数组并写入：
+     * 编码期间有并发下单时，段长度与内容仍然一致（得到的是读取那一刻的座位图）
+     */
+    public static byte[] encode(Show show, PricingStrategy pricingStrategy) {
+        int rows = show.getRows();
+        int cols = show.getCols();
+
+        // 价格只由场次和座位类型决定，每种类型取一个座位计算
+        double[] prices = new double[3];
+        boolean[] present = new boolean[3];
+        int classCount = 0;
+        byte[] classes = new byte[rows * cols];
+        byte[] statuses = new byte[rows * cols];
+        for (int r = 1; r <= rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                int index = (r - 1) * cols + (c - 1);
+                int seatClass = show.getSeatClass(r, c);
+                if (seatClass < 0) {
+                    classes[index] = NO_SEAT;
+                    statuses[index] = NO_SEAT;
+                    continue;
+                }
+                classes[index] = (byte) seatClass;
+                statuses[index] = (byte) statusOf(show.getSeatStatus(r, c));
+                if (!present[seatClass]) {
+                    present[seatClass] = true;
+                    prices[seatClass] = pricingStrategy.calculatePrice(show, show.getSeat(r, c));
+                    classCount++;
+                }
+            }
+        }
+
+        int classRuns = countRuns(classes);
+        int statusRuns = countRuns(statuses);
+        int packedBytes = (rows * cols + 3) / 4;
+        int classBytes = Math.min(classRuns, packedBytes);
+        int statusBytes = Math.min(statusRuns, packedBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + classCount * 5
+                + SECTION_HEADER_BYTES + classBytes + SECTION_HEADER_BYTES + statusBytes);
+        buffer.put((byte) 'S').put((byte) 'M').put(VERSION);
+        buffer.putShort((short) rows).putShort((short) cols);
+        buffer.put((byte) classCount);
+        for (int k = 0; k < prices.length; k++) {
+            if (present[k]) {
+                buffer.put((byte) k).putInt((int) Math.round(prices[k] * 100));
+            }
+        }
+        writeSection(buffer, classes, classRuns < packedBytes, classBytes);
+        writeSection(buffer, statuses, statusRuns < packedBytes, statusBytes);
+        return buffer.array();
+    }
+
+    private static int statusOf(Seat.SeatStatus status) {
+        switch (status) {
+            case LOCKED:
+                return STATUS_LOCKED;
+            case SOLD:
+                return STATUS_SOLD;
+            default:
+                return STATUS_AVAILABLE;
+        }
+    }
+
+    // 游程编码所需字节数（每个游程最长 64 座）
+    private static int countRuns(byte[] values) {
+        int total = values.length;
+        int runs = 0;
+        int i = 0;
+        while (i < total) {
+            int value = values[i];
+            int length = 1;
+            while (i + length < total && length < MAX_RUN && values[i + length] == value) {
+                length++;
+            }
+            runs++;
+            i += length;
+        }
+        return runs;
+    }
+
+    private static void writeSection(ByteBuffer buffer, byte[] values, boolean rle, int length) {
+        int total = values.length;
+        buffer.put((byte) (rle ? ENCODING_RLE : ENCODING_PACKED));
+        buffer.putShort((short) length);
+        if (rle) {
+            int i = 0;
+            while (i < total) {
+                int value = values[i];
+                int runLength = 1;
+                while (i + runLength < total && runLength < MAX_RUN && values[i + runLength] == value) {
+                    runLength++;
+                }
+                buffer.put((byte) ((value << 6) | (runLength - 1)));
+                i += runLength;
+            }
+        } else {
+            int current = 0;
+            for (int i = 0; i < total; i++) {
+                current |= values[i] << ((3 - i % 4) * 2);
+                if (i % 4 == 3) {
+                    buffer.put((byte) current);
+                    current = 0;
+                }
+            }
+            if (total % 4 != 0) {
+                buffer.put((byte) current);
+            }
+        }
+    }
+
+    /**
+     * 解码座位状态段，按行优先返回每个位置的状态码（供 Java 客户端和测试使用）
+     */
+    public static int[] decodeStatuses(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.get() != 'S' || buffer.get() != 'M' || buffer.get() != VERSION) {
+            throw new IllegalArgumentException("不是有效的紧凑座位图数据");
+        }
+        int total = buffer.getShort() * buffer.getShort();
+        int classCount = buffer.get();
+        buffer.position(buffer.position() + classCount * 5);
+        skipSection(buffer);
+        return readSection(buffer, total);
+    }
+
+    private static void skipSection(ByteBuffer buffer) {
+        buffer.get();
+        int length = buffer.getShort() & 0xFFFF;
+        buffer.position(buffer.position() + length);
+    }
+
+    private static int[] readSection(ByteBuffer buffer, int total) {
+        int encoding = buffer.get();
+        int length = buffer.getShort() & 0xFFFF;
+        int[] values = new int[total];
+        if (encoding == ENCODING_RLE) {
+            int i = 0;
+            for (int b = 0; b < length; b++) {
+                int run = buffer.get() & 0xFF;
+                for (int k = 0; k <= (run & 0x3F); k++) {
+                    values[i++] = run >>> 6;
+                }
+            }
+        } else {
+            for (int i = 0; i < total; i++) {
+                int packed = buffer.get(buffer.position() + i / 4) & 0xFF;
+                values[i] = (packed >>> ((3 - i % 4) * 2)) & 0x3;
+            }
+            buffer.position(buffer.position() + length);
+        }
+        return values;
+    }
+}
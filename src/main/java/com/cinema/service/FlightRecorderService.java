@@ -0,0 +1,169 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.jfr.OrderTransitionEvent;
+import com.cinema.jfr.SeatAcquisitionEvent;
+import com.cinema.jfr.SeatBroadcastEvent;
+import com.cinema.jfr.StorageCallEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按需的 JFR 飞行记录
+ * 管理员通过 /api/admin/jfr 开始一次有上限的录制（时长不超过 jfr.max-duration-seconds，大小不超过 jfr.max-size-mb），
+ * 到时自动停止；停止后录制写入 jfr.dir 下的文件供下载。录制使用 JDK 自带的 jfr.settings 配置（锁竞争、GC 停顿等），
+ * 并启用应用的自定义事件（com.cinema.jfr），可按场次把锁座、订单状态转换、数据库调用和座位广播与锁竞争、GC 对照
+ * 同一时间只有一个录制，开始新录制时删除上一次的文件；录制不包含环境变量、系统属性和命令行（可能含数据库密码）
+ */
+public class FlightRecorderService {
+    private static FlightRecorderService instance;
+
+    private static final List<Class<? extends Event>> APP_EVENTS = List.of(
+            SeatAcquisitionEvent.class, OrderTransitionEvent.class, StorageCallEvent.class, SeatBroadcastEvent.class);
+    // 这些事件记录环境变量（DB_PASSWORD）、系统属性和 JVM/进程命令行（--db-password），录制文件可被下载，一律关闭
+    private static final List<String> SENSITIVE_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation", "jdk.SystemProcess");
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path dir;
+    private final int maxDurationSeconds;
+    private final long maxSizeBytes;
+    private final String settings;
+
+    private Recording recording;
+    private Path file;
+    private long startedAt;
+    private int durationSeconds;
+
+    private FlightRecorderService() {
+        this.dir = Paths.get(AppConfig.get("jfr.dir", "data/jfr"));
+        this.maxDurationSeconds = Math.max(1, AppConfig.getInt("jfr.max-duration-seconds", 600));
+        this.maxSizeBytes = Math.max(1L, AppConfig.getLong("jfr.max-size-mb", 100L)) * 1024 * 1024;
+        this.settings = AppConfig.get("jfr.settings", "profile");
+    }
+
+    public static synchronized FlightRecorderService getInstance() {
+        if (instance == null) {
+            instance = new FlightRecorderService();
+        }
+        return instance;
+    }
+
+    /**
+     * 开始录制，seconds 超过上限时按上限录制
+     * @throws IllegalStateException 已有录制在进行中
+     * @throws IOException 无法创建录制目录或读取 JFR 配置
+     */
+    public synchronized Map<String, Object> start(int seconds) throws IOException, ParseException {
+        if (isRunning()) {
+            throw new IllegalStateException("已有录制在进行中，请先停止");
+        }
+        closeRecording();
+        deleteFile();
+        Files.createDirectories(dir);
+
+        Recording created = new Recording(Configuration.getConfiguration(settings));
+        for (Class<? extends Event> type : APP_EVENTS) {
+            created.enable(type).withThreshold(Duration.ZERO);
+        }
+        for (String name : SENSITIVE_EVENTS) {
+            created.disable(name);
+        }
+        durationSeconds = Math.max(1, Math.min(seconds, maxDurationSeconds));
+        Path target = dir.resolve("cinema-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        created.setName("cinema-admin");
+        created.setToDisk(true);
+        created.setMaxSize(maxSizeBytes);
+        created.setDuration(Duration.ofSeconds(durationSeconds));
+        // 停止时（到时自动停止或调用 stop）写入该文件
+        created.setDestination(target);
+        created.start();
+
+        recording = created;
+        file = target;
+        startedAt = System.currentTimeMillis();
+        System.out.println("✓ 开始 JFR 录制（" + settings + "，" + durationSeconds + " 秒）: " + target.toAbsolutePath());
+        return getStats();
+    }
+
+    /**
+     * 停止录制（已到时自动停止的不再停止），返回录制文件；从未录制过时返回 null
+     */
+    public synchronized Path stop() {
+        if (recording != null) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            closeRecording();
+        }
+        return getLastFile();
+    }
+
+    /**
+     * 最近一次录制的文件，仍在录制或没有录制时返回 null
+     */
+    public synchronized Path getLastFile() {
+        if (isRunning() || file == null || !Files.exists(file)) {
+            return null;
+        }
+        return file;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        // 到时自动停止的录制由 JFR 关闭（CLOSED），对外统一为 STOPPED
+        stats.put("state", isRunning() ? "RUNNING" : (file != null ? "STOPPED" : "NONE"));
+        stats.put("settings", settings);
+        stats.put("startedAt", startedAt);
+        stats.put("durationSeconds", durationSeconds);
+        stats.put("maxDurationSeconds", maxDurationSeconds);
+        stats.put("maxSizeBytes", maxSizeBytes);
+        stats.put("file", file != null ? file.toAbsolutePath().toString() : null);
+        long size = -1;
+        if (file != null && Files.exists(file)) {
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                // 文件刚被删除
+            }
+        }
+        stats.put("fileBytes", size);
+        return stats;
+    }
+
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private void deleteFile() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("删除上一次的 JFR 录制失败: " + e.getMessage());
+            }
+            file = null;
+        }
+    }
+}
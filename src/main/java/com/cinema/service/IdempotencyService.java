@@ -0,0 +1,310 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.model.IdempotencyRecord;
+import com.cinema.storage.DataStorage;
+import com.cinema.storage.DataStorageFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 幂等键服务
+ * 客户端超时重试下单/支付/退票时带上同一个 Idempotency-Key，只有第一次请求真正执行，之后的重试直接返回第一次的响应；
+ * 第一次请求还没执行完时到达的重复请求等待它的结果，不会再次执行
+ * 键按用户隔离：不同用户使用相同的键互不影响；同一用户的键用于不同接口或不同请求内容时拒绝
+ * 响应先缓存在内存中（最多 idempotency.max-entries 个，按写入顺序淘汰，超过 idempotency.ttl-minutes 过期），
+ * 同时写入 idempotency_keys 表，重启或内存淘汰后仍能按键找回
+ */
+public class IdempotencyService {
+    private static IdempotencyService instance;
+    private static final int PURGE_EVERY_SAVES = 1000; // 每保存这么多条记录清理一次数据库中的过期记录
+    // 请求指纹：按属性名（Map 按键）排序序列化，字段顺序不影响结果
+    private static final ObjectMapper FINGERPRINT_MAPPER = new ObjectMapper()
+            .findAndRegisterModules()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    public enum Outcome {
+        EXECUTED,   // 第一次请求，已执行
+        REPLAYED,   // 重复请求，返回第一次的响应
+        MISMATCH,   // 同一个键用于不同接口或不同参数
+        IN_PROGRESS // 等待第一次请求超时
+    }
+
+    public static final class Result {
+        private final Outcome outcome;
+        private final Map<String, Object> response;
+
+        Result(Outcome outcome, Map<String, Object> response) {
+            this.outcome = outcome;
+            this.response = response;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public Map<String, Object> getResponse() {
+            return response;
+        }
+    }
+
+    // 第一次执行的结果
+    private static final class Completed {
+        final String endpoint;
+        final String fingerprint;
+        final Map<String, Object> response;
+
+        Completed(String endpoint, String fingerprint, Map<String, Object> response) {
+            this.endpoint = endpoint;
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final CompletableFuture<Completed> done = new CompletableFuture<>();
+        volatile long createdAt;
+
+        Entry(String key, long createdAt) {
+            this.key = key;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final DataStorage dataStorage; // 为 null 时只在内存中缓存
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long waitTimeoutMillis;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger savesSincePurge = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    IdempotencyService(DataStorage dataStorage, int maxEntries, long ttlMillis, long waitTimeoutMillis) {
+        this.dataStorage = dataStorage;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = Math.max(1L, ttlMillis);
+        this.waitTimeoutMillis = Math.max(1L, waitTimeoutMillis);
+    }
+
+    public static synchronized IdempotencyService getInstance() {
+        if (instance == null) {
+            DataStorage storage = null;
+            try {
+                storage = DataStorageFactory.create();
+            } catch (Exception e) {
+                System.err.println("✗ IdempotencyService 无法使用MySQL，幂等键只保存在内存中: " + e.getMessage());
+            }
+            instance = new IdempotencyService(storage,
+                    AppConfig.getInt("idempotency.max-entries", 10000),
+                    TimeUnit.MINUTES.toMillis(AppConfig.getLong("idempotency.ttl-minutes", 1440L)),
+                    AppConfig.getLong("idempotency.wait-timeout-ms", 30000L));
+        }
+        return instance;
+    }
+
+    /**
+     * 按幂等键执行请求
+     * @param userId      键所属的用户，只在该用户的键中查找；键本身可以与其他用户的重复
+     * @param endpoint    接口名，同一个键不能跨接口使用
+     * @param fingerprint 请求摘要（见 {@link #fingerprintOf(Object)}），同一个键不能用于不同请求
+     * @param action      真正的处理逻辑；返回 code >= 500 的响应不缓存，允许用同一个键重试
+     */
+    public Result execute(String userId, String idempotencyKey, String endpoint, String fingerprint,
+                          Supplier<Map<String, Object>> action) {
+        // 内存和数据库中都以 用户+键 的摘要为键（64 位十六进制，不超过 idem_key 列宽）
+        String key = fingerprint(userId, idempotencyKey);
+        while (true) {
+            long now = System.currentTimeMillis();
+            Entry fresh = new Entry(key, now);
+            Entry existing = entries.putIfAbsent(key, fresh);
+            if (existing == null) {
+                insertionOrder.add(fresh);
+                evict(now);
+                return runFirst(fresh, endpoint, fingerprint, action);
+            }
+            if (existing.done.isDone() && isExpired(existing, now)) {
+                entries.remove(key, existing);
+                continue;
+            }
+            try {
+                Completed completed = existing.done.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+                return replay(completed, endpoint, fingerprint);
+            } catch (TimeoutException e) {
+                return new Result(Outcome.IN_PROGRESS, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Result(Outcome.IN_PROGRESS, null);
+            } catch (ExecutionException e) {
+                // 第一次执行抛出了异常，它的条目已移除，重新竞争执行
+            }
+        }
+    }
+
+    private Result runFirst(Entry entry, String endpoint, String fingerprint, Supplier<Map<String, Object>> action) {
+        // 内存中没有这个键：可能在重启前或被淘汰前已处理过
+        IdempotencyRecord stored = loadStored(entry.key, entry.createdAt);
+        if (stored != null) {
+            Map<String, Object> response = parse(stored.getResponseJson());
+            if (response != null) {
+                entry.createdAt = stored.getCreatedAtMillis();
+                Completed completed = new Completed(stored.getEndpoint(), stored.getFingerprint(), response);
+                entry.done.complete(completed);
+                return replay(completed, endpoint, fingerprint);
+            }
+        }
+
+        Map<String, Object> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            entries.remove(entry.key, entry);
+            entry.done.completeExceptionally(e);
+            throw e;
+        }
+
+        Completed completed = new Completed(endpoint, fingerprint, response);
+        if (isServerError(response)) {
+            // 服务器错误不缓存，正在等待的重复请求拿到同一个结果，之后的重试重新执行
+            entries.remove(entry.key, entry);
+        } else {
+            persist(entry, completed);
+        }
+        entry.done.complete(completed);
+        return new Result(Outcome.EXECUTED, response);
+    }
+
+    private Result replay(Completed completed, String endpoint, String fingerprint) {
+        if (!completed.endpoint.equals(endpoint) || !completed.fingerprint.equals(fingerprint)) {
+            return new Result(Outcome.MISMATCH, null);
+        }
+        return new Result(Outcome.REPLAYED, completed.response);
+    }
+
+    // 超出容量时按写入顺序淘汰已完成的条目，顺带清理队首已过期的条目
+    private void evict(long now) {
+        int attempts = insertionOrder.size();
+        while (attempts-- > 0) {
+            Entry head = insertionOrder.peek();
+            if (head == null) {
+                return;
+            }
+            boolean overCapacity = entries.size() > maxEntries;
+            if (!overCapacity && !(head.done.isDone() && isExpired(head, now))) {
+                return;
+            }
+            insertionOrder.poll();
+            if (head.done.isDone()) {
+                entries.remove(head.key, head);
+            } else if (entries.get(head.key) == head) {
+                insertionOrder.add(head); // 仍在执行中的条目不淘汰，放回队尾
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt >= ttlMillis;
+    }
+
+    private static boolean isServerError(Map<String, Object> response) {
+        Object code = response != null ? response.get("code") : null;
+        return code instanceof Number && ((Number) code).intValue() >= 500;
+    }
+
+    // ================== 持久化 ==================
+
+    private IdempotencyRecord loadStored(String key, long now) {
+        if (dataStorage == null) {
+            return null;
+        }
+        IdempotencyRecord stored = dataStorage.loadIdempotencyRecord(key);
+        if (stored == null || now - stored.getCreatedAtMillis() >= ttlMillis) {
+            return null;
+        }
+        return stored;
+    }
+
+    private void persist(Entry entry, Completed completed) {
+        if (dataStorage == null) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(completed.response);
+        } catch (Exception e) {
+            System.err.println("序列化幂等响应失败: " + e.getMessage());
+            return;
+        }
+        dataStorage.saveIdempotencyRecord(new IdempotencyRecord(
+                entry.key, completed.endpoint, completed.fingerprint, json, entry.createdAt));
+        if (savesSincePurge.incrementAndGet() >= PURGE_EVERY_SAVES) {
+            savesSincePurge.set(0);
+            dataStorage.deleteIdempotencyRecordsBefore(System.currentTimeMillis() - ttlMillis);
+        }
+    }
+
+    private Map<String, Object> parse(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            System.err.println("解析幂等响应失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * 整个请求体的摘要：按属性名排序序列化后取 {@link #fingerprint(Object...)}，请求的任一字段不同摘要即不同
+     */
+    public static String fingerprintOf(Object request) {
+        try {
+            return fingerprint(FINGERPRINT_MAPPER.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法序列化请求: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 参数摘要（SHA-256 十六进制），用于识别同一个键被用于不同请求
+     */
+    public static String fingerprint(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            sb.append(part).append('\u0001');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.config.NodeRole;
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import com.cinema.storage.BookingJournal;
+import com.cinema.storage.DataStorage;
+import com.cinema.storage.DataStorageFactory;
+import com.cinema.storage.SimpleDatabaseConnection;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单预写日志的写入、重放和补写
+ * BookingService 写库前先把订单状态和这次变化的发件箱事件追加到 BookingJournal 并等待刷盘（组提交），写库成功后标记该记录已写库；
+ * 写库失败的记录留在日志中，由后台线程每 journal.ship-interval-ms 按序号顺序补写（事件随订单写入 outbox_events，由 OutboxRelay 发布），
+ * 期间新的订单变化只写日志（不再逐个等待数据库超时），
+ * 全部补写完成后恢复直接写库。启动时未写库的记录先重放到内存中的订单和座位，再由后台线程补写
+ * 只读副本不写库，也不写日志
+ */
+public class JournalShipper {
+    private static JournalShipper instance;
+
+    private final DataStorage dataStorage;
+    private final BookingJournal journal; // 未启用或无法打开时为 null
+    private final Path dir;
+    private final boolean fsync;
+    private final long shipIntervalMillis;
+    private final AtomicLong shippedTotal = new AtomicLong();
+    private final AtomicLong deferredTotal = new AtomicLong();
+    private final AtomicLong deferredUpTo = new AtomicLong(); // 交给补写的最大记录序号
+    private volatile boolean backlogged; // 有记录等待补写：新的订单变化只写日志
+    private volatile int replayed;
+    private volatile long lastShipAt;
+    private volatile long lastFailureAt;
+    private ScheduledExecutorService worker;
+
+    JournalShipper(DataStorage dataStorage, BookingJournal journal, Path dir, boolean fsync, long shipIntervalMillis) {
+        this.dataStorage = dataStorage;
+        this.journal = journal;
+        this.dir = dir;
+        this.fsync = fsync;
+        this.shipIntervalMillis = Math.max(10L, shipIntervalMillis);
+    }
+
+    private static JournalShipper fromConfig() {
+        DataStorage storage = null;
+        try {
+            storage = DataStorageFactory.create();
+        } catch (Exception e) {
+            System.err.println("✗ JournalShipper 无法使用MySQL，订单日志不可用: " + e.getMessage());
+        }
+        Path dir = Paths.get(AppConfig.get("journal.dir", "data/journal"));
+
+        BookingJournal opened = null;
+        // 内存存储（storage.type=memory）进程退出即丢失，日志没有可补写的对象
+        if (storage != null && DataStorageFactory.isDurable()
+                && AppConfig.getBoolean("journal.enabled", true) && !NodeRole.isReplica()) {
+            try {
+                opened = new BookingJournal(dir, AppConfig.getInt("journal.segment-kb", 1024) * 1024);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("✗ 打开订单日志失败，订单只直接写库: " + e.getMessage());
+            }
+        }
+        return new JournalShipper(storage, opened, dir, AppConfig.getBoolean("journal.fsync", true),
+                AppConfig.getLong("journal.ship-interval-ms", 1000L));
+    }
+
+    public static synchronized JournalShipper getInstance() {
+        if (instance == null) {
+            instance = fromConfig();
+        }
+        return instance;
+    }
+
+    // ================== 写入 ==================
+
+    /**
+     * 追加订单的当前状态和这次变化的发件箱事件并等待刷盘
+     * @return 记录序号；日志未启用或写日志失败时返回 -1（调用方应直接写库，写库也失败时订单只在内存中）
+     */
+    public long record(Order order, List<OutboxEvent> events) {
+        Long sequence = record(Collections.singletonMap(order, events)).get(order);
+        return sequence != null ? sequence : -1L;
+    }
+
+    /**
+     * 追加一批订单的当前状态和各自的发件箱事件，整批只等待一次刷盘
+     * @return 订单 → 记录序号，未写入日志的订单不在其中
+     */
+    public Map<Order, Long> record(Map<Order, List<OutboxEvent>> orders) {
+        Map<Order, Long> sequences = new LinkedHashMap<>();
+        if (journal == null) {
+            return sequences;
+        }
+        try {
+            long last = -1L;
+            for (Map.Entry<Order, List<OutboxEvent>> entry : orders.entrySet()) {
+                Order order = entry.getKey();
+                long sequence = journal.append(order, entry.getValue());
+                if (sequence > 0) {
+                    sequences.put(order, sequence);
+                    last = sequence;
+                }
+            }
+            if (fsync && last > 0) {
+                journal.awaitDurable(last);
+            }
+        } catch (IOException e) {
+            System.err.println("写入订单日志失败: " + e.getMessage());
+        }
+        return sequences;
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * 有记录等待补写时为 true：调用方不再直接写库，只写日志，保证同一订单的状态按顺序写入
+     */
+    public boolean isBacklogged() {
+        return journal != null && backlogged;
+    }
+
+    /**
+     * 记录对应的订单已直接写库
+     */
+    public void applied(long sequence) {
+        if (journal != null && sequence > 0) {
+            journal.markApplied(sequence);
+        }
+    }
+
+    /**
+     * 记录对应的订单没有写库（数据库不可用或正在补写），交给后台线程补写
+     */
+    public void deferred(long sequence) {
+        if (journal != null && sequence > 0) {
+            // 先记序号再置标记：补写线程清除标记后检查序号，不会漏掉补写过程中交来的记录
+            deferredUpTo.accumulateAndGet(sequence, Math::max);
+            backlogged = true;
+            deferredTotal.incrementAndGet();
+        }
+    }
+
+    // ================== 重放 ==================
+
+    /**
+     * 启动时把未写库的记录重放到已加载的订单：新订单加入 orders，已有订单版本更新时采用日志中的状态
+     * @return 新增或状态改变的订单（调用方按状态设置座位）
+     */
+    public List<Order> replay(Map<String, Order> orders) {
+        List<Order> changed = new ArrayList<>();
+        if (journal == null) {
+            return changed;
+        }
+        CinemaManager manager = CinemaManager.getInstance();
+        List<BookingJournal.Entry> pending = journal.readPending();
+        for (BookingJournal.Entry entry : pending) {
+            Order order = orders.get(entry.getOrderId());
+            if (order == null) {
+                order = toOrder(entry, manager);
+                if (order == null) {
+                    continue;
+                }
+                orders.put(order.getOrderId(), order);
+            } else if (order.restoreState(entry.getStatus(), entry.getVersion())) {
+                order.setLockTime(entry.getLockTime());
+            } else {
+                continue;
+            }
+            if (!changed.contains(order)) {
+                changed.add(order);
+            }
+        }
+        replayed = pending.size();
+        backlogged = !pending.isEmpty();
+        if (!pending.isEmpty()) {
+            System.out.println("✓ 订单日志中有 " + pending.size() + " 条未写库的记录，已重放 " + changed.size() + " 个订单，等待补写");
+        }
+        return changed;
+    }
+
+    // 按记录重建订单；场次、用户或座位已不存在时返回 null
+    private Order toOrder(BookingJournal.Entry entry, CinemaManager manager) {
+        Show show = manager.getShow(entry.getShowId());
+        User user = manager.getUser(entry.getUserId());
+        if (show == null || user == null) {
+            return null;
+        }
+        List<Seat> seats = new ArrayList<>(entry.getSeatCount());
+        for (int i = 0; i < entry.getSeatCount(); i++) {
+            Seat seat = show.getSeat(entry.getSeatRow(i), entry.getSeatCol(i));
+            if (seat == null) {
+                return null;
+            }
+            seats.add(seat);
+        }
+        Order order = new Order(entry.getOrderId(), show, seats, entry.getCreateTime(), entry.getStatus());
+        order.restoreState(entry.getStatus(), entry.getVersion());
+        order.setLockTime(entry.getLockTime());
+        order.setUser(user);
+        order.setPricingStrategy(entry.getPricingStrategy());
+        return order;
+    }
+
+    // ================== 补写 ==================
+
+    /**
+     * 按序号顺序把未写库的记录连同事件写入数据库（订单按版本号条件 upsert，已有更新状态的订单不受影响；
+     * 事件按 event_id 去重写入发件箱，重复补写不会重复发布）
+     * 写库失败时检查连接：数据库不可用则停止，等下次重试；数据库可用说明这条记录本身无法写入，跳过它
+     * @return 本次写入的记录数
+     */
+    public synchronized int ship() {
+        if (journal == null) {
+            return 0;
+        }
+        CinemaManager manager = CinemaManager.getInstance();
+        int shipped = 0;
+        // 追加和读取都在日志的锁内，不超过该序号的未写库记录都在本次读到的列表中
+        long covered = journal.getLastSequence();
+        for (BookingJournal.Entry entry : journal.readPending()) {
+            Order order = toOrder(entry, manager);
+            if (order == null) {
+                System.err.println("订单日志记录 " + entry.getSequence() + "（订单 " + entry.getOrderId() + "）的场次、用户或座位已不存在，跳过");
+            } else if (dataStorage.saveOrder(order, entry.getEvents())) {
+                shipped++;
+            } else if (SimpleDatabaseConnection.testConnection()) {
+                System.err.println("订单日志记录 " + entry.getSequence() + "（订单 " + entry.getOrderId() + "）无法写库，跳过");
+            } else {
+                lastFailureAt = System.currentTimeMillis();
+                shippedTotal.addAndGet(shipped);
+                return shipped;
+            }
+            journal.markApplied(entry.getSequence());
+        }
+        // 读取之后才交来补写的记录留到下一次：清除标记后再检查，期间 deferred 的记录要么序号已记下，要么会重新置标记
+        backlogged = false;
+        if (deferredUpTo.get() > covered) {
+            backlogged = true;
+        }
+        shippedTotal.addAndGet(shipped);
+        lastShipAt = System.currentTimeMillis();
+        journal.compact();
+        if (shipped > 0) {
+            OutboxRelay.getInstance().wakeUp();
+        }
+        return shipped;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", journal != null);
+        stats.put("dir", dir.toAbsolutePath().toString());
+        if (journal != null) {
+            stats.put("lastSequence", journal.getLastSequence());
+            stats.put("durableSequence", journal.getDurableSequence());
+            stats.put("segments", journal.getSegmentCount());
+            stats.put("pending", journal.readPending().size());
+        }
+        stats.put("fsync", fsync);
+        stats.put("backlogged", isBacklogged());
+        stats.put("replayed", replayed);
+        stats.put("deferredTotal", deferredTotal.get());
+        stats.put("shippedTotal", shippedTotal.get());
+        stats.put("lastShipAt", lastShipAt);
+        stats.put("lastFailureAt", lastFailureAt);
+        stats.put("running", worker != null);
+        return stats;
+    }
+
+    // ================== 后台线程 ==================
+
+    public synchronized void start() {
+        if (worker != null || journal == null) {
+            return;
+        }
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-shipper");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(this::shipSafely, 0, shipIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void shipSafely() {
+        try {
+            // 没有等待补写的记录时不扫描日志，只删除已全部写库的旧段
+            if (backlogged) {
+                ship();
+            } else {
+                journal.compact();
+            }
+        } catch (Exception e) {
+            System.err.println("补写订单日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止后台线程并把日志刷盘；未补写的记录下次启动时重放
+     */
+    public synchronized void shutdown() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+}
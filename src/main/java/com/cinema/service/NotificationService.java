@@ -1,12 +1,17 @@
 package com.cinema.service;
 
+import com.cinema.config.AppMetrics;
 import com.cinema.model.AppNotification; // 引入新模型
 import com.cinema.model.Order;
 import com.cinema.model.User;
+import io.micrometer.core.instrument.Counter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class NotificationService {
@@ -15,6 +20,21 @@ public class NotificationService {
     // 🔴 新增：用于存储用户通知 (UserId -> List<Notification>)
     private final Map<String, List<AppNotification>> userNotifications = new ConcurrentHashMap<>();
 
+    // 最近投递过的发件箱事件ID，发件箱至少投递一次，重复的事件在这里丢弃
+    private static final int MAX_DELIVERED_EVENT_IDS = 10000;
+    private final Set<String> deliveredEventIds = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_DELIVERED_EVENT_IDS;
+                }
+            }));
+
+    // 指标：按类型统计的通知发送量，以及发件箱重复投递被丢弃的次数
+    private static final Counter ORDER_UPDATES = AppMetrics.counter("cinema.notifications", "发送的通知数", "type", "order");
+    private static final Counter BROADCASTS = AppMetrics.counter("cinema.notifications", "发送的通知数", "type", "broadcast");
+    private static final Counter DUPLICATES = AppMetrics.counter("cinema.notifications.duplicates", "重复投递被丢弃的发件箱通知数");
+
     private NotificationService() {}
 
     public static synchronized NotificationService getInstance() {
@@ -29,6 +49,7 @@ public class NotificationService {
      */
     public void sendOrderUpdate(User user, Order order, String message) {
         if (user == null) return;
+        ORDER_UPDATES.increment();
 
         // 1. 控制台打印 (保留旧逻辑)
         System.out.println("\n========== [通知服务] ==========");
@@ -45,10 +66,27 @@ public class NotificationService {
         addNotification(user.getId(), notification);
     }
 
+    /**
+     * 投递发件箱中的订单通知；同一个 eventId 只投递一次
+     * @return 是否投递（重复事件返回 false）
+     */
+    public boolean deliverOrderUpdate(String eventId, User user, String message) {
+        if (user == null) {
+            return false;
+        }
+        if (!deliveredEventIds.add(eventId)) {
+            DUPLICATES.increment();
+            return false;
+        }
+        sendOrderUpdate(user, null, message);
+        return true;
+    }
+
     /**
      * 发送系统广播 (给所有用户发)
      */
     public void sendBroadcast(String message) {
+        BROADCASTS.increment();
         System.out.println("[系统广播] " + message);
         // 简单实现：这里暂时只存给管理员，实际应该遍历所有用户
         addNotification("ADMIN-001", new AppNotification("系统广播", message, "消息"));
@@ -0,0 +1,189 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.model.OutboxEvent;
+import com.cinema.storage.DataStorage;
+import com.cinema.storage.DataStorageFactory;
+import com.cinema.ws.SeatWebSocketServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发件箱中继
+ * 订单变化引起的座位推送和用户通知先与订单在同一事务中写入 outbox_events，由这里在提交后按批发布：
+ * 写库失败的变化先直接发布，事件随订单写入订单日志，由 JournalShipper 补写到 outbox_events 后再发布一次；
+ * 进程在发布前退出的事件重启后补发（至少一次，接收方按 eventId 去重）
+ * 每隔 outbox.poll-interval-ms 检查一次，订单事务提交后也会立即唤醒；同一批内同一场次的座位推送只发一次
+ */
+public class OutboxRelay {
+    private static OutboxRelay instance;
+    private static final int CLEANUP_EVERY_RUNS = 1000;
+
+    private final DataStorage dataStorage;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final int retentionHours;
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+    private final AtomicLong publishedTotal = new AtomicLong();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile long lastBatchLagMillis;  // 最近一批事件从提交到发布的最大延迟
+    private volatile long lastRunAt;
+    private ScheduledExecutorService worker;
+
+    private OutboxRelay() {
+        DataStorage storage = null;
+        try {
+            storage = DataStorageFactory.create();
+        } catch (Exception e) {
+            System.err.println("✗ OutboxRelay 无法使用MySQL，事件将直接发布: " + e.getMessage());
+        }
+        this.dataStorage = storage;
+        this.batchSize = Math.max(1, AppConfig.getInt("outbox.batch-size", 200));
+        this.pollIntervalMillis = Math.max(10L, AppConfig.getLong("outbox.poll-interval-ms", 1000L));
+        this.retentionHours = Math.max(1, AppConfig.getInt("outbox.retention-hours", 24));
+    }
+
+    public static synchronized OutboxRelay getInstance() {
+        if (instance == null) {
+            instance = new OutboxRelay();
+        }
+        return instance;
+    }
+
+    /**
+     * 订单事务提交后调用，尽快发布刚写入的事件
+     */
+    public void wakeUp() {
+        ScheduledExecutorService current = worker;
+        if (current != null && wakeScheduled.compareAndSet(false, true)) {
+            try {
+                current.execute(() -> {
+                    wakeScheduled.set(false);
+                    runSafely();
+                });
+            } catch (Exception e) {
+                wakeScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 没有数据库时（或只读副本）不经过发件箱，直接发布；写库失败时也先直接发布，补写后经发件箱重复发布的由接收方去重
+     */
+    public void publishNow(List<OutboxEvent> events) {
+        publish(events);
+    }
+
+    /**
+     * 发布一轮积压的事件，返回发布条数
+     */
+    public int relayOnce() {
+        if (dataStorage == null) {
+            return 0;
+        }
+        int published = 0;
+        while (true) {
+            List<OutboxEvent> events = dataStorage.loadUnpublishedOutboxEvents(batchSize);
+            if (events.isEmpty()) {
+                break;
+            }
+            publish(events);
+            List<Long> ids = new ArrayList<>(events.size());
+            long maxAge = 0;
+            for (OutboxEvent event : events) {
+                ids.add(event.getId());
+                maxAge = Math.max(maxAge, event.getAgeMillis());
+            }
+            // 标记前进程退出的事件会再发布一次，由接收方去重
+            dataStorage.markOutboxEventsPublished(ids);
+            lastBatchLagMillis = maxAge;
+            publishedTotal.addAndGet(events.size());
+            published += events.size();
+            if (events.size() < batchSize) {
+                break;
+            }
+        }
+        lastRunAt = System.currentTimeMillis();
+        if (runs.incrementAndGet() % CLEANUP_EVERY_RUNS == 0) {
+            dataStorage.deletePublishedOutboxEvents(retentionHours);
+        }
+        return published;
+    }
+
+    private void publish(List<OutboxEvent> events) {
+        Set<String> updatedShows = new LinkedHashSet<>();
+        NotificationService notificationService = NotificationService.getInstance();
+        for (OutboxEvent event : events) {
+            switch (event.getEventType()) {
+                case OutboxEvent.TYPE_SEAT_UPDATE:
+                    updatedShows.add(event.getShowId());
+                    break;
+                case OutboxEvent.TYPE_ORDER_NOTIFICATION:
+                    notificationService.deliverOrderUpdate(event.getEventId(),
+                            CinemaManager.getInstance().getUser(event.getUserId()), event.getMessage());
+                    break;
+                default:
+                    System.err.println("未知的发件箱事件类型: " + event.getEventType());
+            }
+        }
+        for (String showId : updatedShows) {
+            SeatWebSocketServer.fireUpdate(showId, "UPDATE");
+        }
+    }
+
+    /**
+     * 发件箱状态：积压条数、最早一条积压事件已等待的毫秒数（发布延迟）、累计发布条数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long[] backlog = dataStorage != null ? dataStorage.loadOutboxBacklog() : null;
+        stats.put("pending", backlog != null ? backlog[0] : 0L);
+        stats.put("oldestPendingAgeMillis", backlog != null ? backlog[1] : 0L);
+        stats.put("lastBatchLagMillis", lastBatchLagMillis);
+        stats.put("publishedTotal", publishedTotal.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("running", worker != null);
+        stats.put("storageAvailable", backlog != null);
+        return stats;
+    }
+
+    // ================== 后台线程 ==================
+
+    public synchronized void start() {
+        if (worker != null || dataStorage == null) {
+            return;
+        }
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+        // 启动后先补发上次退出前未发布的事件
+        worker.scheduleWithFixedDelay(this::runSafely, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runSafely() {
+        try {
+            relayOnce();
+        } catch (Exception e) {
+            System.err.println("发布发件箱事件失败: " + e.getMessage());
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+}
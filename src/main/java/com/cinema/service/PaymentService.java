@@ -0,0 +1,216 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.exception.InvalidBookingException;
+import com.cinema.exception.PaymentFailedException;
+import com.cinema.model.Order;
+import com.cinema.payment.PaymentConfirmation;
+import com.cinema.payment.PaymentGateway;
+import com.cinema.payment.PaymentRequest;
+import com.cinema.payment.SimulatedPaymentGateway;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付服务
+ * 发起支付时订单从 RESERVED 变为 PAYING 并立即返回，不占用请求线程等待网关；
+ * 网关回调放入队列，后台线程按批取出，交给 BookingService 一次性把成功的订单改为 PAID、失败的订单取消并释放座位
+ * 超过 payment.confirm-timeout-ms 仍没有回调的支付主动向网关对账；网关不认识该支付号，
+ * 或超过 payment.max-pending-ms 仍在处理的支付视为失败
+ */
+public class PaymentService {
+    private static PaymentService instance;
+
+    private volatile PaymentGateway gateway;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long confirmTimeoutMillis;
+    private final long maxPendingMillis;
+    private final BlockingQueue<PaymentConfirmation> confirmations = new LinkedBlockingQueue<>();
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService worker;
+
+    private static final class Pending {
+        final Order order;
+        final long startedAt;
+        volatile long lastQueryAt;
+
+        Pending(Order order, long startedAt) {
+            this.order = order;
+            this.startedAt = startedAt;
+            this.lastQueryAt = startedAt;
+        }
+    }
+
+    PaymentService(PaymentGateway gateway, int batchSize, long pollIntervalMillis, long confirmTimeoutMillis, long maxPendingMillis) {
+        this.gateway = gateway;
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMillis = Math.max(10L, pollIntervalMillis);
+        this.confirmTimeoutMillis = Math.max(1L, confirmTimeoutMillis);
+        this.maxPendingMillis = Math.max(this.confirmTimeoutMillis, maxPendingMillis);
+    }
+
+    public static synchronized PaymentService getInstance() {
+        if (instance == null) {
+            instance = new PaymentService(SimulatedPaymentGateway.fromConfig(),
+                    AppConfig.getInt("payment.batch-size", 100),
+                    AppConfig.getLong("payment.poll-interval-ms", 200L),
+                    AppConfig.getLong("payment.confirm-timeout-ms", 10000L),
+                    AppConfig.getLong("payment.max-pending-ms", 60000L));
+        }
+        return instance;
+    }
+
+    public PaymentGateway getGateway() {
+        return gateway;
+    }
+
+    /**
+     * 更换支付网关（新发起的支付生效，已发起的支付仍向新网关对账）
+     */
+    public void setGateway(PaymentGateway gateway) {
+        this.gateway = gateway;
+    }
+
+    // ================== 异步支付 ==================
+
+    /**
+     * 发起预订订单的支付，立即返回支付号；结果稍后由后台线程应用到订单
+     */
+    public String initiate(Order order) throws PaymentFailedException, InvalidBookingException {
+        BookingService.getInstance().beginPayment(order);
+        String paymentId = PaymentRequest.paymentIdOf(order.getOrderId());
+        pending.put(paymentId, new Pending(order, System.currentTimeMillis()));
+        gateway.charge(new PaymentRequest(paymentId, order.getOrderId(), order.getTotalAmount()), confirmations::offer);
+        return paymentId;
+    }
+
+    /**
+     * 重启后继续跟踪仍处于 PAYING 的订单：不重新扣款，到期后向网关对账
+     */
+    public void resume(Collection<Order> payingOrders) {
+        long now = System.currentTimeMillis();
+        for (Order order : payingOrders) {
+            pending.putIfAbsent(PaymentRequest.paymentIdOf(order.getOrderId()), new Pending(order, now));
+        }
+    }
+
+    /**
+     * 同步扣款（控制台等非 Web 场景）：等待回调，超时后向网关对账一次
+     */
+    public PaymentConfirmation chargeAndWait(Order order) {
+        String paymentId = PaymentRequest.paymentIdOf(order.getOrderId());
+        CompletableFuture<PaymentConfirmation> result = new CompletableFuture<>();
+        gateway.charge(new PaymentRequest(paymentId, order.getOrderId(), order.getTotalAmount()), result::complete);
+        try {
+            return result.get(maxPendingMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 回调超时或丢失，改为对账
+        }
+        return gateway.query(paymentId);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    // ================== 批量处理 ==================
+
+    /**
+     * 取出一批回调（不足一批时补上到期的对账结果），交给 BookingService 一次性应用
+     */
+    void processBatch(long now) {
+        List<PaymentConfirmation> batch = new ArrayList<>(batchSize);
+        confirmations.drainTo(batch, batchSize);
+        if (batch.size() < batchSize) {
+            reconcile(now, batch);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Order> paid = new ArrayList<>();
+        List<Order> failed = new ArrayList<>();
+        for (PaymentConfirmation confirmation : batch) {
+            Pending p = pending.remove(confirmation.getPaymentId());
+            if (p == null) {
+                // 重复或迟到的回调；支付已按超时处理却收到成功结果时需要人工退款
+                if (confirmation.getStatus() == PaymentConfirmation.Status.SUCCEEDED) {
+                    Order order = BookingService.getInstance().getOrder(confirmation.getOrderId());
+                    if (order != null && order.getStatus() != Order.OrderStatus.PAID) {
+                        System.err.println("支付 " + confirmation.getPaymentId() + " 在订单关闭后扣款成功，需要退款");
+                    }
+                }
+                continue;
+            }
+            if (confirmation.getStatus() == PaymentConfirmation.Status.SUCCEEDED) {
+                paid.add(p.order);
+            } else {
+                failed.add(p.order);
+            }
+        }
+        if (!paid.isEmpty() || !failed.isEmpty()) {
+            BookingService.getInstance().completePayments(paid, failed);
+        }
+    }
+
+    // 对超时未回调的支付向网关查询结果
+    private void reconcile(long now, List<PaymentConfirmation> batch) {
+        for (Pending p : pending.values()) {
+            if (batch.size() >= batchSize) {
+                return;
+            }
+            if (now - p.lastQueryAt < confirmTimeoutMillis) {
+                continue;
+            }
+            p.lastQueryAt = now;
+            String paymentId = PaymentRequest.paymentIdOf(p.order.getOrderId());
+            PaymentConfirmation result = gateway.query(paymentId);
+            if (result.isFinal()) {
+                batch.add(new PaymentConfirmation(paymentId, p.order.getOrderId(), result.getStatus(), result.getMessage()));
+            } else if (result.getStatus() == PaymentConfirmation.Status.UNKNOWN || now - p.startedAt >= maxPendingMillis) {
+                String reason = result.getStatus() == PaymentConfirmation.Status.UNKNOWN ? "支付网关无此支付记录" : "支付超时";
+                batch.add(new PaymentConfirmation(paymentId, p.order.getOrderId(), PaymentConfirmation.Status.FAILED, reason));
+            }
+        }
+    }
+
+    // ================== 后台线程 ==================
+
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-confirm");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(() -> {
+            try {
+                processBatch(System.currentTimeMillis());
+            } catch (Exception e) {
+                System.err.println("处理支付结果失败: " + e.getMessage());
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.cinema.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个放映厅的排片区间树
+ * 以开始时间为键的 AVL 树，每个节点额外记录子树内最大的结束时间，
+ * 查询与某时间段重叠的场次只需 O(log n + k)，插入和删除 O(log n)
+ * 时间单位为分钟，区间为左闭右开 [start, end)，end 已包含清场时间
+ */
+class RoomSchedule {
+
+    /**
+     * 一个场次占用放映厅的时间段
+     */
+    static final class Interval {
+        final String showId;
+        final long start;
+        final long end;
+
+        Interval(String showId, long start, long end) {
+            this.showId = showId;
+            this.start = start;
+            this.end = end;
+        }
+
+        int compareTo(long otherStart, String otherShowId) {
+            int byStart = Long.compare(start, otherStart);
+            return byStart != 0 ? byStart : showId.compareTo(otherShowId);
+        }
+    }
+
+    private static final class Node {
+        Interval interval;
+        Node left;
+        Node right;
+        int height = 1;
+        long maxEnd;
+
+        Node(Interval interval) {
+            this.interval = interval;
+            this.maxEnd = interval.end;
+        }
+    }
+
+    private Node root;
+    private final Map<String, Interval> byShowId = new HashMap<>();
+
+    synchronized int size() {
+        return byShowId.size();
+    }
+
+    synchronized Interval get(String showId) {
+        return byShowId.get(showId);
+    }
+
+    /**
+     * 插入场次；同一场次ID已存在时先移除旧区间
+     */
+    synchronized void put(Interval interval) {
+        remove(interval.showId);
+        root = insert(root, interval);
+        byShowId.put(interval.showId, interval);
+    }
+
+    synchronized boolean remove(String showId) {
+        Interval existing = byShowId.remove(showId);
+        if (existing == null) {
+            return false;
+        }
+        root = delete(root, existing);
+        return true;
+    }
+
+    /**
+     * 返回第一个与 [start, end) 重叠的区间（忽略 excludeShowId），没有则返回 null
+     */
+    synchronized Interval findOverlap(long start, long end, String excludeShowId) {
+        for (Interval interval : overlapping(start, end)) {
+            if (!interval.showId.equals(excludeShowId)) {
+                return interval;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按开始时间顺序返回与 [start, end) 重叠的全部区间
+     */
+    synchronized List<Interval> overlapping(long start, long end) {
+        List<Interval> result = new ArrayList<>();
+        collect(root, start, end, result);
+        return result;
+    }
+
+    private void collect(Node node, long start, long end, List<Interval> result) {
+        // 子树内所有区间都在查询起点之前结束，整棵子树跳过
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        collect(node.left, start, end, result);
+        if (node.interval.start < end) {
+            if (node.interval.end > start) {
+                result.add(node.interval);
+            }
+            // 右子树的开始时间都不早于当前节点，当前节点已在查询终点之后时右子树也不用看
+            collect(node.right, start, end, result);
+        }
+    }
+
+    // ================== AVL 维护 ==================
+
+    private Node insert(Node node, Interval interval) {
+        if (node == null) {
+            return new Node(interval);
+        }
+        if (node.interval.compareTo(interval.start, interval.showId) > 0) {
+            node.left = insert(node.left, interval);
+        } else {
+            node.right = insert(node.right, interval);
+        }
+        return rebalance(node);
+    }
+
+    private Node delete(Node node, Interval interval) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = node.interval.compareTo(interval.start, interval.showId);
+        if (cmp > 0) {
+            node.left = delete(node.left, interval);
+        } else if (cmp < 0) {
+            node.right = delete(node.right, interval);
+        } else {
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.interval = successor.interval;
+            node.right = delete(node.right, successor.interval);
+        }
+        return rebalance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.interval.end;
+        if (node.left != null) maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        if (node.right != null) maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        node.maxEnd = maxEnd;
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+}
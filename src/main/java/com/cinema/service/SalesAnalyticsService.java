@@ -0,0 +1,273 @@
+package com.cinema.service;
+
+import com.cinema.model.Order;
+import com.cinema.model.Show;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 实时销售统计服务
+ * 订单每次状态变化时，从旧状态的贡献中减去、再加上新状态的贡献，按电影、场次、放映厅、销售日、定价策略
+ * 以及按小时的时间桶累计收入、票数、退款；计数器使用 LongAdder，高并发下单时互不争用
+ * 启动时由 BookingService 用已加载的订单重建，查询只遍历聚合项，与订单数量无关
+ * 销售日和小时桶按订单的下单时间归属（同批订单的后续结果）：之后的支付、退款都计入下单时所在的桶，
+ * 因此退款会改变过去某个小时/某天的退款额和净收入，而不计入退款发生的那个小时。
+ * 订单不记录退款时间，重启重建时也无法按退款时间归属；按下单时间归属保证重启前后的时间序列一致
+ */
+public class SalesAnalyticsService {
+    private static SalesAnalyticsService instance;
+    private static final String UNKNOWN = "未知";
+
+    private final Aggregate totals = new Aggregate("total", "全部");
+    private final ConcurrentMap<String, Aggregate> byMovie = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Aggregate> byShow = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Aggregate> byRoom = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Aggregate> byDay = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Aggregate> byStrategy = new ConcurrentHashMap<>();
+    // 按小时的时间桶，键为整点时间
+    private final ConcurrentSkipListMap<LocalDateTime, Aggregate> hourlyBuckets = new ConcurrentSkipListMap<>();
+
+    private SalesAnalyticsService() {
+    }
+
+    public static synchronized SalesAnalyticsService getInstance() {
+        if (instance == null) {
+            instance = new SalesAnalyticsService();
+        }
+        return instance;
+    }
+
+    // ================== 增量更新 ==================
+
+    /**
+     * 记录一次订单状态变化；新建订单的 oldStatus 为 null
+     */
+    public void recordTransition(Order order, Order.OrderStatus oldStatus, Order.OrderStatus newStatus) {
+        if (order == null || order.getShow() == null || oldStatus == newStatus) {
+            return;
+        }
+        for (Aggregate aggregate : aggregatesFor(order)) {
+            aggregate.apply(order, oldStatus, -1);
+            aggregate.apply(order, newStatus, 1);
+        }
+    }
+
+    /**
+     * 登记场次座位容量，用于计算电影、放映厅、场次的上座率
+     */
+    public void registerShow(Show show) {
+        adjustCapacity(show, 1);
+    }
+
+    public void unregisterShow(Show show) {
+        adjustCapacity(show, -1);
+    }
+
+    private void adjustCapacity(Show show, int sign) {
+        if (show == null) {
+            return;
+        }
+        long seats = (long) show.getTotalSeats() * sign;
+        aggregate(byShow, show.getId(), showLabel(show)).capacity.add(seats);
+        aggregate(byMovie, show.getMovieId(), show.getMovieTitle()).capacity.add(seats);
+        aggregate(byRoom, show.getScreeningRoomId(), show.getScreeningRoomName()).capacity.add(seats);
+        totals.capacity.add(seats);
+    }
+
+    /**
+     * 用全部场次和历史订单重建统计
+     */
+    public synchronized void rebuild(Collection<Show> shows, Collection<Order> orders) {
+        totals.reset();
+        byMovie.clear();
+        byShow.clear();
+        byRoom.clear();
+        byDay.clear();
+        byStrategy.clear();
+        hourlyBuckets.clear();
+        for (Show show : shows) {
+            registerShow(show);
+        }
+        for (Order order : orders) {
+            recordTransition(order, null, order.getStatus());
+        }
+    }
+
+    private List<Aggregate> aggregatesFor(Order order) {
+        Show show = order.getShow();
+        LocalDateTime time = order.getCreateTime() != null ? order.getCreateTime() : LocalDateTime.now();
+        LocalDate day = time.toLocalDate();
+        LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+        String strategy = order.getPricingStrategy() != null ? order.getPricingStrategy() : UNKNOWN;
+
+        List<Aggregate> aggregates = new ArrayList<>(7);
+        aggregates.add(totals);
+        aggregates.add(aggregate(byMovie, show.getMovieId(), show.getMovieTitle()));
+        aggregates.add(aggregate(byShow, show.getId(), showLabel(show)));
+        aggregates.add(aggregate(byRoom, show.getScreeningRoomId(), show.getScreeningRoomName()));
+        aggregates.add(aggregate(byDay, day.toString(), day.toString()));
+        aggregates.add(aggregate(byStrategy, strategy, strategy));
+        aggregates.add(hourlyBuckets.computeIfAbsent(hour, h -> new Aggregate(h.toString(), h.toString())));
+        return aggregates;
+    }
+
+    private static Aggregate aggregate(ConcurrentMap<String, Aggregate> map, String key, String label) {
+        return map.computeIfAbsent(key, k -> new Aggregate(k, label));
+    }
+
+    private static String showLabel(Show show) {
+        return show.getMovieTitle() + " " + show.getStartTime();
+    }
+
+    // ================== 查询 ==================
+
+    /**
+     * 统计面板：总计、各维度汇总和最近 buckets 个小时的时间序列
+     */
+    public Map<String, Object> getDashboard(int buckets) {
+        Map<String, Object> dashboard = new HashMap<>();
+        dashboard.put("totals", totals.toMap());
+        dashboard.put("byMovie", toList(byMovie));
+        dashboard.put("byShow", toList(byShow));
+        dashboard.put("byRoom", toList(byRoom));
+        dashboard.put("byDay", toList(byDay));
+        dashboard.put("byStrategy", toList(byStrategy));
+        dashboard.put("hourly", getHourlySeries(buckets));
+        // byDay 和 hourly 的时间依据：订单下单时间（退款计入下单时所在的桶）
+        dashboard.put("timeBasis", "orderCreateTime");
+        return dashboard;
+    }
+
+    /**
+     * 最近 buckets 个小时的时间序列，没有订单的小时补零
+     * 每个桶是该小时内下单的订单的当前状态汇总，其中的订单之后退款时该桶的 refunds 增加、netRevenue 减少
+     */
+    public List<Map<String, Object>> getHourlySeries(int buckets) {
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        List<Map<String, Object>> series = new ArrayList<>(buckets);
+        for (int i = buckets - 1; i >= 0; i--) {
+            LocalDateTime hour = end.minusHours(i);
+            Aggregate bucket = hourlyBuckets.get(hour);
+            series.add(bucket != null ? bucket.toMap() : new Aggregate(hour.toString(), hour.toString()).toMap());
+        }
+        return series;
+    }
+
+    public Map<String, Object> getTotals() {
+        return totals.toMap();
+    }
+
+    /**
+     * 单个场次的销售统计，没有记录时返回 null
+     */
+    public Map<String, Object> getShowStats(String showId) {
+        Aggregate aggregate = byShow.get(showId);
+        return aggregate != null ? aggregate.toMap() : null;
+    }
+
+    private static List<Map<String, Object>> toList(Map<String, Aggregate> map) {
+        List<Map<String, Object>> list = new ArrayList<>(map.size());
+        for (Aggregate aggregate : map.values()) {
+            list.add(aggregate.toMap());
+        }
+        return list;
+    }
+
+    /**
+     * 一个维度取值上的累计计数，金额以分为单位
+     */
+    private static final class Aggregate {
+        private final String key;
+        private final String label;
+        private final LongAdder revenueCents = new LongAdder();  // 累计支付金额（含之后退款的）
+        private final LongAdder refundCents = new LongAdder();
+        private final LongAdder ticketsSold = new LongAdder();   // 当前有效（已支付未退）的票数
+        private final LongAdder ticketsRefunded = new LongAdder();
+        private final LongAdder paidOrders = new LongAdder();
+        private final LongAdder refundedOrders = new LongAdder();
+        private final LongAdder pendingOrders = new LongAdder();
+        private final LongAdder cancelledOrders = new LongAdder();
+        private final LongAdder capacity = new LongAdder();
+
+        Aggregate(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+
+        // 加上 (sign=1) 或减去 (sign=-1) 某个状态的订单对统计的贡献
+        void apply(Order order, Order.OrderStatus status, int sign) {
+            if (status == null) {
+                return;
+            }
+            long cents = Math.round(order.getTotalAmount() * 100) * sign;
+            long tickets = (long) order.getSeatCount() * sign;
+            switch (status) {
+                case PAID:
+                    paidOrders.add(sign);
+                    revenueCents.add(cents);
+                    ticketsSold.add(tickets);
+                    break;
+                case REFUNDED:
+                    refundedOrders.add(sign);
+                    revenueCents.add(cents);
+                    refundCents.add(cents);
+                    ticketsRefunded.add(tickets);
+                    break;
+                case PENDING:
+                case RESERVED:
+                case PAYING:
+                    pendingOrders.add(sign);
+                    break;
+                default:
+                    cancelledOrders.add(sign);
+            }
+        }
+
+        void reset() {
+            revenueCents.reset();
+            refundCents.reset();
+            ticketsSold.reset();
+            ticketsRefunded.reset();
+            paidOrders.reset();
+            refundedOrders.reset();
+            pendingOrders.reset();
+            cancelledOrders.reset();
+            capacity.reset();
+        }
+
+        Map<String, Object> toMap() {
+            long revenue = revenueCents.sum();
+            long refunds = refundCents.sum();
+            long sold = ticketsSold.sum();
+            long seats = capacity.sum();
+            Map<String, Object> map = new HashMap<>();
+            map.put("key", key);
+            map.put("label", label);
+            map.put("revenue", revenue / 100.0);
+            map.put("refunds", refunds / 100.0);
+            map.put("netRevenue", (revenue - refunds) / 100.0);
+            map.put("ticketsSold", sold);
+            map.put("ticketsRefunded", ticketsRefunded.sum());
+            map.put("paidOrders", paidOrders.sum());
+            map.put("refundedOrders", refundedOrders.sum());
+            map.put("pendingOrders", pendingOrders.sum());
+            map.put("cancelledOrders", cancelledOrders.sum());
+            if (seats > 0) {
+                map.put("capacity", seats);
+                map.put("occupancyPercent", Math.round(sold * 1000.0 / seats) / 10.0);
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.cinema.service;
+
+import com.cinema.exception.ScheduleConflictException;
+import com.cinema.model.Movie;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * 批量排片导入服务
+ * 支持 JSON（场次数组，或 {"shows": [...]}）和 CSV（表头 movieId,roomId,startTime,price[,id]）两种格式，
+ * 所有行并行校验（影片和放映厅是否存在、时间和票价、与已有排片及同批场次是否冲突），
+ * 通过后交给 CinemaManager.addShows 用一个事务写入，错误按行号返回
+ * atomic 为 true 时任一行有错整批不导入，为 false 时只导入校验通过的行
+ */
+public class ScheduleImportService {
+    private static ScheduleImportService instance;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CinemaManager cinemaManager;
+    private final ScheduleService scheduleService;
+
+    /**
+     * 一行排片数据；时间格式 "yyyy-MM-dd HH:mm" 或 ISO 格式，id 为空时自动生成
+     */
+    public static class Entry {
+        public String id;
+        public String movieId;
+        public String roomId;
+        public String startTime;
+        public Double price;
+    }
+
+    private ScheduleImportService() {
+        this.cinemaManager = CinemaManager.getInstance();
+        this.scheduleService = ScheduleService.getInstance();
+    }
+
+    public static synchronized ScheduleImportService getInstance() {
+        if (instance == null) {
+            instance = new ScheduleImportService();
+        }
+        return instance;
+    }
+
+    // ================== 入口 ==================
+
+    public Map<String, Object> importJson(String json, boolean atomic) {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            JsonNode root = objectMapper.readTree(json);
+            JsonNode list = root != null && root.isObject() ? root.get("shows") : root;
+            if (list == null || !list.isArray()) {
+                return failedReport("JSON 须为场次数组或包含 shows 数组的对象");
+            }
+            for (JsonNode node : list) {
+                entries.add(objectMapper.treeToValue(node, Entry.class));
+            }
+        } catch (IOException e) {
+            return failedReport("JSON 解析失败: " + e.getMessage());
+        }
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 1; i <= entries.size(); i++) {
+            rows.add(i);
+        }
+        return importEntries(entries, rows, new TreeMap<>(), atomic);
+    }
+
+    /**
+     * CSV 第一行为表头，列顺序不限；空行和以 # 开头的行跳过；错误行号按文件行号计
+     */
+    public Map<String, Object> importCsv(String csv, boolean atomic) {
+        List<Entry> entries = new ArrayList<>();
+        List<Integer> rows = new ArrayList<>();
+        Map<Integer, String> errors = new TreeMap<>();
+        Map<String, Integer> columns = null;
+
+        String[] lines = csv == null ? new String[0] : csv.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] cells = line.split(",", -1);
+            if (columns == null) {
+                columns = new HashMap<>();
+                for (int c = 0; c < cells.length; c++) {
+                    columns.put(cells[c].trim().toLowerCase(Locale.ROOT), c);
+                }
+                if (!columns.containsKey("movieid") || !columns.containsKey("roomid")
+                        || !columns.containsKey("starttime") || !columns.containsKey("price")) {
+                    return failedReport("CSV 表头须包含 movieId,roomId,startTime,price");
+                }
+                continue;
+            }
+            if (cells.length < columns.size()) {
+                errors.put(i + 1, "列数不足，应为 " + columns.size() + " 列");
+                continue;
+            }
+            Entry entry = new Entry();
+            entry.id = cell(cells, columns.get("id"));
+            entry.movieId = cell(cells, columns.get("movieid"));
+            entry.roomId = cell(cells, columns.get("roomid"));
+            entry.startTime = cell(cells, columns.get("starttime"));
+            String price = cell(cells, columns.get("price"));
+            try {
+                entry.price = price != null ? Double.valueOf(price) : null;
+            } catch (NumberFormatException e) {
+                errors.put(i + 1, "票价格式错误: " + price);
+                continue;
+            }
+            entries.add(entry);
+            rows.add(i + 1);
+        }
+        if (columns == null) {
+            return failedReport("CSV 内容为空");
+        }
+        return importEntries(entries, rows, errors, atomic);
+    }
+
+    private static String cell(String[] cells, Integer index) {
+        if (index == null) {
+            return null;
+        }
+        String value = cells[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // ================== 校验与写入 ==================
+
+    private Map<String, Object> importEntries(List<Entry> entries, List<Integer> rows,
+                                              Map<Integer, String> errors, boolean atomic) {
+        long begin = System.nanoTime();
+        int size = entries.size();
+        int total = size + errors.size();
+        Show[] shows = new Show[size];
+        String[] rowErrors = new String[size];
+
+        // 逐行校验并构建场次（含座位初始化）互不依赖，并行处理
+        String idPrefix = "SHOW-" + System.currentTimeMillis() + "-";
+        LocalDateTime now = LocalDateTime.now();
+        IntStream.range(0, size).parallel().forEach(i -> {
+            try {
+                shows[i] = buildShow(entries.get(i), idPrefix + (i + 1), now);
+                rowErrors[i] = scheduleService.findConflict(shows[i]);
+            } catch (IllegalArgumentException e) {
+                rowErrors[i] = e.getMessage();
+            }
+        });
+
+        // 同批内场次ID重复和同厅时间重叠
+        Set<String> seenIds = new HashSet<>();
+        Map<String, Integer> indexById = new HashMap<>();
+        List<Show> candidates = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (rowErrors[i] == null && !seenIds.add(shows[i].getId())) {
+                rowErrors[i] = "场次ID在本批中重复: " + shows[i].getId();
+            }
+            if (rowErrors[i] == null) {
+                indexById.put(shows[i].getId(), i);
+                candidates.add(shows[i]);
+            }
+        }
+        scheduleService.findBatchConflicts(candidates).forEach((showId, message) ->
+                rowErrors[indexById.get(showId)] = message);
+
+        List<Show> valid = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (rowErrors[i] != null) {
+                errors.put(rows.get(i), rowErrors[i]);
+            } else {
+                valid.add(shows[i]);
+            }
+        }
+
+        boolean imported = !valid.isEmpty() && (errors.isEmpty() || !atomic);
+        String batchError = null;
+        if (imported) {
+            try {
+                cinemaManager.addShows(valid);
+            } catch (ScheduleConflictException | IllegalStateException e) {
+                // 校验后到写入前有其他排片抢占了时段，或数据库写入失败，整批未导入
+                batchError = e.getMessage();
+                imported = false;
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("total", total);
+        report.put("imported", imported ? valid.size() : 0);
+        report.put("failed", errors.size());
+        report.put("atomic", atomic);
+        report.put("elapsedMillis", (System.nanoTime() - begin) / 1_000_000);
+        if (batchError != null) {
+            report.put("batchError", batchError);
+        }
+        report.put("errors", toErrorList(errors));
+        List<String> showIds = new ArrayList<>();
+        if (imported) {
+            valid.forEach(show -> showIds.add(show.getId()));
+        }
+        report.put("showIds", showIds);
+        return report;
+    }
+
+    private Show buildShow(Entry entry, String generatedId, LocalDateTime now) {
+        if (entry == null || entry.movieId == null || entry.roomId == null || entry.startTime == null) {
+            throw new IllegalArgumentException("movieId、roomId、startTime 均不能为空");
+        }
+        Movie movie = cinemaManager.getMovie(entry.movieId);
+        if (movie == null) {
+            throw new IllegalArgumentException("电影不存在: " + entry.movieId);
+        }
+        ScreeningRoom room = cinemaManager.getScreeningRoom(entry.roomId);
+        if (room == null) {
+            throw new IllegalArgumentException("放映厅不存在: " + entry.roomId);
+        }
+        if (entry.price == null || entry.price <= 0) {
+            throw new IllegalArgumentException("票价必须大于0");
+        }
+        LocalDateTime start;
+        try {
+            start = LocalDateTime.parse(entry.startTime.trim().replace(" ", "T"));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("时间格式错误: " + entry.startTime);
+        }
+        if (!start.isAfter(now)) {
+            throw new IllegalArgumentException("开场时间已过: " + entry.startTime);
+        }
+        String id = entry.id != null && !entry.id.trim().isEmpty() ? entry.id.trim() : generatedId;
+        if (cinemaManager.getShow(id) != null) {
+            throw new IllegalArgumentException("场次ID已存在: " + id);
+        }
+        return new Show(id, movie, room, start, entry.price);
+    }
+
+    private static Map<String, Object> failedReport(String message) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("total", 0);
+        report.put("imported", 0);
+        report.put("failed", 0);
+        report.put("elapsedMillis", 0L);
+        report.put("batchError", message);
+        report.put("errors", new ArrayList<Map<String, Object>>());
+        report.put("showIds", new ArrayList<String>());
+        return report;
+    }
+
+    private static List<Map<String, Object>> toErrorList(Map<Integer, String> errors) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        errors.forEach((row, message) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("row", row);
+            item.put("message", message);
+            list.add(item);
+        });
+        return list;
+    }
+}
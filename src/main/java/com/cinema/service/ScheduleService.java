@@ -0,0 +1,257 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.exception.ScheduleConflictException;
+import com.cinema.model.Show;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * 排片服务
+ * 为每个放映厅维护一棵排片区间树（场次开始时间 ~ 结束时间 + 清场时间），
+ * 新增场次时检查同厅重叠，并提供空闲时段查询和放映厅日程
+ * 清场时间由 schedule.cleaning-buffer-minutes 配置，营业时间由 schedule.open-hour / schedule.close-hour 配置
+ */
+public class ScheduleService {
+    private static ScheduleService instance;
+
+    private final ConcurrentMap<String, RoomSchedule> schedules = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> roomByShowId = new ConcurrentHashMap<>();
+    private final int cleaningBufferMinutes;
+    private final int openHour;
+    private final int closeHour;
+
+    private ScheduleService() {
+        this.cleaningBufferMinutes = AppConfig.getInt("schedule.cleaning-buffer-minutes", 15);
+        this.openHour = AppConfig.getInt("schedule.open-hour", 9);
+        this.closeHour = AppConfig.getInt("schedule.close-hour", 24);
+    }
+
+    public static synchronized ScheduleService getInstance() {
+        if (instance == null) {
+            instance = new ScheduleService();
+        }
+        return instance;
+    }
+
+    public int getCleaningBufferMinutes() {
+        return cleaningBufferMinutes;
+    }
+
+    // ================== 维护 ==================
+
+    /**
+     * 为新场次占用放映厅时段，与同厅其他场次（含清场时间）重叠时抛出 ScheduleConflictException
+     * 同一场次ID重复添加视为修改，不与自身冲突
+     */
+    public void reserve(Show show) {
+        String roomId = show.getScreeningRoomId();
+        RoomSchedule schedule = schedules.computeIfAbsent(roomId, k -> new RoomSchedule());
+        RoomSchedule.Interval interval = toInterval(show);
+        synchronized (schedule) {
+            RoomSchedule.Interval conflict = schedule.findOverlap(interval.start, interval.end, show.getId());
+            if (conflict != null) {
+                throw new ScheduleConflictException(roomId, conflict.showId,
+                        describeConflict(show, conflict.showId, conflict.start, conflict.end));
+            }
+            index(show);
+        }
+    }
+
+    /**
+     * 批量占用放映厅时段：涉及的放映厅按ID顺序逐个加锁后统一复查并登记，
+     * 任一场次冲突时已登记的场次全部撤销并抛出 ScheduleConflictException
+     */
+    public void reserveAll(List<Show> shows) {
+        List<RoomSchedule> locked = new ArrayList<>();
+        new TreeSet<>(shows.stream().map(Show::getScreeningRoomId).collect(Collectors.toSet()))
+                .forEach(roomId -> locked.add(schedules.computeIfAbsent(roomId, k -> new RoomSchedule())));
+        runLocked(locked, 0, () -> {
+            List<Show> reserved = new ArrayList<>();
+            for (Show show : shows) {
+                RoomSchedule.Interval interval = toInterval(show);
+                RoomSchedule.Interval conflict = schedules.get(show.getScreeningRoomId())
+                        .findOverlap(interval.start, interval.end, show.getId());
+                if (conflict != null) {
+                    reserved.forEach(s -> release(s.getId()));
+                    throw new ScheduleConflictException(show.getScreeningRoomId(), conflict.showId,
+                            describeConflict(show, conflict.showId, conflict.start, conflict.end));
+                }
+                index(show);
+                reserved.add(show);
+            }
+        });
+    }
+
+    private void runLocked(List<RoomSchedule> locks, int i, Runnable action) {
+        if (i == locks.size()) {
+            action.run();
+            return;
+        }
+        synchronized (locks.get(i)) {
+            runLocked(locks, i + 1, action);
+        }
+    }
+
+    /**
+     * 检查场次与同厅已登记场次（不含自身）是否重叠，返回冲突说明，没有冲突返回 null
+     * 只读查询，可并发调用
+     */
+    public String findConflict(Show show) {
+        RoomSchedule schedule = schedules.get(show.getScreeningRoomId());
+        if (schedule == null) {
+            return null;
+        }
+        RoomSchedule.Interval interval = toInterval(show);
+        RoomSchedule.Interval conflict = schedule.findOverlap(interval.start, interval.end, show.getId());
+        return conflict == null ? null : describeConflict(show, conflict.showId, conflict.start, conflict.end);
+    }
+
+    /**
+     * 检查一批新场次之间的同厅重叠：按放映厅分组并行处理，组内按开场时间排序后一趟扫描
+     * 返回 场次ID -> 冲突说明，每对重叠只记在开场较晚的场次上
+     */
+    public Map<String, String> findBatchConflicts(List<Show> shows) {
+        Map<String, String> conflicts = new ConcurrentHashMap<>();
+        shows.stream()
+                .collect(Collectors.groupingBy(Show::getScreeningRoomId))
+                .values()
+                .parallelStream()
+                .forEach(roomShows -> {
+                    List<Show> sorted = new ArrayList<>(roomShows);
+                    sorted.sort(Comparator.comparing(Show::getStartTime));
+                    RoomSchedule.Interval latest = null;
+                    for (Show show : sorted) {
+                        RoomSchedule.Interval interval = toInterval(show);
+                        if (latest != null && interval.start < latest.end) {
+                            conflicts.put(show.getId(), describeConflict(show, latest.showId, latest.start, latest.end));
+                        }
+                        if (latest == null || interval.end > latest.end) {
+                            latest = interval;
+                        }
+                    }
+                });
+        return conflicts;
+    }
+
+    private String describeConflict(Show show, String otherShowId, long otherStart, long otherEnd) {
+        return "放映厅 " + show.getScreeningRoomName() + " 在 " + show.getStartTime()
+                + " 已有场次 " + otherShowId + "（" + toDateTime(otherStart)
+                + " ~ " + toDateTime(otherEnd) + "，含清场时间）";
+    }
+
+    /**
+     * 登记场次但不检查冲突，用于加载已有数据和应用主节点同步来的变更
+     */
+    public void index(Show show) {
+        String previousRoom = roomByShowId.put(show.getId(), show.getScreeningRoomId());
+        if (previousRoom != null && !previousRoom.equals(show.getScreeningRoomId())) {
+            RoomSchedule previous = schedules.get(previousRoom);
+            if (previous != null) {
+                previous.remove(show.getId());
+            }
+        }
+        schedules.computeIfAbsent(show.getScreeningRoomId(), k -> new RoomSchedule()).put(toInterval(show));
+    }
+
+    public void release(String showId) {
+        String roomId = roomByShowId.remove(showId);
+        RoomSchedule schedule = roomId != null ? schedules.get(roomId) : null;
+        if (schedule != null) {
+            schedule.remove(showId);
+        }
+    }
+
+    public void rebuild(Collection<Show> shows) {
+        schedules.clear();
+        roomByShowId.clear();
+        for (Show show : shows) {
+            index(show);
+        }
+    }
+
+    // ================== 查询 ==================
+
+    /**
+     * 放映厅某天的日程：当天占用该厅的全部场次，按开场时间排序（含清场结束时间）
+     */
+    public List<Map<String, Object>> getTimeline(String roomId, LocalDate date, Map<String, Show> showsById) {
+        List<Map<String, Object>> timeline = new ArrayList<>();
+        long dayStart = toMinutes(date.atStartOfDay());
+        for (RoomSchedule.Interval interval : intervalsBetween(roomId, dayStart, dayStart + 24 * 60)) {
+            Show show = showsById.get(interval.showId);
+            Map<String, Object> item = new HashMap<>();
+            item.put("showId", interval.showId);
+            item.put("movieTitle", show != null ? show.getMovieTitle() : "未知电影");
+            item.put("startTime", toDateTime(interval.start).toString());
+            item.put("endTime", toDateTime(interval.end - cleaningBufferMinutes).toString());
+            item.put("cleanUntil", toDateTime(interval.end).toString());
+            timeline.add(item);
+        }
+        return timeline;
+    }
+
+    /**
+     * 某天放映厅中能放下一部 durationMinutes 分钟影片（及其清场时间）的空闲时段
+     * 每个时段给出最早和最晚可开场时间；影片须在营业时间内开场并放映结束
+     */
+    public List<Map<String, Object>> findFreeSlots(String roomId, LocalDate date, int durationMinutes) {
+        long open = toMinutes(date.atStartOfDay().plusHours(openHour));
+        long close = toMinutes(date.atStartOfDay().plusHours(closeHour));
+        List<Map<String, Object>> slots = new ArrayList<>();
+
+        long cursor = open;
+        for (RoomSchedule.Interval interval : intervalsBetween(roomId, open, close)) {
+            addSlot(slots, cursor, Math.min(interval.start - cleaningBufferMinutes, close) - durationMinutes);
+            cursor = Math.max(cursor, interval.end);
+        }
+        addSlot(slots, cursor, close - durationMinutes);
+        return slots;
+    }
+
+    private void addSlot(List<Map<String, Object>> slots, long earliestStart, long latestStart) {
+        if (earliestStart > latestStart) {
+            return;
+        }
+        Map<String, Object> slot = new HashMap<>();
+        slot.put("earliestStart", toDateTime(earliestStart).toString());
+        slot.put("latestStart", toDateTime(latestStart).toString());
+        slot.put("freeMinutes", latestStart - earliestStart);
+        slots.add(slot);
+    }
+
+    private List<RoomSchedule.Interval> intervalsBetween(String roomId, long from, long to) {
+        RoomSchedule schedule = schedules.get(roomId);
+        if (schedule == null) {
+            return new ArrayList<>();
+        }
+        return schedule.overlapping(from, to);
+    }
+
+    private RoomSchedule.Interval toInterval(Show show) {
+        long start = toMinutes(show.getStartTime());
+        int duration = show.getMovie() != null ? show.getMovie().getDuration() : 0;
+        return new RoomSchedule.Interval(show.getId(), start, start + duration + cleaningBufferMinutes);
+    }
+
+    // 时间只用于比较先后，统一按 UTC 换算为分钟
+    private static long toMinutes(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static LocalDateTime toDateTime(long minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+}
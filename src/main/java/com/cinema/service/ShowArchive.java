@@ -0,0 +1,119 @@
+package com.cinema.service;
+
+import com.cinema.model.Show;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 已结束场次的归档
+ * 场次散场后从活动场次中移出并释放座位状态，按开场时间倒序保存，供历史场次分页查询；
+ * 订单仍能按场次ID找到归档的场次
+ */
+class ShowArchive {
+    private static final Comparator<Show> NEWEST_FIRST =
+            Comparator.comparing(Show::getStartTime).reversed().thenComparing(Show::getId);
+
+    private final ConcurrentMap<String, Show> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Show> all = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+    private final ConcurrentMap<String, ConcurrentSkipListSet<Show>> byMovie = new ConcurrentHashMap<>();
+
+    void add(Show show) {
+        if (byId.putIfAbsent(show.getId(), show) == null) {
+            all.add(show);
+            byMovie.computeIfAbsent(show.getMovieId(), k -> new ConcurrentSkipListSet<>(NEWEST_FIRST)).add(show);
+        }
+    }
+
+    Show get(String showId) {
+        return byId.get(showId);
+    }
+
+    Show remove(String showId) {
+        Show show = byId.remove(showId);
+        if (show != null) {
+            all.remove(show);
+            ConcurrentSkipListSet<Show> movieShows = byMovie.get(show.getMovieId());
+            if (movieShows != null) {
+                movieShows.remove(show);
+            }
+        }
+        return show;
+    }
+
+    List<Show> removeByMovie(String movieId) {
+        ConcurrentSkipListSet<Show> movieShows = byMovie.remove(movieId);
+        List<Show> removed = new ArrayList<>();
+        if (movieShows != null) {
+            for (Show show : movieShows) {
+                if (byId.remove(show.getId()) != null) {
+                    all.remove(show);
+                    removed.add(show);
+                }
+            }
+        }
+        return removed;
+    }
+
+    Collection<Show> values() {
+        return byId.values();
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * 按开场时间倒序分页，movieId 为空时查询全部电影
+     */
+    Map<String, Object> page(String movieId, int page, int size) {
+        Collection<Show> source = movieId == null || movieId.isEmpty()
+                ? all : byMovie.getOrDefault(movieId, new ConcurrentSkipListSet<>(NEWEST_FIRST));
+        List<Map<String, Object>> items = new ArrayList<>(size);
+        int skip = page * size;
+        int total = 0;
+        for (Show show : source) {
+            if (total >= skip && items.size() < size) {
+                items.add(summaryOf(show));
+            }
+            total++;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("items", items);
+        result.put("total", total);
+        result.put("page", page);
+        result.put("size", size);
+        return result;
+    }
+
+    /**
+     * 归档场次的摘要：场次信息加上该场次的销售统计
+     */
+    static Map<String, Object> summaryOf(Show show) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("id", show.getId());
+        item.put("movieId", show.getMovieId());
+        item.put("movieTitle", show.getMovieTitle());
+        item.put("roomId", show.getScreeningRoomId());
+        item.put("roomName", show.getScreeningRoomName());
+        item.put("startTime", show.getStartTime().toString());
+        item.put("endTime", show.getEndTime().toString());
+        item.put("basePrice", show.getBasePrice());
+        item.put("status", show.getStatus().name());
+        item.put("totalSeats", show.getTotalSeats());
+
+        Map<String, Object> stats = SalesAnalyticsService.getInstance().getShowStats(show.getId());
+        item.put("soldSeats", stats != null ? stats.get("ticketsSold") : (long) show.getSoldSeatsCount());
+        item.put("revenue", stats != null ? stats.get("netRevenue") : 0.0);
+        item.put("occupancyPercent", stats != null && stats.containsKey("occupancyPercent")
+                ? stats.get("occupancyPercent") : 0.0);
+        return item;
+    }
+}
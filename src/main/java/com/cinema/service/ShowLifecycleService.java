@@ -0,0 +1,137 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.model.Show;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 场次生命周期服务
+ * 按时间决定场次状态：开售前为 SCHEDULED，开售后为 ON_SALE，开场后为 STARTED，散场后为 FINISHED
+ * 每个场次只登记下一次状态转换的时间，后台线程定时取出到期的场次交给 CinemaManager 处理，不扫描全部场次
+ * 开售提前量由 lifecycle.sale-open-hours 配置（0 表示排片即开售），检查间隔由 lifecycle.tick-seconds 配置
+ */
+public class ShowLifecycleService {
+    private static ShowLifecycleService instance;
+
+    private final long saleOpenHours;
+    private final int tickSeconds;
+    // 按到期时间排序的待转换场次；场次改期后旧条目到期时按新时间重新计算，不会误判
+    private final PriorityQueue<Due> queue = new PriorityQueue<>(Comparator.comparing((Due d) -> d.time));
+    private ScheduledExecutorService timer;
+
+    private static final class Due {
+        final LocalDateTime time;
+        final Show show;
+
+        Due(LocalDateTime time, Show show) {
+            this.time = time;
+            this.show = show;
+        }
+    }
+
+    private ShowLifecycleService() {
+        this.saleOpenHours = Math.max(0L, AppConfig.getLong("lifecycle.sale-open-hours", 0L));
+        this.tickSeconds = Math.max(1, AppConfig.getInt("lifecycle.tick-seconds", 30));
+    }
+
+    public static synchronized ShowLifecycleService getInstance() {
+        if (instance == null) {
+            instance = new ShowLifecycleService();
+        }
+        return instance;
+    }
+
+    // ================== 状态规则 ==================
+
+    public Show.ShowStatus statusAt(Show show, LocalDateTime time) {
+        if (!time.isBefore(show.getEndTime())) {
+            return Show.ShowStatus.FINISHED;
+        }
+        if (!time.isBefore(show.getStartTime())) {
+            return Show.ShowStatus.STARTED;
+        }
+        if (saleOpenHours == 0 || !time.isBefore(show.getStartTime().minusHours(saleOpenHours))) {
+            return Show.ShowStatus.ON_SALE;
+        }
+        return Show.ShowStatus.SCHEDULED;
+    }
+
+    // time 之后的下一次状态转换时间，已散场返回 null
+    private LocalDateTime nextTransition(Show show, LocalDateTime time) {
+        LocalDateTime saleOpen = show.getStartTime().minusHours(saleOpenHours);
+        if (saleOpenHours > 0 && time.isBefore(saleOpen)) {
+            return saleOpen;
+        }
+        if (time.isBefore(show.getStartTime())) {
+            return show.getStartTime();
+        }
+        if (time.isBefore(show.getEndTime())) {
+            return show.getEndTime();
+        }
+        return null;
+    }
+
+    // ================== 到期队列 ==================
+
+    /**
+     * 登记场次下一次状态转换
+     */
+    public synchronized void schedule(Show show, LocalDateTime now) {
+        LocalDateTime next = nextTransition(show, now);
+        if (next != null) {
+            queue.add(new Due(next, show));
+        }
+    }
+
+    /**
+     * 取出到期的场次（同一场次只返回一次）
+     */
+    public synchronized List<Show> pollDue(LocalDateTime now) {
+        Set<Show> due = new LinkedHashSet<>();
+        while (!queue.isEmpty() && !queue.peek().time.isAfter(now)) {
+            due.add(queue.poll().show);
+        }
+        return new ArrayList<>(due);
+    }
+
+    public synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    // ================== 后台线程 ==================
+
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "show-lifecycle");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                CinemaManager.getInstance().advanceShowLifecycle(LocalDateTime.now());
+            } catch (Exception e) {
+                System.err.println("推进场次状态失败: " + e.getMessage());
+            }
+        }, tickSeconds, tickSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.model.Order;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import com.cinema.storage.DataStorage;
+import com.cinema.storage.DataStorageFactory;
+import com.cinema.storage.StateSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 状态快照服务
+ * 定期把 CinemaManager 和 BookingService 的内存状态写入 StateSnapshot 文件，退出时再写一次；
+ * 启动时若快照可用则直接从快照恢复电影、放映厅、场次和订单，再从快照水位之后的 change_log 追赶，代替逐表查询数据库
+ * 快照不可用（不存在、损坏、过旧、水位对不上当前数据库的变更日志）时照常从数据库冷启动
+ */
+public class SnapshotService {
+    private static SnapshotService instance;
+
+    private final DataStorage dataStorage;
+    private final boolean enabled;
+    private final Path file;
+    private final long intervalMinutes;
+    private final long maxAgeMillis;
+    private ScheduledExecutorService worker;
+
+    private volatile StateSnapshot.Contents restored; // 恢复后等待 BookingService 取走的订单
+    private volatile boolean restoredFromSnapshot;
+    private volatile long restoredWatermark;
+    private volatile long restoreMillis;
+    private volatile int catchUpChanges;
+    private volatile long catchUpMillis;
+    private volatile long lastWriteAt;
+    private volatile long lastWriteMillis;
+    private volatile long lastWriteBytes;
+    private volatile long lastWriteWatermark;
+
+    private SnapshotService() {
+        DataStorage storage = null;
+        try {
+            storage = DataStorageFactory.create();
+        } catch (Exception e) {
+            System.err.println("✗ SnapshotService 无法使用MySQL，快照不可用: " + e.getMessage());
+        }
+        this.dataStorage = storage;
+        this.enabled = AppConfig.getBoolean("snapshot.enabled", true) && storage != null;
+        this.file = Paths.get(AppConfig.get("snapshot.path", "data/cinema-state.snap"));
+        this.intervalMinutes = Math.max(1L, AppConfig.getLong("snapshot.interval-minutes", 10L));
+        this.maxAgeMillis = Math.max(1L, AppConfig.getLong("snapshot.max-age-hours", 24L)) * 3600_000L;
+    }
+
+    public static synchronized SnapshotService getInstance() {
+        if (instance == null) {
+            instance = new SnapshotService();
+        }
+        return instance;
+    }
+
+    // ================== 恢复 ==================
+
+    /**
+     * CinemaManager 加载数据时调用：读取并校验快照，可用时返回快照内容，否则返回 null（调用方从数据库加载）
+     * 快照中的订单留给 BookingService 通过 {@link #takeRestoredOrders()} 取走
+     */
+    StateSnapshot.Contents restore() {
+        if (!enabled || !Files.isRegularFile(file)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        StateSnapshot.Contents contents;
+        try {
+            contents = StateSnapshot.read(file);
+        } catch (IOException e) {
+            System.err.println("✗ 读取快照失败，从数据库加载: " + e.getMessage());
+            return null;
+        }
+        String reason = validate(contents);
+        if (reason != null) {
+            System.out.println("快照不可用（" + reason + "），从数据库加载");
+            return null;
+        }
+        restored = contents;
+        restoredFromSnapshot = true;
+        restoredWatermark = contents.getWatermark();
+        restoreMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("✓ 从快照恢复: 电影 " + contents.getMovies().size() + "，场次 " + contents.getShows().size()
+                + "，订单 " + contents.getOrders().size() + "，水位 " + contents.getWatermark() + "，读取 " + restoreMillis + " ms");
+        return contents;
+    }
+
+    private String validate(StateSnapshot.Contents contents) {
+        if (System.currentTimeMillis() - contents.getCreatedAtMillis() > maxAgeMillis) {
+            return "已超过 snapshot.max-age-hours";
+        }
+        if (contents.getWatermark() <= 0) {
+            return "没有变更日志水位";
+        }
+        // 重建数据库后版本号重新计数，同一版本号对应的变更时间不同
+        if (dataStorage.loadChangeTimeMillis(contents.getWatermark()) != contents.getWatermarkTimeMillis()) {
+            return "水位与当前数据库的变更日志不一致";
+        }
+        return null;
+    }
+
+    /**
+     * BookingService 加载订单时调用：从快照恢复时返回按快照重建的订单（已按状态设置座位），否则返回 null
+     * 用户按主键从 CinemaManager 的用户缓存取得，用户已不存在的订单跳过（与从数据库加载时相同）
+     */
+    Map<String, Order> takeRestoredOrders() {
+        // 先确保 CinemaManager 已加载（会调用 restore）
+        CinemaManager manager = CinemaManager.getInstance();
+        StateSnapshot.Contents contents = restored;
+        if (contents == null) {
+            return null;
+        }
+        restored = null;
+        Map<String, Order> orders = new HashMap<>();
+        for (StateSnapshot.OrderRecord record : contents.getOrders()) {
+            User user = manager.getUser(record.getUserId());
+            Show show = record.getShow();
+            // 场次恢复后可能已被归档（仍可按ID找到），不再是同一对象时说明已被删除或替换
+            if (user == null || manager.getShow(show.getId()) != show) {
+                continue;
+            }
+            List<Seat> seats = record.resolveSeats();
+            Order order = new Order(record.getOrderId(), show, seats, record.getCreateTime(), record.getStatus());
+            order.restoreState(record.getStatus(), record.getVersion());
+            order.setUser(user);
+            order.setPricingStrategy(record.getPricingStrategy());
+            if (order.getStatus() == Order.OrderStatus.PAID) {
+                for (Seat s : seats) s.sell();
+            } else if (order.getStatus() == Order.OrderStatus.RESERVED || order.getStatus() == Order.OrderStatus.PAYING) {
+                for (Seat s : seats) s.lock();
+            }
+            orders.put(order.getOrderId(), order);
+        }
+        return orders;
+    }
+
+    /**
+     * 两个服务都初始化后调用：从快照恢复时追赶水位之后的变更（包括快照之后本节点写入的），然后开始定期写快照
+     */
+    public void completeStartup() {
+        if (!enabled) {
+            return;
+        }
+        if (restoredFromSnapshot) {
+            long start = System.nanoTime();
+            try {
+                catchUpChanges = SyncService.getInstance().catchUp();
+                catchUpMillis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println("✓ 快照之后的变更已追赶: " + catchUpChanges + " 条，" + catchUpMillis + " ms");
+            } catch (Exception e) {
+                System.err.println("追赶快照之后的变更失败，等待增量同步继续: " + e.getMessage());
+            }
+        }
+        start();
+    }
+
+    // ================== 写入 ==================
+
+    /**
+     * 把当前内存状态写入快照文件
+     * 水位取写入前的最新变更版本；增量同步运行时不超过已应用的版本，其他节点尚未应用到内存的变更恢复后会重新追赶
+     * @return 是否写入
+     */
+    public boolean writeSnapshot() {
+        if (!enabled) {
+            return false;
+        }
+        long watermark = dataStorage.loadLatestChangeVersion();
+        SyncService sync = SyncService.getInstanceIfCreated();
+        if (sync != null && sync.isPolling()) {
+            watermark = Math.min(watermark, sync.getAppliedVersion());
+        }
+        long watermarkTime = watermark > 0 ? dataStorage.loadChangeTimeMillis(watermark) : -1L;
+        if (watermarkTime < 0) {
+            return false; // 变更日志为空，恢复时无法校验，冷启动本身也很快
+        }
+
+        long start = System.nanoTime();
+        CinemaManager manager = CinemaManager.getInstance();
+        // 先取活动场次再取归档场次：期间散场的场次至少出现在一边
+        List<Show> shows = manager.getAllShows();
+        shows.addAll(manager.getArchivedShows());
+        try {
+            long bytes = StateSnapshot.write(file, watermark, watermarkTime,
+                    manager.getAllScreeningRooms(), manager.getAllMovies(), shows,
+                    BookingService.getInstance().getAllOrders());
+            lastWriteMillis = (System.nanoTime() - start) / 1_000_000;
+            lastWriteBytes = bytes;
+            lastWriteWatermark = watermark;
+            lastWriteAt = System.currentTimeMillis();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("写入快照失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("path", file.toAbsolutePath().toString());
+        stats.put("restoredFromSnapshot", restoredFromSnapshot);
+        stats.put("restoredWatermark", restoredWatermark);
+        stats.put("restoreMillis", restoreMillis);
+        stats.put("catchUpChanges", catchUpChanges);
+        stats.put("catchUpMillis", catchUpMillis);
+        stats.put("lastWriteAt", lastWriteAt);
+        stats.put("lastWriteMillis", lastWriteMillis);
+        stats.put("lastWriteBytes", lastWriteBytes);
+        stats.put("lastWriteWatermark", lastWriteWatermark);
+        stats.put("running", worker != null);
+        return stats;
+    }
+
+    // ================== 后台线程 ==================
+
+    public synchronized void start() {
+        if (worker != null || !enabled) {
+            return;
+        }
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "state-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(this::writeSnapshot, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 停止定期写入，并在退出前写最后一次快照
+     */
+    public synchronized void shutdown() {
+        if (worker == null) {
+            return;
+        }
+        worker.shutdownNow();
+        worker = null;
+        writeSnapshot();
+    }
+}
@@ -0,0 +1,258 @@
+package com.cinema.service;
+
+import com.cinema.config.AppConfig;
+import com.cinema.config.AppMetrics;
+import com.cinema.config.NodeRole;
+import com.cinema.model.ChangeLogEntry;
+import com.cinema.storage.DataStorage;
+import com.cinema.storage.DataStorageFactory;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 增量同步服务
+ * 读取 change_log 表回答"某版本之后发生了哪些变化"，并在后台轮询其他节点写入的目录变更，
+ * 应用到本地 CinemaManager 的内存数据中，使多个节点无需整表重载即可保持一致
+ * 订单变更交给 BookingService 应用，只读副本节点据此维护与主节点一致的座位图
+ */
+public class SyncService {
+    private static SyncService instance;
+    private static final String LOCAL_NODE_ID = resolveNodeId();
+
+    private final DataStorage dataStorage;
+    private final CinemaManager cinemaManager;
+    private final AtomicLong appliedVersion; // 已应用到本地内存的最高版本
+    private final long gapTimeoutMillis;
+    private ScheduledExecutorService poller;
+    private volatile long latestVersion; // 最近一次轮询看到的最新版本
+    private volatile long lagMillis;     // 复制延迟（毫秒）
+    private volatile long lastPollTime;
+
+    SyncService(DataStorage dataStorage, long startVersion, long gapTimeoutMillis) {
+        this.cinemaManager = CinemaManager.getInstance();
+        this.dataStorage = dataStorage;
+        this.appliedVersion = new AtomicLong(startVersion);
+        this.gapTimeoutMillis = gapTimeoutMillis;
+    }
+
+    private static SyncService fromConfig() {
+        DataStorage storage = null;
+        try {
+            storage = DataStorageFactory.create();
+        } catch (Exception e) {
+            System.err.println("✗ SyncService 无法使用MySQL，增量同步不可用: " + e.getMessage());
+        }
+        return new SyncService(storage, CinemaManager.getInstance().getSnapshotVersion(),
+                AppConfig.getLong("sync.gap-timeout-ms", 5000L));
+    }
+
+    public static synchronized SyncService getInstance() {
+        if (instance == null) {
+            instance = fromConfig();
+            instance.registerLagGauges();
+        }
+        return instance;
+    }
+
+    /**
+     * 复制延迟导出到 /actuator/prometheus（cinema_sync_lag_ms / cinema_sync_lag_versions），取值与 getReplicationStatus 相同
+     */
+    void registerLagGauges() {
+        AppMetrics.gauge("cinema.sync.lag.ms", "复制延迟：最早一条未应用变更已提交的毫秒数", this,
+                SyncService::getReplicationLagMillis);
+        AppMetrics.gauge("cinema.sync.lag.versions", "复制延迟：最新版本与已应用版本之差", this,
+                SyncService::getReplicationLagVersions);
+    }
+
+    /**
+     * 已创建的实例，未创建时返回 null（不为查询而创建实例和数据库连接）
+     */
+    public static synchronized SyncService getInstanceIfCreated() {
+        return instance;
+    }
+
+    /**
+     * 本节点标识，写入 change_log.node_id；可通过 cinema.node.id 配置，默认 主机名-进程号
+     */
+    public static String localNodeId() {
+        return LOCAL_NODE_ID;
+    }
+
+    private static String resolveNodeId() {
+        String configured = AppConfig.get("cinema.node.id", null);
+        if (configured != null) {
+            return configured;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        String jvmName = ManagementFactory.getRuntimeMXBean().getName(); // pid@host
+        return host + "-" + jvmName.split("@")[0];
+    }
+
+    // ================== 查询 ==================
+
+    /**
+     * 返回 version 大于 since 的变更中已"稳定"的前缀
+     * 自增版本号可能乱序提交：若遇到版本空洞且其后的变更还很新，说明更小的版本可能仍在未提交的事务中，
+     * 此时截断，等下一次读取；空洞超过 sync.gap-timeout-ms 视为事务已回滚，直接跳过
+     */
+    public List<ChangeLogEntry> getChangesSince(long since, int limit) {
+        if (dataStorage == null) {
+            return new ArrayList<>();
+        }
+        List<ChangeLogEntry> changes = dataStorage.loadChangesSince(since, limit);
+        List<ChangeLogEntry> settled = new ArrayList<>(changes.size());
+        long expected = since + 1;
+        for (ChangeLogEntry change : changes) {
+            if (change.getVersion() != expected && change.getAgeMillis() < gapTimeoutMillis) {
+                break;
+            }
+            settled.add(change);
+            expected = change.getVersion() + 1;
+        }
+        return settled;
+    }
+
+    public long getLatestVersion() {
+        return dataStorage != null ? dataStorage.loadLatestChangeVersion() : 0L;
+    }
+
+    public long getAppliedVersion() {
+        return appliedVersion.get();
+    }
+
+    // ================== 后台轮询 ==================
+
+    public synchronized void startPolling() {
+        if (poller != null || dataStorage == null) {
+            return;
+        }
+        long interval = AppConfig.getLong("sync.poll-interval-ms", 2000L);
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-log-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::pollOnce, interval, interval, TimeUnit.MILLISECONDS);
+        System.out.println("✓ 增量同步已启动，节点: " + LOCAL_NODE_ID + "，起始版本: " + appliedVersion.get());
+    }
+
+    /**
+     * 拉取并应用一轮远程变更，本节点自己产生的变更直接跳过
+     */
+    public void pollOnce() {
+        try {
+            int batchSize = AppConfig.getInt("sync.batch-size", 500);
+            List<ChangeLogEntry> changes;
+            do {
+                changes = getChangesSince(appliedVersion.get(), batchSize);
+                for (ChangeLogEntry change : changes) {
+                    if (!LOCAL_NODE_ID.equals(change.getNodeId())) {
+                        apply(change);
+                    }
+                    appliedVersion.set(change.getVersion());
+                }
+            } while (changes.size() == batchSize);
+            updateLag();
+        } catch (Exception e) {
+            // 捕获所有异常，避免定时任务因一次失败而停止
+            System.err.println("增量同步失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从快照恢复后追赶到最新：应用起始版本之后的全部变更，包括本节点ID写入的
+     * （节点ID固定配置时，快照之后、上次退出之前本节点的写入同样不在快照中）
+     * @return 应用的变更条数
+     */
+    public int catchUp() {
+        if (dataStorage == null) {
+            return 0;
+        }
+        int batchSize = AppConfig.getInt("sync.batch-size", 500);
+        int count = 0;
+        List<ChangeLogEntry> changes;
+        do {
+            changes = getChangesSince(appliedVersion.get(), batchSize);
+            for (ChangeLogEntry change : changes) {
+                apply(change);
+                appliedVersion.set(change.getVersion());
+                count++;
+            }
+        } while (changes.size() == batchSize);
+        updateLag();
+        return count;
+    }
+
+    void apply(ChangeLogEntry change) {
+        if (ChangeLogEntry.TYPE_ORDER.equals(change.getEntityType())) {
+            BookingService.getInstance().applyRemoteOrderChange(change);
+        } else {
+            cinemaManager.applyRemoteChange(change);
+        }
+    }
+
+    /**
+     * 计算复制延迟：追平时为 0，否则为最早一条未应用变更已提交的时长
+     */
+    private void updateLag() {
+        long latest = dataStorage.loadLatestChangeVersion();
+        long applied = appliedVersion.get();
+        latestVersion = latest;
+        if (applied >= latest) {
+            lagMillis = 0L;
+        } else {
+            List<ChangeLogEntry> pending = dataStorage.loadChangesSince(applied, 1);
+            lagMillis = pending.isEmpty() ? 0L : pending.get(0).getAgeMillis();
+        }
+        lastPollTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 复制状态，供只读副本监控使用
+     */
+    public Map<String, Object> getReplicationStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("nodeId", LOCAL_NODE_ID);
+        status.put("role", NodeRole.current().name());
+        status.put("polling", poller != null);
+        status.put("appliedVersion", appliedVersion.get());
+        status.put("latestVersion", latestVersion);
+        status.put("lagVersions", getReplicationLagVersions());
+        status.put("lagMillis", lagMillis);
+        status.put("lastPollTime", lastPollTime);
+        return status;
+    }
+
+    public synchronized boolean isPolling() {
+        return poller != null;
+    }
+
+    public long getReplicationLagMillis() {
+        return lagMillis;
+    }
+
+    public long getReplicationLagVersions() {
+        return Math.max(0L, latestVersion - appliedVersion.get());
+    }
+
+    public synchronized void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+}
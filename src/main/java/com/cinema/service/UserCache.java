@@ -0,0 +1,60 @@
+package com.cinema.service;
+
+import com.cinema.model.User;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按主键缓存用户，超过容量时淘汰最久未访问的用户
+ * 用户以数据库为准：被淘汰的用户下次访问时由 CinemaManager 按主键重新加载
+ */
+class UserCache {
+    private final int capacity;
+    private final Map<String, User> users;
+
+    UserCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        // accessOrder = true：get 也会把用户移到队尾
+        this.users = new LinkedHashMap<String, User>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > UserCache.this.capacity;
+            }
+        };
+    }
+
+    synchronized User get(String userId) {
+        return users.get(userId);
+    }
+
+    synchronized void put(User user) {
+        users.put(user.getId(), user);
+    }
+
+    /**
+     * 已有同一用户时保留原对象（订单等引用的是原对象），返回缓存中的用户
+     */
+    synchronized User putIfAbsent(User user) {
+        User existing = users.putIfAbsent(user.getId(), user);
+        return existing != null ? existing : user;
+    }
+
+    synchronized void remove(String userId) {
+        users.remove(userId);
+    }
+
+    synchronized List<User> values() {
+        return new ArrayList<>(users.values());
+    }
+
+    synchronized int size() {
+        return users.size();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+}
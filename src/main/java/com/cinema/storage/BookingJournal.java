@@ -0,0 +1,500 @@
+package com.cinema.storage;
+
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.Seat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 订单预写日志（本地磁盘）
+ * 每次订单写库前先追加一条记录，记录订单在该版本的完整状态（座位状态由订单状态推导）和这次变化要写入发件箱的事件；
+ * 数据库不可用时订单和事件仍保留在日志中，重启时重放、数据库恢复后补写（补写为按版本号条件的 upsert，重复补写不会覆盖更新的状态）
+ * 日志由若干段文件组成，每段为固定大小的文件，以读写方式内存映射，变长记录依次追加；放不下下一条记录时刷盘并换下一段
+ * （单条记录超过段大小时按记录大小建段），全部已写库的旧段删除
+ * <pre>
+ * 记录（变长，整数为大端）：
+ * magic(4) | 记录长度(4) | CRC32(4) | 已写库标记(1) | 状态序号(1) | 保留(2) | 序号(8) | 版本号(8)
+ * | 创建时间 UTC 纪元毫秒(8) | 锁座时间 UTC 纪元毫秒(8，无则 Long.MIN_VALUE)
+ * | 订单号 | 用户ID | 场次ID | 定价策略 | 座位数(2) | 座位 行(2) 列(2) × 座位数
+ * | 事件数(2) | 事件（事件ID | 类型 | 订单号 | 场次ID | 用户ID | 消息）× 事件数
+ * </pre>
+ * 字符串为 字节数(2，0xFFFF 表示 null) | UTF-8；CRC32 覆盖标记之后的全部字节（标记在写库后原地修改，不参与校验）
+ * 段内第一条 magic、长度、序号不对或校验失败的记录视为末尾（进程在写入中途退出）
+ */
+public final class BookingJournal {
+    private static final int MAGIC = 0x424A5232; // "BJR2"
+    private static final int LENGTH_OFFSET = 4;
+    private static final int CRC_OFFSET = 8;
+    private static final int APPLIED_OFFSET = 12;
+    private static final int CHECKED_OFFSET = APPLIED_OFFSET + 1;
+    private static final int STATUS_OFFSET = 13;
+    private static final int SEQUENCE_OFFSET = 16;
+    private static final int HEADER_SIZE = 48;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int MAX_STRING_BYTES = NULL_STRING - 1;
+    private static final int MAX_COUNT = 0xFFFF;
+    private static final int EVENT_FIELDS = 6;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    private static final String SEGMENT_PREFIX = "booking-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>(); // 段内第一条记录的序号 → 段
+    private Segment current;
+    private long nextSequence;
+
+    // 组提交：同时等待刷盘的写入只由其中一个线程执行一次 force
+    private final Object syncMonitor = new Object();
+    private boolean syncing;
+    private long durableSequence;
+
+    /**
+     * 日志记录：订单在某个版本的状态
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final boolean applied;
+        private final String orderId;
+        private final String userId;
+        private final String showId;
+        private final Order.OrderStatus status;
+        private final long version;
+        private final LocalDateTime createTime;
+        private final LocalDateTime lockTime;
+        private final String pricingStrategy;
+        private final int[] seats; // 行、列交替
+        private final List<OutboxEvent> events;
+
+        Entry(long sequence, boolean applied, String orderId, String userId, String showId, Order.OrderStatus status,
+              long version, LocalDateTime createTime, LocalDateTime lockTime, String pricingStrategy, int[] seats,
+              List<OutboxEvent> events) {
+            this.sequence = sequence;
+            this.applied = applied;
+            this.orderId = orderId;
+            this.userId = userId;
+            this.showId = showId;
+            this.status = status;
+            this.version = version;
+            this.createTime = createTime;
+            this.lockTime = lockTime;
+            this.pricingStrategy = pricingStrategy;
+            this.seats = seats;
+            this.events = events;
+        }
+
+        public long getSequence() { return sequence; }
+        public boolean isApplied() { return applied; }
+        public String getOrderId() { return orderId; }
+        public String getUserId() { return userId; }
+        public String getShowId() { return showId; }
+        public Order.OrderStatus getStatus() { return status; }
+        public long getVersion() { return version; }
+        public LocalDateTime getCreateTime() { return createTime; }
+        public LocalDateTime getLockTime() { return lockTime; }
+        public String getPricingStrategy() { return pricingStrategy; }
+        public int getSeatCount() { return seats.length / 2; }
+        public int getSeatRow(int i) { return seats[i * 2]; }
+        public int getSeatCol(int i) { return seats[i * 2 + 1]; }
+        public List<OutboxEvent> getEvents() { return events; }
+    }
+
+    private static final class Segment {
+        private final long firstSequence;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final int capacity; // 字节数
+        private int count;
+        private int end;            // 下一条记录的写入位置
+        private int[] offsets = new int[64]; // 段内第 i 条记录的起始位置
+
+        Segment(long firstSequence, Path path, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        void add(int length) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = end;
+            end += length;
+        }
+
+        boolean isApplied(int i) {
+            return buffer.get(offsets[i] + APPLIED_OFFSET) != 0;
+        }
+
+        byte[] read(int i) {
+            byte[] record = new byte[buffer.getInt(offsets[i] + LENGTH_OFFSET)];
+            buffer.get(offsets[i], record);
+            return record;
+        }
+    }
+
+    /**
+     * 打开（或创建）日志目录，扫描已有段找到写入位置
+     * @param segmentBytes 新建段的字节数
+     */
+    public BookingJournal(Path dir, int segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = Math.max(HEADER_SIZE, segmentBytes);
+        Files.createDirectories(dir);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                long first = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(first, new Segment(first, path, map(path, Files.size(path))));
+            }
+        }
+        nextSequence = 1;
+        for (Segment segment : segments.values()) {
+            scanValid(segment);
+            nextSequence = segment.firstSequence + segment.count;
+        }
+        current = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        durableSequence = nextSequence - 1;
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // 登记段内从头开始连续有效（magic、长度、序号、CRC 都对）的记录
+    private static void scanValid(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        while (segment.end + HEADER_SIZE <= segment.capacity) {
+            int length = buffer.getInt(segment.end + LENGTH_OFFSET);
+            if (buffer.getInt(segment.end) != MAGIC || length < HEADER_SIZE || length > segment.capacity - segment.end
+                    || buffer.getLong(segment.end + SEQUENCE_OFFSET) != segment.firstSequence + segment.count) {
+                return;
+            }
+            byte[] record = new byte[length];
+            buffer.get(segment.end, record);
+            if (ByteBuffer.wrap(record).getInt(CRC_OFFSET) != checksum(record)) {
+                return;
+            }
+            segment.add(length);
+        }
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, CHECKED_OFFSET, record.length - CHECKED_OFFSET);
+        return (int) crc.getValue();
+    }
+
+    // ================== 写入 ==================
+
+    /**
+     * 追加订单的当前状态，不带事件
+     */
+    public long append(Order order) throws IOException {
+        return append(order, Collections.emptyList());
+    }
+
+    /**
+     * 追加订单的当前状态和这次变化的发件箱事件（尚未刷盘，需要持久时调用 {@link #awaitDurable(long)}）
+     * @return 记录序号
+     * @throws IOException 写入失败，或字符串超过 65534 字节、座位或事件超过 65535 个
+     */
+    public synchronized long append(Order order, List<OutboxEvent> events) throws IOException {
+        byte[] record = encode(order, events);
+        if (current == null || record.length > current.capacity - current.end) {
+            rotate(record.length);
+        }
+        long sequence = nextSequence++;
+        ByteBuffer out = ByteBuffer.wrap(record);
+        out.putLong(SEQUENCE_OFFSET, sequence);
+        out.putInt(CRC_OFFSET, checksum(record));
+        current.buffer.put(current.end, record);
+        current.add(record.length);
+        return sequence;
+    }
+
+    // 当前段放不下：刷盘后新建下一段，至少能放下 recordLength 字节
+    private void rotate(int recordLength) throws IOException {
+        if (current != null) {
+            current.buffer.force();
+        }
+        Path path = dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        current = new Segment(nextSequence, path, map(path, Math.max(segmentBytes, recordLength)));
+        segments.put(nextSequence, current);
+    }
+
+    private static byte[] encode(Order order, List<OutboxEvent> events) throws IOException {
+        List<Seat> seats = order.getSeats();
+        byte[] orderId = bytes(order.getOrderId());
+        byte[] userId = bytes(order.getUser() != null ? order.getUser().getId() : null);
+        byte[] showId = bytes(order.getShow() != null ? order.getShow().getId() : null);
+        byte[] pricing = bytes(order.getPricingStrategy());
+        if (seats.size() > MAX_COUNT || events.size() > MAX_COUNT) {
+            throw new IOException("订单 " + order.getOrderId() + " 的座位数或事件数超过订单日志上限");
+        }
+        List<byte[]> eventFields = new ArrayList<>(events.size() * EVENT_FIELDS);
+        int eventBytes = 2;
+        for (OutboxEvent event : events) {
+            for (String field : new String[]{event.getEventId(), event.getEventType(), event.getOrderId(),
+                    event.getShowId(), event.getUserId(), event.getMessage()}) {
+                byte[] bytes = bytes(field);
+                eventFields.add(bytes);
+                eventBytes += stringSize(bytes);
+            }
+        }
+        int length = HEADER_SIZE + stringSize(orderId) + stringSize(userId) + stringSize(showId) + stringSize(pricing)
+                + 2 + seats.size() * 4 + eventBytes;
+        byte[] record = new byte[length];
+        ByteBuffer out = ByteBuffer.wrap(record);
+        out.putInt(MAGIC);
+        out.putInt(length);
+        out.putInt(0);                                  // CRC，序号确定后计算
+        out.put((byte) 0);                              // 已写库标记
+        out.put((byte) order.getStatus().ordinal());
+        out.position(SEQUENCE_OFFSET);
+        out.putLong(0);                                 // 序号，追加时填写
+        out.putLong(order.getVersion());
+        out.putLong(toMillis(order.getCreateTime()));
+        out.putLong(toMillis(order.getLockTime()));
+        putString(out, orderId);
+        putString(out, userId);
+        putString(out, showId);
+        putString(out, pricing);
+        out.putShort((short) seats.size());
+        for (Seat seat : seats) {
+            out.putShort((short) seat.getRow());
+            out.putShort((short) seat.getCol());
+        }
+        out.putShort((short) events.size());
+        for (byte[] field : eventFields) {
+            putString(out, field);
+        }
+        return record;
+    }
+
+    // null 原样返回，写成长度 0xFFFF
+    private static byte[] bytes(String value) throws IOException {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("字符串超过订单日志上限（" + bytes.length + " 字节）");
+        }
+        return bytes;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return 2 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putShort((short) NULL_STRING);
+            return;
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? NULL_TIME : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * 等待序号不大于 sequence 的记录刷盘
+     * 组提交：已有线程在刷盘时等它完成（一次 force 覆盖它开始前追加的全部记录），否则由本线程刷盘
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        while (true) {
+            synchronized (syncMonitor) {
+                while (syncing && durableSequence < sequence) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("等待订单日志刷盘被中断", e);
+                    }
+                }
+                if (durableSequence >= sequence) {
+                    return;
+                }
+                syncing = true;
+            }
+            long target;
+            MappedByteBuffer buffer;
+            synchronized (this) {
+                // 之前的段在换段时已经刷盘
+                target = nextSequence - 1;
+                buffer = current.buffer;
+            }
+            boolean forced = false;
+            try {
+                buffer.force();
+                forced = true;
+            } finally {
+                synchronized (syncMonitor) {
+                    syncing = false;
+                    if (forced) {
+                        durableSequence = Math.max(durableSequence, target);
+                    }
+                    syncMonitor.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 标记记录已写库（原地修改，不刷盘：标记丢失时只会多补写一次）
+     */
+    public synchronized void markApplied(long sequence) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+        if (entry == null || sequence >= entry.getKey() + entry.getValue().count) {
+            return;
+        }
+        Segment segment = entry.getValue();
+        segment.buffer.put(segment.offsets[(int) (sequence - segment.firstSequence)] + APPLIED_OFFSET, (byte) 1);
+    }
+
+    // ================== 读取 ==================
+
+    /**
+     * 按序号顺序读取尚未写库的记录
+     */
+    public synchronized List<Entry> readPending() {
+        List<Entry> pending = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            for (int i = 0; i < segment.count; i++) {
+                if (!segment.isApplied(i)) {
+                    pending.add(decode(segment.read(i)));
+                }
+            }
+        }
+        return pending;
+    }
+
+    private static Entry decode(byte[] record) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        boolean applied = in.get(APPLIED_OFFSET) != 0;
+        Order.OrderStatus status = Order.OrderStatus.values()[in.get(STATUS_OFFSET)];
+        in.position(SEQUENCE_OFFSET);
+        long sequence = in.getLong();
+        long version = in.getLong();
+        LocalDateTime createTime = fromMillis(in.getLong());
+        LocalDateTime lockTime = fromMillis(in.getLong());
+        String orderId = getString(in);
+        String userId = getString(in);
+        String showId = getString(in);
+        String pricing = getString(in);
+        int[] seats = new int[(in.getShort() & 0xFFFF) * 2];
+        for (int i = 0; i < seats.length; i++) {
+            seats[i] = in.getShort();
+        }
+        int eventCount = in.getShort() & 0xFFFF;
+        List<OutboxEvent> events = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            events.add(new OutboxEvent(0L, getString(in), getString(in), getString(in), getString(in), getString(in),
+                    getString(in), null, 0L));
+        }
+        return new Entry(sequence, applied, orderId, userId, showId, status, version, createTime, lockTime, pricing, seats,
+                events);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        if (millis == NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // ================== 清理与统计 ==================
+
+    /**
+     * 删除记录全部已写库的旧段（当前段保留）
+     * @return 删除的段数
+     */
+    public synchronized int compact() {
+        int removed = 0;
+        Iterator<Segment> it = segments.values().iterator();
+        while (it.hasNext()) {
+            Segment segment = it.next();
+            if (segment == current || hasPending(segment)) {
+                break; // 段按序号排列，后面的段不早于这一段写库
+            }
+            try {
+                Files.deleteIfExists(segment.path);
+                it.remove();
+                removed++;
+            } catch (IOException e) {
+                System.err.println("删除订单日志段失败: " + e.getMessage());
+                break;
+            }
+        }
+        return removed;
+    }
+
+    private static boolean hasPending(Segment segment) {
+        for (int i = 0; i < segment.count; i++) {
+            if (!segment.isApplied(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    public long getDurableSequence() {
+        synchronized (syncMonitor) {
+            return durableSequence;
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 刷盘当前段（退出时调用）
+     */
+    public synchronized void flush() {
+        if (current != null) {
+            current.buffer.force();
+        }
+    }
+}
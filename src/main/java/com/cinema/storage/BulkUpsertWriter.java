@@ -0,0 +1,214 @@
+package com.cinema.storage;
+
+import com.cinema.config.AppConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 批量写入
+ * 把单行的 INSERT ... VALUES (?, ...) [ON DUPLICATE KEY UPDATE ...] 展开成多行 VALUES，每条语句写 statementRows 行，
+ * 每 commitRows 行提交一次：一次往返写多行，也不会因为全量保存形成一个超大事务
+ * 分块提交后，某一块失败只回滚该块，之前已提交的块保留；全量保存都是按主键 upsert，重试即可补齐
+ */
+public class BulkUpsertWriter {
+    // MySQL 单条预编译语句最多 65535 个占位符
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    private final int statementRows;
+    private final int commitRows;
+
+    public interface RowBinder<T> {
+        /**
+         * 绑定一行的参数，offset 为该行第一个参数之前的参数个数（第一行为 0）
+         */
+        void bind(PreparedStatement pstmt, int offset, T row) throws SQLException;
+    }
+
+    public interface ChunkHandler<T> {
+        /**
+         * 在调用方连接的事务中写入一块，提交由 {@link #inChunks} 负责
+         */
+        void write(Connection conn, List<T> chunk) throws SQLException;
+    }
+
+    public BulkUpsertWriter(int statementRows, int commitRows) {
+        this.statementRows = Math.max(1, statementRows);
+        this.commitRows = Math.max(this.statementRows, commitRows);
+    }
+
+    public static BulkUpsertWriter fromConfig() {
+        return new BulkUpsertWriter(
+                AppConfig.getInt("db.bulk.statement-rows", 500),
+                AppConfig.getInt("db.bulk.commit-rows", 5000));
+    }
+
+    public int getStatementRows() {
+        return statementRows;
+    }
+
+    public int getCommitRows() {
+        return commitRows;
+    }
+
+    /**
+     * 把 rows 按 commitRows 分块交给 handler，每块单独提交；某块失败时回滚该块并抛出异常
+     * @return 成功提交的行数
+     */
+    public <T> int inChunks(Connection conn, Collection<T> rows, ChunkHandler<T> handler) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        int committed = 0;
+        try {
+            List<T> chunk = new ArrayList<>(Math.min(commitRows, rows.size()));
+            for (T row : rows) {
+                chunk.add(row);
+                if (chunk.size() == commitRows) {
+                    writeChunk(conn, chunk, handler);
+                    committed += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(conn, chunk, handler);
+                committed += chunk.size();
+            }
+            return committed;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private <T> void writeChunk(Connection conn, List<T> chunk, ChunkHandler<T> handler) throws SQLException {
+        try {
+            handler.write(conn, chunk);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * 在调用方的事务中执行多行写入
+     * @param singleRowSql 只含一组 VALUES (?, ...) 的单行语句，如 MySQLDataStorage 中的 *_UPSERT_SQL
+     * @return 数据库返回的影响行数（upsert 时更新的行计为 2）
+     */
+    public <T> int upsert(Connection conn, String singleRowSql, List<T> rows, RowBinder<T> binder) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        MultiRowSql sql = MultiRowSql.parse(singleRowSql);
+        int perStatement = Math.max(1, Math.min(statementRows, MAX_PLACEHOLDERS / sql.columns));
+        int affected = 0;
+        PreparedStatement full = null;
+        try {
+            for (int from = 0; from < rows.size(); from += perStatement) {
+                int to = Math.min(from + perStatement, rows.size());
+                int count = to - from;
+                if (count == perStatement) {
+                    if (full == null) {
+                        full = conn.prepareStatement(sql.expand(perStatement));
+                    }
+                    affected += execute(full, sql.columns, rows.subList(from, to), binder);
+                } else {
+                    // 最后不足一条语句的余数
+                    try (PreparedStatement tail = conn.prepareStatement(sql.expand(count))) {
+                        affected += execute(tail, sql.columns, rows.subList(from, to), binder);
+                    }
+                }
+            }
+        } finally {
+            if (full != null) {
+                full.close();
+            }
+        }
+        return affected;
+    }
+
+    private <T> int execute(PreparedStatement pstmt, int columns, List<T> rows, RowBinder<T> binder) throws SQLException {
+        int offset = 0;
+        for (T row : rows) {
+            binder.bind(pstmt, offset, row);
+            offset += columns;
+        }
+        return pstmt.executeUpdate();
+    }
+
+    /**
+     * 在调用方的事务中执行 DELETE FROM table WHERE column IN (...)，每条语句最多 statementRows 个键
+     */
+    public int deleteIn(Connection conn, String table, String column, List<String> keys) throws SQLException {
+        int deleted = 0;
+        int perStatement = Math.min(statementRows, MAX_PLACEHOLDERS);
+        for (int from = 0; from < keys.size(); from += perStatement) {
+            List<String> part = keys.subList(from, Math.min(from + perStatement, keys.size()));
+            StringBuilder sql = new StringBuilder("DELETE FROM ").append(table)
+                    .append(" WHERE ").append(column).append(" IN (");
+            for (int i = 0; i < part.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = 0; i < part.size(); i++) {
+                    pstmt.setString(i + 1, part.get(i));
+                }
+                deleted += pstmt.executeUpdate();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 单行语句拆成 VALUES 之前、一行的占位符组、之后三段，按行数重复占位符组
+     */
+    static final class MultiRowSql {
+        final String prefix;
+        final String tuple;
+        final String suffix;
+        final int columns;
+
+        private MultiRowSql(String prefix, String tuple, String suffix, int columns) {
+            this.prefix = prefix;
+            this.tuple = tuple;
+            this.suffix = suffix;
+            this.columns = columns;
+        }
+
+        static MultiRowSql parse(String singleRowSql) {
+            int values = singleRowSql.toUpperCase().indexOf("VALUES");
+            int start = values < 0 ? -1 : singleRowSql.indexOf('(', values);
+            int end = start < 0 ? -1 : singleRowSql.indexOf(')', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("不是单行 VALUES 语句: " + singleRowSql);
+            }
+            String tuple = singleRowSql.substring(start, end + 1);
+            int columns = 0;
+            for (int i = 0; i < tuple.length(); i++) {
+                if (tuple.charAt(i) == '?') {
+                    columns++;
+                }
+            }
+            if (columns == 0) {
+                throw new IllegalArgumentException("VALUES 中没有占位符: " + singleRowSql);
+            }
+            return new MultiRowSql(singleRowSql.substring(0, start), tuple, singleRowSql.substring(end + 1), columns);
+        }
+
+        String expand(int rows) {
+            StringBuilder sb = new StringBuilder(prefix.length() + suffix.length() + rows * (tuple.length() + 2));
+            sb.append(prefix);
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(tuple);
+            }
+            return sb.append(suffix).toString();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.cinema.storage;
+
+import com.cinema.model.ChangeLogEntry;
+import com.cinema.model.IdempotencyRecord;
+import com.cinema.model.Movie;
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 数据存储接口：服务层所有的加载和保存都经过这里，具体实现由 {@link DataStorageFactory} 按 storage.type 选择
+ * <ul>
+ *   <li>mysql：{@link MySQLDataStorage}，连接 db.url 指定的 MySQL</li>
+ *   <li>embedded：同一个 JDBC 实现，连接进程内的 H2 数据库（MySQL 兼容模式），无需数据库服务器</li>
+ *   <li>memory：{@link InMemoryDataStorage}，数据只在进程内存中，退出即丢失</li>
+ * </ul>
+ * 单个实体的保存和删除与变更日志（及订单的发件箱事件）一同提交；全量保存（saveMovies 等）不写变更日志
+ * 读写失败时只打印错误，按各方法说明返回空结果或失败标记，不抛出异常
+ */
+public interface DataStorage {
+
+    // ========== 电影 ==========
+
+    void saveMovies(Map<String, Movie> movies);
+
+    /** 保存单部电影（含评论） */
+    void saveMovie(Movie movie);
+
+    /** 删除电影，其评论和场次一并删除 */
+    void deleteMovie(String movieId);
+
+    Map<String, Movie> loadMovies();
+
+    /** 不存在时返回 null */
+    Movie loadMovie(String movieId);
+
+    // ========== 放映厅 ==========
+
+    void saveScreeningRooms(Map<String, ScreeningRoom> rooms);
+
+    void saveScreeningRoom(ScreeningRoom room);
+
+    void deleteScreeningRoom(String roomId);
+
+    Map<String, ScreeningRoom> loadScreeningRooms();
+
+    ScreeningRoom loadScreeningRoom(String roomId);
+
+    // ========== 场次 ==========
+
+    void saveShows(Map<String, Show> shows);
+
+    void saveShow(Show show);
+
+    /**
+     * 整批写入新场次（全部成功或全部失败）
+     * @return 是否写入
+     */
+    boolean saveShowsBatch(Collection<Show> shows);
+
+    void deleteShow(String showId);
+
+    /** 加载全部场次，并恢复到所属电影的排片表 */
+    Map<String, Show> loadShows();
+
+    /** 按主键加载单个场次，电影和放映厅从调用方提供的对象中关联，关联不上时返回 null */
+    Show loadShow(String showId, Map<String, Movie> movies, Map<String, ScreeningRoom> rooms);
+
+    // ========== 用户 ==========
+
+    void saveUsers(Map<String, User> users);
+
+    boolean saveUser(User user);
+
+    void deleteUser(String userId);
+
+    /** 按用户ID顺序分页读取 */
+    List<User> loadUsersPage(int offset, int limit);
+
+    /** 用户总数，查询失败时返回 -1 */
+    long countUsers();
+
+    User loadUser(String userId);
+
+    // ========== 订单 ==========
+
+    void saveOrders(Map<String, Order> orders);
+
+    default boolean saveOrder(Order order) {
+        return saveOrder(order, Collections.emptyList());
+    }
+
+    /**
+     * 保存单个订单及其座位，事件与订单一同提交；已有订单只在版本号更大时覆盖状态
+     * @return 是否提交
+     */
+    boolean saveOrder(Order order, List<OutboxEvent> events);
+
+    default boolean updateOrderStatus(Order order, long expectedVersion) {
+        return updateOrderStatus(order, expectedVersion, Collections.emptyList());
+    }
+
+    /**
+     * 按版本号条件更新订单状态
+     * @return 是否更新：存储中的版本号已不是 expectedVersion 或写入失败时返回 false
+     */
+    boolean updateOrderStatus(Order order, long expectedVersion, List<OutboxEvent> events);
+
+    /**
+     * 批量按版本号条件更新订单状态，整批一同提交
+     * @return 版本冲突（未更新）的订单号；写入失败时返回 null
+     */
+    Set<String> updateOrderStatusBatch(Map<Order, Long> expectedVersions, List<OutboxEvent> events);
+
+    /** 加载全部订单，用户或场次已不存在的订单跳过 */
+    Map<String, Order> loadOrders();
+
+    Order loadOrder(String orderId);
+
+    // ========== 变更日志 ==========
+
+    /** version 大于 since 的变更，按版本升序，最多 limit 条 */
+    List<ChangeLogEntry> loadChangesSince(long since, int limit);
+
+    /** 最新的变更版本号，没有变更时返回 0 */
+    long loadLatestChangeVersion();
+
+    /** 指定版本的变更提交时间（毫秒），不存在时返回 -1 */
+    long loadChangeTimeMillis(long version);
+
+    // ========== 发件箱 ==========
+
+    List<OutboxEvent> loadUnpublishedOutboxEvents(int limit);
+
+    void markOutboxEventsPublished(List<Long> ids);
+
+    /** 未发布事件的数量和其中最早一条已等待的毫秒数，查询失败时返回 null */
+    long[] loadOutboxBacklog();
+
+    /** 删除 hours 小时之前已发布的事件，返回删除条数 */
+    int deletePublishedOutboxEvents(int hours);
+
+    // ========== 幂等键 ==========
+
+    /** 键已存在时保留第一次的记录 */
+    void saveIdempotencyRecord(IdempotencyRecord record);
+
+    IdempotencyRecord loadIdempotencyRecord(String key);
+
+    /** 删除 createdBefore（毫秒时间戳）之前的记录，返回删除条数 */
+    int deleteIdempotencyRecordsBefore(long createdBefore);
+
+    // ========== 其他 ==========
+
+    void initializeDefaultData();
+
+    void close();
+}
@@ -0,0 +1,54 @@
+package com.cinema.storage;
+
+import com.cinema.config.AppConfig;
+
+import java.util.Locale;
+
+/**
+ * 按 storage.type 创建数据存储：
+ * mysql（默认）连接 MySQL；embedded 连接进程内的 H2 数据库；memory 只保存在内存中，整个进程共用一个实例
+ * 数据库不可用时 mysql / embedded 的构造与原来一样抛出运行时异常，由调用方决定是否降级
+ * 返回的实例都包在 {@link MeteredDataStorage} 中，按方法记录耗时和行数
+ */
+public final class DataStorageFactory {
+    public static final String TYPE_MYSQL = "mysql";
+    public static final String TYPE_EMBEDDED = "embedded";
+    public static final String TYPE_MEMORY = "memory";
+
+    private static DataStorage memoryStorage;
+
+    private DataStorageFactory() {
+    }
+
+    /**
+     * 配置的存储类型（小写）
+     */
+    public static String type() {
+        return AppConfig.get("storage.type", TYPE_MYSQL).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 数据是否在进程退出后保留（memory 不保留）
+     */
+    public static boolean isDurable() {
+        return !TYPE_MEMORY.equals(type());
+    }
+
+    public static synchronized DataStorage create() {
+        String type = type();
+        switch (type) {
+            case TYPE_MEMORY:
+                if (memoryStorage == null) {
+                    memoryStorage = new MeteredDataStorage(new InMemoryDataStorage(), type);
+                    System.out.println("✓ 使用内存存储，数据不会持久化");
+                }
+                return memoryStorage;
+            case TYPE_EMBEDDED:
+            case TYPE_MYSQL:
+                return new MeteredDataStorage(new MySQLDataStorage(), type);
+            default:
+                System.err.println("未知的 storage.type: " + type + "，使用 " + TYPE_MYSQL);
+                return new MeteredDataStorage(new MySQLDataStorage(), TYPE_MYSQL);
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package com.cinema.storage;
+
+import com.cinema.model.ChangeLogEntry;
+import com.cinema.model.IdempotencyRecord;
+import com.cinema.model.Movie;
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import com.cinema.service.CinemaManager;
+import com.cinema.service.SyncService;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存存储（storage.type=memory）：不需要数据库，进程退出后数据丢失，用于本地开发、演示和压测
+ * 电影、放映厅、场次和用户直接保存调用方的对象，加载时返回同一批对象（场次已在所属电影的排片表中，不再重复加入）；
+ * 订单保存为一行副本（状态、版本号、座位行列等），加载时与 MySQLDataStorage 一样按当前的用户和场次重建，
+ * 因此订单的版本号条件更新、按版本号覆盖和外键级联删除与数据库的行为一致
+ * 单个实体的保存和删除写入变更日志，订单变化的事件写入发件箱，与数据库实现相同
+ */
+public class InMemoryDataStorage implements DataStorage {
+
+    private final Map<String, Movie> movies = new ConcurrentHashMap<>();
+    private final Map<String, ScreeningRoom> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Show> shows = new ConcurrentHashMap<>();
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<String, IdempotencyRecord> idempotencyRecords = new ConcurrentHashMap<>();
+
+    // 订单、变更日志和发件箱需要一同修改（对应数据库的同一事务），由 this 加锁
+    private final Map<String, OrderRow> orders = new HashMap<>();
+    private final List<ChangeRow> changes = new ArrayList<>();
+    private final Map<Long, OutboxRow> outbox = new LinkedHashMap<>();
+    private final Set<String> outboxEventIds = new HashSet<>(); // 对应 event_id 唯一键
+    private long nextChangeVersion = 1L;
+    private long nextOutboxId = 1L;
+
+    // 订单主表和座位关联表的一行
+    private static final class OrderRow {
+        final String orderId;
+        final String userId;
+        final String showId;
+        final LocalDateTime createTime;
+        final String pricingStrategy;
+        final int[] seatRows;
+        final int[] seatCols;
+        Order.OrderStatus status;
+        long version;
+
+        OrderRow(Order order) {
+            this.orderId = order.getOrderId();
+            this.userId = order.getUser().getId();
+            this.showId = order.getShow().getId();
+            this.createTime = order.getCreateTime();
+            this.pricingStrategy = order.getPricingStrategy();
+            List<Seat> seats = order.getSeats();
+            this.seatRows = new int[seats.size()];
+            this.seatCols = new int[seats.size()];
+            for (int i = 0; i < seats.size(); i++) {
+                seatRows[i] = seats.get(i).getRow();
+                seatCols[i] = seats.get(i).getCol();
+            }
+            this.status = order.getStatus();
+            this.version = order.getVersion();
+        }
+    }
+
+    private static final class ChangeRow {
+        final long version;
+        final String entityType;
+        final String entityId;
+        final String op;
+        final String nodeId;
+        final long changedAt;
+
+        ChangeRow(long version, String entityType, String entityId, String op, String nodeId, long changedAt) {
+            this.version = version;
+            this.entityType = entityType;
+            this.entityId = entityId;
+            this.op = op;
+            this.nodeId = nodeId;
+            this.changedAt = changedAt;
+        }
+    }
+
+    private static final class OutboxRow {
+        final OutboxEvent event; // id 已设置为存储分配的值
+        final long createdAt;
+        long publishedAt; // 0 表示未发布
+
+        OutboxRow(OutboxEvent event, long createdAt) {
+            this.event = event;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    // ========== 电影 ==========
+
+    @Override
+    public void saveMovies(Map<String, Movie> movies) {
+        this.movies.putAll(movies);
+    }
+
+    @Override
+    public void saveMovie(Movie movie) {
+        movies.put(movie.getId(), movie);
+        appendChange(ChangeLogEntry.TYPE_MOVIE, movie.getId(), ChangeLogEntry.OP_UPSERT);
+    }
+
+    @Override
+    public synchronized void deleteMovie(String movieId) {
+        movies.remove(movieId);
+        shows.values().removeIf(show -> show.getMovie().getId().equals(movieId));
+        removeOrphanOrders();
+        appendChange(ChangeLogEntry.TYPE_MOVIE, movieId, ChangeLogEntry.OP_DELETE);
+    }
+
+    @Override
+    public Map<String, Movie> loadMovies() {
+        return new HashMap<>(movies);
+    }
+
+    @Override
+    public Movie loadMovie(String movieId) {
+        return movies.get(movieId);
+    }
+
+    // ========== 放映厅 ==========
+
+    @Override
+    public void saveScreeningRooms(Map<String, ScreeningRoom> rooms) {
+        this.rooms.putAll(rooms);
+    }
+
+    @Override
+    public void saveScreeningRoom(ScreeningRoom room) {
+        rooms.put(room.getId(), room);
+        appendChange(ChangeLogEntry.TYPE_ROOM, room.getId(), ChangeLogEntry.OP_UPSERT);
+    }
+
+    @Override
+    public synchronized void deleteScreeningRoom(String roomId) {
+        rooms.remove(roomId);
+        shows.values().removeIf(show -> show.getScreeningRoom().getId().equals(roomId));
+        removeOrphanOrders();
+        appendChange(ChangeLogEntry.TYPE_ROOM, roomId, ChangeLogEntry.OP_DELETE);
+    }
+
+    @Override
+    public Map<String, ScreeningRoom> loadScreeningRooms() {
+        return new HashMap<>(rooms);
+    }
+
+    @Override
+    public ScreeningRoom loadScreeningRoom(String roomId) {
+        return rooms.get(roomId);
+    }
+
+    // ========== 场次 ==========
+
+    @Override
+    public void saveShows(Map<String, Show> shows) {
+        this.shows.putAll(shows);
+    }
+
+    @Override
+    public void saveShow(Show show) {
+        shows.put(show.getId(), show);
+        appendChange(ChangeLogEntry.TYPE_SHOW, show.getId(), ChangeLogEntry.OP_UPSERT);
+    }
+
+    @Override
+    public synchronized boolean saveShowsBatch(Collection<Show> shows) {
+        for (Show show : shows) {
+            this.shows.put(show.getId(), show);
+            appendChange(ChangeLogEntry.TYPE_SHOW, show.getId(), ChangeLogEntry.OP_UPSERT);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void deleteShow(String showId) {
+        shows.remove(showId);
+        removeOrphanOrders();
+        appendChange(ChangeLogEntry.TYPE_SHOW, showId, ChangeLogEntry.OP_DELETE);
+    }
+
+    /**
+     * 返回保存时的场次对象，它们已在所属电影的排片表中
+     */
+    @Override
+    public Map<String, Show> loadShows() {
+        return new HashMap<>(shows);
+    }
+
+    @Override
+    public Show loadShow(String showId, Map<String, Movie> movies, Map<String, ScreeningRoom> rooms) {
+        Show show = shows.get(showId);
+        if (show == null || !movies.containsKey(show.getMovie().getId())
+                || !rooms.containsKey(show.getScreeningRoom().getId())) {
+            return null;
+        }
+        return show;
+    }
+
+    // ========== 用户 ==========
+
+    @Override
+    public void saveUsers(Map<String, User> users) {
+        this.users.putAll(users);
+    }
+
+    @Override
+    public boolean saveUser(User user) {
+        users.put(user.getId(), user);
+        return true;
+    }
+
+    @Override
+    public synchronized void deleteUser(String userId) {
+        users.remove(userId);
+        removeOrphanOrders();
+    }
+
+    @Override
+    public List<User> loadUsersPage(int offset, int limit) {
+        List<User> sorted = new ArrayList<>(users.values());
+        sorted.sort(Comparator.comparing(User::getId));
+        int from = Math.min(Math.max(offset, 0), sorted.size());
+        int to = Math.min(from + Math.max(limit, 0), sorted.size());
+        return new ArrayList<>(sorted.subList(from, to));
+    }
+
+    @Override
+    public long countUsers() {
+        return users.size();
+    }
+
+    @Override
+    public User loadUser(String userId) {
+        return users.get(userId);
+    }
+
+    // ========== 订单 ==========
+
+    @Override
+    public synchronized void saveOrders(Map<String, Order> orders) {
+        for (Order order : orders.values()) {
+            upsertOrder(order);
+        }
+    }
+
+    @Override
+    public synchronized boolean saveOrder(Order order, List<OutboxEvent> events) {
+        upsertOrder(order);
+        appendChange(ChangeLogEntry.TYPE_ORDER, order.getOrderId(), ChangeLogEntry.OP_UPSERT);
+        appendOutboxEvents(events);
+        return true;
+    }
+
+    // 与 ORDER_UPSERT_SQL 相同：已有订单只在版本号更大时覆盖状态，座位按本次保存的重写
+    private void upsertOrder(Order order) {
+        OrderRow row = new OrderRow(order);
+        OrderRow existing = orders.get(row.orderId);
+        if (existing != null && existing.version >= row.version) {
+            row.status = existing.status;
+            row.version = existing.version;
+        }
+        orders.put(row.orderId, row);
+    }
+
+    @Override
+    public synchronized boolean updateOrderStatus(Order order, long expectedVersion, List<OutboxEvent> events) {
+        if (!compareAndSetStatus(order, expectedVersion)) {
+            return false;
+        }
+        appendChange(ChangeLogEntry.TYPE_ORDER, order.getOrderId(), ChangeLogEntry.OP_UPSERT);
+        appendOutboxEvents(events);
+        return true;
+    }
+
+    @Override
+    public synchronized Set<String> updateOrderStatusBatch(Map<Order, Long> expectedVersions, List<OutboxEvent> events) {
+        Set<String> conflicts = new HashSet<>();
+        for (Map.Entry<Order, Long> entry : expectedVersions.entrySet()) {
+            Order order = entry.getKey();
+            if (compareAndSetStatus(order, entry.getValue())) {
+                appendChange(ChangeLogEntry.TYPE_ORDER, order.getOrderId(), ChangeLogEntry.OP_UPSERT);
+            } else {
+                conflicts.add(order.getOrderId());
+            }
+        }
+        List<OutboxEvent> committed = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            if (!conflicts.contains(event.getOrderId())) {
+                committed.add(event);
+            }
+        }
+        appendOutboxEvents(committed);
+        return conflicts;
+    }
+
+    // 与 ORDER_STATUS_UPDATE_SQL 相同：订单不存在或版本号不是 expectedVersion 时不更新
+    private boolean compareAndSetStatus(Order order, long expectedVersion) {
+        OrderRow row = orders.get(order.getOrderId());
+        if (row == null || row.version != expectedVersion) {
+            return false;
+        }
+        row.status = order.getStatus();
+        row.version = order.getVersion();
+        return true;
+    }
+
+    @Override
+    public Map<String, Order> loadOrders() {
+        Map<String, Order> loaded = new HashMap<>();
+        CinemaManager manager = CinemaManager.getInstance();
+        List<OrderRow> rows;
+        synchronized (this) {
+            rows = new ArrayList<>(orders.values());
+        }
+        for (OrderRow row : rows) {
+            Order order = toOrder(row, manager);
+            if (order == null) {
+                continue;
+            }
+            // 与数据库加载相同：按订单状态恢复座位状态
+            if (order.getStatus() == Order.OrderStatus.PAID) {
+                for (Seat s : order.getSeats()) s.sell();
+            } else if (order.getStatus() == Order.OrderStatus.RESERVED || order.getStatus() == Order.OrderStatus.PAYING) {
+                for (Seat s : order.getSeats()) s.lock();
+            }
+            loaded.put(order.getOrderId(), order);
+        }
+        return loaded;
+    }
+
+    @Override
+    public Order loadOrder(String orderId) {
+        OrderRow row;
+        synchronized (this) {
+            row = orders.get(orderId);
+        }
+        return row != null ? toOrder(row, CinemaManager.getInstance()) : null;
+    }
+
+    // 按当前的用户和场次重建订单，用户或场次已不存在时返回 null
+    private Order toOrder(OrderRow row, CinemaManager manager) {
+        User user = manager.getUser(row.userId);
+        Show show = manager.getShow(row.showId);
+        if (user == null || show == null) {
+            return null;
+        }
+        List<Seat> seats = new ArrayList<>(row.seatRows.length);
+        Order.OrderStatus status;
+        long version;
+        synchronized (this) {
+            status = row.status;
+            version = row.version;
+        }
+        for (int i = 0; i < row.seatRows.length; i++) {
+            Seat seat = show.getSeat(row.seatRows[i], row.seatCols[i]);
+            if (seat != null) {
+                seats.add(seat);
+            }
+        }
+        Order order = new Order(row.orderId, show, seats,
+                row.createTime != null ? row.createTime : LocalDateTime.now(), status);
+        order.restoreState(status, version);
+        order.setUser(user);
+        order.setPricingStrategy(row.pricingStrategy);
+        return order;
+    }
+
+    // 对应外键级联删除：用户或场次已删除的订单一并删除（调用方持有 this 的锁）
+    private void removeOrphanOrders() {
+        orders.values().removeIf(row -> !users.containsKey(row.userId) || !shows.containsKey(row.showId));
+    }
+
+    // ========== 变更日志 ==========
+
+    private synchronized void appendChange(String entityType, String entityId, String op) {
+        changes.add(new ChangeRow(nextChangeVersion++, entityType, entityId, op,
+                SyncService.localNodeId(), System.currentTimeMillis()));
+    }
+
+    @Override
+    public synchronized List<ChangeLogEntry> loadChangesSince(long since, int limit) {
+        List<ChangeLogEntry> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (ChangeRow row : changes) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (row.version > since) {
+                result.add(new ChangeLogEntry(row.version, row.entityType, row.entityId, row.op, row.nodeId,
+                        toTime(row.changedAt), now - row.changedAt));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long loadLatestChangeVersion() {
+        return nextChangeVersion - 1;
+    }
+
+    @Override
+    public synchronized long loadChangeTimeMillis(long version) {
+        // 版本号连续且从 1 开始，直接按下标读取
+        if (version < 1 || version > changes.size()) {
+            return -1L;
+        }
+        return changes.get((int) (version - 1)).changedAt;
+    }
+
+    // ========== 发件箱 ==========
+
+    // 与 MySQL 相同按 event_id 去重
+    private void appendOutboxEvents(List<OutboxEvent> events) {
+        long now = System.currentTimeMillis();
+        for (OutboxEvent event : events) {
+            if (!outboxEventIds.add(event.getEventId())) {
+                continue;
+            }
+            long id = nextOutboxId++;
+            OutboxEvent stored = new OutboxEvent(id, event.getEventId(), event.getEventType(), event.getOrderId(),
+                    event.getShowId(), event.getUserId(), event.getMessage(), toTime(now), 0L);
+            outbox.put(id, new OutboxRow(stored, now));
+        }
+    }
+
+    @Override
+    public synchronized List<OutboxEvent> loadUnpublishedOutboxEvents(int limit) {
+        List<OutboxEvent> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (OutboxRow row : outbox.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (row.publishedAt == 0L) {
+                OutboxEvent e = row.event;
+                result.add(new OutboxEvent(e.getId(), e.getEventId(), e.getEventType(), e.getOrderId(), e.getShowId(),
+                        e.getUserId(), e.getMessage(), e.getCreatedAt(), now - row.createdAt));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void markOutboxEventsPublished(List<Long> ids) {
+        long now = System.currentTimeMillis();
+        for (Long id : ids) {
+            OutboxRow row = outbox.get(id);
+            if (row != null) {
+                row.publishedAt = now;
+            }
+        }
+    }
+
+    @Override
+    public synchronized long[] loadOutboxBacklog() {
+        long count = 0;
+        long oldest = 0;
+        long now = System.currentTimeMillis();
+        for (OutboxRow row : outbox.values()) {
+            if (row.publishedAt == 0L) {
+                count++;
+                oldest = Math.max(oldest, now - row.createdAt);
+            }
+        }
+        return new long[]{count, oldest};
+    }
+
+    @Override
+    public synchronized int deletePublishedOutboxEvents(int hours) {
+        long cutoff = System.currentTimeMillis() - hours * 3_600_000L;
+        int deleted = 0;
+        for (Iterator<OutboxRow> it = outbox.values().iterator(); it.hasNext(); ) {
+            OutboxRow row = it.next();
+            if (row.publishedAt != 0L && row.publishedAt < cutoff) {
+                it.remove();
+                outboxEventIds.remove(row.event.getEventId());
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // ========== 幂等键 ==========
+
+    @Override
+    public void saveIdempotencyRecord(IdempotencyRecord record) {
+        idempotencyRecords.putIfAbsent(record.getKey(), record);
+    }
+
+    @Override
+    public IdempotencyRecord loadIdempotencyRecord(String key) {
+        return idempotencyRecords.get(key);
+    }
+
+    @Override
+    public int deleteIdempotencyRecordsBefore(long createdBefore) {
+        int deleted = 0;
+        for (Map.Entry<String, IdempotencyRecord> entry : idempotencyRecords.entrySet()) {
+            if (entry.getValue().getCreatedAtMillis() < createdBefore
+                    && idempotencyRecords.remove(entry.getKey(), entry.getValue())) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // ========== 其他 ==========
+
+    @Override
+    public void initializeDefaultData() {
+        System.out.println("内存存储初始化完成");
+    }
+
+    @Override
+    public void close() {
+        // 没有需要释放的资源
+    }
+}
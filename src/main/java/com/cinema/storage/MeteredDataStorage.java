@@ -0,0 +1,336 @@
+package com.cinema.storage;
+
+import com.cinema.config.AppMetrics;
+import com.cinema.jfr.StorageCallEvent;
+import com.cinema.model.ChangeLogEntry;
+import com.cinema.model.IdempotencyRecord;
+import com.cinema.model.Movie;
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import io.micrometer.core.instrument.DistributionSummary;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 为数据存储的每个方法记录指标，由 {@link DataStorageFactory} 包在具体实现外面：
+ * cinema.storage（按 operation=方法名 和 outcome 计时）、cinema.storage.failures（方法抛出的异常）、
+ * cinema.storage.rows（批量读写的行数）；都带 storage=存储类型 标签
+ * 同时为每次调用记录 JFR 事件 {@link StorageCallEvent}（只在录制时提交）
+ * 实现类自己吞掉的数据库错误不会抛到这里，只体现在返回值上
+ */
+public class MeteredDataStorage implements DataStorage {
+    private final DataStorage delegate;
+    private final String type;
+    private final Map<String, AppMetrics.Operation> operations = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rows = new ConcurrentHashMap<>();
+
+    public MeteredDataStorage(DataStorage delegate, String type) {
+        this.delegate = delegate;
+        this.type = type;
+    }
+
+    private <T> T call(String method, Supplier<T> body) {
+        return call(method, null, 0, body);
+    }
+
+    private <T> T call(String method, String showId, int seatCount, Supplier<T> body) {
+        AppMetrics.Operation operation = operations.computeIfAbsent(method,
+                m -> new AppMetrics.Operation("cinema.storage", "数据存储方法耗时", m, "storage", type));
+        StorageCallEvent event = new StorageCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            T result = body.get();
+            operation.success(start);
+            event.finish(method, type, showId, seatCount, null);
+            return result;
+        } catch (RuntimeException e) {
+            operation.failure(start, e);
+            event.finish(method, type, showId, seatCount, e);
+            throw e;
+        }
+    }
+
+    private static String showId(Order order) {
+        return order.getShow() != null ? order.getShow().getId() : null;
+    }
+
+    private void run(String method, Runnable body) {
+        call(method, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    private void rows(String method, int count) {
+        rows.computeIfAbsent(method, m -> DistributionSummary.builder("cinema.storage.rows")
+                .description("数据存储批量读写的行数")
+                .tags("storage", type, "operation", m)
+                .register(AppMetrics.registry()))
+                .record(count);
+    }
+
+    private <T extends Map<?, ?>> T rowsOf(String method, T result) {
+        if (result != null) {
+            rows(method, result.size());
+        }
+        return result;
+    }
+
+    private <T extends Collection<?>> T rowsOf(String method, T result) {
+        if (result != null) {
+            rows(method, result.size());
+        }
+        return result;
+    }
+
+    // ========== 电影 ==========
+
+    @Override
+    public void saveMovies(Map<String, Movie> movies) {
+        rows("saveMovies", movies.size());
+        run("saveMovies", () -> delegate.saveMovies(movies));
+    }
+
+    @Override
+    public void saveMovie(Movie movie) {
+        run("saveMovie", () -> delegate.saveMovie(movie));
+    }
+
+    @Override
+    public void deleteMovie(String movieId) {
+        run("deleteMovie", () -> delegate.deleteMovie(movieId));
+    }
+
+    @Override
+    public Map<String, Movie> loadMovies() {
+        return rowsOf("loadMovies", call("loadMovies", delegate::loadMovies));
+    }
+
+    @Override
+    public Movie loadMovie(String movieId) {
+        return call("loadMovie", () -> delegate.loadMovie(movieId));
+    }
+
+    // ========== 放映厅 ==========
+
+    @Override
+    public void saveScreeningRooms(Map<String, ScreeningRoom> rooms) {
+        rows("saveScreeningRooms", rooms.size());
+        run("saveScreeningRooms", () -> delegate.saveScreeningRooms(rooms));
+    }
+
+    @Override
+    public void saveScreeningRoom(ScreeningRoom room) {
+        run("saveScreeningRoom", () -> delegate.saveScreeningRoom(room));
+    }
+
+    @Override
+    public void deleteScreeningRoom(String roomId) {
+        run("deleteScreeningRoom", () -> delegate.deleteScreeningRoom(roomId));
+    }
+
+    @Override
+    public Map<String, ScreeningRoom> loadScreeningRooms() {
+        return rowsOf("loadScreeningRooms", call("loadScreeningRooms", delegate::loadScreeningRooms));
+    }
+
+    @Override
+    public ScreeningRoom loadScreeningRoom(String roomId) {
+        return call("loadScreeningRoom", () -> delegate.loadScreeningRoom(roomId));
+    }
+
+    // ========== 场次 ==========
+
+    @Override
+    public void saveShows(Map<String, Show> shows) {
+        rows("saveShows", shows.size());
+        run("saveShows", () -> delegate.saveShows(shows));
+    }
+
+    @Override
+    public void saveShow(Show show) {
+        call("saveShow", show.getId(), show.getTotalSeats(), () -> {
+            delegate.saveShow(show);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean saveShowsBatch(Collection<Show> shows) {
+        rows("saveShowsBatch", shows.size());
+        return call("saveShowsBatch", () -> delegate.saveShowsBatch(shows));
+    }
+
+    @Override
+    public void deleteShow(String showId) {
+        call("deleteShow", showId, 0, () -> {
+            delegate.deleteShow(showId);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Show> loadShows() {
+        return rowsOf("loadShows", call("loadShows", delegate::loadShows));
+    }
+
+    @Override
+    public Show loadShow(String showId, Map<String, Movie> movies, Map<String, ScreeningRoom> rooms) {
+        return call("loadShow", showId, 0, () -> delegate.loadShow(showId, movies, rooms));
+    }
+
+    // ========== 用户 ==========
+
+    @Override
+    public void saveUsers(Map<String, User> users) {
+        rows("saveUsers", users.size());
+        run("saveUsers", () -> delegate.saveUsers(users));
+    }
+
+    @Override
+    public boolean saveUser(User user) {
+        return call("saveUser", () -> delegate.saveUser(user));
+    }
+
+    @Override
+    public void deleteUser(String userId) {
+        run("deleteUser", () -> delegate.deleteUser(userId));
+    }
+
+    @Override
+    public List<User> loadUsersPage(int offset, int limit) {
+        return rowsOf("loadUsersPage", call("loadUsersPage", () -> delegate.loadUsersPage(offset, limit)));
+    }
+
+    @Override
+    public long countUsers() {
+        return call("countUsers", delegate::countUsers);
+    }
+
+    @Override
+    public User loadUser(String userId) {
+        return call("loadUser", () -> delegate.loadUser(userId));
+    }
+
+    // ========== 订单 ==========
+
+    @Override
+    public void saveOrders(Map<String, Order> orders) {
+        rows("saveOrders", orders.size());
+        run("saveOrders", () -> delegate.saveOrders(orders));
+    }
+
+    @Override
+    public boolean saveOrder(Order order, List<OutboxEvent> events) {
+        return call("saveOrder", showId(order), order.getSeats().size(), () -> delegate.saveOrder(order, events));
+    }
+
+    @Override
+    public boolean updateOrderStatus(Order order, long expectedVersion, List<OutboxEvent> events) {
+        return call("updateOrderStatus", showId(order), order.getSeats().size(),
+                () -> delegate.updateOrderStatus(order, expectedVersion, events));
+    }
+
+    @Override
+    public Set<String> updateOrderStatusBatch(Map<Order, Long> expectedVersions, List<OutboxEvent> events) {
+        rows("updateOrderStatusBatch", expectedVersions.size());
+        int seats = 0;
+        for (Order order : expectedVersions.keySet()) {
+            seats += order.getSeats().size();
+        }
+        return call("updateOrderStatusBatch", null, seats, () -> delegate.updateOrderStatusBatch(expectedVersions, events));
+    }
+
+    @Override
+    public Map<String, Order> loadOrders() {
+        return rowsOf("loadOrders", call("loadOrders", delegate::loadOrders));
+    }
+
+    @Override
+    public Order loadOrder(String orderId) {
+        return call("loadOrder", () -> delegate.loadOrder(orderId));
+    }
+
+    // ========== 变更日志 ==========
+
+    @Override
+    public List<ChangeLogEntry> loadChangesSince(long since, int limit) {
+        return rowsOf("loadChangesSince", call("loadChangesSince", () -> delegate.loadChangesSince(since, limit)));
+    }
+
+    @Override
+    public long loadLatestChangeVersion() {
+        return call("loadLatestChangeVersion", delegate::loadLatestChangeVersion);
+    }
+
+    @Override
+    public long loadChangeTimeMillis(long version) {
+        return call("loadChangeTimeMillis", () -> delegate.loadChangeTimeMillis(version));
+    }
+
+    // ========== 发件箱 ==========
+
+    @Override
+    public List<OutboxEvent> loadUnpublishedOutboxEvents(int limit) {
+        return rowsOf("loadUnpublishedOutboxEvents", call("loadUnpublishedOutboxEvents",
+                () -> delegate.loadUnpublishedOutboxEvents(limit)));
+    }
+
+    @Override
+    public void markOutboxEventsPublished(List<Long> ids) {
+        rows("markOutboxEventsPublished", ids.size());
+        run("markOutboxEventsPublished", () -> delegate.markOutboxEventsPublished(ids));
+    }
+
+    @Override
+    public long[] loadOutboxBacklog() {
+        return call("loadOutboxBacklog", delegate::loadOutboxBacklog);
+    }
+
+    @Override
+    public int deletePublishedOutboxEvents(int hours) {
+        int deleted = call("deletePublishedOutboxEvents", () -> delegate.deletePublishedOutboxEvents(hours));
+        rows("deletePublishedOutboxEvents", deleted);
+        return deleted;
+    }
+
+    // ========== 幂等键 ==========
+
+    @Override
+    public void saveIdempotencyRecord(IdempotencyRecord record) {
+        run("saveIdempotencyRecord", () -> delegate.saveIdempotencyRecord(record));
+    }
+
+    @Override
+    public IdempotencyRecord loadIdempotencyRecord(String key) {
+        return call("loadIdempotencyRecord", () -> delegate.loadIdempotencyRecord(key));
+    }
+
+    @Override
+    public int deleteIdempotencyRecordsBefore(long createdBefore) {
+        int deleted = call("deleteIdempotencyRecordsBefore", () -> delegate.deleteIdempotencyRecordsBefore(createdBefore));
+        rows("deleteIdempotencyRecordsBefore", deleted);
+        return deleted;
+    }
+
+    // ========== 其他 ==========
+
+    @Override
+    public void initializeDefaultData() {
+        run("initializeDefaultData", delegate::initializeDefaultData);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
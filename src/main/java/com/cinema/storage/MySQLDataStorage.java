@@ -1,17 +1,34 @@
 package com.cinema.storage;
 
+import com.cinema.config.AppConfig;
+import com.cinema.config.NodeRole;
 import com.cinema.model.*;
 import com.cinema.service.CinemaManager;
+import com.cinema.service.SyncService;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
-public class MySQLDataStorage {
-    // 🔴 统一定义日期格式化常量，用于与数据库进行时间戳转换
-    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+/**
+ * JDBC 数据存储：storage.type=mysql 时连接 MySQL；storage.type=embedded 时连接进程内的 H2（MySQL 兼容模式），
+ * 两者使用同一套 SQL（只用两边都支持的写法），表结构分别由迁移脚本和 db/embedded/schema.sql 建立
+ */
+public class MySQLDataStorage implements DataStorage {
+    // shows / orders / comments 的时间列为 DATETIME（V2~V4 迁移），按 LocalDateTime 读写，不经过时区换算；
+    // 截断到秒，与迁移前按 yyyy-MM-dd HH:mm:ss 保存的精度一致（DATETIME 对毫秒会四舍五入）
+    private static LocalDateTime toDbTime(LocalDateTime time) {
+        return time != null ? time.truncatedTo(ChronoUnit.SECONDS) : null;
+    }
+
+    private static LocalDateTime readTime(ResultSet rs, String column) throws SQLException {
+        return rs.getObject(column, LocalDateTime.class);
+    }
+
+    // 全量保存（saveMovies / saveShows / saveOrders 等）按块多行写入，块大小见 db.bulk.*
+    private final BulkUpsertWriter bulkWriter = BulkUpsertWriter.fromConfig();
 
     public MySQLDataStorage() {
         initializeDatabase();
@@ -20,7 +37,9 @@ public class MySQLDataStorage {
     private void initializeDatabase() {
         // 检查驱动是否可用
         if (!SimpleDatabaseConnection.isDriverAvailable()) {
-            throw new RuntimeException("MySQL驱动不可用，请确保MySQL Connector/J在classpath中");
+            throw new RuntimeException(SimpleDatabaseConnection.isEmbedded()
+                    ? "H2驱动不可用，请确保 com.h2database:h2 在classpath中"
+                    : "MySQL驱动不可用，请确保MySQL Connector/J在classpath中");
         }
 
         // 测试数据库连接
@@ -28,42 +47,30 @@ public class MySQLDataStorage {
             // 注意：这里最好抛出运行时异常，但为了兼容旧代码结构，保留打印
             System.err.println("无法连接到数据库");
         } else {
-            System.out.println("MySQL数据库连接成功");
+            System.out.println(SimpleDatabaseConnection.isEmbedded() ? "嵌入式数据库连接成功" : "MySQL数据库连接成功");
+            // 主节点启动时把表结构迁移到最新版本；只读副本不改表结构
+            if (!NodeRole.isReplica() && AppConfig.getBoolean("db.migrate-on-startup", true)) {
+                SchemaMigrator.migrateOnce();
+            }
         }
     }
 
     // ========== 电影相关方法 ==========
 
     // ================== 2. 修复电影保存 (封面/预告片/评论) ==================
+    // SQL语句更新，包含 cover_url、trailer_url 和 release_date
+    private static final String MOVIE_UPSERT_SQL = "INSERT INTO movies (id, title, director, actors, duration, rating, genre, description, cover_url, trailer_url, release_date) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE title=VALUES(title), director=VALUES(director), " +
+            "actors=VALUES(actors), duration=VALUES(duration), rating=VALUES(rating), " +
+            "genre=VALUES(genre), description=VALUES(description), " +
+            "cover_url=VALUES(cover_url), trailer_url=VALUES(trailer_url), release_date=VALUES(release_date)";
+
+    @Override
     public void saveMovies(Map<String, Movie> movies) {
-        // SQL语句更新，包含 cover_url、trailer_url 和 release_date
-        String sql = "INSERT INTO movies (id, title, director, actors, duration, rating, genre, description, cover_url, trailer_url, release_date) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE title=VALUES(title), director=VALUES(director), " +
-                "actors=VALUES(actors), duration=VALUES(duration), rating=VALUES(rating), " +
-                "genre=VALUES(genre), description=VALUES(description), " +
-                "cover_url=VALUES(cover_url), trailer_url=VALUES(trailer_url), release_date=VALUES(release_date)";
-
-        try (Connection conn = SimpleDatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            conn.setAutoCommit(false);
-            for (Movie movie : movies.values()) {
-                pstmt.setString(1, movie.getId());
-                pstmt.setString(2, movie.getTitle());
-                pstmt.setString(3, movie.getDirector());
-                pstmt.setString(4, String.join(",", movie.getActors()));
-                pstmt.setInt(5, movie.getDuration());
-                pstmt.setDouble(6, movie.getRating());
-                pstmt.setString(7, movie.getGenre().toString());
-                pstmt.setString(8, movie.getDescription());
-                pstmt.setString(9, movie.getCoverUrl());    // 🔴 保存封面
-                pstmt.setString(10, movie.getTrailerUrl()); // 🔴 保存预告片
-                pstmt.setDate(11, movie.getReleaseTime() != null ? java.sql.Date.valueOf(movie.getReleaseTime()) : null); // 🔴 保存上映日期
-                pstmt.addBatch();
-            }
-            pstmt.executeBatch();
-            conn.commit();
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            bulkWriter.inChunks(conn, movies.values(),
+                    (c, chunk) -> bulkWriter.upsert(c, MOVIE_UPSERT_SQL, chunk, this::bindMovie));
 
             // 🔴 同时也保存评论！
             saveComments(movies);
@@ -73,6 +80,60 @@ public class MySQLDataStorage {
         }
     }
 
+    /**
+     * 保存单部电影（含评论），并在同一事务中写入变更日志
+     */
+    @Override
+    public void saveMovie(Movie movie) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(MOVIE_UPSERT_SQL);
+                 PreparedStatement pstmtComments = conn.prepareStatement(COMMENT_UPSERT_SQL)) {
+                bindMovie(pstmt, 0, movie);
+                pstmt.executeUpdate();
+
+                if (movie.getComments() != null) {
+                    for (Comment c : movie.getComments()) {
+                        bindComment(pstmtComments, 0, movie.getId(), c);
+                        pstmtComments.addBatch();
+                    }
+                    pstmtComments.executeBatch();
+                }
+
+                insertChange(conn, ChangeLogEntry.TYPE_MOVIE, movie.getId(), ChangeLogEntry.OP_UPSERT);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("保存电影失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除电影（外键级联删除其评论和场次），并在同一事务中写入变更日志
+     */
+    @Override
+    public void deleteMovie(String movieId) {
+        deleteEntity("DELETE FROM movies WHERE id = ?", ChangeLogEntry.TYPE_MOVIE, movieId);
+    }
+
+    private void bindMovie(PreparedStatement pstmt, int offset, Movie movie) throws SQLException {
+        pstmt.setString(offset + 1, movie.getId());
+        pstmt.setString(offset + 2, movie.getTitle());
+        pstmt.setString(offset + 3, movie.getDirector());
+        pstmt.setString(offset + 4, String.join(",", movie.getActors()));
+        pstmt.setInt(offset + 5, movie.getDuration());
+        pstmt.setDouble(offset + 6, movie.getRating());
+        pstmt.setString(offset + 7, movie.getGenre().toString());
+        pstmt.setString(offset + 8, movie.getDescription());
+        pstmt.setString(offset + 9, movie.getCoverUrl());    // 🔴 保存封面
+        pstmt.setString(offset + 10, movie.getTrailerUrl()); // 🔴 保存预告片
+        pstmt.setDate(offset + 11, movie.getReleaseTime() != null ? java.sql.Date.valueOf(movie.getReleaseTime()) : null); // 🔴 保存上映日期
+    }
+
+    @Override
     public Map<String, Movie> loadMovies() {
         Map<String, Movie> movies = new HashMap<>();
         String sql = "SELECT * FROM movies";
@@ -82,30 +143,7 @@ public class MySQLDataStorage {
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                String actorsStr = rs.getString("actors");
-                List<String> actorList = (actorsStr == null || actorsStr.isEmpty()) ? new ArrayList<>() : Arrays.asList(actorsStr.split(","));
-
-                String genreStr = rs.getString("genre");
-                MovieGenre genre = (genreStr != null) ? MovieGenre.fromDescription(genreStr) : MovieGenre.DRAMA;
-
-                // 读取上映日期
-                java.sql.Date releaseDate = rs.getDate("release_date");
-                LocalDate releaseTime = (releaseDate != null) ? releaseDate.toLocalDate() : LocalDate.now();
-
-                // 🔴 使用带 trailerUrl 和 coverUrl 的完整构造函数
-                Movie movie = new Movie(
-                        rs.getString("id"),
-                        rs.getString("title"),
-                        releaseTime, // 🔴 使用数据库中的上映日期
-                        actorList,
-                        rs.getString("director"),
-                        rs.getInt("duration"),
-                        rs.getDouble("rating"),
-                        rs.getString("description"),
-                        genre,
-                        rs.getString("trailer_url"), // 🔴 读取预告片
-                        rs.getString("cover_url")    // 🔴 读取封面
-                );
+                Movie movie = mapMovie(rs);
                 movies.put(movie.getId(), movie);
             }
 
@@ -118,59 +156,103 @@ public class MySQLDataStorage {
         return movies;
     }
 
-    // ========== 3. 评论存取 ==========
-    private void saveComments(Map<String, Movie> movies) {
-        String sql = "INSERT INTO comments (id, user_id, user_name, movie_id, content, rating, create_time) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE content=VALUES(content)"; // 简单处理
-
+    /**
+     * 按主键加载单部电影（含评论），不存在时返回 null
+     */
+    @Override
+    public Movie loadMovie(String movieId) {
+        String sql = "SELECT * FROM movies WHERE id = ?";
         try (Connection conn = SimpleDatabaseConnection.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, movieId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Movie movie = mapMovie(rs);
+                loadComments(conn, movie);
+                return movie;
+            }
+        } catch (SQLException e) {
+            System.err.println("加载电影失败: " + e.getMessage());
+            return null;
+        }
+    }
 
-            conn.setAutoCommit(false);
-            for (Movie movie : movies.values()) {
-                if (movie.getComments() != null) {
-                    for (Comment c : movie.getComments()) {
-                        pstmt.setString(1, c.getId());
-                        pstmt.setString(2, c.getUserId());
-                        pstmt.setString(3, c.getUserName());
-                        pstmt.setString(4, movie.getId());
-                        pstmt.setString(5, c.getContent());
-                        pstmt.setDouble(6, c.getRating());
-                        pstmt.setString(7, c.getCreateTime().format(DATE_FMT));
-                        pstmt.addBatch();
-                    }
+    private Movie mapMovie(ResultSet rs) throws SQLException {
+        String actorsStr = rs.getString("actors");
+        List<String> actorList = (actorsStr == null || actorsStr.isEmpty()) ? new ArrayList<>() : Arrays.asList(actorsStr.split(","));
+
+        String genreStr = rs.getString("genre");
+        MovieGenre genre = (genreStr != null) ? MovieGenre.fromDescription(genreStr) : MovieGenre.DRAMA;
+
+        // 读取上映日期
+        java.sql.Date releaseDate = rs.getDate("release_date");
+        LocalDate releaseTime = (releaseDate != null) ? releaseDate.toLocalDate() : LocalDate.now();
+
+        // 🔴 使用带 trailerUrl 和 coverUrl 的完整构造函数
+        return new Movie(
+                rs.getString("id"),
+                rs.getString("title"),
+                releaseTime, // 🔴 使用数据库中的上映日期
+                actorList,
+                rs.getString("director"),
+                rs.getInt("duration"),
+                rs.getDouble("rating"),
+                rs.getString("description"),
+                genre,
+                rs.getString("trailer_url"), // 🔴 读取预告片
+                rs.getString("cover_url")    // 🔴 读取封面
+        );
+    }
+
+    // ========== 3. 评论存取 ==========
+    private static final String COMMENT_UPSERT_SQL = "INSERT INTO comments (id, user_id, user_name, movie_id, content, rating, create_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE content=VALUES(content)"; // 简单处理
+
+    private void saveComments(Map<String, Movie> movies) {
+        // 电影号 → 评论，按评论条数分块
+        List<Map.Entry<String, Comment>> comments = new ArrayList<>();
+        for (Movie movie : movies.values()) {
+            if (movie.getComments() != null) {
+                for (Comment c : movie.getComments()) {
+                    comments.add(new AbstractMap.SimpleImmutableEntry<>(movie.getId(), c));
                 }
             }
-            pstmt.executeBatch();
-            conn.commit();
+        }
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            bulkWriter.inChunks(conn, comments, (c, chunk) -> bulkWriter.upsert(c, COMMENT_UPSERT_SQL, chunk,
+                    (pstmt, offset, entry) -> bindComment(pstmt, offset, entry.getKey(), entry.getValue())));
         } catch (SQLException e) {
             // 忽略非关键错误，但仍打印以便调试
             System.err.println("保存评论失败: " + e.getMessage());
         }
     }
 
+    private void bindComment(PreparedStatement pstmt, int offset, String movieId, Comment c) throws SQLException {
+        pstmt.setString(offset + 1, c.getId());
+        pstmt.setString(offset + 2, c.getUserId());
+        pstmt.setString(offset + 3, c.getUserName());
+        pstmt.setString(offset + 4, movieId);
+        pstmt.setString(offset + 5, c.getContent());
+        pstmt.setDouble(offset + 6, c.getRating());
+        pstmt.setObject(offset + 7, toDbTime(c.getCreateTime()));
+    }
+
+    private static final String COMMENT_COLUMNS = "id, user_id, user_name, movie_id, content, rating, create_time";
+
     private void loadComments(Map<String, Movie> movies) {
-        // 按照时间降序排列，保证最新的评论先加载到 Movie 对象的 list 头部
-        String sql = "SELECT * FROM comments ORDER BY create_time DESC";
+        // 每部电影内按时间降序排列，保证最新的评论先加载到 Movie 对象的 list 头部；两列同向，可按 (movie_id, create_time) 索引倒序读取
+        String sql = "SELECT " + COMMENT_COLUMNS + " FROM comments ORDER BY movie_id DESC, create_time DESC";
         try (Connection conn = SimpleDatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                String movieId = rs.getString("movie_id");
-                Movie movie = movies.get(movieId);
+                Movie movie = movies.get(rs.getString("movie_id"));
                 if (movie != null) {
-                    Comment c = new Comment(
-                            rs.getString("id"),
-                            rs.getString("user_id"),
-                            rs.getString("user_name"),
-                            movieId,
-                            rs.getString("content"),
-                            rs.getDouble("rating"),
-                            LocalDateTime.parse(rs.getString("create_time"), DATE_FMT)
-                    );
-                    movie.addComment(c); // 添加到内存对象中
+                    movie.addComment(mapComment(rs)); // 添加到内存对象中
                 }
             }
         } catch (Exception e) {
@@ -178,34 +260,82 @@ public class MySQLDataStorage {
         }
     }
 
+    // 单部电影的评论：在 (movie_id, create_time) 索引上做范围扫描，不读其他电影的评论
+    private void loadComments(Connection conn, Movie movie) throws SQLException {
+        String sql = "SELECT " + COMMENT_COLUMNS + " FROM comments WHERE movie_id = ? ORDER BY create_time DESC";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, movie.getId());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    movie.addComment(mapComment(rs));
+                }
+            }
+        }
+    }
+
+    private Comment mapComment(ResultSet rs) throws SQLException {
+        LocalDateTime createTime = readTime(rs, "create_time");
+        return new Comment(
+                rs.getString("id"),
+                rs.getString("user_id"),
+                rs.getString("user_name"),
+                rs.getString("movie_id"),
+                rs.getString("content"),
+                rs.getDouble("rating"),
+                createTime != null ? createTime : LocalDateTime.now()
+        );
+    }
+
     // ========== 放映厅相关方法 ==========
 
-    public void saveScreeningRooms(Map<String, ScreeningRoom> rooms) {
-        String sql = "INSERT INTO screening_rooms (id, name, room_rows, room_columns) " +
-                "VALUES (?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE name = VALUES(name), room_rows = VALUES(room_rows), room_columns = VALUES(room_columns)";
+    private static final String ROOM_UPSERT_SQL = "INSERT INTO screening_rooms (id, name, room_rows, room_columns) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), room_rows = VALUES(room_rows), room_columns = VALUES(room_columns)";
 
-        try (Connection conn = SimpleDatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    @Override
+    public void saveScreeningRooms(Map<String, ScreeningRoom> rooms) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            bulkWriter.inChunks(conn, rooms.values(),
+                    (c, chunk) -> bulkWriter.upsert(c, ROOM_UPSERT_SQL, chunk, this::bindScreeningRoom));
+        } catch (SQLException e) {
+            System.err.println("保存放映厅数据失败: " + e.getMessage());
+        }
+    }
 
+    /**
+     * 保存单个放映厅，并在同一事务中写入变更日志
+     */
+    @Override
+    public void saveScreeningRoom(ScreeningRoom room) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
             conn.setAutoCommit(false);
-
-            for (ScreeningRoom room : rooms.values()) {
-                pstmt.setString(1, room.getId());
-                pstmt.setString(2, room.getName());
-                pstmt.setInt(3, room.getRows());
-                pstmt.setInt(4, room.getColumns());
-                pstmt.addBatch();
+            try (PreparedStatement pstmt = conn.prepareStatement(ROOM_UPSERT_SQL)) {
+                bindScreeningRoom(pstmt, 0, room);
+                pstmt.executeUpdate();
+                insertChange(conn, ChangeLogEntry.TYPE_ROOM, room.getId(), ChangeLogEntry.OP_UPSERT);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-
-            pstmt.executeBatch();
-            conn.commit();
-
         } catch (SQLException e) {
-            System.err.println("保存放映厅数据失败: " + e.getMessage());
+            System.err.println("保存放映厅失败: " + e.getMessage());
         }
     }
 
+    @Override
+    public void deleteScreeningRoom(String roomId) {
+        deleteEntity("DELETE FROM screening_rooms WHERE id = ?", ChangeLogEntry.TYPE_ROOM, roomId);
+    }
+
+    private void bindScreeningRoom(PreparedStatement pstmt, int offset, ScreeningRoom room) throws SQLException {
+        pstmt.setString(offset + 1, room.getId());
+        pstmt.setString(offset + 2, room.getName());
+        pstmt.setInt(offset + 3, room.getRows());
+        pstmt.setInt(offset + 4, room.getColumns());
+    }
+
+    @Override
     public Map<String, ScreeningRoom> loadScreeningRooms() {
         Map<String, ScreeningRoom> rooms = new HashMap<>();
         String sql = "SELECT * FROM screening_rooms";
@@ -231,41 +361,145 @@ public class MySQLDataStorage {
         return rooms;
     }
 
+    @Override
+    public ScreeningRoom loadScreeningRoom(String roomId) {
+        String sql = "SELECT * FROM screening_rooms WHERE id = ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, roomId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new ScreeningRoom(
+                        rs.getString("id"),
+                        rs.getString("name"),
+                        rs.getInt("room_rows"),
+                        rs.getInt("room_columns")
+                );
+            }
+        } catch (SQLException e) {
+            System.err.println("加载放映厅失败: " + e.getMessage());
+            return null;
+        }
+    }
+
     // ========== 场次相关方法 ==========
 
-    public void saveShows(Map<String, Show> shows) {
-        // 注意：原代码的 SQL 语句中 end_time 列是多余的，在 Show 类中是通过 movie.duration 计算得到的，
-        // 且第二个代码块的 SQL 语句中包含了 end_time，这里保持第二个代码块的 SQL 结构。
-        String sql = "INSERT INTO shows (id, movie_id, room_id, start_time, end_time, base_price, status) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE movie_id = VALUES(movie_id), room_id = VALUES(room_id), " +
-                "start_time = VALUES(start_time), end_time = VALUES(end_time), " +
-                "base_price = VALUES(base_price), status = VALUES(status)";
+    // 注意：原代码的 SQL 语句中 end_time 列是多余的，在 Show 类中是通过 movie.duration 计算得到的，
+    // 且第二个代码块的 SQL 语句中包含了 end_time，这里保持第二个代码块的 SQL 结构。
+    private static final String SHOW_UPSERT_SQL = "INSERT INTO shows (id, movie_id, room_id, start_time, end_time, base_price, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE movie_id = VALUES(movie_id), room_id = VALUES(room_id), " +
+            "start_time = VALUES(start_time), end_time = VALUES(end_time), " +
+            "base_price = VALUES(base_price), status = VALUES(status)";
 
-        try (Connection conn = SimpleDatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    @Override
+    public void saveShows(Map<String, Show> shows) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            bulkWriter.inChunks(conn, shows.values(),
+                    (c, chunk) -> bulkWriter.upsert(c, SHOW_UPSERT_SQL, chunk, this::bindShow));
+        } catch (SQLException e) {
+            System.err.println("保存场次数据失败: " + e.getMessage());
+        }
+    }
 
+    /**
+     * 保存单个场次，并在同一事务中写入变更日志
+     */
+    @Override
+    public void saveShow(Show show) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
             conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(SHOW_UPSERT_SQL)) {
+                bindShow(pstmt, 0, show);
+                pstmt.executeUpdate();
+                insertChange(conn, ChangeLogEntry.TYPE_SHOW, show.getId(), ChangeLogEntry.OP_UPSERT);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("保存场次失败: " + e.getMessage());
+        }
+    }
 
-            for (Show show : shows.values()) {
-                pstmt.setString(1, show.getId());
-                pstmt.setString(2, show.getMovie().getId());
-                pstmt.setString(3, show.getScreeningRoom().getId());
-                pstmt.setString(4, show.getStartTime().format(DATE_FMT)); // 🔴 使用 DATE_FMT
-                pstmt.setString(5, show.getStartTime().plusMinutes(show.getMovie().getDuration()).format(DATE_FMT)); // 计算结束时间
-                pstmt.setDouble(6, show.getBasePrice());
-                pstmt.setString(7, "SCHEDULED"); // 默认状态
-                pstmt.addBatch();
+    /**
+     * 批量写入新场次：场次和 change_log 各用多行语句写入，整批在同一事务中提交（排片导入要求全部成功或全部失败，不分块提交）
+     * @return 是否提交成功，失败时整批回滚
+     */
+    @Override
+    public boolean saveShowsBatch(Collection<Show> shows) {
+        String changeSql = "INSERT INTO change_log (entity_type, entity_id, op, node_id) VALUES (?, ?, ?, ?)";
+        List<Show> rows = new ArrayList<>(shows);
+        String nodeId = SyncService.localNodeId();
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                bulkWriter.upsert(conn, SHOW_UPSERT_SQL, rows, this::bindShow);
+                bulkWriter.upsert(conn, changeSql, rows, (pstmt, offset, show) -> {
+                    pstmt.setString(offset + 1, ChangeLogEntry.TYPE_SHOW);
+                    pstmt.setString(offset + 2, show.getId());
+                    pstmt.setString(offset + 3, ChangeLogEntry.OP_UPSERT);
+                    pstmt.setString(offset + 4, nodeId);
+                });
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
+        } catch (SQLException e) {
+            System.err.println("批量保存场次失败: " + e.getMessage());
+            return false;
+        }
+    }
 
-            pstmt.executeBatch();
-            conn.commit();
+    @Override
+    public void deleteShow(String showId) {
+        deleteEntity("DELETE FROM shows WHERE id = ?", ChangeLogEntry.TYPE_SHOW, showId);
+    }
 
-        } catch (SQLException e) {
-            System.err.println("保存场次数据失败: " + e.getMessage());
+    private void bindShow(PreparedStatement pstmt, int offset, Show show) throws SQLException {
+        pstmt.setString(offset + 1, show.getId());
+        pstmt.setString(offset + 2, show.getMovie().getId());
+        pstmt.setString(offset + 3, show.getScreeningRoom().getId());
+        pstmt.setObject(offset + 4, toDbTime(show.getStartTime()));
+        pstmt.setObject(offset + 5, toDbTime(show.getStartTime().plusMinutes(show.getMovie().getDuration()))); // 计算结束时间
+        pstmt.setDouble(offset + 6, show.getBasePrice());
+        pstmt.setString(offset + 7, show.getStatus().name());
+    }
+
+    private static final String SHOW_COLUMNS = "id, movie_id, room_id, start_time, base_price, status";
+
+    // 电影或放映厅不在 movies / rooms 中时返回 null
+    private Show mapShow(ResultSet rs, Map<String, Movie> movies, Map<String, ScreeningRoom> rooms) throws SQLException {
+        Movie movie = movies.get(rs.getString("movie_id"));
+        ScreeningRoom room = rooms.get(rs.getString("room_id"));
+        if (movie == null || room == null) {
+            return null;
+        }
+        Show show = new Show(
+                rs.getString("id"),
+                movie,
+                room,
+                readTime(rs, "start_time"),
+                rs.getDouble("base_price")
+        );
+        show.setStatus(parseShowStatus(rs.getString("status")));
+        return show;
+    }
+
+    private static Show.ShowStatus parseShowStatus(String status) {
+        try {
+            return status != null ? Show.ShowStatus.valueOf(status) : Show.ShowStatus.SCHEDULED;
+        } catch (IllegalArgumentException e) {
+            return Show.ShowStatus.SCHEDULED;
         }
     }
 
+    @Override
     public Map<String, Show> loadShows() {
         Map<String, Show> shows = new HashMap<>();
 
@@ -275,29 +509,17 @@ public class MySQLDataStorage {
         Map<String, Movie> movies = loadMovies();
         Map<String, ScreeningRoom> rooms = loadScreeningRooms();
 
-        String sql = "SELECT * FROM shows";
+        // 按开场时间顺序读取（idx_shows_start），电影的排片表按时间顺序恢复
+        String sql = "SELECT " + SHOW_COLUMNS + " FROM shows ORDER BY start_time";
 
         try (Connection conn = SimpleDatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                String movieId = rs.getString("movie_id");
-                String roomId = rs.getString("room_id");
-
-                Movie movie = movies.get(movieId);
-                ScreeningRoom room = rooms.get(roomId);
-
-                if (movie != null && room != null) {
-                    // 创建Show对象
-                    Show show = new Show(
-                            rs.getString("id"),
-                            movie,
-                            room,
-                            LocalDateTime.parse(rs.getString("start_time"), DATE_FMT), // 🔴 使用 DATE_FMT
-                            rs.getDouble("base_price")
-                    );
-
+                Show show = mapShow(rs, movies, rooms);
+                if (show != null) {
+                    Movie movie = show.getMovie();
                     // 恢复电影的 showSchedule 列表
                     movie.addShow(show.getStartTime().toLocalDate(), show);
 
@@ -312,160 +534,344 @@ public class MySQLDataStorage {
         return shows;
     }
 
+    /**
+     * 按主键加载单个场次，电影和放映厅从调用方提供的内存对象中关联
+     */
+    @Override
+    public Show loadShow(String showId, Map<String, Movie> movies, Map<String, ScreeningRoom> rooms) {
+        String sql = "SELECT " + SHOW_COLUMNS + " FROM shows WHERE id = ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, showId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapShow(rs, movies, rooms) : null;
+            }
+        } catch (SQLException e) {
+            System.err.println("加载场次失败: " + e.getMessage());
+            return null;
+        }
+    }
+
     // ========== 用户相关方法 ==========
 
+    private static final String USER_COLUMNS = "id, name, password, phone, email, is_admin";
+    private static final String USER_UPSERT_SQL = "INSERT INTO users (" + USER_COLUMNS + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE name=VALUES(name), password=VALUES(password), " +
+            "phone=VALUES(phone), email=VALUES(email), is_admin=VALUES(is_admin)";
+
     // ================== 1. 修复用户保存 (注册问题) ==================
+    @Override
     public void saveUsers(Map<String, User> users) {
-        String sql = "INSERT INTO users (id, name, password, phone, email, is_admin) " +
-                "VALUES (?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE name=VALUES(name), password=VALUES(password), " +
-                "phone=VALUES(phone), email=VALUES(email), is_admin=VALUES(is_admin)";
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            bulkWriter.inChunks(conn, users.values(), (c, chunk) -> bulkWriter.upsert(c, USER_UPSERT_SQL, chunk, this::bindUser));
+            System.out.println("用户数据已保存到数据库，数量：" + users.size());
+        } catch (SQLException e) {
+            System.err.println("保存用户失败: " + e.getMessage());
+        }
+    }
 
+    /**
+     * 单行写入一个用户（注册、修改角色等），不重写其他用户
+     */
+    @Override
+    public boolean saveUser(User user) {
         try (Connection conn = SimpleDatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(USER_UPSERT_SQL)) {
+            bindUser(pstmt, 0, user);
+            pstmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("保存用户失败: " + e.getMessage());
+            return false;
+        }
+    }
 
-            conn.setAutoCommit(false);
-            for (User user : users.values()) {
-                pstmt.setString(1, user.getId());
-                pstmt.setString(2, user.getName());
-                pstmt.setString(3, user.getPassword()); // 确保这里不为 null
-                pstmt.setString(4, user.getPhone());
-                pstmt.setString(5, user.getEmail());
-                pstmt.setBoolean(6, user.isAdmin());
-                pstmt.addBatch();
+    @Override
+    public void deleteUser(String userId) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM users WHERE id = ?")) {
+            pstmt.setString(1, userId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("删除用户失败: " + e.getMessage());
+        }
+    }
+
+    private void bindUser(PreparedStatement pstmt, int offset, User user) throws SQLException {
+        pstmt.setString(offset + 1, user.getId());
+        pstmt.setString(offset + 2, user.getName());
+        pstmt.setString(offset + 3, user.getPassword()); // 确保这里不为 null
+        pstmt.setString(offset + 4, user.getPhone());
+        pstmt.setString(offset + 5, user.getEmail());
+        pstmt.setBoolean(offset + 6, user.isAdmin());
+    }
+
+    /**
+     * 按主键顺序分页读取用户，供管理员列表使用（启动时不再全量加载用户）
+     */
+    @Override
+    public List<User> loadUsersPage(int offset, int limit) {
+        List<User> users = new ArrayList<>();
+        String sql = "SELECT " + USER_COLUMNS + " FROM users ORDER BY id LIMIT ? OFFSET ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, limit);
+            pstmt.setInt(2, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapUser(rs));
+                }
             }
-            pstmt.executeBatch();
-            conn.commit();
-            System.out.println("用户数据已保存到数据库，数量：" + users.size());
         } catch (SQLException e) {
-            System.err.println("保存用户失败: " + e.getMessage());
+            System.err.println("加载用户失败: " + e.getMessage());
         }
+        return users;
     }
 
-    public Map<String, User> loadUsers() {
-        Map<String, User> users = new HashMap<>();
-        String sql = "SELECT * FROM users";
+    /**
+     * 用户总数，查询失败时返回 -1
+     */
+    @Override
+    public long countUsers() {
         try (Connection conn = SimpleDatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                User user = new User(
-                        rs.getString("id"),
-                        rs.getString("name"),
-                        rs.getString("password"),
-                        rs.getString("phone"),
-                        rs.getString("email"),
-                        rs.getBoolean("is_admin") ? User.UserRole.ADMIN : User.UserRole.CUSTOMER
-                );
-                users.put(user.getId(), user);
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            System.err.println("统计用户失败: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public User loadUser(String userId) {
+        String sql = "SELECT " + USER_COLUMNS + " FROM users WHERE id = ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapUser(rs) : null;
             }
         } catch (SQLException e) {
             System.err.println("加载用户失败: " + e.getMessage());
+            return null;
         }
-        return users;
+    }
+
+    private User mapUser(ResultSet rs) throws SQLException {
+        return new User(
+                rs.getString("id"),
+                rs.getString("name"),
+                rs.getString("password"),
+                rs.getString("phone"),
+                rs.getString("email"),
+                rs.getBoolean("is_admin") ? User.UserRole.ADMIN : User.UserRole.CUSTOMER
+        );
     }
 
     // ========== 订单相关方法 ==========
 
-    public void saveOrders(Map<String, Order> orders) {
-        // 1. 保存订单主表
-        String orderSql = "INSERT INTO orders (order_id, user_id, show_id, total_amount, status, create_time) " +
-                "VALUES (?, ?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE status = VALUES(status)";
+    // 订单语句包内可见：SchemaMigratorTest 用它们检查迁移后的 orders 表
+    // 已有订单只在内存版本号更新时覆盖状态，避免旧快照覆盖其他节点或并发请求写入的新状态（status 须在 version 之前赋值）
+    static final String ORDER_UPSERT_SQL = "INSERT INTO orders (order_id, user_id, show_id, total_amount, status, create_time, pricing_strategy, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE status = CASE WHEN VALUES(version) > version THEN VALUES(status) ELSE status END, " +
+            "version = GREATEST(version, VALUES(version))";
+
+    static final String ORDER_COLUMNS = "order_id, user_id, show_id, status, create_time, pricing_strategy, version";
+
+    static final String ORDER_STATUS_UPDATE_SQL = "UPDATE orders SET status = ?, version = ? WHERE order_id = ? AND version = ?";
 
-        // 2. 保存订单座位关联表 (先删后插，简单粗暴但有效)
-        String deleteSeatsSql = "DELETE FROM order_seats WHERE order_id = ?";
+    @Override
+    public void saveOrders(Map<String, Order> orders) {
+        // 每块订单一个事务：订单主表多行 upsert；座位关联表按订单号一次删除，再多行插入
         String insertSeatsSql = "INSERT INTO order_seats (order_id, seat_row, seat_col) VALUES (?, ?, ?)";
 
         try (Connection conn = SimpleDatabaseConnection.getConnection()) {
-            conn.setAutoCommit(false);
+            bulkWriter.inChunks(conn, orders.values(), (c, chunk) -> {
+                bulkWriter.upsert(c, ORDER_UPSERT_SQL, chunk, this::bindOrder);
 
-            try (PreparedStatement pstmtOrder = conn.prepareStatement(orderSql);
-                 PreparedStatement pstmtDelSeats = conn.prepareStatement(deleteSeatsSql);
-                 PreparedStatement pstmtInsSeats = conn.prepareStatement(insertSeatsSql)) {
-
-                for (Order order : orders.values()) {
-                    // --- 保存 Order ---
-                    pstmtOrder.setString(1, order.getOrderId());
-                    pstmtOrder.setString(2, order.getUser().getId());
-                    pstmtOrder.setString(3, order.getShow().getId());
-                    pstmtOrder.setDouble(4, order.getTotalAmount());
-                    pstmtOrder.setString(5, order.getStatus().name());
-                    pstmtOrder.setString(6, order.getCreateTime().format(DATE_FMT)); // 🔴 使用 DATE_FMT
-                    pstmtOrder.addBatch();
-
-                    // --- 保存 Seats ---
-                    // 先删除该订单旧的座位记录
-                    pstmtDelSeats.setString(1, order.getOrderId());
-                    pstmtDelSeats.executeUpdate();
-
-                    // 插入新的座位记录
+                List<String> orderIds = new ArrayList<>(chunk.size());
+                List<Map.Entry<String, Seat>> seats = new ArrayList<>();
+                for (Order order : chunk) {
+                    orderIds.add(order.getOrderId());
                     for (Seat seat : order.getSeats()) {
-                        pstmtInsSeats.setString(1, order.getOrderId());
-                        pstmtInsSeats.setInt(2, seat.getRow());
-                        pstmtInsSeats.setInt(3, seat.getCol());
-                        pstmtInsSeats.addBatch();
+                        seats.add(new AbstractMap.SimpleImmutableEntry<>(order.getOrderId(), seat));
                     }
                 }
-                pstmtOrder.executeBatch();
+                bulkWriter.deleteIn(c, "order_seats", "order_id", orderIds);
+                bulkWriter.upsert(c, insertSeatsSql, seats, (pstmt, offset, entry) -> {
+                    pstmt.setString(offset + 1, entry.getKey());
+                    pstmt.setInt(offset + 2, entry.getValue().getRow());
+                    pstmt.setInt(offset + 3, entry.getValue().getCol());
+                });
+            });
+        } catch (SQLException e) {
+            System.err.println("保存订单数据失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存单个订单，订单变化引起的事件在同一事务中写入发件箱；事务失败时事件也不会发布
+     * @return 事务是否提交；数据库异常只打印错误并返回 false
+     */
+    @Override
+    public boolean saveOrder(Order order, List<OutboxEvent> events) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmtOrder = conn.prepareStatement(ORDER_UPSERT_SQL);
+                 PreparedStatement pstmtDelSeats = conn.prepareStatement("DELETE FROM order_seats WHERE order_id = ?");
+                 PreparedStatement pstmtInsSeats = conn.prepareStatement("INSERT INTO order_seats (order_id, seat_row, seat_col) VALUES (?, ?, ?)")) {
+
+                bindOrder(pstmtOrder, 0, order);
+                pstmtOrder.executeUpdate();
+
+                pstmtDelSeats.setString(1, order.getOrderId());
+                pstmtDelSeats.executeUpdate();
+                for (Seat seat : order.getSeats()) {
+                    pstmtInsSeats.setString(1, order.getOrderId());
+                    pstmtInsSeats.setInt(2, seat.getRow());
+                    pstmtInsSeats.setInt(3, seat.getCol());
+                    pstmtInsSeats.addBatch();
+                }
                 pstmtInsSeats.executeBatch();
 
+                insertChange(conn, ChangeLogEntry.TYPE_ORDER, order.getOrderId(), ChangeLogEntry.OP_UPSERT);
+                insertOutboxEvents(conn, events);
                 conn.commit();
+                return true;
             } catch (SQLException e) {
                 conn.rollback();
                 throw e;
             }
         } catch (SQLException e) {
-            System.err.println("保存订单数据失败: " + e.getMessage());
+            System.err.println("保存订单失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 按版本号条件更新订单状态，并在同一事务中写入变更日志和发件箱事件；版本冲突时事件随事务回滚
+     * @param expectedVersion 转换前的版本号（{@link Order#transition} 的返回值）
+     * @return 数据库中的版本号已不是 expectedVersion（被其他节点或请求修改过）时返回 false；数据库异常时回滚、打印错误并返回 false
+     */
+    @Override
+    public boolean updateOrderStatus(Order order, long expectedVersion, List<OutboxEvent> events) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(ORDER_STATUS_UPDATE_SQL)) {
+                pstmt.setString(1, order.getStatus().name());
+                pstmt.setLong(2, order.getVersion());
+                pstmt.setString(3, order.getOrderId());
+                pstmt.setLong(4, expectedVersion);
+                if (pstmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                insertChange(conn, ChangeLogEntry.TYPE_ORDER, order.getOrderId(), ChangeLogEntry.OP_UPSERT);
+                insertOutboxEvents(conn, events);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("更新订单状态失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 批量按版本号条件更新订单状态：状态更新和 change_log 各用一条批处理语句，在同一事务中提交
+     * @param expectedVersions 订单 → 转换前的版本号
+     * @param events           这批状态变化引起的事件，版本冲突的订单对应的事件不写入
+     * @return 版本冲突（未更新）的订单号；数据库异常时整批回滚并返回 null
+     */
+    @Override
+    public Set<String> updateOrderStatusBatch(Map<Order, Long> expectedVersions, List<OutboxEvent> events) {
+        Set<String> conflicts = new HashSet<>();
+        String changeSql = "INSERT INTO change_log (entity_type, entity_id, op, node_id) VALUES (?, ?, ?, ?)";
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(ORDER_STATUS_UPDATE_SQL);
+                 PreparedStatement pstmtChange = conn.prepareStatement(changeSql)) {
+                List<Order> batch = new ArrayList<>(expectedVersions.keySet());
+                for (Order order : batch) {
+                    pstmt.setString(1, order.getStatus().name());
+                    pstmt.setLong(2, order.getVersion());
+                    pstmt.setString(3, order.getOrderId());
+                    pstmt.setLong(4, expectedVersions.get(order));
+                    pstmt.addBatch();
+                }
+                int[] counts = pstmt.executeBatch();
+                for (int i = 0; i < batch.size(); i++) {
+                    String orderId = batch.get(i).getOrderId();
+                    if (counts[i] == 0) {
+                        conflicts.add(orderId);
+                        continue;
+                    }
+                    pstmtChange.setString(1, ChangeLogEntry.TYPE_ORDER);
+                    pstmtChange.setString(2, orderId);
+                    pstmtChange.setString(3, ChangeLogEntry.OP_UPSERT);
+                    pstmtChange.setString(4, SyncService.localNodeId());
+                    pstmtChange.addBatch();
+                }
+                pstmtChange.executeBatch();
+                List<OutboxEvent> committed = new ArrayList<>(events.size());
+                for (OutboxEvent event : events) {
+                    if (!conflicts.contains(event.getOrderId())) {
+                        committed.add(event);
+                    }
+                }
+                insertOutboxEvents(conn, committed);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("批量更新订单状态失败: " + e.getMessage());
+            return null;
         }
+        return conflicts;
     }
 
+    private void bindOrder(PreparedStatement pstmt, int offset, Order order) throws SQLException {
+        pstmt.setString(offset + 1, order.getOrderId());
+        pstmt.setString(offset + 2, order.getUser().getId());
+        pstmt.setString(offset + 3, order.getShow().getId());
+        pstmt.setDouble(offset + 4, order.getTotalAmount());
+        pstmt.setString(offset + 5, order.getStatus().name());
+        pstmt.setObject(offset + 6, toDbTime(order.getCreateTime()));
+        pstmt.setString(offset + 7, order.getPricingStrategy());
+        pstmt.setLong(offset + 8, order.getVersion());
+    }
+
+    @Override
     public Map<String, Order> loadOrders() {
         Map<String, Order> orders = new HashMap<>();
         // 确保 CinemaManager 已经初始化，以便获取关联对象
         CinemaManager manager = CinemaManager.getInstance();
 
-        String sql = "SELECT * FROM orders";
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM orders";
 
         try (Connection conn = SimpleDatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
-                String orderId = rs.getString("order_id");
-                String userId = rs.getString("user_id");
-                String showId = rs.getString("show_id");
-                String statusStr = rs.getString("status");
-                String timeStr = rs.getString("create_time");
-
-                // 1. 恢复关联对象
-                User user = manager.getUser(userId);
-                Show show = manager.getShow(showId);
-
-                if (user != null && show != null) {
-                    // 2. 加载该订单的座位
-                    List<Seat> orderSeats = loadOrderSeats(conn, orderId, show);
-
-                    // 3. 恢复订单对象
-                    LocalDateTime createTime = (timeStr != null) ? LocalDateTime.parse(timeStr, DATE_FMT) : LocalDateTime.now(); // 🔴 使用 DATE_FMT
-
-                    Order order = new Order(
-                            orderId,
-                            show,
-                            orderSeats,
-                            createTime,
-                            Order.OrderStatus.valueOf(statusStr)
-                    );
-                    order.setUser(user);
-
+                Order order = mapOrder(conn, rs, manager);
+                if (order != null) {
                     // 4. 重要：根据订单状态恢复座位的状态 (SOLD/LOCKED)
                     if (order.getStatus() == Order.OrderStatus.PAID) {
-                        for(Seat s : orderSeats) s.sell();
-                    } else if (order.getStatus() == Order.OrderStatus.RESERVED) {
-                        for(Seat s : orderSeats) s.lock();
+                        for(Seat s : order.getSeats()) s.sell();
+                    } else if (order.getStatus() == Order.OrderStatus.RESERVED || order.getStatus() == Order.OrderStatus.PAYING) {
+                        for(Seat s : order.getSeats()) s.lock();
                     }
 
-                    orders.put(orderId, order);
+                    orders.put(order.getOrderId(), order);
                 }
             }
         } catch (SQLException e) {
@@ -474,6 +880,57 @@ public class MySQLDataStorage {
         return orders;
     }
 
+    /**
+     * 按主键加载单个订单，座位取自内存中的场次对象，不修改座位状态（由调用方决定如何应用）
+     */
+    @Override
+    public Order loadOrder(String orderId) {
+        CinemaManager manager = CinemaManager.getInstance();
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM orders WHERE order_id = ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, orderId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapOrder(conn, rs, manager) : null;
+            }
+        } catch (SQLException e) {
+            System.err.println("加载订单失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Order mapOrder(Connection conn, ResultSet rs, CinemaManager manager) throws SQLException {
+        String orderId = rs.getString("order_id");
+        String userId = rs.getString("user_id");
+        String showId = rs.getString("show_id");
+        String statusStr = rs.getString("status");
+        LocalDateTime createTime = readTime(rs, "create_time");
+
+        // 1. 恢复关联对象（用户不在缓存中时由 CinemaManager 按主键加载）
+        User user = manager.getUser(userId);
+        Show show = manager.getShow(showId);
+
+        if (user == null || show == null) {
+            return null;
+        }
+
+        // 2. 加载该订单的座位
+        List<Seat> orderSeats = loadOrderSeats(conn, orderId, show);
+
+        // 3. 恢复订单对象
+        Order order = new Order(
+                orderId,
+                show,
+                orderSeats,
+                createTime != null ? createTime : LocalDateTime.now(),
+                Order.OrderStatus.valueOf(statusStr)
+        );
+        order.restoreState(order.getStatus(), rs.getLong("version"));
+        order.setUser(user);
+        order.setPricingStrategy(rs.getString("pricing_strategy"));
+        return order;
+    }
+
     // 辅助方法：加载订单对应的座位
     private List<Seat> loadOrderSeats(Connection conn, String orderId, Show show) throws SQLException {
         List<Seat> seats = new ArrayList<>();
@@ -496,8 +953,287 @@ public class MySQLDataStorage {
         return seats;
     }
 
+    // ========== 变更日志 (增量同步) ==========
+
+    /**
+     * 在调用方的事务中追加一条变更日志，与实体修改一同提交或回滚
+     */
+    private void insertChange(Connection conn, String entityType, String entityId, String op) throws SQLException {
+        String sql = "INSERT INTO change_log (entity_type, entity_id, op, node_id) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, entityType);
+            pstmt.setString(2, entityId);
+            pstmt.setString(3, op);
+            pstmt.setString(4, SyncService.localNodeId());
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void deleteEntity(String deleteSql, String entityType, String entityId) {
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
+                pstmt.setString(1, entityId);
+                pstmt.executeUpdate();
+                insertChange(conn, entityType, entityId, ChangeLogEntry.OP_DELETE);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("删除 " + entityType + " 失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取 version 大于 since 的变更，按版本升序，最多 limit 条
+     */
+    @Override
+    public List<ChangeLogEntry> loadChangesSince(long since, int limit) {
+        List<ChangeLogEntry> changes = new ArrayList<>();
+        String sql = "SELECT version, entity_type, entity_id, op, node_id, changed_at, " +
+                "FLOOR(TIMESTAMPDIFF(MICROSECOND, changed_at, NOW(3)) / 1000) AS age_ms FROM change_log " +
+                "WHERE version > ? ORDER BY version LIMIT ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, since);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp changedAt = rs.getTimestamp("changed_at");
+                    changes.add(new ChangeLogEntry(
+                            rs.getLong("version"),
+                            rs.getString("entity_type"),
+                            rs.getString("entity_id"),
+                            rs.getString("op"),
+                            rs.getString("node_id"),
+                            changedAt != null ? changedAt.toLocalDateTime() : null,
+                            rs.getLong("age_ms")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("加载变更日志失败: " + e.getMessage());
+        }
+        return changes;
+    }
+
+    /**
+     * 当前最新的变更版本号，表为空或查询失败时返回 0
+     */
+    @Override
+    public long loadLatestChangeVersion() {
+        String sql = "SELECT COALESCE(MAX(version), 0) FROM change_log";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            System.err.println("查询最新变更版本失败: " + e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 指定版本的变更提交时间（毫秒），用于确认快照水位仍对应同一份变更日志（重建数据库后版本号会重新计数）；
+     * 该版本不存在或查询失败时返回 -1
+     */
+    @Override
+    public long loadChangeTimeMillis(long version) {
+        String sql = "SELECT FLOOR(CAST(UNIX_TIMESTAMP(changed_at) AS DECIMAL(20, 3)) * 1000) FROM change_log WHERE version = ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1L;
+            }
+        } catch (SQLException e) {
+            System.err.println("查询变更时间失败: " + e.getMessage());
+            return -1L;
+        }
+    }
+
+    // ========== 发件箱 ==========
+
+    // 按 event_id 去重：订单日志补写时同一事件可能写入两次（补写成功、标记已写库前进程退出）
+    private void insertOutboxEvents(Connection conn, List<OutboxEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO outbox_events (event_id, event_type, order_id, show_id, user_id, message) VALUES (?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE event_id = event_id";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (OutboxEvent event : events) {
+                pstmt.setString(1, event.getEventId());
+                pstmt.setString(2, event.getEventType());
+                pstmt.setString(3, event.getOrderId());
+                pstmt.setString(4, event.getShowId());
+                pstmt.setString(5, event.getUserId());
+                pstmt.setString(6, event.getMessage());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * 按写入顺序读取尚未发布的事件，最多 limit 条
+     */
+    @Override
+    public List<OutboxEvent> loadUnpublishedOutboxEvents(int limit) {
+        List<OutboxEvent> events = new ArrayList<>();
+        String sql = "SELECT id, event_id, event_type, order_id, show_id, user_id, message, created_at, " +
+                "FLOOR(TIMESTAMPDIFF(MICROSECOND, created_at, NOW(3)) / 1000) AS age_ms FROM outbox_events " +
+                "WHERE published_at IS NULL ORDER BY id LIMIT ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp createdAt = rs.getTimestamp("created_at");
+                    events.add(new OutboxEvent(
+                            rs.getLong("id"),
+                            rs.getString("event_id"),
+                            rs.getString("event_type"),
+                            rs.getString("order_id"),
+                            rs.getString("show_id"),
+                            rs.getString("user_id"),
+                            rs.getString("message"),
+                            createdAt != null ? createdAt.toLocalDateTime() : null,
+                            rs.getLong("age_ms")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("加载发件箱事件失败: " + e.getMessage());
+        }
+        return events;
+    }
+
+    /**
+     * 标记事件已发布
+     */
+    @Override
+    public void markOutboxEventsPublished(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE outbox_events SET published_at = NOW(3) WHERE id = ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (Long id : ids) {
+                pstmt.setLong(1, id);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            System.err.println("标记发件箱事件失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 未发布事件的数量和其中最早一条已等待的毫秒数，查询失败时返回 null
+     */
+    @Override
+    public long[] loadOutboxBacklog() {
+        String sql = "SELECT COUNT(*), COALESCE(FLOOR(MAX(TIMESTAMPDIFF(MICROSECOND, created_at, NOW(3))) / 1000), 0) " +
+                "FROM outbox_events WHERE published_at IS NULL";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? new long[]{rs.getLong(1), rs.getLong(2)} : new long[]{0L, 0L};
+        } catch (SQLException e) {
+            System.err.println("查询发件箱积压失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 删除 hours 小时之前已发布的事件，返回删除条数
+     */
+    @Override
+    public int deletePublishedOutboxEvents(int hours) {
+        String sql = "DELETE FROM outbox_events WHERE published_at IS NOT NULL AND published_at < TIMESTAMPADD(HOUR, -?, NOW(3))";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, hours);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("清理发件箱失败: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // ========== 幂等键 ==========
+
+    /**
+     * 保存幂等键的响应；键已存在时保留第一次的响应
+     */
+    @Override
+    public void saveIdempotencyRecord(IdempotencyRecord record) {
+        String sql = "INSERT IGNORE INTO idempotency_keys (idem_key, endpoint, fingerprint, response, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, record.getKey());
+            pstmt.setString(2, record.getEndpoint());
+            pstmt.setString(3, record.getFingerprint());
+            pstmt.setString(4, record.getResponseJson());
+            pstmt.setLong(5, record.getCreatedAtMillis());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("保存幂等键失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按键读取幂等记录，不存在或查询失败时返回 null
+     */
+    @Override
+    public IdempotencyRecord loadIdempotencyRecord(String key) {
+        String sql = "SELECT idem_key, endpoint, fingerprint, response, created_at FROM idempotency_keys WHERE idem_key = ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new IdempotencyRecord(
+                            rs.getString("idem_key"),
+                            rs.getString("endpoint"),
+                            rs.getString("fingerprint"),
+                            rs.getString("response"),
+                            rs.getLong("created_at")
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("加载幂等键失败: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 删除 createdBefore（毫秒时间戳）之前的幂等记录，返回删除条数
+     */
+    @Override
+    public int deleteIdempotencyRecordsBefore(long createdBefore) {
+        String sql = "DELETE FROM idempotency_keys WHERE created_at < ?";
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, createdBefore);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("清理过期幂等键失败: " + e.getMessage());
+            return 0;
+        }
+    }
+
     // ========== 数据库初始化方法 ==========
 
+    @Override
     public void initializeDefaultData() {
         // 这里可以添加初始化默认数据的逻辑
         System.out.println("数据库初始化完成");
@@ -505,6 +1241,7 @@ public class MySQLDataStorage {
 
     // ========== 关闭连接 ==========
 
+    @Override
     public void close() {
         // 简单连接不需要关闭连接池
     }
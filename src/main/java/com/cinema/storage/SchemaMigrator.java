@@ -0,0 +1,246 @@
+package com.cinema.storage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 数据库结构迁移
+ * 按版本号顺序执行 classpath:db/migration 下的脚本（V{版本}__{说明}.sql），已执行的版本记录在 schema_version 表中，
+ * 只执行尚未执行的版本，不删除已有表和数据；多个节点同时启动时用 MySQL 命名锁保证只有一个节点执行
+ * 某个版本失败时停止，后续版本不执行，修复后重启会从失败的版本继续
+ * 嵌入式数据库（storage.type=embedded）不执行迁移脚本，直接按 db/embedded/schema.sql 建立最新的表结构（均为 IF NOT EXISTS）
+ */
+public class SchemaMigrator {
+    private static final String LOCATION = "db/migration/";
+    private static final String EMBEDDED_SCHEMA = "db/embedded/schema.sql";
+    private static final String LOCK_NAME = "cinema_db.schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // 按版本号升序排列；新增迁移时在末尾追加，已发布的脚本不要再修改
+    static final String[] MIGRATIONS = {
+            "V1__baseline.sql",
+            "V2__shows_datetime_and_indexes.sql",
+            "V3__orders_datetime_and_indexes.sql",
+            "V4__comments_datetime_and_indexes.sql",
+            "V5__orders_version_and_sync_tables.sql"
+    };
+
+    private static boolean migrated = false;
+
+    private SchemaMigrator() {}
+
+    /**
+     * 每个进程只迁移一次（MySQLDataStorage 每次创建都会调用）；失败时下次调用再试
+     */
+    public static synchronized void migrateOnce() {
+        if (migrated) {
+            return;
+        }
+        try {
+            migrate();
+            migrated = true;
+        } catch (SQLException | IOException e) {
+            System.err.println("数据库迁移失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 执行所有未执行的迁移
+     * @return 本次执行的版本数
+     */
+    public static int migrate() throws SQLException, IOException {
+        if (SimpleDatabaseConnection.isEmbedded()) {
+            createEmbeddedSchema();
+            return 0;
+        }
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            if (!acquireLock(conn)) {
+                throw new SQLException("等待迁移锁超时，可能有其他节点正在迁移");
+            }
+            try {
+                return apply(conn, MIGRATIONS);
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    /**
+     * 在给定连接上按顺序执行尚未执行的脚本并记录版本（调用方负责加锁）
+     * @return 本次执行的版本数
+     */
+    static int apply(Connection conn, String[] scripts) throws SQLException, IOException {
+        ensureVersionTable(conn);
+        Map<Integer, Long> applied = loadAppliedVersions(conn);
+        int count = 0;
+        for (String script : scripts) {
+            int version = versionOf(script);
+            String sql = readResource(LOCATION + script);
+            long checksum = checksum(sql);
+            Long appliedChecksum = applied.get(version);
+            if (appliedChecksum != null) {
+                if (appliedChecksum != checksum) {
+                    System.err.println("⚠ 迁移脚本 " + script + " 在执行后被修改过，已忽略修改");
+                }
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            try (Statement stmt = conn.createStatement()) {
+                for (String statement : splitStatements(sql)) {
+                    stmt.execute(statement);
+                }
+            } catch (SQLException e) {
+                throw new SQLException("执行 " + script + " 失败: " + e.getMessage(), e);
+            }
+            recordVersion(conn, version, script, checksum, System.currentTimeMillis() - start);
+            System.out.println("✓ 数据库迁移到 V" + version + " (" + script + ")");
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 当前数据库已执行到的最高版本，没有 schema_version 表时返回 0
+     */
+    public static int currentVersion() {
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    // 嵌入式数据库只在本进程使用，不需要迁移锁和版本记录
+    private static void createEmbeddedSchema() throws SQLException, IOException {
+        String sql = readResource(EMBEDDED_SCHEMA);
+        try (Connection conn = SimpleDatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String statement : splitStatements(sql)) {
+                stmt.execute(statement);
+            }
+        }
+    }
+
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, LOCK_NAME);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            // 连接关闭时锁会自动释放
+        }
+    }
+
+    private static void ensureVersionTable(Connection conn) throws SQLException {
+        String sql = "CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INT PRIMARY KEY, " +
+                "script VARCHAR(200) NOT NULL, " +
+                "checksum BIGINT NOT NULL, " +
+                "execution_ms BIGINT NOT NULL, " +
+                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static Map<Integer, Long> loadAppliedVersions(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void recordVersion(Connection conn, int version, String script, long checksum, long elapsedMillis) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, script, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, version);
+            pstmt.setString(2, script);
+            pstmt.setLong(3, checksum);
+            pstmt.setLong(4, elapsedMillis);
+            pstmt.executeUpdate();
+        }
+    }
+
+    static int versionOf(String script) {
+        int end = script.indexOf("__");
+        if (!script.startsWith("V") || end < 2) {
+            throw new IllegalArgumentException("迁移脚本名应为 V{版本}__{说明}.sql: " + script);
+        }
+        return Integer.parseInt(script.substring(1, end));
+    }
+
+    private static String readResource(String path) throws IOException {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IOException("无法找到迁移脚本: " + path);
+            }
+            StringBuilder sb = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    sb.append(line).append('\n');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 按行拆分语句：跳过空行和 -- 注释，以分号结尾的行结束一条语句（与 DatabaseInitializer 读取 SQL 脚本的规则一致）
+     */
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (line.endsWith(";")) {
+                String statement = current.toString().trim();
+                statements.add(statement.substring(0, statement.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -1,5 +1,6 @@
 package com.cinema.storage;
 
+import com.cinema.config.AppConfig;
 import com.cinema.config.DbPasswordResolver;
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,6 +15,7 @@ public class SimpleDatabaseConnection {
     private static String password;
     private static String driver;
     private static boolean driverAvailable = false;
+    private static boolean embedded = false; // storage.type=embedded：连接进程内的 H2 数据库
     private static boolean initialized = false;
     private static String[] commandLineArgs = null;
     
@@ -24,9 +26,14 @@ public class SimpleDatabaseConnection {
         commandLineArgs = args;
     }
     
-    private static void initialize() {
+    private static synchronized void initialize() {
         if (initialized) return;
         
+        if (DataStorageFactory.TYPE_EMBEDDED.equals(DataStorageFactory.type())) {
+            initializeEmbedded();
+            return;
+        }
+
         try {
             // 加载配置文件
             Properties props = new Properties();
@@ -78,13 +85,43 @@ public class SimpleDatabaseConnection {
         
         initialized = true;
     }
+
+    // 嵌入式数据库：H2 文件库（MySQL 兼容模式），最后一个连接关闭后也不关闭数据库，避免每次取连接都重新打开
+    private static void initializeEmbedded() {
+        embedded = true;
+        url = AppConfig.get("storage.embedded.url",
+                "jdbc:h2:file:./data/cinema-db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        username = "sa";
+        password = "";
+        driver = "org.h2.Driver";
+        try {
+            Class.forName(driver);
+            driverAvailable = true;
+            System.out.println("H2驱动加载成功，使用嵌入式数据库: " + url);
+        } catch (ClassNotFoundException e) {
+            System.err.println("H2驱动未找到，将无法使用嵌入式数据库");
+            driverAvailable = false;
+        }
+        initialized = true;
+    }
+
+    /**
+     * 是否连接的是进程内的嵌入式数据库（storage.type=embedded）
+     */
+    public static boolean isEmbedded() {
+        initialize();
+        return embedded;
+    }
     
+    /**
+     * 获取连接；db.profile.enabled 开启时返回的连接及其语句由 {@link SqlProfiler} 统计耗时
+     */
     public static Connection getConnection() throws SQLException {
         initialize();
         if (!driverAvailable) {
-            throw new SQLException("MySQL驱动不可用");
+            throw new SQLException(embedded ? "H2驱动不可用" : "MySQL驱动不可用");
         }
-        return DriverManager.getConnection(url, username, password);
+        return SqlProfiler.getInstance().wrap(DriverManager.getConnection(url, username, password));
     }
     
     // 测试连接
@@ -0,0 +1,501 @@
+package com.cinema.storage;
+
+import com.cinema.config.AppConfig;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * JDBC 语句耗时统计
+ * {@link SimpleDatabaseConnection#getConnection()} 返回的连接及其创建的语句、结果集由动态代理包装，
+ * 按 SQL 形状（字面量、IN 列表和多行 VALUES 归一化后的语句）汇总执行次数、耗时、读写行数和批量大小，
+ * 由 /api/admin/sql-profile 按总耗时等排序输出前 N 条
+ * 耗时只计 execute* 调用本身（MySQL 驱动默认在执行时取回全部结果），不含调用方遍历结果集的时间；
+ * 查询的行数在结果集或语句关闭时计入。超过 db.profile.slow-ms 的语句连同调用位置打印到日志并保留最近若干条
+ */
+public class SqlProfiler {
+    private static SqlProfiler instance;
+
+    // 超过 maxShapes 种形状后（拼接了动态内容的 SQL），其余语句合并统计
+    static final String OTHER_SHAPE = "<other>";
+    private static final int MAX_CACHED_SQL = 2000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN \\(\\?(?:, ?\\?)*\\)");
+    private static final Pattern REPEATED_ROWS = Pattern.compile("(\\(\\?(?:, ?\\?)*\\))(?:, ?\\1)+");
+
+    private final boolean enabled;
+    private final long slowNanos;
+    private final int maxShapes;
+    private final int slowLogSize;
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    // 原始 SQL -> 形状，预编译语句的 SQL 基本是常量，避免每次执行都做正则归一化
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> recentSlow = new ArrayDeque<>();
+    private volatile long since = System.currentTimeMillis();
+
+    SqlProfiler(boolean enabled, long slowMillis, int maxShapes, int slowLogSize) {
+        this.enabled = enabled;
+        this.slowNanos = Math.max(0L, slowMillis) * 1_000_000L;
+        this.maxShapes = Math.max(1, maxShapes);
+        this.slowLogSize = Math.max(0, slowLogSize);
+    }
+
+    public static synchronized SqlProfiler getInstance() {
+        if (instance == null) {
+            instance = new SqlProfiler(
+                    AppConfig.getBoolean("db.profile.enabled", true),
+                    AppConfig.getLong("db.profile.slow-ms", 200L),
+                    AppConfig.getInt("db.profile.max-shapes", 500),
+                    AppConfig.getInt("db.profile.slow-log-size", 100));
+        }
+        return instance;
+    }
+
+    /**
+     * 包装连接；未启用时原样返回
+     */
+    public Connection wrap(Connection conn) {
+        if (!enabled || conn == null) {
+            return conn;
+        }
+        return proxy(Connection.class, new ConnectionHandler(conn));
+    }
+
+    /**
+     * SQL 形状：去掉字面量、压缩空白，IN (?, ?, ...) 记为 IN (?...)，多行 VALUES 只保留第一行
+     */
+    static String shapeOf(String sql) {
+        if (sql == null) {
+            return OTHER_SHAPE;
+        }
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?...)");
+        return REPEATED_ROWS.matcher(shape).replaceAll("$1, ...");
+    }
+
+    private String cachedShape(String sql) {
+        if (sql == null) {
+            return OTHER_SHAPE;
+        }
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = shapeOf(sql);
+            if (shapeCache.size() < MAX_CACHED_SQL) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    void record(String shape, long nanos, long rows, int batchSize, boolean failed) {
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            String key = shapes.size() < maxShapes ? shape : OTHER_SHAPE;
+            stats = shapes.computeIfAbsent(key, ShapeStats::new);
+        }
+        stats.count.increment();
+        stats.totalNanos.add(nanos);
+        stats.maxNanos.accumulateAndGet(nanos, Math::max);
+        stats.rows.add(rows);
+        if (batchSize > 0) {
+            stats.batches.increment();
+            stats.batchedStatements.add(batchSize);
+        }
+        if (failed) {
+            stats.errors.increment();
+        }
+        if (nanos >= slowNanos) {
+            stats.slow.increment();
+            logSlow(shape, nanos, rows, batchSize, failed);
+        }
+    }
+
+    private void logSlow(String shape, long nanos, long rows, int batchSize, boolean failed) {
+        String callSite = callSite();
+        System.err.println("⚠ 慢 SQL " + millis(nanos) + " ms，" + rows + " 行"
+                + (batchSize > 0 ? "，批量 " + batchSize + " 条" : "") + (failed ? "，执行失败" : "")
+                + "，调用位置 " + callSite + ": " + shape);
+        if (slowLogSize == 0) {
+            return;
+        }
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("time", System.currentTimeMillis());
+        entry.put("sql", shape);
+        entry.put("ms", millis(nanos));
+        entry.put("rows", rows);
+        entry.put("batchSize", batchSize);
+        entry.put("failed", failed);
+        entry.put("callSite", callSite);
+        entry.put("thread", Thread.currentThread().getName());
+        synchronized (recentSlow) {
+            recentSlow.addFirst(entry);
+            while (recentSlow.size() > slowLogSize) {
+                recentSlow.removeLast();
+            }
+        }
+    }
+
+    /**
+     * 调用位置：代理之外的第一个应用栈帧；它在存储层内时再附上存储层之外的第一个调用方（如哪个服务触发的查询）
+     */
+    private static String callSite() {
+        return StackWalker.getInstance().walk(frames -> {
+            String site = null;
+            for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+                String cls = frame.getClassName();
+                if (!cls.startsWith("com.cinema.") || cls.startsWith(SqlProfiler.class.getName())) {
+                    continue;
+                }
+                String here = cls.substring(cls.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+                if (site == null) {
+                    site = here;
+                    if (!cls.startsWith("com.cinema.storage.")) {
+                        return site;
+                    }
+                } else if (!cls.startsWith("com.cinema.storage.")) {
+                    return site + " <- " + here;
+                }
+            }
+            return site != null ? site : "unknown";
+        });
+    }
+
+    /**
+     * 按 sort（total / avg / max / count / rows）排序的前 top 种语句及最近的慢语句
+     * @throws IllegalArgumentException sort 不合法
+     */
+    public Map<String, Object> getReport(int top, String sort) {
+        Comparator<ShapeStats> order;
+        switch (sort) {
+            case "total":
+                order = Comparator.comparingLong(s -> s.totalNanos.sum());
+                break;
+            case "avg":
+                order = Comparator.comparingDouble(ShapeStats::avgNanos);
+                break;
+            case "max":
+                order = Comparator.comparingLong(s -> s.maxNanos.get());
+                break;
+            case "count":
+                order = Comparator.comparingLong(s -> s.count.sum());
+                break;
+            case "rows":
+                order = Comparator.comparingLong(s -> s.rows.sum());
+                break;
+            default:
+                throw new IllegalArgumentException("sort 只能是 total、avg、max、count 或 rows");
+        }
+
+        List<ShapeStats> all = new ArrayList<>(shapes.values());
+        long statements = 0;
+        long totalNanos = 0;
+        for (ShapeStats stats : all) {
+            statements += stats.count.sum();
+            totalNanos += stats.totalNanos.sum();
+        }
+        all.sort(order.reversed());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (ShapeStats stats : all.subList(0, Math.min(Math.max(0, top), all.size()))) {
+            rows.add(stats.toMap());
+        }
+        List<Map<String, Object>> slow;
+        synchronized (recentSlow) {
+            slow = new ArrayList<>(recentSlow);
+        }
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("enabled", enabled);
+        report.put("since", since);
+        report.put("slowThresholdMs", slowNanos / 1_000_000L);
+        report.put("shapes", all.size());
+        report.put("statements", statements);
+        report.put("totalMs", millis(totalNanos));
+        report.put("sort", sort);
+        report.put("top", rows);
+        report.put("recentSlow", slow);
+        return report;
+    }
+
+    public void reset() {
+        shapes.clear();
+        synchronized (recentSlow) {
+            recentSlow.clear();
+        }
+        since = System.currentTimeMillis();
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SqlProfiler.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static final class ShapeStats {
+        final String sql;
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LongAdder rows = new LongAdder();
+        final LongAdder batches = new LongAdder();
+        final LongAdder batchedStatements = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder slow = new LongAdder();
+
+        ShapeStats(String sql) {
+            this.sql = sql;
+        }
+
+        double avgNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) totalNanos.sum() / n;
+        }
+
+        Map<String, Object> toMap() {
+            long n = count.sum();
+            long batchCount = batches.sum();
+            Map<String, Object> map = new HashMap<>();
+            map.put("sql", sql);
+            map.put("count", n);
+            map.put("totalMs", millis(totalNanos.sum()));
+            map.put("avgMs", millis((long) avgNanos()));
+            map.put("maxMs", millis(maxNanos.get()));
+            map.put("rows", rows.sum());
+            map.put("avgRows", n == 0 ? 0 : Math.round(rows.sum() * 10.0 / n) / 10.0);
+            map.put("batches", batchCount);
+            map.put("avgBatchSize", batchCount == 0 ? 0 : Math.round(batchedStatements.sum() * 10.0 / batchCount) / 10.0);
+            map.put("errors", errors.sum());
+            map.put("slow", slow.sum());
+            return map;
+        }
+    }
+
+    /**
+     * 一次执行：查询的行数要等结果集读完，在结果集或语句关闭（或语句再次执行）时才计入
+     */
+    private final class Execution {
+        final String shape;
+        final long nanos;
+        long rows;
+        boolean recorded;
+
+        Execution(String shape, long nanos) {
+            this.shape = shape;
+            this.nanos = nanos;
+        }
+
+        void finish() {
+            if (!recorded) {
+                recorded = true;
+                record(shape, nanos, rows, 0, false);
+            }
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            Object result = SqlProfiler.invoke(target, method, args);
+            if (result instanceof CallableStatement && "prepareCall".equals(name)) {
+                return proxy(CallableStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+            }
+            if (result instanceof PreparedStatement && "prepareStatement".equals(name)) {
+                return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+            }
+            if (result instanceof Statement && "createStatement".equals(name)) {
+                return proxy(Statement.class, new StatementHandler((Statement) result, null));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 语句只在一个线程中使用，字段不需要同步
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private int batchSize;
+        private String batchSql;
+        private Execution pending;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "addBatch":
+                    batchSize++;
+                    // Statement.addBatch(sql) 每条 SQL 可以不同，按第一条归类
+                    if (args != null && args.length == 1 && batchSql == null) {
+                        batchSql = (String) args[0];
+                    }
+                    return SqlProfiler.invoke(target, method, args);
+                case "clearBatch":
+                    batchSize = 0;
+                    batchSql = null;
+                    return SqlProfiler.invoke(target, method, args);
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                    return execute(method, args, false);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return execute(method, args, true);
+                case "getResultSet": {
+                    Object result = SqlProfiler.invoke(target, method, args);
+                    return result != null && pending != null ? wrapResultSet((ResultSet) result) : result;
+                }
+                case "close":
+                    finishPending();
+                    return SqlProfiler.invoke(target, method, args);
+                default:
+                    return SqlProfiler.invoke(target, method, args);
+            }
+        }
+
+        private Object execute(Method method, Object[] args, boolean batch) throws Throwable {
+            finishPending();
+            String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0]
+                    : batch && batchSql != null ? batchSql : sql;
+            int size = batch ? batchSize : 0;
+            if (batch) {
+                batchSize = 0;
+                batchSql = null;
+            }
+            String shape = cachedShape(executed);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = SqlProfiler.invoke(target, method, args);
+            } catch (Throwable e) {
+                record(shape, System.nanoTime() - start, 0, size, true);
+                throw e;
+            }
+            long nanos = System.nanoTime() - start;
+
+            if (result instanceof ResultSet) {
+                pending = new Execution(shape, nanos);
+                return wrapResultSet((ResultSet) result);
+            }
+            if (result instanceof Boolean) {
+                if ((Boolean) result) {
+                    // execute() 返回结果集，行数在 getResultSet 读完后计入
+                    pending = new Execution(shape, nanos);
+                } else {
+                    record(shape, nanos, Math.max(0, target.getUpdateCount()), 0, false);
+                }
+            } else {
+                record(shape, nanos, affectedRows(result), size, false);
+            }
+            return result;
+        }
+
+        private ResultSet wrapResultSet(ResultSet resultSet) {
+            return proxy(ResultSet.class, new ResultSetHandler(resultSet, pending));
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish();
+                pending = null;
+            }
+        }
+    }
+
+    private static long affectedRows(Object result) {
+        long rows = 0;
+        if (result instanceof Number) {
+            rows = ((Number) result).longValue();
+        } else if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count); // SUCCESS_NO_INFO 为 -2
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                rows += Math.max(0, count);
+            }
+        }
+        return Math.max(0, rows);
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final Execution execution;
+
+        ResultSetHandler(ResultSet target, Execution execution) {
+            this.target = target;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "next": {
+                    Object result = SqlProfiler.invoke(target, method, args);
+                    if (Boolean.TRUE.equals(result)) {
+                        execution.rows++;
+                    }
+                    return result;
+                }
+                case "close":
+                    execution.finish();
+                    return SqlProfiler.invoke(target, method, args);
+                default:
+                    return SqlProfiler.invoke(target, method, args);
+            }
+        }
+    }
+}
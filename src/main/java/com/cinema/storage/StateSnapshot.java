@@ -0,0 +1,487 @@
+package com.cinema.storage;
+
+import com.cinema.model.Comment;
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.Order;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 内存状态快照文件
+ * 把放映厅、电影（含评论）、场次和订单写成紧凑的二进制文件（不使用 Java 序列化），重启时按内存映射读取，代替逐表查询数据库
+ * 只保存与数据库行相同的信息：座位状态由订单推导，用户只保存ID（用户目录按需从数据库加载）
+ * <pre>
+ * magic "CSNP"(4) | 格式版本(2) | 创建时间毫秒(8) | 水位(8) | 水位那条变更的提交时间毫秒(8)
+ * 放映厅段 | 电影段 | 场次段 | 用户ID段 | 订单段，每段为 记录数(varint) | 记录...
+ * CRC32(4)：之前所有字节的校验和
+ * </pre>
+ * 水位为写快照时已包含在内存中的 change_log 版本，恢复后从该版本之后追赶
+ * 字符串为 (字节数+1)(varint，0 表示 null) | UTF-8；计数、行列号和引用用 varint，引用其他段的记录时写该记录在段内的序号；
+ * 时间为 UTC 纪元秒(8) | 纳秒(4)，null 时只写 Long.MIN_VALUE
+ */
+public final class StateSnapshot {
+    public static final short FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'C', 'S', 'N', 'P'};
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 8 + 8;
+    private static final int CRC_BYTES = 4;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    private StateSnapshot() {
+    }
+
+    /**
+     * 订单记录：场次已关联到快照中的场次对象，用户只有ID，由调用方按主键关联
+     */
+    public static final class OrderRecord {
+        private final String orderId;
+        private final String userId;
+        private final Show show;
+        private final Order.OrderStatus status;
+        private final long version;
+        private final LocalDateTime createTime;
+        private final String pricingStrategy;
+        private final int[] seats; // 行、列交替
+
+        OrderRecord(String orderId, String userId, Show show, Order.OrderStatus status, long version,
+                    LocalDateTime createTime, String pricingStrategy, int[] seats) {
+            this.orderId = orderId;
+            this.userId = userId;
+            this.show = show;
+            this.status = status;
+            this.version = version;
+            this.createTime = createTime;
+            this.pricingStrategy = pricingStrategy;
+            this.seats = seats;
+        }
+
+        public String getOrderId() { return orderId; }
+        public String getUserId() { return userId; }
+        public Show getShow() { return show; }
+        public Order.OrderStatus getStatus() { return status; }
+        public long getVersion() { return version; }
+        public LocalDateTime getCreateTime() { return createTime; }
+        public String getPricingStrategy() { return pricingStrategy; }
+
+        /**
+         * 订单座位，取自场次的座位视图（与从数据库加载订单时相同）
+         */
+        public List<Seat> resolveSeats() {
+            List<Seat> result = new ArrayList<>(seats.length / 2);
+            for (int i = 0; i < seats.length; i += 2) {
+                Seat seat = show.getSeat(seats[i], seats[i + 1]);
+                if (seat != null) {
+                    result.add(seat);
+                }
+            }
+            return result;
+        }
+    }
+
+    public static final class Contents {
+        private final long createdAtMillis;
+        private final long watermark;
+        private final long watermarkTimeMillis;
+        private final List<ScreeningRoom> rooms;
+        private final List<Movie> movies;
+        private final List<Show> shows;
+        private final List<OrderRecord> orders;
+
+        Contents(long createdAtMillis, long watermark, long watermarkTimeMillis, List<ScreeningRoom> rooms,
+                 List<Movie> movies, List<Show> shows, List<OrderRecord> orders) {
+            this.createdAtMillis = createdAtMillis;
+            this.watermark = watermark;
+            this.watermarkTimeMillis = watermarkTimeMillis;
+            this.rooms = rooms;
+            this.movies = movies;
+            this.shows = shows;
+            this.orders = orders;
+        }
+
+        public long getCreatedAtMillis() { return createdAtMillis; }
+        public long getWatermark() { return watermark; }
+        public long getWatermarkTimeMillis() { return watermarkTimeMillis; }
+        public List<ScreeningRoom> getRooms() { return rooms; }
+        public List<Movie> getMovies() { return movies; }
+        /** 按开场时间升序，含已散场的场次 */
+        public List<Show> getShows() { return shows; }
+        public List<OrderRecord> getOrders() { return orders; }
+    }
+
+    // ================== 写入 ==================
+
+    /**
+     * 写入快照：先写同目录的临时文件，完成后原子替换，写到一半失败不影响已有快照
+     * 电影或放映厅不在快照中的场次、场次不在快照中的订单不写入（追赶变更时会从数据库补回）
+     * @return 文件字节数
+     */
+    public static long write(Path file, long watermark, long watermarkTimeMillis,
+                             Collection<ScreeningRoom> rooms, Collection<Movie> movies,
+                             Collection<Show> shows, Collection<Order> orders) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream fileOut = Files.newOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), crc));
+            out.write(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(watermark);
+            out.writeLong(watermarkTimeMillis);
+
+            Map<String, Integer> roomRefs = new HashMap<>();
+            writeVarint(out, rooms.size());
+            for (ScreeningRoom room : rooms) {
+                roomRefs.put(room.getId(), roomRefs.size());
+                writeString(out, room.getId());
+                writeString(out, room.getName());
+                writeVarint(out, room.getRows());
+                writeVarint(out, room.getColumns());
+            }
+
+            Map<String, Integer> movieRefs = new HashMap<>();
+            writeVarint(out, movies.size());
+            for (Movie movie : movies) {
+                movieRefs.put(movie.getId(), movieRefs.size());
+                writeMovie(out, movie);
+            }
+
+            // 按开场时间排序，恢复时按顺序加入电影排片表（与按 start_time 读取场次表一致）
+            // 场次在复制活动场次和归档场次之间散场时会同时出现在两边，按ID去重
+            Map<String, Show> uniqueShows = new LinkedHashMap<>();
+            for (Show show : shows) {
+                if (movieRefs.containsKey(show.getMovieId()) && roomRefs.containsKey(show.getScreeningRoomId())) {
+                    uniqueShows.putIfAbsent(show.getId(), show);
+                }
+            }
+            List<Show> sortedShows = new ArrayList<>(uniqueShows.values());
+            sortedShows.sort(Comparator.comparing(Show::getStartTime));
+            Map<String, Integer> showRefs = new HashMap<>();
+            writeVarint(out, sortedShows.size());
+            for (Show show : sortedShows) {
+                showRefs.put(show.getId(), showRefs.size());
+                writeString(out, show.getId());
+                writeVarint(out, movieRefs.get(show.getMovieId()));
+                writeVarint(out, roomRefs.get(show.getScreeningRoomId()));
+                writeTime(out, show.getStartTime());
+                out.writeDouble(show.getBasePrice());
+                writeString(out, show.getStatus().name());
+            }
+
+            List<Order> writtenOrders = new ArrayList<>(orders.size());
+            Map<String, Integer> userRefs = new LinkedHashMap<>();
+            for (Order order : orders) {
+                if (order.getUser() != null && order.getShow() != null && showRefs.containsKey(order.getShow().getId())) {
+                    writtenOrders.add(order);
+                    userRefs.putIfAbsent(order.getUser().getId(), userRefs.size());
+                }
+            }
+            writeVarint(out, userRefs.size());
+            for (String userId : userRefs.keySet()) {
+                writeString(out, userId);
+            }
+
+            writeVarint(out, writtenOrders.size());
+            for (Order order : writtenOrders) {
+                List<Seat> seats = order.getSeats();
+                writeString(out, order.getOrderId());
+                writeVarint(out, userRefs.get(order.getUser().getId()));
+                writeVarint(out, showRefs.get(order.getShow().getId()));
+                writeString(out, order.getStatus().name());
+                writeVarlong(out, order.getVersion());
+                writeTime(out, order.getCreateTime());
+                writeString(out, order.getPricingStrategy());
+                writeVarint(out, seats.size());
+                for (Seat seat : seats) {
+                    writeVarint(out, seat.getRow());
+                    writeVarint(out, seat.getCol());
+                }
+            }
+
+            out.flush();
+            // 校验和本身不计入校验
+            int checksum = (int) crc.getValue();
+            fileOut.write(ByteBuffer.allocate(CRC_BYTES).putInt(checksum).array());
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(file);
+    }
+
+    private static void writeMovie(DataOutputStream out, Movie movie) throws IOException {
+        writeString(out, movie.getId());
+        writeString(out, movie.getTitle());
+        out.writeLong(movie.getReleaseTime() != null ? movie.getReleaseTime().toEpochDay() : NULL_TIME);
+        List<String> actors = movie.getActors() != null ? movie.getActors() : new ArrayList<>();
+        writeVarint(out, actors.size());
+        for (String actor : actors) {
+            writeString(out, actor);
+        }
+        writeString(out, movie.getDirector());
+        writeVarint(out, movie.getDuration());
+        out.writeDouble(movie.getRating());
+        writeString(out, movie.getDescription());
+        writeString(out, movie.getGenre() != null ? movie.getGenre().toString() : null);
+        writeString(out, movie.getTrailerUrl());
+        writeString(out, movie.getCoverUrl());
+        // 评论列表是 CopyOnWriteArrayList，遍历的是一份一致的副本；按列表顺序（最新在前）写入
+        List<Comment> comments = movie.getComments() != null ? new ArrayList<>(movie.getComments()) : new ArrayList<>();
+        writeVarint(out, comments.size());
+        for (Comment c : comments) {
+            writeString(out, c.getId());
+            writeString(out, c.getUserId());
+            writeString(out, c.getUserName());
+            writeString(out, c.getContent());
+            out.writeDouble(c.getRating());
+            writeTime(out, c.getCreateTime());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(NULL_TIME);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        writeVarlong(out, value & 0xFFFFFFFFL);
+    }
+
+    // 无符号变长整数：每字节低 7 位为数据，最高位为 1 表示后面还有字节
+    private static void writeVarlong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    // ================== 读取 ==================
+
+    /**
+     * 以内存映射方式读取快照；文件损坏、格式版本不符时抛出 IOException
+     */
+    public static Contents read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + CRC_BYTES) {
+                throw new IOException("快照文件不完整: " + file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("快照文件超过 2GB，无法映射: " + file);
+            }
+            // 映射在通道关闭后仍然有效，直到缓冲区被回收
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int bodyLength = buffer.limit() - CRC_BYTES;
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(bodyLength);
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(bodyLength)) {
+            throw new IOException("快照校验和不匹配: " + file);
+        }
+        buffer.limit(bodyLength);
+
+        try {
+            return decode(buffer);
+        } catch (RuntimeException e) {
+            // 越界、未知枚举值等：文件内容与当前格式不符
+            throw new IOException("快照内容无法解析: " + e.getMessage(), e);
+        }
+    }
+
+    private static Contents decode(ByteBuffer in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.get(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("不是快照文件");
+            }
+        }
+        short version = in.getShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("快照格式版本 " + version + " 与当前版本 " + FORMAT_VERSION + " 不符");
+        }
+        long createdAt = in.getLong();
+        long watermark = in.getLong();
+        long watermarkTime = in.getLong();
+
+        int roomCount = readVarint(in);
+        List<ScreeningRoom> rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            String id = readString(in);
+            String name = readString(in);
+            int rows = readVarint(in);
+            int cols = readVarint(in);
+            rooms.add(new ScreeningRoom(id, name, rows, cols));
+        }
+
+        int movieCount = readVarint(in);
+        List<Movie> movies = new ArrayList<>(movieCount);
+        for (int i = 0; i < movieCount; i++) {
+            movies.add(readMovie(in));
+        }
+
+        int showCount = readVarint(in);
+        List<Show> shows = new ArrayList<>(showCount);
+        for (int i = 0; i < showCount; i++) {
+            String id = readString(in);
+            Movie movie = movies.get(readVarint(in));
+            ScreeningRoom room = rooms.get(readVarint(in));
+            LocalDateTime startTime = readTime(in);
+            double basePrice = in.getDouble();
+            Show show = new Show(id, movie, room, startTime, basePrice);
+            show.setStatus(Show.ShowStatus.valueOf(readString(in)));
+            shows.add(show);
+        }
+
+        int userCount = readVarint(in);
+        String[] userIds = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            userIds[i] = readString(in);
+        }
+
+        int orderCount = readVarint(in);
+        List<OrderRecord> orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            String orderId = readString(in);
+            String userId = userIds[readVarint(in)];
+            Show show = shows.get(readVarint(in));
+            Order.OrderStatus status = Order.OrderStatus.valueOf(readString(in));
+            long orderVersion = readVarlong(in);
+            LocalDateTime createTime = readTime(in);
+            String pricingStrategy = readString(in);
+            int[] seats = new int[readVarint(in) * 2];
+            for (int k = 0; k < seats.length; k++) {
+                seats[k] = readVarint(in);
+            }
+            orders.add(new OrderRecord(orderId, userId, show, status, orderVersion, createTime, pricingStrategy, seats));
+        }
+
+        if (in.hasRemaining()) {
+            throw new IOException("快照末尾有多余数据");
+        }
+        return new Contents(createdAt, watermark, watermarkTime, rooms, movies, shows, orders);
+    }
+
+    private static Movie readMovie(ByteBuffer in) {
+        String id = readString(in);
+        String title = readString(in);
+        long releaseDay = in.getLong();
+        int actorCount = readVarint(in);
+        List<String> actors = new ArrayList<>(actorCount);
+        for (int i = 0; i < actorCount; i++) {
+            actors.add(readString(in));
+        }
+        String director = readString(in);
+        int duration = readVarint(in);
+        double rating = in.getDouble();
+        String description = readString(in);
+        MovieGenre genre = MovieGenre.fromDescription(readString(in));
+        String trailerUrl = readString(in);
+        String coverUrl = readString(in);
+        Movie movie = new Movie(id, title, releaseDay != NULL_TIME ? LocalDate.ofEpochDay(releaseDay) : null,
+                actors, director, duration, rating, description, genre, trailerUrl, coverUrl);
+
+        int commentCount = readVarint(in);
+        Comment[] comments = new Comment[commentCount];
+        for (int i = 0; i < commentCount; i++) {
+            String commentId = readString(in);
+            String userId = readString(in);
+            String userName = readString(in);
+            String content = readString(in);
+            double commentRating = in.getDouble();
+            comments[i] = new Comment(commentId, userId, userName, id, content, commentRating, readTime(in));
+        }
+        // addComment 插到列表头部，倒序加入以保持原顺序
+        for (int i = commentCount - 1; i >= 0; i--) {
+            movie.addComment(comments[i]);
+        }
+        return movie;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime readTime(ByteBuffer in) {
+        long seconds = in.getLong();
+        if (seconds == NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(seconds, in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        long value = readVarlong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("整数越界: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("变长整数过长");
+    }
+}
@@ -10,6 +10,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class ConsoleUI {
@@ -1124,7 +1125,7 @@ public class ConsoleUI {
         clearScreen();
         printTitle("退票");
         
-        List<Order> userOrders = currentUser.getOrders();
+        List<Order> userOrders = bookingService.getOrdersByUser(currentUser); // 用户对象可能是缓存淘汰后重新加载的，以订单表为准
         if (userOrders.isEmpty()) {
             printWarning("您没有可退票的订单");
             pressEnterToContinue();
@@ -1563,7 +1564,12 @@ public class ConsoleUI {
         double basePrice = Double.parseDouble(readLine());
         
         Show show = new Show("SHOW-" + System.currentTimeMillis(), movie, room, startTime, basePrice);
-        cinemaManager.addShow(show);
+        try {
+            cinemaManager.addShow(show);
+        } catch (ScheduleConflictException e) {
+            System.out.println("排片冲突: " + e.getMessage());
+            return;
+        }
         
         System.out.println("场次添加成功");
     }
@@ -1598,7 +1604,6 @@ public class ConsoleUI {
         List<Movie> movies = cinemaManager.getAllMovies();
         List<ScreeningRoom> rooms = cinemaManager.getAllScreeningRooms();
         List<Show> shows = cinemaManager.getAllShows();
-        List<User> users = cinemaManager.getAllUsers();
         List<Order> orders = bookingService.getAllOrders();
         
         printSeparator('═', 60);
@@ -1614,7 +1619,7 @@ public class ConsoleUI {
         printlnColored(WHITE, String.valueOf(shows.size()));
         
         printColored(CYAN, "注册用户: ");
-        printlnColored(WHITE, String.valueOf(users.size()));
+        printlnColored(WHITE, String.valueOf(cinemaManager.countUsers()));
         
         printColored(CYAN, "订单总数: ");
         printlnColored(WHITE, String.valueOf(orders.size()));
@@ -1622,31 +1627,12 @@ public class ConsoleUI {
         printSeparator('-', 60);
         printColored(GREEN + BOLD, "业务统计\n");
         
-        int paidOrders = 0;
-        int pendingOrders = 0;
-        int cancelledOrders = 0;
-        double totalRevenue = 0.0;
-        
-        for (Order order : orders) {
-            switch (order.getStatus()) {
-                case PAID:
-                    paidOrders++;
-                    totalRevenue += order.getTotalAmount();
-                    break;
-                case PENDING:
-                    pendingOrders++;
-                    break;
-                case RESERVED:
-                    pendingOrders++; // 预订订单也算作待支付
-                    break;
-                case CANCELLED:
-                    cancelledOrders++;
-                    break;
-                case REFUNDED:
-                    cancelledOrders++;
-                    break;
-            }
-        }
+        // 统计数据由 SalesAnalyticsService 随订单状态变化增量维护，无需遍历订单
+        Map<String, Object> totals = SalesAnalyticsService.getInstance().getTotals();
+        long paidOrders = (Long) totals.get("paidOrders");
+        long pendingOrders = (Long) totals.get("pendingOrders");
+        long cancelledOrders = (Long) totals.get("cancelledOrders") + (Long) totals.get("refundedOrders");
+        double totalRevenue = (Double) totals.get("netRevenue");
         
         printColored(CYAN, "已支付订单: ");
         printlnColored(GREEN, String.valueOf(paidOrders));
@@ -44,7 +44,7 @@ public class NewMethods {
                 String newName = scanner.nextLine().trim();
                 if (!newName.isEmpty()) {
                     currentUser.setName(newName);
-                    cinemaManager.saveAllData();
+                    cinemaManager.saveUser(currentUser);
                     System.out.println("姓名修改成功");
                 }
                 break;
@@ -53,7 +53,7 @@ public class NewMethods {
                 String newPhone = scanner.nextLine().trim();
                 if (!newPhone.isEmpty() && newPhone.matches("^1[3-9]\\d{9}$")) {
                     currentUser.setPhone(newPhone);
-                    cinemaManager.saveAllData();
+                    cinemaManager.saveUser(currentUser);
                     System.out.println("电话修改成功");
                 } else {
                     System.out.println("电话格式错误");
@@ -64,7 +64,7 @@ public class NewMethods {
                 String newEmail = scanner.nextLine().trim();
                 if (!newEmail.isEmpty() && newEmail.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$")) {
                     currentUser.setEmail(newEmail);
-                    cinemaManager.saveAllData();
+                    cinemaManager.saveUser(currentUser);
                     System.out.println("邮箱修改成功");
                 } else {
                     System.out.println("邮箱格式错误");
@@ -106,19 +106,32 @@ public class NewMethods {
         }
     }
 
+    private static final int USER_PAGE_SIZE = 20;
+
     private void viewAllUsers() {
         System.out.println("\n----- 用户列表 -----");
-        List<User> users = cinemaManager.getAllUsers();
-        
-        if (users.isEmpty()) {
+        long total = cinemaManager.countUsers();
+        if (total == 0) {
             System.out.println("暂无用户");
             return;
         }
-        
-        for (int i = 0; i < users.size(); i++) {
-            User user = users.get(i);
-            System.out.println((i + 1) + ". " + user.toString());
-            System.out.println();
+        System.out.println("共 " + total + " 个用户");
+
+        // 按页从数据库读取，不一次加载全部用户
+        for (int page = 1; ; page++) {
+            List<User> users = cinemaManager.getUsersPage(page, USER_PAGE_SIZE);
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                System.out.println(((page - 1) * USER_PAGE_SIZE + i + 1) + ". " + user.toString());
+                System.out.println();
+            }
+            if (users.size() < USER_PAGE_SIZE || (long) page * USER_PAGE_SIZE >= total) {
+                return;
+            }
+            System.out.print("按回车显示下一页，输入 Q 结束: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("Q")) {
+                return;
+            }
         }
     }
 
@@ -192,7 +205,7 @@ public class NewMethods {
         User.UserRole newRole = newIsAdmin ? User.UserRole.ADMIN : User.UserRole.CUSTOMER;
         
         user.setRole(newRole);
-        cinemaManager.saveAllData();
+        cinemaManager.saveUser(user);
         
         System.out.println("角色修改成功，新角色: " + (newIsAdmin ? "管理员" : "普通用户"));
     }
@@ -209,7 +222,7 @@ public class NewMethods {
         try {
             // 只保存关键数据，避免卡死
             cinemaManager.saveMovies();
-            cinemaManager.saveUsers();
+            cinemaManager.saveUser(currentUser);
             System.out.println("数据已保存");
         } catch (Exception e) {
             System.err.println("保存数据时出错: " + e.getMessage());
@@ -1,12 +1,21 @@
 package com.cinema.ws;
 
+import com.cinema.config.AppMetrics;
+import com.cinema.jfr.SeatBroadcastEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
 import org.springframework.stereotype.Component;
 import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 实时选座 WebSocket 服务
@@ -18,11 +27,22 @@ public class SeatWebSocketServer {
 
     // 存储每个场次对应的连接集合: Map<showId, Set<Session>>
     private static final ConcurrentHashMap<String, CopyOnWriteArraySet<Session>> showSessions = new ConcurrentHashMap<>();
+    private static final String SEND_STATE = "seat-send-state";
+
+    // 指标：每个场次的在线连接数（连接打开、关闭时刷新），发出的帧、合并掉的通知和发送失败次数
+    private static final MultiGauge SESSIONS = MultiGauge.builder("cinema.ws.sessions")
+            .description("各场次选座页面的 WebSocket 连接数")
+            .register(AppMetrics.registry());
+    private static final Counter FRAMES_SENT = AppMetrics.counter("cinema.ws.frames.sent", "发出的座位更新帧数");
+    private static final Counter FRAMES_COALESCED = AppMetrics.counter("cinema.ws.frames.coalesced",
+            "上一帧未发完时被合并的座位更新数");
+    private static final Counter SEND_FAILURES = AppMetrics.counter("cinema.ws.send.failures", "座位更新发送失败次数");
 
     @OnOpen
     public void onOpen(Session session, @PathParam("showId") String showId) {
         // 当用户打开某个场次的选座页面时，加入集合
         showSessions.computeIfAbsent(showId, k -> new CopyOnWriteArraySet<>()).add(session);
+        refreshSessionGauge();
         System.out.println("用户进入场次 [" + showId + "] 选座, 当前在线: " + showSessions.get(showId).size());
     }
 
@@ -36,6 +56,7 @@ public class SeatWebSocketServer {
                 showSessions.remove(showId);
             }
         }
+        refreshSessionGauge();
         System.out.println("用户离开场次 [" + showId + "]");
     }
 
@@ -50,18 +71,81 @@ public class SeatWebSocketServer {
      * @param message 消息内容 (通常是 "UPDATE")
      */
     public static void fireUpdate(String showId, String message) {
+        SeatBroadcastEvent event = new SeatBroadcastEvent();
+        event.begin();
+        int open = 0;
+        int coalesced = 0;
+        int failures = 0;
         CopyOnWriteArraySet<Session> sessions = showSessions.get(showId);
         if (sessions != null) {
             for (Session session : sessions) {
                 if (session.isOpen()) {
-                    try {
-                        // 发送异步消息
-                        session.getAsyncRemote().sendText(message);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    open++;
+                    SendState state = (SendState) session.getUserProperties()
+                            .computeIfAbsent(SEND_STATE, k -> new SendState());
+                    if (state.next.getAndSet(message) != null) {
+                        FRAMES_COALESCED.increment();
+                        coalesced++;
+                    }
+                    if (!drain(session, state)) {
+                        failures++;
                     }
                 }
             }
         }
+        event.finish(showId, open, coalesced, failures);
+    }
+
+    /**
+     * 同一连接上一次只能有一条异步发送，上一条未发完时再发会抛出 IllegalStateException 而丢消息；
+     * 这里只保留最新一条，等上一条发完后再发（消息只是刷新通知，合并不影响客户端）
+     * @return 提交发送时是否出错（异步发送的结果在回调中统计）
+     */
+    private static boolean drain(Session session, SendState state) {
+        if (!state.sending.compareAndSet(false, true)) {
+            return true;
+        }
+        String message = state.next.getAndSet(null);
+        if (message == null || !session.isOpen()) {
+            state.sending.set(false);
+            // 释放标记前另一线程可能刚放入新消息
+            if (state.next.get() != null && session.isOpen()) {
+                return drain(session, state);
+            }
+            return true;
+        }
+        try {
+            session.getAsyncRemote().sendText(message, result -> {
+                if (result.isOK()) {
+                    FRAMES_SENT.increment();
+                } else {
+                    SEND_FAILURES.increment();
+                    System.err.println("座位推送失败: " + result.getException());
+                }
+                state.sending.set(false);
+                if (state.next.get() != null) {
+                    drain(session, state);
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            state.sending.set(false);
+            SEND_FAILURES.increment();
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // 连接打开、关闭不频繁，每次按当前连接重建各场次的值，已没有连接的场次随之移除
+    private static synchronized void refreshSessionGauge() {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        showSessions.forEach((showId, sessions) ->
+                rows.add(MultiGauge.Row.of(Tags.of("show", showId), sessions, CopyOnWriteArraySet::size)));
+        SESSIONS.register(rows, true);
+    }
+
+    private static class SendState {
+        final AtomicBoolean sending = new AtomicBoolean();
+        final AtomicReference<String> next = new AtomicReference<>();
     }
 }
\ No newline at end of file
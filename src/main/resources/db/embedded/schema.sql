@@ -0,0 +1,130 @@
+-- 嵌入式数据库（storage.type=embedded，H2 的 MySQL 兼容模式）的表结构：与 MySQL 执行完全部迁移（V1~V5）后的结构一致
+-- 每次启动都会执行，所有语句均为 IF NOT EXISTS；MySQL 迁移新增版本时在这里同步修改
+-- 注意：每条语句以分号结尾，不要在分号后加注释
+
+CREATE TABLE IF NOT EXISTS movies (
+    id VARCHAR(50) PRIMARY KEY,
+    title VARCHAR(100) NOT NULL,
+    director VARCHAR(100),
+    actors TEXT,
+    duration INT NOT NULL,
+    rating DOUBLE NOT NULL,
+    genre VARCHAR(50),
+    description TEXT,
+    cover_url TEXT,
+    trailer_url TEXT,
+    release_date DATE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS comments (
+    id VARCHAR(50) PRIMARY KEY,
+    user_id VARCHAR(50) NOT NULL,
+    user_name VARCHAR(100),
+    movie_id VARCHAR(50) NOT NULL,
+    content TEXT,
+    rating DOUBLE,
+    create_time DATETIME DEFAULT NULL,
+    FOREIGN KEY (movie_id) REFERENCES movies(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_comments_movie_time ON comments (movie_id, create_time);
+
+CREATE TABLE IF NOT EXISTS screening_rooms (
+    id VARCHAR(50) PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    room_rows INT NOT NULL,
+    room_columns INT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS shows (
+    id VARCHAR(50) PRIMARY KEY,
+    movie_id VARCHAR(50) NOT NULL,
+    room_id VARCHAR(50) NOT NULL,
+    start_time DATETIME NOT NULL,
+    end_time DATETIME DEFAULT NULL,
+    base_price DOUBLE NOT NULL,
+    status VARCHAR(20) DEFAULT 'SCHEDULED',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (movie_id) REFERENCES movies(id) ON DELETE CASCADE,
+    FOREIGN KEY (room_id) REFERENCES screening_rooms(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_shows_movie_start ON shows (movie_id, start_time);
+CREATE INDEX IF NOT EXISTS idx_shows_start ON shows (start_time);
+
+CREATE TABLE IF NOT EXISTS users (
+    id VARCHAR(50) PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    password VARCHAR(100) NOT NULL DEFAULT '123456',
+    phone VARCHAR(20) DEFAULT NULL,
+    email VARCHAR(100) DEFAULT NULL,
+    is_admin TINYINT(1) DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS orders (
+    order_id VARCHAR(50) PRIMARY KEY,
+    user_id VARCHAR(50) NOT NULL,
+    show_id VARCHAR(50) NOT NULL,
+    total_amount DOUBLE NOT NULL,
+    status VARCHAR(20) DEFAULT 'PENDING',
+    create_time DATETIME DEFAULT NULL,
+    pricing_strategy VARCHAR(50) DEFAULT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (show_id) REFERENCES shows(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_orders_user ON orders (user_id);
+CREATE INDEX IF NOT EXISTS idx_orders_show_status ON orders (show_id, status);
+
+CREATE TABLE IF NOT EXISTS order_seats (
+    order_id VARCHAR(50) NOT NULL,
+    seat_row INT NOT NULL,
+    seat_col INT NOT NULL,
+    FOREIGN KEY (order_id) REFERENCES orders(order_id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_seats_order ON order_seats (order_id);
+
+CREATE TABLE IF NOT EXISTS change_log (
+    version BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entity_type VARCHAR(20) NOT NULL,
+    entity_id VARCHAR(50) NOT NULL,
+    op VARCHAR(10) NOT NULL,
+    node_id VARCHAR(100) NOT NULL,
+    changed_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3)
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_log_entity ON change_log (entity_type, entity_id);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idem_key VARCHAR(100) PRIMARY KEY,
+    endpoint VARCHAR(50) NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    response MEDIUMTEXT NOT NULL,
+    created_at BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_created ON idempotency_keys (created_at);
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_id VARCHAR(64) NOT NULL UNIQUE,
+    event_type VARCHAR(30) NOT NULL,
+    order_id VARCHAR(50) DEFAULT NULL,
+    show_id VARCHAR(50) DEFAULT NULL,
+    user_id VARCHAR(50) DEFAULT NULL,
+    message VARCHAR(500) DEFAULT NULL,
+    created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    published_at TIMESTAMP(3) NULL DEFAULT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_unpublished ON outbox_events (published_at, id);
@@ -0,0 +1,92 @@
+-- V1 基线：迁移机制引入前 schema.sql 建立的表结构（时间列仍为 VARCHAR，后续版本再转换）
+-- 与原 schema.sql 的表定义完全一致：已有数据库中这些表都已存在，本脚本不做任何修改；新数据库按此建表后继续执行后续版本
+-- 原 schema.sql 之后新增的列和表（orders.pricing_strategy / version、change_log 等）由 V5 添加，不要加到这里
+-- 注意：每条语句以分号结尾，不要在分号后加注释
+
+-- 电影表
+CREATE TABLE IF NOT EXISTS movies (
+                        id VARCHAR(50) PRIMARY KEY,
+                        title VARCHAR(100) NOT NULL,
+                        director VARCHAR(100),
+                        actors TEXT,
+                        duration INT NOT NULL,
+                        rating DOUBLE NOT NULL,
+                        genre VARCHAR(50),
+                        description TEXT,
+                        cover_url TEXT,
+                        trailer_url TEXT,
+                        release_date DATE,
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 评论表
+CREATE TABLE IF NOT EXISTS comments (
+                          id VARCHAR(50) PRIMARY KEY,
+                          user_id VARCHAR(50) NOT NULL,
+                          user_name VARCHAR(100),
+                          movie_id VARCHAR(50) NOT NULL,
+                          content TEXT,
+                          rating DOUBLE,
+                          create_time VARCHAR(30),
+                          FOREIGN KEY (movie_id) REFERENCES movies(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 放映厅表
+CREATE TABLE IF NOT EXISTS screening_rooms (
+                                 id VARCHAR(50) PRIMARY KEY,
+                                 name VARCHAR(100) NOT NULL,
+                                 room_rows INT NOT NULL,
+                                 room_columns INT NOT NULL,
+                                 created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                 updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 场次表
+CREATE TABLE IF NOT EXISTS shows (
+                       id VARCHAR(50) PRIMARY KEY,
+                       movie_id VARCHAR(50) NOT NULL,
+                       room_id VARCHAR(50) NOT NULL,
+                       start_time VARCHAR(30) NOT NULL,
+                       end_time VARCHAR(30) DEFAULT NULL,
+                       base_price DOUBLE NOT NULL,
+                       status VARCHAR(20) DEFAULT 'SCHEDULED',
+                       created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                       updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                       FOREIGN KEY (movie_id) REFERENCES movies(id) ON DELETE CASCADE,
+                       FOREIGN KEY (room_id) REFERENCES screening_rooms(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 用户表
+CREATE TABLE IF NOT EXISTS users (
+                       id VARCHAR(50) PRIMARY KEY,
+                       name VARCHAR(100) NOT NULL,
+                       password VARCHAR(100) NOT NULL DEFAULT '123456',
+                       phone VARCHAR(20) DEFAULT NULL,
+                       email VARCHAR(100) DEFAULT NULL,
+                       is_admin TINYINT(1) DEFAULT 0,
+                       created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                       updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 订单表
+CREATE TABLE IF NOT EXISTS orders (
+                        order_id VARCHAR(50) PRIMARY KEY,
+                        user_id VARCHAR(50) NOT NULL,
+                        show_id VARCHAR(50) NOT NULL,
+                        total_amount DOUBLE NOT NULL,
+                        status VARCHAR(20) DEFAULT 'PENDING',
+                        create_time VARCHAR(30) DEFAULT NULL,
+                        updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                        FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+                        FOREIGN KEY (show_id) REFERENCES shows(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 订单座位关联表
+CREATE TABLE IF NOT EXISTS order_seats (
+                             order_id VARCHAR(50) NOT NULL,
+                             seat_row INT NOT NULL,
+                             seat_col INT NOT NULL,
+                             KEY order_id (order_id),
+                             FOREIGN KEY (order_id) REFERENCES orders(order_id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,7 @@
+-- V2 场次时间列改为 DATETIME（原值为 yyyy-MM-dd HH:mm:ss 字符串，MySQL 按原值转换，不改变时刻）
+-- 按电影查排片、按时间范围查场次走索引；(movie_id, start_time) 同时承担 movie_id 外键索引
+ALTER TABLE shows
+    MODIFY start_time DATETIME NOT NULL,
+    MODIFY end_time DATETIME DEFAULT NULL,
+    ADD KEY idx_shows_movie_start (movie_id, start_time),
+    ADD KEY idx_shows_start (start_time);
@@ -0,0 +1,7 @@
+-- V3 订单创建时间改为 DATETIME，空字符串先置为 NULL，避免转换失败
+-- 按用户查订单、按场次和状态统计订单走索引；两个索引同时承担 user_id / show_id 外键索引
+UPDATE orders SET create_time = NULL WHERE create_time = '';
+ALTER TABLE orders
+    MODIFY create_time DATETIME DEFAULT NULL,
+    ADD KEY idx_orders_user (user_id),
+    ADD KEY idx_orders_show_status (show_id, status);
@@ -0,0 +1,5 @@
+-- V4 评论时间改为 DATETIME，按电影读取评论时按 (movie_id, create_time) 索引顺序返回，不再排序
+UPDATE comments SET create_time = NULL WHERE create_time = '';
+ALTER TABLE comments
+    MODIFY create_time DATETIME DEFAULT NULL,
+    ADD KEY idx_comments_movie_time (movie_id, create_time);
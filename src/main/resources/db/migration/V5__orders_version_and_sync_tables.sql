@@ -0,0 +1,40 @@
+-- V5 原 schema.sql 之后新增的列和表：订单定价策略和状态版本号，增量同步变更日志、幂等键、发件箱
+-- 已有订单的 version 从 0 开始，pricing_strategy 为 NULL（按默认策略显示）
+-- 注意：每条语句以分号结尾，不要在分号后加注释
+ALTER TABLE orders
+    ADD COLUMN (pricing_strategy VARCHAR(50) NULL, version BIGINT NOT NULL DEFAULT 0);
+
+-- 变更日志表 (增量同步：version 单调递增，与实体修改在同一事务中写入)
+CREATE TABLE IF NOT EXISTS change_log (
+    version BIGINT AUTO_INCREMENT PRIMARY KEY,
+    entity_type VARCHAR(20) NOT NULL,
+    entity_id VARCHAR(50) NOT NULL,
+    op VARCHAR(10) NOT NULL,
+    node_id VARCHAR(100) NOT NULL,
+    changed_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_change_log_entity (entity_type, entity_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 幂等键表 (下单/支付/退票重试时返回第一次的响应；created_at 为毫秒时间戳，过期记录定期清理)
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idem_key VARCHAR(100) PRIMARY KEY,
+    endpoint VARCHAR(50) NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    response MEDIUMTEXT NOT NULL,
+    created_at BIGINT NOT NULL,
+    KEY idx_idempotency_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 发件箱表 (与订单变化同一事务写入，OutboxRelay 提交后发布座位推送和用户通知；event_id 供接收方去重)
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_id VARCHAR(64) NOT NULL UNIQUE,
+    event_type VARCHAR(30) NOT NULL,
+    order_id VARCHAR(50) DEFAULT NULL,
+    show_id VARCHAR(50) DEFAULT NULL,
+    user_id VARCHAR(50) DEFAULT NULL,
+    message VARCHAR(500) DEFAULT NULL,
+    created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3),
+    published_at TIMESTAMP(3) NULL DEFAULT NULL,
+    KEY idx_outbox_unpublished (published_at, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -2,7 +2,6 @@ package com.cinema;
 
 import com.cinema.service.CinemaManager;
 import com.cinema.model.User;
-import java.util.Map;
 
 public class DebugUserData {
     public static void main(String[] args) {
@@ -10,12 +9,8 @@ public class DebugUserData {
         
         CinemaManager cinemaManager = CinemaManager.getInstance();
         
-        // 检查用户Map是否为空
-        Map<String, User> users = cinemaManager.getAllUsers()
-            .stream()
-            .collect(java.util.stream.Collectors.toMap(User::getId, user -> user));
-        
-        System.out.println("用户总数: " + users.size());
+        // 检查用户表是否为空
+        System.out.println("用户总数: " + cinemaManager.countUsers());
         
         // 查找管理员用户
         User admin = cinemaManager.getUser("ADMIN-001");
@@ -30,9 +25,9 @@ public class DebugUserData {
             System.out.println("  角色: " + admin.getRole());
         }
         
-        // 列出所有用户
-        System.out.println("\n所有用户:");
-        for (User user : cinemaManager.getAllUsers()) {
+        // 列出前 100 个用户
+        System.out.println("\n用户列表:");
+        for (User user : cinemaManager.getUsersPage(1, 100)) {
             System.out.println("  - " + user.getId() + " (" + user.getName() + ")");
         }
         
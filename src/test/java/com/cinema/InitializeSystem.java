@@ -43,7 +43,7 @@ public class InitializeSystem {
 
         // 6. 验证
         System.out.println("\n系统初始化完成！资源已指向本地 public/media 目录。");
-        System.out.println("用户: " + cinemaManager.getAllUsers().size() + " 个");
+        System.out.println("用户: " + cinemaManager.countUsers() + " 个");
         System.out.println("电影: " + cinemaManager.getAllMovies().size() + " 部");
         System.out.println("放映厅: " + cinemaManager.getAllScreeningRooms().size() + " 个");
         System.out.println("场次: " + cinemaManager.getAllShows().size() + " 个");
@@ -38,7 +38,7 @@ public class TestAdminUser {
 
         // 显示所有用户
         System.out.println("\n所有用户列表:");
-        for (User user : cinemaManager.getAllUsers()) {
+        for (User user : cinemaManager.getUsersPage(1, 100)) {
             System.out.println("- " + user.getId() + " (" + user.getName() + ") - " +
                     (user.isAdmin() ? "管理员" : "普通用户"));
         }
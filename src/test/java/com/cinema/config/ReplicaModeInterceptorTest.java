@@ -0,0 +1,208 @@
+package com.cinema.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaModeInterceptorTest {
+
+    private final ReplicaModeInterceptor interceptor = new ReplicaModeInterceptor();
+
+    /**
+     * 只实现拦截器用到的 HttpServletRequest / HttpServletResponse 方法（没有 spring-test 依赖，不用 MockHttpServletRequest）
+     */
+    private static final class Exchange {
+        final Map<String, String> headers = new HashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int status = HttpServletResponse.SC_OK;
+        String contentType;
+        final HttpServletRequest request;
+        final HttpServletResponse response;
+
+        Exchange(String method, String path, String query, String requestBody) {
+            ServletInputStream input = new ServletInputStream() {
+                private final ByteArrayInputStream bytes =
+                        new ByteArrayInputStream(requestBody.getBytes(StandardCharsets.UTF_8));
+
+                @Override
+                public int read() {
+                    return bytes.read();
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return bytes.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                }
+            };
+            ServletOutputStream output = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                }
+            };
+            request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                        switch (m.getName()) {
+                            case "getMethod":
+                                return method;
+                            case "getRequestURI":
+                                return path;
+                            case "getContextPath":
+                                return "";
+                            case "getQueryString":
+                                return query;
+                            case "getHeader":
+                                return headers.get((String) args[0]);
+                            case "getInputStream":
+                                return input;
+                            default:
+                                throw new UnsupportedOperationException(m.getName());
+                        }
+                    });
+            response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{HttpServletResponse.class}, (proxy, m, args) -> {
+                        switch (m.getName()) {
+                            case "setStatus":
+                                status = (Integer) args[0];
+                                return null;
+                            case "setContentType":
+                                contentType = (String) args[0];
+                                return null;
+                            case "getOutputStream":
+                                return output;
+                            default:
+                                throw new UnsupportedOperationException(m.getName());
+                        }
+                    });
+        }
+
+        boolean preHandle(ReplicaModeInterceptor interceptor) throws Exception {
+            return interceptor.preHandle(request, response, null);
+        }
+
+        String body() {
+            return body.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @BeforeEach
+    void replicaRole() {
+        System.setProperty(NodeRole.CONFIG_KEY, "replica");
+    }
+
+    @AfterEach
+    void clearProperties() {
+        System.clearProperty(NodeRole.CONFIG_KEY);
+        System.clearProperty("cinema.replica.primary-url");
+        System.clearProperty("cinema.replica.forward-timeout-ms");
+    }
+
+    @Test
+    void testPrimaryHandlesWrites() throws Exception {
+        System.setProperty(NodeRole.CONFIG_KEY, "primary");
+        assertTrue(new Exchange("POST", "/api/orders", null, "{}").preHandle(interceptor));
+    }
+
+    @Test
+    void testReplicaServesReadsAndReadOnlyPosts() throws Exception {
+        assertTrue(new Exchange("GET", "/api/shows", null, "").preHandle(interceptor));
+        assertTrue(new Exchange("OPTIONS", "/api/orders", null, "").preHandle(interceptor));
+        // READ_ONLY_POSTS：使用 POST 但不修改数据的接口
+        assertTrue(new Exchange("POST", "/api/login", null, "{}").preHandle(interceptor));
+        assertTrue(new Exchange("POST", "/api/chat/ask", null, "{}").preHandle(interceptor));
+        assertTrue(new Exchange("POST", "/api/admin/sql-profile/reset", null, "").preHandle(interceptor));
+    }
+
+    @Test
+    void testReplicaRejectsWritesWithoutPrimary() throws Exception {
+        Exchange exchange = new Exchange("POST", "/api/orders", null, "{}");
+        assertFalse(exchange.preHandle(interceptor));
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, exchange.status);
+        assertTrue(exchange.contentType.startsWith("application/json"));
+        assertTrue(exchange.body().contains("只读副本"));
+
+        Exchange delete = new Exchange("DELETE", "/api/orders/O1", null, "");
+        assertFalse(delete.preHandle(interceptor));
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, delete.status);
+    }
+
+    @Test
+    void testReplicaForwardsWritesToPrimary() throws Exception {
+        AtomicReference<String> received = new AtomicReference<>();
+        HttpServer primary = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        primary.createContext("/", http -> {
+            received.set(http.getRequestMethod() + " " + http.getRequestURI() + " "
+                    + http.getRequestHeaders().getFirst("Idempotency-Key") + " "
+                    + new String(http.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] reply = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+            http.getResponseHeaders().set("Content-Type", "application/json");
+            http.sendResponseHeaders(201, reply.length);
+            http.getResponseBody().write(reply);
+            http.close();
+        });
+        primary.start();
+        try {
+            System.setProperty("cinema.replica.primary-url", "http://127.0.0.1:" + primary.getAddress().getPort() + "/");
+            Exchange exchange = new Exchange("POST", "/api/orders", "showId=S1", "{\"seats\":[1]}");
+            exchange.headers.put("Idempotency-Key", "KEY-1");
+
+            assertFalse(exchange.preHandle(interceptor));
+            assertEquals("POST /api/orders?showId=S1 KEY-1 {\"seats\":[1]}", received.get());
+            assertEquals(201, exchange.status);
+            assertEquals("application/json", exchange.contentType);
+            assertEquals("{\"success\":true}", exchange.body());
+        } finally {
+            primary.stop(0);
+        }
+    }
+
+    @Test
+    void testReplicaReportsUnreachablePrimary() throws Exception {
+        HttpServer closed = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        int port = closed.getAddress().getPort();
+        closed.stop(0); // 端口上没有主节点
+        System.setProperty("cinema.replica.primary-url", "http://127.0.0.1:" + port);
+        System.setProperty("cinema.replica.forward-timeout-ms", "500");
+
+        Exchange exchange = new Exchange("POST", "/api/orders", null, "{}");
+        assertFalse(exchange.preHandle(interceptor));
+        assertEquals(HttpServletResponse.SC_BAD_GATEWAY, exchange.status);
+        assertTrue(exchange.body().contains("转发到主节点失败"));
+    }
+}
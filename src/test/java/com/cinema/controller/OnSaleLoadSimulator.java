@@ -0,0 +1,656 @@
+package com.cinema.controller;
+
+import com.cinema.CinemaApplication;
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.Order;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import com.cinema.service.BookingService;
+import com.cinema.service.CinemaManager;
+import com.cinema.service.SalesAnalyticsService;
+import com.cinema.strategy.StandardPricing;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 开售压测：在进程内启动完整的 Spring Boot 服务（内存存储，随机端口），通过 localhost 上真实的
+ * HTTP 接口（/api/booking）和 WebSocket（/ws/seats/{showId}）模拟开售瞬间的抢票
+ * <ul>
+ *   <li>sim.users 个虚拟用户各占一个线程，在 sim.shows 个热门场次上抢中间区域重叠的 1~4 个连座
+ *       （约两成请求改用自动选座），场次越靠前越热门</li>
+ *   <li>锁座成功后按比例支付（轮询订单状态直到 PAID 或 CANCELLED）、主动取消或直接放弃（座位保持锁定），
+ *       支付成功的订单有一部分随后退票</li>
+ *   <li>每个热门场次挂 sim.watchers 个 WebSocket 观察者统计推送量；另有一个无人抢购的探测场次，
+ *       定期锁座并测量每个观察者收到推送的延迟</li>
+ * </ul>
+ * 结束后输出各接口的吞吐量和延迟分位数、WebSocket 推送延迟，并在服务内部检查不变量：
+ * 座位不会被卖两次；已售座位恰好属于一个已支付订单，锁定座位恰好属于一个未完结订单，空闲座位不属于任何未完结订单；
+ * 销售统计的净收入等于已支付订单金额之和，也等于客户端记录的已支付未退票金额。任一不变量不成立时以退出码 1 结束
+ *
+ * 运行：
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -Dsim.users=2000 -Dsim.duration-seconds=30 -cp target/classes:target/test-classes:$(cat target/cp.txt) com.cinema.controller.OnSaleLoadSimulator
+ * 可选参数（-D）：sim.shows=3、sim.watchers=20、sim.rows=20、sim.cols=30、sim.think-ms=20、
+ *   sim.pay-rate=0.65、sim.cancel-rate=0.2（其余放弃）、sim.refund-rate=0.1、sim.probe-interval-ms=250；
+ *   支付网关延迟默认 20~200 ms、失败率 2%，可用 payment.simulated.* 覆盖
+ */
+public class OnSaleLoadSimulator {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final int users = Integer.getInteger("sim.users", 2000);
+    private final int durationSeconds = Integer.getInteger("sim.duration-seconds", 30);
+    private final int showCount = Integer.getInteger("sim.shows", 3);
+    private final int watchersPerShow = Integer.getInteger("sim.watchers", 20);
+    private final int rows = Integer.getInteger("sim.rows", 20);
+    private final int cols = Integer.getInteger("sim.cols", 30);
+    private final int thinkMs = Integer.getInteger("sim.think-ms", 20);
+    private final double payRate = Double.parseDouble(System.getProperty("sim.pay-rate", "0.65"));
+    private final double cancelRate = Double.parseDouble(System.getProperty("sim.cancel-rate", "0.2"));
+    private final double refundRate = Double.parseDouble(System.getProperty("sim.refund-rate", "0.1"));
+    private final long probeIntervalMs = Long.getLong("sim.probe-interval-ms", 250);
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, LatencyRecorder> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final List<Watcher> watchers = new ArrayList<>();
+    private final List<Watcher> probeWatchers = new ArrayList<>();
+    private final LatencyRecorder fanOut = new LatencyRecorder();
+    // 客户端账本：看到变为 PAID 且未退票的订单金额
+    private final Map<String, Double> paidLedger = new ConcurrentHashMap<>();
+
+    private String baseUrl;
+    private String wsUrl;
+    private List<Show> hotShows;
+    private Show probeShow;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream report = System.out;
+        int exitCode;
+        ConfigurableApplicationContext context = null;
+        try {
+            System.setProperty("storage.type", System.getProperty("storage.type", "memory"));
+            System.setProperty("snapshot.enabled", "false");
+            System.setProperty("sync.enabled", "false");
+            setDefault("payment.simulated.min-latency-ms", "20");
+            setDefault("payment.simulated.max-latency-ms", "200");
+            setDefault("payment.simulated.failure-rate", "0.02");
+            // 服务和 Spring 的日志不输出，只保留压测报告
+            if (!Boolean.getBoolean("sim.verbose")) {
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            }
+
+            BookingService.getInstance(new StandardPricing());
+            CinemaManager.getInstance();
+            context = SpringApplication.run(CinemaApplication.class, "--server.port=0");
+
+            OnSaleLoadSimulator simulator = new OnSaleLoadSimulator();
+            simulator.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            simulator.wsUrl = simulator.baseUrl.replace("http://", "ws://") + "/ws/seats/";
+            exitCode = simulator.run(report);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            System.setOut(report);
+        }
+        System.exit(exitCode);
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private int run(PrintStream report) throws Exception {
+        setUpData();
+        connectWatchers();
+        report.printf("开售压测：%d 个虚拟用户，%d 个热门场次（%d×%d），持续 %d 秒，%s%n",
+                users, showCount, rows, cols, durationSeconds, baseUrl);
+
+        CountDownLatch done = new CountDownLatch(users);
+        long start = System.nanoTime();
+        long deadline = start + durationSeconds * 1_000_000_000L;
+        for (int i = 0; i < users; i++) {
+            String userId = "SIM-U" + i;
+            Thread thread = new Thread(() -> {
+                try {
+                    virtualUser(userId, deadline);
+                } finally {
+                    done.countDown();
+                }
+            }, "sim-user-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread probe = new Thread(() -> probeFanOut(deadline), "sim-ws-probe");
+        probe.setDaemon(true);
+        probe.start();
+
+        done.await();
+        probe.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        awaitSettled();
+        printReport(report, elapsed);
+        List<String> violations = checkInvariants();
+        watchers.forEach(Watcher::close);
+        probeWatchers.forEach(Watcher::close);
+
+        if (violations.isEmpty()) {
+            report.println("不变量检查通过");
+            return 0;
+        }
+        report.println("不变量检查失败：");
+        violations.stream().limit(50).forEach(v -> report.println("  ✗ " + v));
+        if (violations.size() > 50) {
+            report.printf("  ……共 %d 条%n", violations.size());
+        }
+        return 1;
+    }
+
+    // ========== 数据准备 ==========
+
+    private void setUpData() {
+        CinemaManager manager = CinemaManager.getInstance();
+        ScreeningRoom room = new ScreeningRoom("SIM-ROOM", "开售厅", rows, cols);
+        manager.addScreeningRoom(room);
+        Movie movie = new Movie("SIM-MOV", "开售电影", LocalDate.now(), List.of("演员"), "导演", 120, 8.0,
+                "简介", MovieGenre.fromDescription("科幻"), null, null);
+        manager.addMovie(movie);
+
+        LocalDateTime first = LocalDate.now().plusDays(1).atTime(10, 0);
+        List<Show> batch = new ArrayList<>();
+        for (int i = 0; i < showCount; i++) {
+            batch.add(new Show("SIM-SHOW-" + i, movie, room, first.plusHours(3L * i), 45.0));
+        }
+        Show probe = new Show("SIM-PROBE", movie, room, first.plusDays(1), 45.0);
+        batch.add(probe);
+        manager.addShows(batch);
+        hotShows = batch.subList(0, showCount);
+        probeShow = probe;
+
+        for (int i = 0; i < users; i++) {
+            manager.addUser(new User("SIM-U" + i, "虚拟用户" + i, "123456", "13800000000", "sim" + i + "@example.com"));
+        }
+        manager.addUser(new User("SIM-PROBE-U", "探测用户", "123456", "13800000000", "probe@example.com"));
+    }
+
+    private void connectWatchers() {
+        for (Show show : hotShows) {
+            for (int i = 0; i < watchersPerShow; i++) {
+                watchers.add(new Watcher(show.getId()));
+            }
+        }
+        for (int i = 0; i < Math.max(1, watchersPerShow); i++) {
+            probeWatchers.add(new Watcher(probeShow.getId()));
+        }
+    }
+
+    // ========== 虚拟用户 ==========
+
+    private void virtualUser(String userId, long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Show show = pickShow(random);
+            Map<String, Object> reserved;
+            if (random.nextDouble() < 0.2) {
+                reserved = post("best-available", "/api/booking/best-available",
+                        Map.of("userId", userId, "showId", show.getId(), "count", 2, "allowSplit", false));
+            } else {
+                reserved = post("create", "/api/booking/create",
+                        Map.of("userId", userId, "showId", show.getId(), "seatIds", pickSeats(random)));
+            }
+            if (!isSuccess(reserved)) {
+                count(reserved == null ? "错误" : "锁座冲突");
+                think(random);
+                continue;
+            }
+            count("锁座成功");
+            Map<?, ?> data = (Map<?, ?>) reserved.get("data");
+            String orderId = (String) data.get("orderId");
+            double amount = ((Number) data.get("totalAmount")).doubleValue();
+
+            double action = random.nextDouble();
+            think(random);
+            if (action < payRate) {
+                pay(orderId, amount, random);
+            } else if (action < payRate + cancelRate) {
+                if (isSuccess(post("cancel", "/api/booking/refund", Map.of("orderId", orderId)))) {
+                    count("主动取消");
+                }
+            } else {
+                count("放弃（保持锁定）");
+            }
+            think(random);
+        }
+    }
+
+    private void pay(String orderId, double amount, ThreadLocalRandom random) {
+        Map<String, Object> paying = post("pay", "/api/booking/pay", Map.of("orderId", orderId));
+        if (!isSuccess(paying)) {
+            count("支付提交失败");
+            return;
+        }
+        long start = System.nanoTime();
+        String status = awaitPayment(orderId);
+        record("pay-confirm", System.nanoTime() - start);
+        if (!"PAID".equals(status)) {
+            count("支付失败（" + status + "）");
+            return;
+        }
+        count("支付成功");
+        paidLedger.put(orderId, amount);
+        if (random.nextDouble() < refundRate) {
+            think(random);
+            if (isSuccess(post("refund", "/api/booking/refund", Map.of("orderId", orderId)))) {
+                paidLedger.remove(orderId);
+                count("退票");
+            }
+        }
+    }
+
+    /**
+     * 轮询订单状态直到支付有结果，返回最终状态
+     */
+    private String awaitPayment(String orderId) {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        String status = "PAYING";
+        while (System.nanoTime() < deadline) {
+            Map<String, Object> response = get("status", "/api/booking/status?orderId=" + orderId);
+            if (isSuccess(response)) {
+                status = (String) ((Map<?, ?>) response.get("data")).get("status");
+                if (!"PAYING".equals(status)) {
+                    return status;
+                }
+            }
+            sleep(20);
+        }
+        return status;
+    }
+
+    /**
+     * 场次 i 的权重为 1/(i+1)，第一个场次最热门
+     */
+    private Show pickShow(ThreadLocalRandom random) {
+        double total = 0;
+        for (int i = 0; i < showCount; i++) {
+            total += 1.0 / (i + 1);
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < showCount; i++) {
+            r -= 1.0 / (i + 1);
+            if (r <= 0) {
+                return hotShows.get(i);
+            }
+        }
+        return hotShows.get(showCount - 1);
+    }
+
+    /**
+     * 中间区域（行、列各取中间一半）的 1~4 个连座，多数用户抢的是同一片座位
+     */
+    private List<String> pickSeats(ThreadLocalRandom random) {
+        int count = 1 + random.nextInt(4);
+        int rowFrom = rows / 4 + 1;
+        int row = rowFrom + random.nextInt(Math.max(1, rows / 2));
+        int colFrom = cols / 4 + 1;
+        int col = colFrom + random.nextInt(Math.max(1, cols / 2 - count + 1));
+        List<String> seatIds = new ArrayList<>(count);
+        for (int c = col; c < col + count; c++) {
+            seatIds.add(row + "-" + c);
+        }
+        return seatIds;
+    }
+
+    private void think(ThreadLocalRandom random) {
+        if (thinkMs > 0) {
+            sleep(random.nextInt(thinkMs + 1));
+        }
+    }
+
+    // ========== WebSocket 推送延迟 ==========
+
+    /**
+     * 在探测场次上交替锁座、取消：记录发请求前的时间，等待每个观察者收到之后的第一条推送
+     */
+    private void probeFanOut(long deadline) {
+        int seat = 0;
+        while (System.nanoTime() < deadline) {
+            String seatId = (seat / cols % rows + 1) + "-" + (seat % cols + 1);
+            seat++;
+            long sent = System.nanoTime();
+            probeWatchers.forEach(w -> w.arm(sent));
+            Map<String, Object> reserved = post("probe", "/api/booking/create",
+                    Map.of("userId", "SIM-PROBE-U", "showId", probeShow.getId(), "seatIds", List.of(seatId)));
+            if (!isSuccess(reserved)) {
+                count("探测失败");
+                sleep(probeIntervalMs);
+                continue;
+            }
+            awaitProbe(sent, true);
+
+            String orderId = (String) ((Map<?, ?>) reserved.get("data")).get("orderId");
+            long cancelled = System.nanoTime();
+            probeWatchers.forEach(w -> w.arm(cancelled));
+            post("probe", "/api/booking/refund", Map.of("orderId", orderId));
+            awaitProbe(cancelled, false);
+            sleep(probeIntervalMs);
+        }
+    }
+
+    private void awaitProbe(long sent, boolean record) {
+        long timeout = System.nanoTime() + 5_000_000_000L;
+        for (Watcher watcher : probeWatchers) {
+            long arrived;
+            while ((arrived = watcher.firstArrival.get()) == 0 && System.nanoTime() < timeout) {
+                sleep(1);
+            }
+            if (!record) {
+                continue;
+            }
+            if (arrived == 0) {
+                count("推送超时（5s）");
+            } else {
+                fanOut.record(arrived - sent);
+            }
+        }
+    }
+
+    private class Watcher implements WebSocket.Listener {
+        final LongAdder received = new LongAdder();
+        final AtomicLong firstArrival = new AtomicLong();
+        volatile long armedAt = Long.MAX_VALUE;
+        WebSocket socket;
+
+        Watcher(String showId) {
+            socket = http.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .buildAsync(URI.create(wsUrl + showId), this)
+                    .join();
+        }
+
+        void arm(long at) {
+            firstArrival.set(0);
+            armedAt = at;
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            long now = System.nanoTime();
+            received.increment();
+            if (now >= armedAt) {
+                firstArrival.compareAndSet(0, now);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        void close() {
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+    }
+
+    // ========== HTTP ==========
+
+    private Map<String, Object> post(String name, String path, Map<String, Object> body) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body)))
+                    .build();
+            return send(name, request);
+        } catch (Exception e) {
+            count("错误：" + e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    private Map<String, Object> get(String name, String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        return send(name, request);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> send(String name, HttpRequest request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            record(name, System.nanoTime() - start);
+            if (response.statusCode() != 200) {
+                count("HTTP " + response.statusCode());
+                return null;
+            }
+            return MAPPER.readValue(response.body(), Map.class);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            record(name, System.nanoTime() - start);
+            count("错误：" + e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    private static boolean isSuccess(Map<String, Object> response) {
+        return response != null && Boolean.TRUE.equals(response.get("success"));
+    }
+
+    private void record(String name, long nanos) {
+        latencies.computeIfAbsent(name, k -> new LatencyRecorder()).record(nanos);
+    }
+
+    private void count(String name) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ========== 结果 ==========
+
+    /**
+     * 等待仍在支付中的订单有结果（支付网关回调和确认超时都在后台处理）
+     */
+    private void awaitSettled() {
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        while (System.nanoTime() < deadline && simOrders().stream().anyMatch(o -> o.getStatus() == Order.OrderStatus.PAYING)) {
+            sleep(100);
+        }
+    }
+
+    private List<Order> simOrders() {
+        Set<String> showIds = new HashSet<>();
+        hotShows.forEach(s -> showIds.add(s.getId()));
+        showIds.add(probeShow.getId());
+        List<Order> result = new ArrayList<>();
+        for (Order order : BookingService.getInstance().getAllOrders()) {
+            if (order.getShow() != null && showIds.contains(order.getShow().getId())) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    private void printReport(PrintStream out, double elapsed) {
+        long requests = latencies.entrySet().stream()
+                .filter(e -> !"pay-confirm".equals(e.getKey()))
+                .mapToLong(e -> e.getValue().count()).sum();
+        out.printf("%n耗时 %.1f s，HTTP 请求 %,d 次，吞吐量 %,.0f 次/秒%n", elapsed, requests, requests / elapsed);
+        out.printf("%-16s %10s %10s %10s %10s %10s %10s%n", "接口", "次数", "次/秒", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+        latencies.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+            LatencyRecorder r = e.getValue();
+            out.printf("%-16s %,10d %,10.0f %10.2f %10.2f %10.2f %10.2f%n", e.getKey(), r.count(), r.count() / elapsed,
+                    r.percentileMillis(50), r.percentileMillis(90), r.percentileMillis(99), r.percentileMillis(100));
+        });
+        out.println("（pay-confirm 为提交支付到轮询到最终状态的时间）");
+
+        out.println();
+        counters.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(e -> out.printf("%-20s %,10d%n", e.getKey(), e.getValue().sum()));
+
+        long pushed = watchers.stream().mapToLong(w -> w.received.sum()).sum();
+        out.printf("%nWebSocket：%d 个观察者共收到 %,d 条推送（%,.0f 条/秒）%n", watchers.size(), pushed, pushed / elapsed);
+        out.printf("推送延迟（探测场次，%d 个观察者 × %,d 次）：p50 %.2f ms，p99 %.2f ms，max %.2f ms%n",
+                probeWatchers.size(), fanOut.count() / Math.max(1, probeWatchers.size()),
+                fanOut.percentileMillis(50), fanOut.percentileMillis(99), fanOut.percentileMillis(100));
+
+        Map<Order.OrderStatus, Integer> byStatus = new LinkedHashMap<>();
+        simOrders().forEach(o -> byStatus.merge(o.getStatus(), 1, Integer::sum));
+        out.println("订单状态：" + byStatus);
+        out.println();
+    }
+
+    /**
+     * 在服务内部核对座位、订单和销售统计
+     */
+    private List<String> checkInvariants() {
+        List<String> violations = new ArrayList<>();
+        List<Order> orders = simOrders();
+        List<Show> shows = new ArrayList<>(hotShows);
+        shows.add(probeShow);
+
+        // Seat 的 equals 只比较行列，按「场次ID 座位号」区分不同场次的座位
+        Map<String, List<Order>> paidBySeat = new HashMap<>();
+        Map<String, List<Order>> activeBySeat = new HashMap<>();
+        double paidTotal = 0;
+        for (Order order : orders) {
+            Order.OrderStatus status = order.getStatus();
+            if (status == Order.OrderStatus.PAID) {
+                paidTotal += order.getTotalAmount();
+                order.getSeats().forEach(s -> paidBySeat.computeIfAbsent(seatKey(order.getShow(), s), k -> new ArrayList<>()).add(order));
+            } else if (status == Order.OrderStatus.PENDING || status == Order.OrderStatus.RESERVED
+                    || status == Order.OrderStatus.PAYING) {
+                order.getSeats().forEach(s -> activeBySeat.computeIfAbsent(seatKey(order.getShow(), s), k -> new ArrayList<>()).add(order));
+            }
+        }
+
+        for (Show show : shows) {
+            for (Seat seat : show.getSeats()) {
+                String where = seatKey(show, seat);
+                List<Order> paid = paidBySeat.getOrDefault(where, List.of());
+                List<Order> active = activeBySeat.getOrDefault(where, List.of());
+                if (paid.size() > 1) {
+                    violations.add(where + " 被卖出 " + paid.size() + " 次：" + orderIds(paid));
+                }
+                if (paid.size() + active.size() > 1) {
+                    violations.add(where + " 同时属于多个有效订单：已支付 " + orderIds(paid) + "，未完结 " + orderIds(active));
+                }
+                switch (seat.getStatus()) {
+                    case SOLD:
+                        if (paid.size() != 1) {
+                            violations.add(where + " 状态为 SOLD，但已支付订单为 " + orderIds(paid));
+                        }
+                        break;
+                    case LOCKED:
+                        if (active.size() != 1 || !paid.isEmpty()) {
+                            violations.add(where + " 状态为 LOCKED，但未完结订单为 " + orderIds(active));
+                        }
+                        break;
+                    default:
+                        if (!paid.isEmpty() || !active.isEmpty()) {
+                            violations.add(where + " 状态为 AVAILABLE，但仍属于订单 " + orderIds(paid) + orderIds(active));
+                        }
+                }
+            }
+        }
+
+        double netRevenue = 0;
+        SalesAnalyticsService analytics = SalesAnalyticsService.getInstance();
+        for (Show show : shows) {
+            Map<String, Object> stats = analytics.getShowStats(show.getId());
+            if (stats != null) {
+                netRevenue += ((Number) stats.get("netRevenue")).doubleValue();
+            }
+        }
+        double ledger = paidLedger.values().stream().mapToDouble(Double::doubleValue).sum();
+        if (Math.abs(netRevenue - paidTotal) > 0.005) {
+            violations.add(String.format("销售统计净收入 %.2f 与已支付订单金额 %.2f 不符", netRevenue, paidTotal));
+        }
+        if (Math.abs(ledger - paidTotal) > 0.005) {
+            violations.add(String.format("客户端记录的已支付金额 %.2f 与已支付订单金额 %.2f 不符", ledger, paidTotal));
+        }
+        return violations;
+    }
+
+    private static String seatKey(Show show, Seat seat) {
+        return show.getId() + " " + seat.getSeatId();
+    }
+
+    private static List<String> orderIds(List<Order> orders) {
+        List<String> ids = new ArrayList<>(orders.size());
+        orders.forEach(o -> ids.add(o.getOrderId()));
+        return ids;
+    }
+
+    /**
+     * 记录全部样本（纳秒），结束时排序计算分位数
+     */
+    private static class LatencyRecorder {
+        private long[] samples = new long[1024];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+        }
+
+        synchronized long count() {
+            return size;
+        }
+
+        synchronized double percentileMillis(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))] / 1e6;
+        }
+    }
+}
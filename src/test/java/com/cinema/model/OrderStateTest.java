@@ -0,0 +1,102 @@
+package com.cinema.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderStateTest {
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        Movie movie = new Movie(
+                "ORDER-MOVIE",
+                "测试电影",
+                java.time.LocalDate.of(2023, 1, 1),
+                List.of("演员1"),
+                "导演",
+                120,
+                8.0,
+                "描述",
+                "类型"
+        );
+        ScreeningRoom room = new ScreeningRoom("ORDER-ROOM", "测试厅", 4, 5);
+        show = new Show("ORDER-SHOW", movie, room, LocalDateTime.now().plusDays(1), 50.0);
+    }
+
+    private Order newOrder() {
+        List<Seat> seats = new ArrayList<>();
+        seats.add(show.getSeat("1-1"));
+        return new Order("ORD-TEST", show, seats, LocalDateTime.now(), Order.OrderStatus.RESERVED);
+    }
+
+    @Test
+    void testTransitionTable() {
+        Order order = newOrder();
+        assertEquals(0L, order.getVersion());
+
+        assertEquals(-1L, order.transition(Order.OrderStatus.RESERVED, Order.OrderStatus.REFUNDED));
+        assertEquals(-1L, order.transition(Order.OrderStatus.PAID, Order.OrderStatus.REFUNDED));
+        assertEquals(0L, order.transition(Order.OrderStatus.RESERVED, Order.OrderStatus.PAID));
+        assertEquals(1L, order.getVersion());
+        assertEquals(1L, order.transition(Order.OrderStatus.PAID, Order.OrderStatus.REFUNDED));
+
+        // 终态不能再转换
+        assertEquals(-1L, order.transition(Order.OrderStatus.REFUNDED, Order.OrderStatus.PAID));
+        assertEquals(Order.OrderStatus.REFUNDED, order.getStatus());
+        assertEquals(2L, order.getVersion());
+    }
+
+    @Test
+    void testRestoreStateIgnoresOlderVersions() {
+        Order order = newOrder();
+        order.transition(Order.OrderStatus.RESERVED, Order.OrderStatus.PAID);
+
+        assertFalse(order.restoreState(Order.OrderStatus.RESERVED, 0L));
+        assertEquals(Order.OrderStatus.PAID, order.getStatus());
+        assertTrue(order.restoreState(Order.OrderStatus.REFUNDED, 5L));
+        assertEquals(Order.OrderStatus.REFUNDED, order.getStatus());
+        assertEquals(5L, order.getVersion());
+    }
+
+    @Test
+    void testConcurrentTransitionsHaveSingleWinner() throws Exception {
+        Order.OrderStatus[] targets = {Order.OrderStatus.PAID, Order.OrderStatus.CANCELLED, Order.OrderStatus.EXPIRED};
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            for (int round = 0; round < 200; round++) {
+                Order order = newOrder();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Long>> results = new ArrayList<>();
+                for (int i = 0; i < 6; i++) {
+                    Order.OrderStatus target = targets[i % targets.length];
+                    results.add(pool.submit(() -> {
+                        start.await(5, TimeUnit.SECONDS);
+                        return order.transition(Order.OrderStatus.RESERVED, target);
+                    }));
+                }
+                start.countDown();
+                int winners = 0;
+                for (Future<Long> result : results) {
+                    if (result.get() >= 0) {
+                        winners++;
+                    }
+                }
+                assertEquals(1, winners);
+                assertEquals(1L, order.getVersion());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
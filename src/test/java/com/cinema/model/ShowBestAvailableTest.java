@@ -0,0 +1,125 @@
+package com.cinema.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShowBestAvailableTest {
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        Movie movie = new Movie(
+                "BEST-MOVIE",
+                "测试电影",
+                java.time.LocalDate.of(2023, 1, 1),
+                List.of("演员1"),
+                "导演",
+                120,
+                8.0,
+                "描述",
+                "类型"
+        );
+        ScreeningRoom room = new ScreeningRoom("BEST-ROOM", "测试厅", 5, 9);
+        show = new Show("BEST-SHOW", movie, room, LocalDateTime.now().plusDays(1), 50.0);
+    }
+
+    @Test
+    void testPicksCenterSeatsTogether() {
+        List<Seat> seats = show.findBestAvailableSeats(3, false);
+
+        assertEquals(3, seats.size());
+        for (Seat seat : seats) {
+            assertEquals(3, seat.getRow());
+        }
+        assertEquals(4, seats.get(0).getCol());
+        assertEquals(6, seats.get(2).getCol());
+    }
+
+    @Test
+    void testIndexFollowsSeatTransitions() {
+        show.getSeat(3, 5).sell();
+
+        List<Seat> seats = show.findBestAvailableSeats(3, false);
+        assertEquals(3, seats.size());
+        for (Seat seat : seats) {
+            assertTrue(seat.isAvailable());
+        }
+        assertFalse(seats.stream().anyMatch(s -> s.getRow() == 3 && s.getCol() == 5));
+
+        show.getSeat(3, 5).unlock();
+        assertEquals(5, show.findBestAvailableSeats(3, false).get(1).getCol());
+        assertEquals(9, show.getLargestFreeBlock());
+    }
+
+    @Test
+    void testSplitFallback() {
+        // 每排只剩两段不相邻的两个空座
+        for (Seat seat : show.getSeats()) {
+            if (seat.getCol() != 1 && seat.getCol() != 2 && seat.getCol() != 8 && seat.getCol() != 9) {
+                seat.sell();
+            }
+        }
+
+        assertTrue(show.findBestAvailableSeats(4, false).isEmpty());
+
+        List<Seat> seats = show.findBestAvailableSeats(4, true);
+        assertEquals(4, seats.size());
+        assertEquals(4, seats.stream().distinct().count());
+        assertTrue(seats.stream().allMatch(Seat::isAvailable));
+
+        assertTrue(show.findBestAvailableSeats(21, true).isEmpty());
+    }
+
+    @Test
+    void testAvailabilitySummaryCounters() {
+        // 5 排的厅：第 1 排优惠座，第 2-4 排 VIP，第 5 排普通座
+        show.getSeat(1, 1).sell();
+        show.getSeat(3, 5).lock();
+        show.getSeat(5, 9).sell();
+        show.getSeat(5, 9).unlock();
+
+        Map<String, Object> summary = show.getAvailabilitySummary();
+        assertEquals(43, summary.get("availableSeats"));
+        assertEquals(1, summary.get("soldSeats"));
+        assertEquals(4.4, summary.get("occupancyPercent"));
+        assertEquals(9, summary.get("largestFreeBlock"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Map<String, Object>> byClass = (Map<String, Map<String, Object>>) summary.get("availableByClass");
+        assertEquals(8, byClass.get("discount").get("available"));
+        assertEquals(26, byClass.get("vip").get("available"));
+        assertEquals(27, byClass.get("vip").get("total"));
+        assertEquals(9, byClass.get("regular").get("available"));
+    }
+
+    @Test
+    void testSeatViewsShareShowState() {
+        Show other = new Show("BEST-SHOW-2", show.getMovie(), show.getScreeningRoom(),
+                LocalDateTime.now().plusDays(2), 50.0);
+        // 同厅场次共享座位模板，状态各自独立
+        assertSame(show.getScreeningRoom().getSeatTemplate(), other.getScreeningRoom().getSeatTemplate());
+
+        Seat seat = show.getSeat(3, 5);
+        assertTrue(seat instanceof VIPSeat);
+        assertEquals(70.0, seat.getBasePrice(), 0.001);
+        seat.setBasePrice(72.0);
+        seat.lock();
+
+        // 每次取到的是新视图，但读写的是同一份场次状态
+        assertNotSame(seat, show.getSeat(3, 5));
+        assertEquals(Seat.SeatStatus.LOCKED, show.getSeat(3, 5).getStatus());
+        assertEquals(72.0, show.getSeat(3, 5).getBasePrice(), 0.001);
+        assertTrue(other.getSeat(3, 5).isAvailable());
+        assertEquals(show.getTotalSeats() - 1, show.getAvailableSeatsCount());
+
+        // 调整场次价格后座位回到按类型定价
+        show.setBasePrice(40.0);
+        assertEquals(70.0, show.getSeat(3, 5).getBasePrice(), 0.001);
+    }
+}
@@ -0,0 +1,62 @@
+package com.cinema.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 场次座位的堆占用：默认 10,000 个场次 × 300 座（20 个 15 × 20 的放映厅），GC 后比较创建前后的已用堆
+ * 只使用 Show / ScreeningRoom / Movie 的构造方法，切换到座位模板之前的提交上也能运行，用于前后对比
+ *
+ * 运行（建议固定堆大小，减少 GC 时机带来的误差）：
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -Xms1g -Xmx1g -Dbench.shows=10000 -cp target/classes:target/test-classes:$(cat target/cp.txt) com.cinema.model.ShowHeapBenchmark
+ */
+public class ShowHeapBenchmark {
+    private static final int ROOMS = 20;
+    private static final int ROWS = 15;
+    private static final int COLS = 20;
+
+    public static void main(String[] args) {
+        int showCount = Integer.getInteger("bench.shows", 10_000);
+        Movie movie = new Movie("HEAP-MOVIE", "堆占用测试", LocalDate.of(2024, 1, 1), List.of("演员"),
+                "导演", 120, 8.0, "简介", "科幻");
+        List<ScreeningRoom> rooms = new ArrayList<>(ROOMS);
+        for (int i = 0; i < ROOMS; i++) {
+            rooms.add(new ScreeningRoom("HEAP-ROOM-" + i, "放映厅" + i, ROWS, COLS));
+        }
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        long before = usedAfterGc(memory);
+        long buildStart = System.nanoTime();
+        List<Show> shows = new ArrayList<>(showCount);
+        for (int i = 0; i < showCount; i++) {
+            shows.add(new Show("HEAP-SHOW-" + i, movie, rooms.get(i % ROOMS), start.plusHours(i / ROOMS * 3), 45.0));
+        }
+        long buildNanos = System.nanoTime() - buildStart;
+        long after = usedAfterGc(memory);
+
+        long seats = (long) showCount * ROWS * COLS;
+        System.out.printf("%,d 个场次 × %d 座：创建 %,d ms，GC 后堆增加 %,.1f MB（每个场次 %,d 字节，每座 %.1f 字节）%n",
+                showCount, ROWS * COLS, buildNanos / 1_000_000, (after - before) / 1024.0 / 1024.0,
+                (after - before) / showCount, (double) (after - before) / seats);
+        // 保证测量期间场次仍被引用
+        System.out.println("座位数校验: " + shows.stream().mapToLong(show -> show.getSeats().size()).sum());
+    }
+
+    private static long usedAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
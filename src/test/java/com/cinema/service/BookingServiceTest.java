@@ -65,6 +65,25 @@ class BookingServiceTest {
         assertTrue(testUser.getOrders().contains(order));
     }
 
+    @Test
+    void testReserveOrderRejectsStartedShow() {
+        Show started = new Show("TEST-SHOW-STARTED", testShow.getMovie(), testShow.getScreeningRoom(),
+                LocalDateTime.now().minusMinutes(10), 50.0);
+        cinemaManager.addShow(started);
+
+        InvalidBookingException e = assertThrows(InvalidBookingException.class,
+                () -> bookingService.reserveOrder(testUser, started, List.of("1-1")));
+        assertTrue(e.getMessage().startsWith("场次已开始"));
+        assertEquals(Seat.SeatStatus.AVAILABLE, started.getSeat(1, 1).getStatus());
+    }
+
+    @Test
+    void testSeatCountPerOrderIsCapped() {
+        // 默认每单最多 10 个座位，测试厅共 15 个
+        assertThrows(InvalidBookingException.class, () -> bookingService.reserveBestAvailable(testUser, testShow, 11, true));
+        assertEquals(15, testShow.getAvailableSeatsCount());
+    }
+
     @Test
     void testCreateOrderWithInvalidSeat() {
         List<String> seatIds = List.of("10-10"); // Invalid seat
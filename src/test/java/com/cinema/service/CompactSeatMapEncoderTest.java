@@ -0,0 +1,99 @@
+package com.cinema.service;
+
+import com.cinema.controller.SeatDTO;
+import com.cinema.model.*;
+import com.cinema.strategy.StandardPricing;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactSeatMapEncoderTest {
+    private final StandardPricing pricing = new StandardPricing();
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        Movie movie = new Movie(
+                "IMAX-MOVIE",
+                "测试电影",
+                java.time.LocalDate.of(2023, 1, 1),
+                List.of("演员1"),
+                "导演",
+                120,
+                8.0,
+                "描述",
+                "类型"
+        );
+        // 20 × 25 = 500 座的 IMAX 厅
+        ScreeningRoom room = new ScreeningRoom("IMAX-ROOM", "IMAX厅", 20, 25);
+        show = new Show("IMAX-SHOW", movie, room, LocalDateTime.now().plusDays(1), 50.0);
+    }
+
+    @Test
+    void testRoundTripStatuses() {
+        show.getSeat(1, 1).sell();
+        show.getSeat(10, 13).lock();
+        show.getSeat(20, 25).sell();
+
+        int[] statuses = CompactSeatMapEncoder.decodeStatuses(CompactSeatMapEncoder.encode(show, pricing));
+
+        assertEquals(500, statuses.length);
+        assertEquals(CompactSeatMapEncoder.STATUS_SOLD, statuses[0]);
+        assertEquals(CompactSeatMapEncoder.STATUS_LOCKED, statuses[9 * 25 + 12]);
+        assertEquals(CompactSeatMapEncoder.STATUS_SOLD, statuses[499]);
+        assertEquals(CompactSeatMapEncoder.STATUS_AVAILABLE, statuses[1]);
+    }
+
+    @Test
+    void testPackedBitmapWhenDense() {
+        // 交错售出，游程编码不再划算，应退回 2 位打包位图
+        for (Seat seat : show.getSeats()) {
+            if ((seat.getRow() + seat.getCol()) % 2 == 0) {
+                seat.sell();
+            }
+        }
+        byte[] encoded = CompactSeatMapEncoder.encode(show, pricing);
+        int[] statuses = CompactSeatMapEncoder.decodeStatuses(encoded);
+
+        assertEquals(CompactSeatMapEncoder.STATUS_SOLD, statuses[0]);
+        assertEquals(CompactSeatMapEncoder.STATUS_AVAILABLE, statuses[1]);
+        assertTrue(encoded.length < 300, "密集座位图应不超过打包位图大小: " + encoded.length);
+    }
+
+    @Test
+    void testSizeAgainstJson() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        for (Seat seat : show.getSeats()) {
+            if (seat.getRow() > 15 && seat.getCol() > 5 && seat.getCol() < 20) {
+                seat.sell();
+            }
+        }
+
+        byte[] json = mapper.writeValueAsBytes(toSeatDtos());
+        byte[] compact = CompactSeatMapEncoder.encode(show, pricing);
+
+        // 耗时对比见 jmh 的 SeatMapBenchmark
+        assertTrue(compact.length * 50 < json.length, "紧凑格式应比 JSON 小至少 50 倍");
+    }
+
+    // 与 ShowController.getShowSeats 生成相同的 JSON 结构
+    private List<SeatDTO> toSeatDtos() {
+        List<SeatDTO> seatList = new ArrayList<>();
+        for (Seat seat : show.getSeats()) {
+            double price = pricing.calculatePrice(show, seat);
+            String type = "regular";
+            if (seat instanceof VIPSeat) type = "vip";
+            else if (seat instanceof DiscountSeat) type = "discount";
+            String status = "available";
+            if (!seat.isAvailable()) status = seat.isLocked() ? "locked" : "sold";
+            seatList.add(new SeatDTO(seat.getSeatId(), seat.getRow(), seat.getCol(), type, status, price));
+        }
+        return seatList;
+    }
+}
@@ -0,0 +1,119 @@
+package com.cinema.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+    private static Map<String, Object> ok(int n) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("code", 200);
+        response.put("n", n);
+        return response;
+    }
+
+    @Test
+    void testRetryReplaysFirstResponse() {
+        IdempotencyService service = new IdempotencyService(null, 100, 60_000L, 1_000L);
+        AtomicInteger calls = new AtomicInteger();
+        String fp = IdempotencyService.fingerprint("U1", "S1", "1-1");
+
+        IdempotencyService.Result first = service.execute("U1", "K1", "create", fp, () -> ok(calls.incrementAndGet()));
+        IdempotencyService.Result retry = service.execute("U1", "K1", "create", fp, () -> ok(calls.incrementAndGet()));
+
+        assertEquals(IdempotencyService.Outcome.EXECUTED, first.getOutcome());
+        assertEquals(IdempotencyService.Outcome.REPLAYED, retry.getOutcome());
+        assertSame(first.getResponse(), retry.getResponse());
+        assertEquals(1, calls.get());
+
+        // 同一个键用于不同参数或不同接口
+        assertEquals(IdempotencyService.Outcome.MISMATCH,
+                service.execute("U1", "K1", "create", IdempotencyService.fingerprint("U1", "S1", "1-2"), () -> ok(0)).getOutcome());
+        assertEquals(IdempotencyService.Outcome.MISMATCH,
+                service.execute("U1", "K1", "pay", fp, () -> ok(0)).getOutcome());
+    }
+
+    @Test
+    void testKeysAreScopedPerUserAndFingerprintCoversWholeRequest() {
+        IdempotencyService service = new IdempotencyService(null, 100, 60_000L, 1_000L);
+        String fp = IdempotencyService.fingerprintOf(Map.of("orderId", "ORD-1"));
+
+        // 不同用户使用相同的键互不影响
+        assertEquals(IdempotencyService.Outcome.EXECUTED, service.execute("U1", "K3", "pay", fp, () -> ok(1)).getOutcome());
+        IdempotencyService.Result other = service.execute("U2", "K3", "pay", fp, () -> ok(2));
+        assertEquals(IdempotencyService.Outcome.EXECUTED, other.getOutcome());
+        assertEquals(2, other.getResponse().get("n"));
+
+        // 请求体的任一字段不同都视为不同请求，字段顺序不影响
+        Map<String, Object> request = new HashMap<>();
+        request.put("showId", "S1");
+        request.put("count", 2);
+        Map<String, Object> reordered = new java.util.LinkedHashMap<>();
+        reordered.put("count", 2);
+        reordered.put("showId", "S1");
+        assertEquals(IdempotencyService.fingerprintOf(request), IdempotencyService.fingerprintOf(reordered));
+        request.put("allowSplit", true);
+        assertNotEquals(IdempotencyService.fingerprintOf(reordered), IdempotencyService.fingerprintOf(request));
+        assertEquals(IdempotencyService.Outcome.MISMATCH, service.execute("U1", "K3", "pay",
+                IdempotencyService.fingerprintOf(Map.of("orderId", "ORD-2")), () -> ok(0)).getOutcome());
+    }
+
+    @Test
+    void testConcurrentDuplicatesWaitForFirstExecution() throws Exception {
+        IdempotencyService service = new IdempotencyService(null, 100, 60_000L, 5_000L);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<IdempotencyService.Result> first = pool.submit(() -> service.execute("U1", "K2", "pay", "fp", () -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ok(calls.incrementAndGet());
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<IdempotencyService.Result> dup1 = pool.submit(() -> service.execute("U1", "K2", "pay", "fp", () -> ok(calls.incrementAndGet())));
+            Future<IdempotencyService.Result> dup2 = pool.submit(() -> service.execute("U1", "K2", "pay", "fp", () -> ok(calls.incrementAndGet())));
+            release.countDown();
+
+            assertEquals(IdempotencyService.Outcome.EXECUTED, first.get().getOutcome());
+            assertEquals(IdempotencyService.Outcome.REPLAYED, dup1.get().getOutcome());
+            assertEquals(IdempotencyService.Outcome.REPLAYED, dup2.get().getOutcome());
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testServerErrorsAreNotCachedAndStoreIsBounded() {
+        IdempotencyService service = new IdempotencyService(null, 3, 60_000L, 1_000L);
+        Map<String, Object> error = new HashMap<>();
+        error.put("code", 500);
+        service.execute("U1", "E", "pay", "fp", () -> error);
+        assertEquals(IdempotencyService.Outcome.EXECUTED, service.execute("U1", "E", "pay", "fp", () -> ok(1)).getOutcome());
+
+        for (int i = 0; i < 10; i++) {
+            service.execute("U1", "B" + i, "pay", "fp", () -> ok(0));
+        }
+        assertTrue(service.size() <= 3);
+        // 最早的键已被淘汰，重新执行
+        assertEquals(IdempotencyService.Outcome.EXECUTED, service.execute("U1", "B0", "pay", "fp", () -> ok(0)).getOutcome());
+        assertEquals(IdempotencyService.Outcome.REPLAYED, service.execute("U1", "B9", "pay", "fp", () -> ok(0)).getOutcome());
+    }
+}
@@ -0,0 +1,74 @@
+package com.cinema.service;
+
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import com.cinema.storage.BookingJournal;
+import com.cinema.storage.InMemoryDataStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalShipperTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRecordDeferredDuringShipIsShippedNextTick() throws IOException {
+        String suffix = String.valueOf(System.nanoTime());
+        ScreeningRoom room = new ScreeningRoom("ROOM-JS-" + suffix, "补写厅", 6, 8);
+        Movie movie = new Movie("MOV-JS-" + suffix, "补写电影", LocalDate.of(2024, 5, 1), List.of("演员"),
+                "导演", 120, 8.0, "简介", MovieGenre.fromDescription("科幻"), null, null);
+        Show show = new Show("SHOW-JS-" + suffix, movie, room, LocalDateTime.now().plusYears(5), 45.0);
+        User user = new User("JS-USER-" + suffix, "补写用户", "123456", "13800138003", "js@example.com");
+        CinemaManager.getInstance().addUser(user);
+        CinemaManager.getInstance().addShow(show);
+
+        Order first = new Order("JS-1-" + suffix, show, List.of(show.getSeat(1, 1)), LocalDateTime.now(), Order.OrderStatus.RESERVED);
+        Order second = new Order("JS-2-" + suffix, show, List.of(show.getSeat(1, 2)), LocalDateTime.now(), Order.OrderStatus.RESERVED);
+        first.setUser(user);
+        second.setUser(user);
+
+        JournalShipper[] shipper = new JournalShipper[1];
+        InMemoryDataStorage storage = new InMemoryDataStorage() {
+            private boolean appended;
+
+            @Override
+            public synchronized boolean saveOrder(Order order, List<OutboxEvent> events) {
+                // 补写第一条记录时，另一个订单的变化只写日志并交给补写
+                if (!appended) {
+                    appended = true;
+                    shipper[0].deferred(shipper[0].record(second, List.of()));
+                }
+                return super.saveOrder(order, events);
+            }
+        };
+        shipper[0] = new JournalShipper(storage, new BookingJournal(dir, 16), dir, false, 1000L);
+        OutboxEvent event = OutboxEvent.orderNotification(first, "预订成功");
+        shipper[0].deferred(shipper[0].record(first, List.of(event)));
+
+        assertEquals(1, shipper[0].ship());
+        assertTrue(shipper[0].isBacklogged());
+        assertNull(storage.loadOrder(second.getOrderId()));
+        // 补写时日志中的事件与订单一起写入发件箱
+        List<OutboxEvent> outbox = storage.loadUnpublishedOutboxEvents(10);
+        assertEquals(1, outbox.size());
+        assertEquals(event.getEventId(), outbox.get(0).getEventId());
+
+        shipper[0].shipSafely();
+        assertNotNull(storage.loadOrder(second.getOrderId()));
+        assertFalse(shipper[0].isBacklogged());
+    }
+}
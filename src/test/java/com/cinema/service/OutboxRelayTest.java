@@ -0,0 +1,27 @@
+package com.cinema.service;
+
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxRelayTest {
+
+    @Test
+    void testDuplicateEventsAreDeliveredOnce() {
+        User user = new User("OUTBOX-USER-" + System.nanoTime(), "发件箱用户", "123456", "13800138002", "outbox@example.com");
+        CinemaManager.getInstance().addUser(user);
+        OutboxEvent event = new OutboxEvent(1L, "evt-" + System.nanoTime(), OutboxEvent.TYPE_ORDER_NOTIFICATION,
+                "ORD-1", "SHOW-1", user.getId(), "支付成功！", LocalDateTime.now(), 0L);
+
+        // 至少一次投递：同一事件发布两次（例如标记已发布前进程重启），用户只收到一条通知
+        OutboxRelay.getInstance().publishNow(List.of(event));
+        OutboxRelay.getInstance().publishNow(List.of(event));
+
+        assertEquals(1, NotificationService.getInstance().getUserNotifications(user.getId()).size());
+    }
+}
@@ -0,0 +1,96 @@
+package com.cinema.service;
+
+import com.cinema.model.*;
+import com.cinema.payment.PaymentConfirmation;
+import com.cinema.payment.SimulatedPaymentGateway;
+import com.cinema.strategy.StandardPricing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentServiceTest {
+    private BookingService bookingService;
+    private User user;
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        bookingService = BookingService.getInstance(new StandardPricing());
+        CinemaManager cinemaManager = CinemaManager.getInstance();
+
+        user = new User("PAY-USER", "支付用户", "123456", "13800138001", "pay@example.com");
+        cinemaManager.addUser(user);
+        Movie movie = new Movie(
+                "PAY-MOVIE",
+                "测试电影",
+                java.time.LocalDate.of(2023, 1, 1),
+                List.of("演员1"),
+                "导演",
+                120,
+                8.0,
+                "描述",
+                "类型"
+        );
+        ScreeningRoom room = new ScreeningRoom("PAY-ROOM-" + System.nanoTime(), "测试厅", 3, 5);
+        cinemaManager.addScreeningRoom(room);
+        cinemaManager.addMovie(movie);
+        show = new Show("PAY-SHOW-" + System.nanoTime(), movie, room, LocalDateTime.now().plusDays(1), 50.0);
+        cinemaManager.addShow(show);
+    }
+
+    private static void awaitGateway(SimulatedPaymentGateway gateway, String paymentId) throws InterruptedException {
+        for (int i = 0; i < 100 && !gateway.query(paymentId).isFinal(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testLostCallbackIsReconciled() throws Exception {
+        // 回调全部丢失，只能靠对账拿到结果
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(0, 0, 0.0, 1.0);
+        PaymentService payments = new PaymentService(gateway, 10, 50, 100, 1000);
+        try {
+            Order order = bookingService.reserveOrder(user, show, List.of("1-1", "1-2"));
+            String paymentId = payments.initiate(order);
+            assertEquals(Order.OrderStatus.PAYING, order.getStatus());
+            assertEquals(Seat.SeatStatus.LOCKED, show.getSeat(1, 1).getStatus());
+
+            awaitGateway(gateway, paymentId);
+            long now = System.currentTimeMillis();
+            payments.processBatch(now);
+            assertEquals(Order.OrderStatus.PAYING, order.getStatus()); // 未到对账时间
+
+            payments.processBatch(now + 100);
+            assertEquals(Order.OrderStatus.PAID, order.getStatus());
+            assertEquals(Seat.SeatStatus.SOLD, show.getSeat(1, 2).getStatus());
+            assertEquals(0, payments.getPendingCount());
+        } finally {
+            gateway.shutdown();
+        }
+    }
+
+    @Test
+    void testFailedPaymentReleasesSeats() throws Exception {
+        SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(0, 0, 1.0, 0.0);
+        PaymentService payments = new PaymentService(gateway, 10, 50, 100, 1000);
+        try {
+            Order order = bookingService.reserveOrder(user, show, List.of("2-1"));
+            String paymentId = payments.initiate(order);
+            awaitGateway(gateway, paymentId);
+            assertEquals(PaymentConfirmation.Status.FAILED, gateway.query(paymentId).getStatus());
+
+            for (int i = 0; i < 100 && order.getStatus() == Order.OrderStatus.PAYING; i++) {
+                payments.processBatch(System.currentTimeMillis());
+                Thread.sleep(10);
+            }
+            assertEquals(Order.OrderStatus.CANCELLED, order.getStatus());
+            assertEquals(Seat.SeatStatus.AVAILABLE, show.getSeat(2, 1).getStatus());
+        } finally {
+            gateway.shutdown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.cinema.service;
+
+import com.cinema.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesAnalyticsServiceTest {
+    private SalesAnalyticsService analytics;
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        Movie movie = new Movie(
+                "STATS-MOVIE",
+                "测试电影",
+                java.time.LocalDate.of(2023, 1, 1),
+                List.of("演员1"),
+                "导演",
+                120,
+                8.0,
+                "描述",
+                "类型"
+        );
+        ScreeningRoom room = new ScreeningRoom("STATS-ROOM", "测试厅", 4, 5);
+        show = new Show("STATS-SHOW", movie, room, LocalDateTime.now().plusDays(1), 50.0);
+
+        analytics = SalesAnalyticsService.getInstance();
+        analytics.rebuild(List.of(show), List.of());
+    }
+
+    private Order newOrder(String orderId, String... seatIds) {
+        List<Seat> seats = new java.util.ArrayList<>();
+        for (String seatId : seatIds) {
+            seats.add(show.getSeat(seatId));
+        }
+        Order order = new Order(orderId, show, seats, LocalDateTime.now(), Order.OrderStatus.RESERVED);
+        order.setPricingStrategy("StandardPricing");
+        analytics.recordTransition(order, null, order.getStatus());
+        return order;
+    }
+
+    private void transition(Order order, Order.OrderStatus newStatus) {
+        Order.OrderStatus oldStatus = order.getStatus();
+        order.setStatus(newStatus);
+        analytics.recordTransition(order, oldStatus, newStatus);
+    }
+
+    @Test
+    void testTransitionsUpdateTotals() {
+        Order paid = newOrder("STATS-1", "4-1", "4-2");
+        Order refunded = newOrder("STATS-2", "4-3");
+        newOrder("STATS-3", "4-4");
+
+        transition(paid, Order.OrderStatus.PAID);
+        transition(refunded, Order.OrderStatus.PAID);
+        transition(refunded, Order.OrderStatus.REFUNDED);
+
+        Map<String, Object> totals = analytics.getTotals();
+        assertEquals(1L, totals.get("paidOrders"));
+        assertEquals(1L, totals.get("refundedOrders"));
+        assertEquals(1L, totals.get("pendingOrders"));
+        assertEquals(2L, totals.get("ticketsSold"));
+        assertEquals(1L, totals.get("ticketsRefunded"));
+        assertEquals(paid.getTotalAmount(), (Double) totals.get("netRevenue"), 0.001);
+        assertEquals(10.0, totals.get("occupancyPercent"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRefundCountsInOrderCreateHour() {
+        LocalDateTime created = LocalDateTime.now().minusHours(3);
+        Order order = new Order("STATS-5", show, List.of(show.getSeat("4-5")), created, Order.OrderStatus.RESERVED);
+        analytics.recordTransition(order, null, order.getStatus());
+        transition(order, Order.OrderStatus.PAID);
+        transition(order, Order.OrderStatus.REFUNDED);
+
+        Map<String, Object> dashboard = analytics.getDashboard(24);
+        List<Map<String, Object>> hourly = (List<Map<String, Object>>) dashboard.get("hourly");
+        assertEquals("orderCreateTime", dashboard.get("timeBasis"));
+        // 退款计入下单时所在的小时，退款发生的当前小时没有变化
+        assertEquals(order.getTotalAmount(), (Double) hourly.get(20).get("refunds"), 0.001);
+        assertEquals(0.0, hourly.get(23).get("refunds"));
+    }
+
+    @Test
+    void testRebuildMatchesIncrementalState() {
+        Order paid = newOrder("STATS-4", "4-1", "4-2", "4-3");
+        transition(paid, Order.OrderStatus.PAID);
+        Map<String, Object> incremental = analytics.getDashboard(24);
+
+        analytics.rebuild(List.of(show), List.of(paid));
+        Map<String, Object> rebuilt = analytics.getDashboard(24);
+
+        assertEquals(incremental.get("totals"), rebuilt.get("totals"));
+        assertEquals(incremental.get("byStrategy"), rebuilt.get("byStrategy"));
+        assertEquals(24, ((List<?>) rebuilt.get("hourly")).size());
+    }
+}
@@ -0,0 +1,121 @@
+package com.cinema.service;
+
+import com.cinema.exception.ScheduleConflictException;
+import com.cinema.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleServiceTest {
+    private final ScheduleService scheduleService = ScheduleService.getInstance();
+    private final LocalDate day = LocalDate.now().plusDays(30);
+    private Movie movie;
+    private ScreeningRoom room;
+
+    @BeforeEach
+    void setUp() {
+        // 影片 120 分钟，加默认 15 分钟清场，每场占用 135 分钟
+        movie = new Movie(
+                "SCHED-MOVIE",
+                "测试电影",
+                java.time.LocalDate.of(2023, 1, 1),
+                List.of("演员1"),
+                "导演",
+                120,
+                8.0,
+                "描述",
+                "类型"
+        );
+        room = new ScreeningRoom("SCHED-ROOM-" + System.nanoTime(), "测试厅", 3, 5);
+    }
+
+    private Show show(String id, int hour, int minute) {
+        return new Show(id, movie, room, day.atTime(hour, minute), 50.0);
+    }
+
+    @Test
+    void testRejectsOverlapIncludingCleaningBuffer() {
+        scheduleService.reserve(show("SCHED-1", 14, 0));
+
+        // 16:00 放映结束，16:15 才清场完毕
+        assertThrows(ScheduleConflictException.class, () -> scheduleService.reserve(show("SCHED-2", 16, 10)));
+        assertThrows(ScheduleConflictException.class, () -> scheduleService.reserve(show("SCHED-3", 12, 0)));
+        scheduleService.reserve(show("SCHED-4", 16, 15));
+        scheduleService.reserve(show("SCHED-5", 11, 45));
+
+        // 同一场次重复添加不与自身冲突，改到与其他场次重叠的时间仍会被拒绝
+        scheduleService.reserve(show("SCHED-1", 14, 0));
+        assertThrows(ScheduleConflictException.class, () -> scheduleService.reserve(show("SCHED-1", 14, 10)));
+
+        scheduleService.release("SCHED-4");
+        scheduleService.reserve(show("SCHED-6", 16, 30));
+    }
+
+    @Test
+    void testFreeSlotsAndTimeline() {
+        scheduleService.reserve(show("SCHED-7", 10, 0));
+        scheduleService.reserve(show("SCHED-8", 15, 0));
+
+        List<Map<String, Object>> slots = scheduleService.findFreeSlots(room.getId(), day, 150);
+        assertEquals(2, slots.size());
+        // 12:15 清场完毕，下一场 15:00 开场前还要留 15 分钟清场
+        assertEquals(day.atTime(12, 15).toString(), slots.get(0).get("earliestStart"));
+        assertEquals(day.atTime(12, 15).toString(), slots.get(0).get("latestStart"));
+        assertEquals(day.atTime(17, 15).toString(), slots.get(1).get("earliestStart"));
+        assertEquals(day.atTime(21, 30).toString(), slots.get(1).get("latestStart"));
+
+        assertTrue(scheduleService.findFreeSlots(room.getId(), day, 160).size() == 1);
+
+        List<Map<String, Object>> timeline = scheduleService.getTimeline(room.getId(), day, Map.of());
+        assertEquals(2, timeline.size());
+        assertEquals(day.atTime(10, 0).toString(), timeline.get(0).get("startTime"));
+        assertEquals(day.atTime(17, 0).toString(), timeline.get(1).get("endTime"));
+    }
+
+    @Test
+    void testBatchConflictsAndAtomicReserve() {
+        scheduleService.reserve(show("SCHED-BATCH-0", 10, 0));
+
+        // 同批内 SCHED-BATCH-2 与 SCHED-BATCH-1 重叠，冲突只记在开场较晚的场次上
+        List<Show> batch = List.of(show("SCHED-BATCH-2", 14, 30), show("SCHED-BATCH-1", 13, 0),
+                show("SCHED-BATCH-3", 17, 0));
+        Map<String, String> conflicts = scheduleService.findBatchConflicts(batch);
+        assertEquals(1, conflicts.size());
+        assertTrue(conflicts.get("SCHED-BATCH-2").contains("SCHED-BATCH-1"));
+
+        // 与已登记场次冲突时整批撤销，批内先登记的场次不会残留
+        Show clash = show("SCHED-BATCH-4", 11, 0);
+        assertNotNull(scheduleService.findConflict(clash));
+        assertThrows(ScheduleConflictException.class,
+                () -> scheduleService.reserveAll(List.of(show("SCHED-BATCH-1", 13, 0), clash)));
+        assertTrue(scheduleService.getTimeline(room.getId(), day, Map.of()).size() == 1);
+
+        scheduleService.reserveAll(List.of(show("SCHED-BATCH-1", 13, 0), show("SCHED-BATCH-3", 17, 0)));
+        assertEquals(3, scheduleService.getTimeline(room.getId(), day, Map.of()).size());
+    }
+
+    @Test
+    void testManyShowsStayConsistent() {
+        // 首尾相接连续排 100 场，删除一半再补排后检查区间树仍能正确找出冲突
+        for (int i = 0; i < 100; i++) {
+            Show show = new Show("SCHED-BULK-" + i, movie, room, day.atStartOfDay().plusMinutes(135L * i), 50.0);
+            scheduleService.reserve(show);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            scheduleService.release("SCHED-BULK-" + i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            scheduleService.reserve(new Show("SCHED-REBOOK-" + i, movie, room,
+                    day.atStartOfDay().plusMinutes(135L * i), 50.0));
+        }
+        LocalDateTime clash = day.atStartOfDay().plusMinutes(135L * 51 + 30);
+        assertThrows(ScheduleConflictException.class,
+                () -> scheduleService.reserve(new Show("SCHED-CLASH", movie, room, clash, 50.0)));
+    }
+}
@@ -0,0 +1,72 @@
+package com.cinema.service;
+
+import com.cinema.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShowLifecycleServiceTest {
+    private final ShowLifecycleService lifecycle = ShowLifecycleService.getInstance();
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        Movie movie = new Movie(
+                "LIFE-MOVIE",
+                "测试电影",
+                java.time.LocalDate.of(2023, 1, 1),
+                List.of("演员1"),
+                "导演",
+                120,
+                8.0,
+                "描述",
+                "类型"
+        );
+        ScreeningRoom room = new ScreeningRoom("LIFE-ROOM", "测试厅", 4, 5);
+        show = new Show("LIFE-SHOW-" + System.nanoTime(), movie, room, LocalDateTime.now().plusDays(400), 50.0);
+    }
+
+    @Test
+    void testStatusFollowsShowTimes() {
+        LocalDateTime start = show.getStartTime();
+        // 默认配置排片即开售
+        assertEquals(Show.ShowStatus.ON_SALE, lifecycle.statusAt(show, start.minusDays(10)));
+        assertEquals(Show.ShowStatus.STARTED, lifecycle.statusAt(show, start));
+        assertEquals(Show.ShowStatus.STARTED, lifecycle.statusAt(show, start.plusMinutes(119)));
+        assertEquals(Show.ShowStatus.FINISHED, lifecycle.statusAt(show, show.getEndTime()));
+    }
+
+    @Test
+    void testDueQueueReturnsShowAtNextTransition() {
+        LocalDateTime start = show.getStartTime();
+        lifecycle.schedule(show, start.minusHours(1));
+
+        assertFalse(lifecycle.pollDue(start.minusMinutes(1)).contains(show));
+        assertTrue(lifecycle.pollDue(start).contains(show));
+        assertFalse(lifecycle.pollDue(start).contains(show));
+
+        // 开场后登记的下一次转换是散场
+        lifecycle.schedule(show, start);
+        assertTrue(lifecycle.pollDue(show.getEndTime()).contains(show));
+    }
+
+    @Test
+    void testArchiveReleasesSeatState() {
+        show.getSeat(2, 3).sell();
+        show.getSeat(2, 4).sell();
+        show.archive();
+
+        assertTrue(show.isArchived());
+        assertEquals(20, show.getTotalSeats());
+        assertEquals(2, show.getSoldSeatsCount());
+        assertTrue(show.getSeats().isEmpty());
+        // 订单仍持有的座位视图可以安全访问，状态变化被忽略
+        Seat seat = show.getSeat(1, 1);
+        seat.unlock();
+        assertFalse(seat.isAvailable());
+    }
+}
@@ -0,0 +1,146 @@
+package com.cinema.service;
+
+import com.cinema.model.ChangeLogEntry;
+import com.cinema.storage.InMemoryDataStorage;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyncServiceTest {
+    private static final long GAP_TIMEOUT_MS = 5000L;
+
+    /**
+     * 内存存储的变更日志，可以隐藏尚未提交的版本、调整变更的提交时长，并把部分变更标记为其他节点写入
+     */
+    private static class ChangeLogStorage extends InMemoryDataStorage {
+        final Set<Long> uncommitted = new HashSet<>();
+        final Set<String> remoteEntities = new HashSet<>();
+        long extraAgeMillis;
+
+        @Override
+        public synchronized List<ChangeLogEntry> loadChangesSince(long since, int limit) {
+            List<ChangeLogEntry> visible = new ArrayList<>();
+            for (ChangeLogEntry change : super.loadChangesSince(since, Integer.MAX_VALUE)) {
+                if (visible.size() >= limit) {
+                    break;
+                }
+                if (uncommitted.contains(change.getVersion())) {
+                    continue;
+                }
+                String nodeId = remoteEntities.contains(change.getEntityId()) ? "OTHER-NODE" : change.getNodeId();
+                visible.add(new ChangeLogEntry(change.getVersion(), change.getEntityType(), change.getEntityId(),
+                        change.getOp(), nodeId, change.getChangedAt(), change.getAgeMillis() + extraAgeMillis));
+            }
+            return visible;
+        }
+    }
+
+    // 记录应用过的变更，不修改 CinemaManager
+    private static class RecordingSyncService extends SyncService {
+        final List<String> applied = new ArrayList<>();
+
+        RecordingSyncService(ChangeLogStorage storage) {
+            super(storage, 0L, GAP_TIMEOUT_MS);
+        }
+
+        @Override
+        void apply(ChangeLogEntry change) {
+            applied.add(change.getEntityId());
+        }
+    }
+
+    private static ChangeLogStorage storageWithChanges(String... movieIds) {
+        ChangeLogStorage storage = new ChangeLogStorage();
+        for (String movieId : movieIds) {
+            storage.deleteMovie(movieId); // 每次写入一条 MOVIE 变更，版本号从 1 开始
+        }
+        return storage;
+    }
+
+    private static List<Long> versions(List<ChangeLogEntry> changes) {
+        List<Long> versions = new ArrayList<>();
+        for (ChangeLogEntry change : changes) {
+            versions.add(change.getVersion());
+        }
+        return versions;
+    }
+
+    @Test
+    void testRecentGapIsHeldBack() {
+        ChangeLogStorage storage = storageWithChanges("MOV-S1", "MOV-S2", "MOV-S3");
+        storage.remoteEntities.addAll(List.of("MOV-S1", "MOV-S2", "MOV-S3"));
+        storage.uncommitted.add(2L); // 版本 2 的事务还没提交，版本 3 已可见
+        RecordingSyncService sync = new RecordingSyncService(storage);
+
+        assertEquals(List.of(1L), versions(sync.getChangesSince(0L, 10)));
+        sync.pollOnce();
+        assertEquals(1L, sync.getAppliedVersion());
+        assertEquals(List.of("MOV-S1"), sync.applied);
+
+        // 版本 2 提交后按顺序应用 2、3
+        storage.uncommitted.clear();
+        sync.pollOnce();
+        assertEquals(3L, sync.getAppliedVersion());
+        assertEquals(List.of("MOV-S1", "MOV-S2", "MOV-S3"), sync.applied);
+    }
+
+    @Test
+    void testGapIsSkippedAfterTimeout() {
+        ChangeLogStorage storage = storageWithChanges("MOV-S1", "MOV-S2", "MOV-S3");
+        storage.remoteEntities.addAll(List.of("MOV-S1", "MOV-S2", "MOV-S3"));
+        storage.uncommitted.add(2L);
+        storage.extraAgeMillis = GAP_TIMEOUT_MS + 1000L; // 空洞之后的变更已超过 sync.gap-timeout-ms：视为版本 2 已回滚
+        RecordingSyncService sync = new RecordingSyncService(storage);
+
+        assertEquals(List.of(1L, 3L), versions(sync.getChangesSince(0L, 10)));
+        sync.pollOnce();
+        assertEquals(3L, sync.getAppliedVersion());
+        assertEquals(List.of("MOV-S1", "MOV-S3"), sync.applied);
+    }
+
+    @Test
+    void testOwnChangesSkippedByPollButAppliedByCatchUp() {
+        ChangeLogStorage storage = storageWithChanges("MOV-LOCAL", "MOV-REMOTE");
+        storage.remoteEntities.add("MOV-REMOTE");
+
+        RecordingSyncService polled = new RecordingSyncService(storage);
+        polled.pollOnce();
+        assertEquals(2L, polled.getAppliedVersion()); // 跳过的变更同样推进版本
+        assertEquals(List.of("MOV-REMOTE"), polled.applied);
+
+        // 从快照恢复后追赶：本节点ID写入的变更也不在快照中，需要应用
+        RecordingSyncService restored = new RecordingSyncService(storage);
+        assertEquals(2, restored.catchUp());
+        assertEquals(2L, restored.getAppliedVersion());
+        assertEquals(List.of("MOV-LOCAL", "MOV-REMOTE"), restored.applied);
+    }
+
+    @Test
+    void testLagGaugesFollowReplicationStatus() {
+        ChangeLogStorage storage = storageWithChanges("MOV-S1", "MOV-S2", "MOV-S3");
+        storage.uncommitted.add(2L);
+        RecordingSyncService sync = new RecordingSyncService(storage);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.globalRegistry.add(registry);
+        try {
+            sync.registerLagGauges();
+            sync.pollOnce(); // 停在版本 1，最新版本为 3
+
+            assertEquals(2.0, registry.get("cinema.sync.lag.versions").gauge().value());
+            assertEquals((double) sync.getReplicationLagMillis(), registry.get("cinema.sync.lag.ms").gauge().value());
+            assertEquals(2L, sync.getReplicationStatus().get("lagVersions"));
+        } finally {
+            Metrics.globalRegistry.getMeters().stream()
+                    .filter(meter -> meter.getId().getName().startsWith("cinema.sync.lag"))
+                    .forEach(Metrics.globalRegistry::remove);
+            Metrics.globalRegistry.remove(registry);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.cinema.service;
+
+import com.cinema.model.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+
+    private static User user(String id) {
+        return new User(id, "用户" + id, "123456", "13800138000", id + "@example.com");
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        UserCache cache = new UserCache(2);
+        cache.put(user("U1"));
+        cache.put(user("U2"));
+
+        // 访问 U1 后，最久未访问的是 U2
+        assertNotNull(cache.get("U1"));
+        cache.put(user("U3"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("U1"));
+        assertNull(cache.get("U2"));
+        assertNotNull(cache.get("U3"));
+    }
+
+    @Test
+    void testPutIfAbsentKeepsCachedInstance() {
+        UserCache cache = new UserCache(10);
+        User cached = user("U1");
+        cache.put(cached);
+
+        assertSame(cached, cache.putIfAbsent(user("U1")));
+    }
+}
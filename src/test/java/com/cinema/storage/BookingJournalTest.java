@@ -0,0 +1,149 @@
+package com.cinema.storage;
+
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static Order order(String orderId) {
+        ScreeningRoom room = new ScreeningRoom("ROOM-J1", "日志厅", 6, 8);
+        Movie movie = new Movie("MOV-J1", "日志电影", LocalDate.of(2024, 5, 1), List.of("演员"),
+                "导演", 120, 8.0, "简介", MovieGenre.fromDescription("科幻"), null, null);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 10, 0, 0, 123_000_000);
+        Show show = new Show("SHOW-J1", movie, room, now.plusDays(1), 45.0);
+        Order order = new Order(orderId, show, List.of(show.getSeat(2, 3), show.getSeat(2, 4)), now, Order.OrderStatus.RESERVED);
+        order.setLockTime(now);
+        order.setUser(new User("U1", "用户一", "123456", "13800138000", "u1@example.com"));
+        order.setPricingStrategy("StandardPricing");
+        return order;
+    }
+
+    @Test
+    void testPendingEntriesSurviveReopen() throws IOException {
+        Order order = order("RESERVE-1");
+        BookingJournal journal = new BookingJournal(dir, 256); // 每段放得下两条记录
+        long first = journal.append(order);
+        order.transition(Order.OrderStatus.RESERVED, Order.OrderStatus.PAYING);
+        long second = journal.append(order);
+        long third = journal.append(order("RESERVE-2")); // 第二段
+        journal.awaitDurable(third);
+        journal.markApplied(first);
+
+        BookingJournal reopened = new BookingJournal(dir, 256);
+        assertEquals(3L, reopened.getLastSequence());
+        assertEquals(2, reopened.getSegmentCount());
+        List<BookingJournal.Entry> pending = reopened.readPending();
+        assertEquals(2, pending.size());
+
+        BookingJournal.Entry entry = pending.get(0);
+        assertEquals(second, entry.getSequence());
+        assertEquals("RESERVE-1", entry.getOrderId());
+        assertEquals("U1", entry.getUserId());
+        assertEquals("SHOW-J1", entry.getShowId());
+        assertEquals(Order.OrderStatus.PAYING, entry.getStatus());
+        assertEquals(1L, entry.getVersion());
+        assertEquals(order.getCreateTime(), entry.getCreateTime());
+        assertEquals(order.getLockTime(), entry.getLockTime());
+        assertEquals("StandardPricing", entry.getPricingStrategy());
+        assertEquals(2, entry.getSeatCount());
+        assertEquals(2, entry.getSeatRow(1));
+        assertEquals(4, entry.getSeatCol(1));
+
+        // 第一段仍有未写库的记录，不能删除
+        assertEquals(0, reopened.compact());
+        reopened.markApplied(second);
+        assertEquals(1, reopened.compact());
+        assertEquals(4L, reopened.append(order));
+    }
+
+    @Test
+    void testLargeOrderAndLongIdsRoundTrip() throws IOException {
+        ScreeningRoom room = new ScreeningRoom("ROOM-J2", "大厅", 10, 10);
+        Movie movie = new Movie("MOV-J2", "日志电影", LocalDate.of(2024, 5, 1), List.of("演员"),
+                "导演", 120, 8.0, "简介", MovieGenre.fromDescription("科幻"), null, null);
+        Show show = new Show("SHOW-J2", movie, room, LocalDateTime.of(2024, 5, 2, 10, 0), 45.0);
+        List<Seat> seats = new ArrayList<>();
+        for (int col = 1; col <= 10; col++) {
+            for (int row = 1; row <= 3; row++) {
+                seats.add(show.getSeat(row, col));
+            }
+        }
+        Order order = new Order("RESERVE-LARGE", show, seats, LocalDateTime.of(2024, 5, 1, 10, 0), Order.OrderStatus.RESERVED);
+        String userId = "用户名超过三十一个字节的中文用户名称"; // 18 个汉字，54 字节
+        order.setUser(new User(userId, "长用户", "123456", "13800138000", "long@example.com"));
+
+        OutboxEvent notification = OutboxEvent.orderNotification(order, "预订成功");
+
+        BookingJournal journal = new BookingJournal(dir, 64); // 小于一条记录：按记录大小建段
+        long sequence = journal.append(order, List.of(OutboxEvent.seatUpdate(order), notification));
+        journal.append(order("RESERVE-2"));
+        journal.flush();
+
+        List<BookingJournal.Entry> pending = new BookingJournal(dir, 64).readPending();
+        assertEquals(2, pending.size());
+        BookingJournal.Entry entry = pending.get(0);
+        assertEquals(sequence, entry.getSequence());
+        assertEquals(userId, entry.getUserId());
+        assertNull(entry.getPricingStrategy());
+        assertNull(entry.getLockTime());
+        assertEquals(30, entry.getSeatCount());
+        assertEquals(3, entry.getSeatRow(29));
+        assertEquals(10, entry.getSeatCol(29));
+        assertEquals(2, entry.getEvents().size());
+        assertEquals(OutboxEvent.TYPE_SEAT_UPDATE, entry.getEvents().get(0).getEventType());
+        assertNull(entry.getEvents().get(0).getMessage());
+        OutboxEvent event = entry.getEvents().get(1);
+        assertEquals(notification.getEventId(), event.getEventId());
+        assertEquals(OutboxEvent.TYPE_ORDER_NOTIFICATION, event.getEventType());
+        assertEquals("SHOW-J2", event.getShowId());
+        assertEquals(userId, event.getUserId());
+        assertEquals("预订成功", event.getMessage());
+        assertEquals("RESERVE-2", pending.get(1).getOrderId());
+        assertTrue(pending.get(1).getEvents().isEmpty());
+    }
+
+    @Test
+    void testTornRecordIsTreatedAsEnd() throws IOException {
+        BookingJournal journal = new BookingJournal(dir, 4096);
+        journal.append(order("RESERVE-1"));
+        journal.append(order("RESERVE-2"));
+        journal.flush();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int second = ByteBuffer.wrap(bytes).getInt(4); // 第一条记录的长度
+        bytes[second + 60] ^= 0x01;                    // 第二条记录
+        Files.write(segment, bytes);
+
+        BookingJournal reopened = new BookingJournal(dir, 4096);
+        assertEquals(1L, reopened.getLastSequence());
+        assertEquals(1, reopened.readPending().size());
+        assertEquals(2L, reopened.append(order("RESERVE-3"))); // 覆盖损坏的记录
+    }
+}
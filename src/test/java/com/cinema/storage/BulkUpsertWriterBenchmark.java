@@ -0,0 +1,104 @@
+package com.cinema.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量写入基准：对比逐行 JDBC 批处理（原全量保存的写法，一个事务）和 BulkUpsertWriter 多行分块写入的每秒行数
+ * 写入临时表，不影响业务数据；需要可连接的 MySQL（配置同 config.properties，第一个参数为数据库密码）
+ *
+ * 运行：
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -Dbench.rows=1000000 -cp target/classes:target/test-classes:$(cat target/cp.txt) com.cinema.storage.BulkUpsertWriterBenchmark [密码]
+ */
+public class BulkUpsertWriterBenchmark {
+    private static final String CREATE_SQL = "CREATE TEMPORARY TABLE bench_upsert (" +
+            "id VARCHAR(50) PRIMARY KEY, name VARCHAR(100) NOT NULL, seat_count INT NOT NULL, amount DOUBLE NOT NULL" +
+            ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+    private static final String UPSERT_SQL = "INSERT INTO bench_upsert (id, name, seat_count, amount) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), seat_count = VALUES(seat_count), amount = VALUES(amount)";
+
+    private static final class Row {
+        final String id;
+        final String name;
+        final int seatCount;
+        final double amount;
+
+        Row(String id, String name, int seatCount, double amount) {
+            this.id = id;
+            this.name = name;
+            this.seatCount = seatCount;
+            this.amount = amount;
+        }
+    }
+
+    public static void main(String[] args) throws SQLException {
+        SimpleDatabaseConnection.setCommandLineArgs(args);
+        int rowCount = Integer.getInteger("bench.rows", 1_000_000);
+        List<Row> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(new Row("ORD-" + i, "用户" + (i % 1000), 1 + i % 6, 45.0 + i % 20));
+        }
+
+        try (Connection conn = SimpleDatabaseConnection.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_SQL);
+            }
+            System.out.printf("写入 %,d 行%n", rowCount);
+
+            // 原写法：全部 addBatch，一个事务；不开 rewriteBatchedStatements 时每行一次往返
+            run(conn, "JDBC 批处理（单事务）", () -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_SQL)) {
+                    for (Row row : rows) {
+                        bind(pstmt, 0, row);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    conn.commit();
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }, rowCount);
+
+            for (int statementRows : new int[]{100, 500, 1000}) {
+                BulkUpsertWriter writer = new BulkUpsertWriter(statementRows, 5000);
+                run(conn, "多行写入 " + statementRows + " 行/语句，5000 行/事务", () ->
+                        writer.inChunks(conn, rows, (c, chunk) -> writer.upsert(c, UPSERT_SQL, chunk, BulkUpsertWriterBenchmark::bind)),
+                        rowCount);
+            }
+        }
+    }
+
+    private interface Body {
+        void run() throws SQLException;
+    }
+
+    // 每种写法各跑两遍：第一遍全部插入，第二遍全部命中主键走 ON DUPLICATE KEY UPDATE
+    private static void run(Connection conn, String name, Body body, int rowCount) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE TABLE bench_upsert");
+        }
+        long insertNanos = time(body);
+        long updateNanos = time(body);
+        System.out.printf("%-36s 插入 %,12.0f 行/秒   更新 %,12.0f 行/秒%n", name,
+                rowCount / (insertNanos / 1e9), rowCount / (updateNanos / 1e9));
+    }
+
+    private static long time(Body body) throws SQLException {
+        long start = System.nanoTime();
+        body.run();
+        return System.nanoTime() - start;
+    }
+
+    private static void bind(PreparedStatement pstmt, int offset, Row row) throws SQLException {
+        pstmt.setString(offset + 1, row.id);
+        pstmt.setString(offset + 2, row.name);
+        pstmt.setInt(offset + 3, row.seatCount);
+        pstmt.setDouble(offset + 4, row.amount);
+    }
+}
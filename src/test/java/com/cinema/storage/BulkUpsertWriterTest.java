@@ -0,0 +1,25 @@
+package com.cinema.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkUpsertWriterTest {
+
+    @Test
+    void testExpandsSingleRowUpsert() {
+        BulkUpsertWriter.MultiRowSql sql = BulkUpsertWriter.MultiRowSql.parse(
+                "INSERT INTO screening_rooms (id, name, room_rows, room_columns) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE name = VALUES(name)");
+
+        assertEquals(4, sql.columns);
+        assertEquals("INSERT INTO screening_rooms (id, name, room_rows, room_columns) VALUES (?, ?, ?, ?), (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE name = VALUES(name)", sql.expand(2));
+    }
+
+    @Test
+    void testRejectsStatementWithoutValues() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkUpsertWriter.MultiRowSql.parse("DELETE FROM order_seats WHERE order_id = ?"));
+    }
+}
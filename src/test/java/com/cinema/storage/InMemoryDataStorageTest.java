@@ -0,0 +1,70 @@
+package com.cinema.storage;
+
+import com.cinema.model.ChangeLogEntry;
+import com.cinema.model.IdempotencyRecord;
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.Order;
+import com.cinema.model.OutboxEvent;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryDataStorageTest {
+
+    private static Order order(String orderId) {
+        ScreeningRoom room = new ScreeningRoom("ROOM-M1", "内存厅", 6, 8);
+        Movie movie = new Movie("MOV-M1", "内存电影", LocalDate.of(2024, 5, 1), List.of("演员"),
+                "导演", 120, 8.0, "简介", MovieGenre.fromDescription("科幻"), null, null);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 10, 0);
+        Show show = new Show("SHOW-M1", movie, room, now.plusDays(1), 45.0);
+        Order order = new Order(orderId, show, List.of(show.getSeat(1, 1)), now, Order.OrderStatus.RESERVED);
+        order.setUser(new User("U1", "用户一", "123456", "13800138000", "u1@example.com"));
+        return order;
+    }
+
+    @Test
+    void testOrderVersionGuards() {
+        InMemoryDataStorage storage = new InMemoryDataStorage();
+        Order order = order("ORDER-1");
+        assertTrue(storage.saveOrder(order));
+
+        long expected = order.transition(Order.OrderStatus.RESERVED, Order.OrderStatus.PAYING);
+        assertTrue(storage.updateOrderStatus(order, expected, List.of(OutboxEvent.seatUpdate(order))));
+        // 同一版本号再次条件更新：版本冲突
+        assertFalse(storage.updateOrderStatus(order, expected));
+
+        // 旧快照（版本 0）重新保存不覆盖已更新的状态
+        assertTrue(storage.saveOrder(order("ORDER-1")));
+        Order stale = order("ORDER-1");
+        stale.transition(Order.OrderStatus.RESERVED, Order.OrderStatus.CANCELLED);
+        Order other = order("ORDER-2");
+        Set<String> conflicts = storage.updateOrderStatusBatch(Map.of(stale, 0L, other, 0L),
+                List.of(OutboxEvent.seatUpdate(stale), OutboxEvent.seatUpdate(other)));
+        assertEquals(Set.of("ORDER-1", "ORDER-2"), conflicts); // ORDER-2 不存在
+
+        List<ChangeLogEntry> changes = storage.loadChangesSince(0, 10);
+        assertEquals(3, changes.size());
+        assertEquals(3L, storage.loadLatestChangeVersion());
+        assertEquals(1L, storage.loadOutboxBacklog()[0]); // 冲突订单的事件未写入
+    }
+
+    @Test
+    void testIdempotencyKeepsFirstRecord() {
+        InMemoryDataStorage storage = new InMemoryDataStorage();
+        storage.saveIdempotencyRecord(new IdempotencyRecord("K1", "pay", "f1", "{\"a\":1}", 1000L));
+        storage.saveIdempotencyRecord(new IdempotencyRecord("K1", "pay", "f2", "{\"a\":2}", 2000L));
+        assertEquals("f1", storage.loadIdempotencyRecord("K1").getFingerprint());
+        assertEquals(1, storage.deleteIdempotencyRecordsBefore(1500L));
+        assertNull(storage.loadIdempotencyRecord("K1"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.cinema.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+
+    @Test
+    void testMigrationsAreOrderedAndPresent() {
+        int previous = 0;
+        for (String script : SchemaMigrator.MIGRATIONS) {
+            int version = SchemaMigrator.versionOf(script);
+            assertEquals(previous + 1, version, "迁移版本号应连续递增: " + script);
+            assertNotNull(getClass().getClassLoader().getResource("db/migration/" + script), "缺少迁移脚本: " + script);
+            previous = version;
+        }
+    }
+
+    @Test
+    void testSplitStatementsSkipsComments() {
+        String sql = "-- 注释\n" +
+                "UPDATE orders SET create_time = NULL WHERE create_time = '';\n" +
+                "\n" +
+                "ALTER TABLE orders\n" +
+                "    MODIFY create_time DATETIME DEFAULT NULL,\n" +
+                "    ADD KEY idx_orders_user (user_id);\n";
+
+        List<String> statements = SchemaMigrator.splitStatements(sql);
+
+        assertEquals(2, statements.size());
+        assertEquals("UPDATE orders SET create_time = NULL WHERE create_time = ''", statements.get(0));
+        assertTrue(statements.get(1).startsWith("ALTER TABLE orders\n"));
+        assertTrue(statements.get(1).endsWith("ADD KEY idx_orders_user (user_id)"));
+    }
+
+    @Test
+    void testUpgradeFromLegacySchemaAddsOrderColumnsAndTables() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:legacy-upgrade;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+             Statement stmt = conn.createStatement()) {
+            // 迁移机制引入前由 schema.sql 建立的数据库（CREATE DATABASE / USE 只用于 MySQL 选库）
+            for (String statement : SchemaMigrator.splitStatements(readLegacySchema())) {
+                if (!statement.startsWith("CREATE DATABASE") && !statement.startsWith("USE ")) {
+                    stmt.execute(statement);
+                }
+            }
+            stmt.execute("INSERT INTO movies (id, title, duration, rating) VALUES ('M1', '旧电影', 120, 8.0)");
+            stmt.execute("INSERT INTO screening_rooms (id, name, room_rows, room_columns) VALUES ('R1', '旧厅', 5, 5)");
+            stmt.execute("INSERT INTO shows (id, movie_id, room_id, start_time, base_price) VALUES ('S1', 'M1', 'R1', '2024-01-01 10:00:00', 45)");
+            stmt.execute("INSERT INTO users (id, name) VALUES ('U1', '旧用户')");
+            stmt.execute("INSERT INTO orders (order_id, user_id, show_id, total_amount, status, create_time) " +
+                    "VALUES ('O1', 'U1', 'S1', 45, 'PAID', '2024-01-01 09:00:00')");
+
+            // V2~V4 的多子句 MODIFY 只有 MySQL 支持，H2 上只执行基线和 V5
+            String[] scripts = {SchemaMigrator.MIGRATIONS[0], SchemaMigrator.MIGRATIONS[4]};
+            assertEquals(2, SchemaMigrator.apply(conn, scripts));
+            assertEquals(0, SchemaMigrator.apply(conn, scripts));
+
+            try (ResultSet rs = stmt.executeQuery("SELECT " + MySQLDataStorage.ORDER_COLUMNS + " FROM orders")) {
+                assertTrue(rs.next());
+                assertEquals("O1", rs.getString("order_id"));
+                assertNull(rs.getString("pricing_strategy"));
+                assertEquals(0L, rs.getLong("version"));
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(MySQLDataStorage.ORDER_STATUS_UPDATE_SQL)) {
+                pstmt.setString(1, "REFUNDED");
+                pstmt.setLong(2, 1L);
+                pstmt.setString(3, "O1");
+                pstmt.setLong(4, 0L);
+                assertEquals(1, pstmt.executeUpdate());
+            }
+            conn.prepareStatement(MySQLDataStorage.ORDER_UPSERT_SQL).close();
+            for (String table : new String[]{"change_log", "idempotency_keys", "outbox_events"}) {
+                stmt.executeQuery("SELECT COUNT(*) FROM " + table).close();
+            }
+        }
+    }
+
+    private String readLegacySchema() throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("db/legacy/schema.sql")) {
+            assertNotNull(in, "缺少旧版 schema.sql");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
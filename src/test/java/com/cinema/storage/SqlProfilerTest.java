@@ -0,0 +1,67 @@
+package com.cinema.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlProfilerTest {
+
+    @Test
+    void testShapeNormalizesLiteralsAndLists() {
+        assertEquals("SELECT * FROM orders WHERE id = ? AND status = ? LIMIT ?",
+                SqlProfiler.shapeOf("SELECT *\n  FROM orders WHERE id = 'ORD-1' AND status = 'PAID' LIMIT 500"));
+        assertEquals("DELETE FROM order_seats WHERE order_id IN (?...)",
+                SqlProfiler.shapeOf("DELETE FROM order_seats WHERE order_id IN (?, ?, ?)"));
+        assertEquals("INSERT INTO t1 (a, b) VALUES (?, ?), ... ON DUPLICATE KEY UPDATE a = VALUES(a)",
+                SqlProfiler.shapeOf("INSERT INTO t1 (a, b) VALUES (?, ?), (?, ?), (?, ?) ON DUPLICATE KEY UPDATE a = VALUES(a)"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordsRowsAndBatches() throws Exception {
+        SqlProfiler profiler = new SqlProfiler(true, 60_000L, 100, 10);
+        try (Connection conn = profiler.wrap(DriverManager.getConnection("jdbc:h2:mem:sql-profiler", "sa", ""))) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE seats (show_id VARCHAR(20), seat INT)");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO seats (show_id, seat) VALUES (?, ?)")) {
+                for (int i = 0; i < 3; i++) {
+                    pstmt.setString(1, "SHOW-1");
+                    pstmt.setInt(2, i);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            for (int i = 0; i < 2; i++) {
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT seat FROM seats WHERE show_id = ?")) {
+                    pstmt.setString(1, "SHOW-1");
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            rs.getInt(1);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> report = profiler.getReport(10, "count");
+        List<Map<String, Object>> top = (List<Map<String, Object>>) report.get("top");
+        assertEquals("SELECT seat FROM seats WHERE show_id = ?", top.get(0).get("sql"));
+        assertEquals(2L, top.get(0).get("count"));
+        assertEquals(6L, top.get(0).get("rows"));
+        Map<String, Object> insert = top.stream()
+                .filter(row -> ((String) row.get("sql")).startsWith("INSERT")).findFirst().orElseThrow();
+        assertEquals(1L, insert.get("batches"));
+        assertEquals(3.0, insert.get("avgBatchSize"));
+        assertEquals(3L, insert.get("rows"));
+        assertThrows(IllegalArgumentException.class, () -> profiler.getReport(10, "name"));
+    }
+}
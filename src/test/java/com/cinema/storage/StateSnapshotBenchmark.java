@@ -0,0 +1,85 @@
+package com.cinema.storage;
+
+import com.cinema.model.Show;
+import com.cinema.service.BookingService;
+import com.cinema.service.CinemaManager;
+import com.cinema.strategy.StandardPricing;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 冷启动与热启动加载耗时对比：
+ * 冷启动为逐表查询电影（含评论）、放映厅、场次和订单（含订单座位）；
+ * 热启动为内存映射读取快照、按主键关联订单用户，再读取水位之后的变更日志
+ * 使用当前数据库中的数据，快照写入临时文件，不影响服务的快照；需要可连接的 MySQL（第一个参数为数据库密码），
+ * 或加 -Dstorage.type=embedded 使用嵌入式数据库
+ *
+ * 运行：
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -Dbench.runs=5 -cp target/classes:target/test-classes:$(cat target/cp.txt) com.cinema.storage.StateSnapshotBenchmark [密码]
+ */
+public class StateSnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        SimpleDatabaseConnection.setCommandLineArgs(args);
+        // 测试配置默认使用内存存储，这里默认连接 MySQL；服务本身从数据库加载，不读取已有的快照
+        System.setProperty("storage.type", System.getProperty("storage.type", DataStorageFactory.TYPE_MYSQL));
+        System.setProperty("snapshot.enabled", "false");
+        int runs = Integer.getInteger("bench.runs", 5);
+
+        long start = System.nanoTime();
+        BookingService bookingService = BookingService.getInstance(new StandardPricing());
+        CinemaManager manager = CinemaManager.getInstance();
+        System.out.printf("服务首次初始化（冷启动，含连接和迁移检查） %,d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        DataStorage storage = DataStorageFactory.create();
+        long watermark = storage.loadLatestChangeVersion();
+        Path file = Files.createTempFile("cinema-state", ".snap");
+        try {
+            start = System.nanoTime();
+            long bytes = StateSnapshot.write(file, watermark, storage.loadChangeTimeMillis(watermark),
+                    manager.getAllScreeningRooms(), manager.getAllMovies(), allShows(manager), bookingService.getAllOrders());
+            System.out.printf("写入快照 %,d 字节，%,d ms（电影 %d，场次 %d，订单 %d）%n", bytes, (System.nanoTime() - start) / 1_000_000,
+                    manager.getAllMovies().size(), allShows(manager).size(), bookingService.getAllOrders().size());
+
+            long[] cold = new long[runs];
+            long[] warm = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                start = System.nanoTime();
+                storage.loadScreeningRooms();
+                storage.loadShows(); // 内部再加载电影（含评论）和放映厅
+                storage.loadOrders();
+                cold[i] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                StateSnapshot.Contents contents = StateSnapshot.read(file);
+                for (StateSnapshot.OrderRecord record : contents.getOrders()) {
+                    manager.getUser(record.getUserId());
+                    record.resolveSeats();
+                }
+                storage.loadChangesSince(contents.getWatermark(), 500);
+                warm[i] = System.nanoTime() - start;
+            }
+            System.out.printf("冷启动加载 中位数 %,8.1f ms%n", median(cold) / 1e6);
+            System.out.printf("快照热启动 中位数 %,8.1f ms%n", median(warm) / 1e6);
+        } finally {
+            Files.deleteIfExists(file);
+            System.exit(0); // 结束单例启动的后台线程
+        }
+    }
+
+    private static List<Show> allShows(CinemaManager manager) {
+        List<Show> shows = manager.getAllShows();
+        shows.addAll(manager.getArchivedShows());
+        return shows;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
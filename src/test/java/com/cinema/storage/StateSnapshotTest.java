@@ -0,0 +1,94 @@
+package com.cinema.storage;
+
+import com.cinema.model.Comment;
+import com.cinema.model.Movie;
+import com.cinema.model.MovieGenre;
+import com.cinema.model.Order;
+import com.cinema.model.ScreeningRoom;
+import com.cinema.model.Seat;
+import com.cinema.model.Show;
+import com.cinema.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        ScreeningRoom room = new ScreeningRoom("ROOM-S1", "快照厅", 6, 8);
+        Movie movie = new Movie("MOV-S1", "快照电影", LocalDate.of(2024, 5, 1), List.of("演员甲", "演员乙"),
+                "导演", 120, 8.5, "简介", MovieGenre.fromDescription("科幻"), null, "/media/cover.jpg");
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 10, 0);
+        movie.addComment(new Comment("C1", "U1", "用户一", movie.getId(), "旧评论", 7.0, now));
+        movie.addComment(new Comment("C2", "U2", "用户二", movie.getId(), "新评论", 9.0, now.plusHours(1)));
+        Show show = new Show("SHOW-S1", movie, room, now.plusDays(1), 45.0);
+        show.setStatus(Show.ShowStatus.ON_SALE);
+        Order order = new Order("ORD-S1", show, List.of(show.getSeat(3, 4), show.getSeat(3, 5)), now, Order.OrderStatus.RESERVED);
+        order.restoreState(Order.OrderStatus.PAID, 3L);
+        order.setUser(new User("U1", "用户一", "123456", "13800138000", "u1@example.com"));
+        order.setPricingStrategy("StandardPricing");
+
+        Path file = dir.resolve("state.snap");
+        StateSnapshot.write(file, 42L, 1700000000123L, List.of(room), List.of(movie), List.of(show), List.of(order));
+        StateSnapshot.Contents contents = StateSnapshot.read(file);
+
+        assertEquals(42L, contents.getWatermark());
+        assertEquals(1700000000123L, contents.getWatermarkTimeMillis());
+
+        ScreeningRoom restoredRoom = contents.getRooms().get(0);
+        assertEquals("快照厅", restoredRoom.getName());
+        assertEquals(6, restoredRoom.getRows());
+        assertEquals(8, restoredRoom.getColumns());
+
+        Movie restoredMovie = contents.getMovies().get(0);
+        assertEquals("快照电影", restoredMovie.getTitle());
+        assertEquals(List.of("演员甲", "演员乙"), restoredMovie.getActors());
+        assertEquals(movie.getGenre(), restoredMovie.getGenre());
+        assertNull(restoredMovie.getTrailerUrl());
+        assertEquals("/media/cover.jpg", restoredMovie.getCoverUrl());
+        assertEquals(2, restoredMovie.getComments().size());
+        assertEquals("C2", restoredMovie.getComments().get(0).getId()); // 最新评论仍在最前
+
+        Show restoredShow = contents.getShows().get(0);
+        assertSame(restoredMovie, restoredShow.getMovie());
+        assertSame(restoredRoom, restoredShow.getScreeningRoom());
+        assertEquals(show.getStartTime(), restoredShow.getStartTime());
+        assertEquals(Show.ShowStatus.ON_SALE, restoredShow.getStatus());
+
+        StateSnapshot.OrderRecord record = contents.getOrders().get(0);
+        assertEquals("ORD-S1", record.getOrderId());
+        assertEquals("U1", record.getUserId());
+        assertSame(restoredShow, record.getShow());
+        assertEquals(Order.OrderStatus.PAID, record.getStatus());
+        assertEquals(3L, record.getVersion());
+        assertEquals(now, record.getCreateTime());
+        List<Seat> seats = record.resolveSeats();
+        assertEquals(2, seats.size());
+        assertEquals("3-5", seats.get(1).getSeatId());
+    }
+
+    @Test
+    void testCorruptedFileIsRejected() throws IOException {
+        ScreeningRoom room = new ScreeningRoom("ROOM-S2", "快照厅", 4, 4);
+        Path file = dir.resolve("state.snap");
+        StateSnapshot.write(file, 1L, 0L, List.of(room), List.of(), List.of(), List.of());
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> StateSnapshot.read(file));
+    }
+}
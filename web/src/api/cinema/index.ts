@@ -40,11 +40,18 @@ export const createOrder = (data: {
   return http.request<any>("post", "/api/booking/create", { data });
 };
 
-/** 支付订单 */
+/** 支付订单（提交后订单进入 PAYING，结果通过 getOrderStatus 轮询） */
 export const payOrder = (data: { orderId: string }) => {
   return http.request<any>("post", "/api/booking/pay", { data });
 };
 
+/** 查询订单状态 */
+export const getOrderStatus = (orderId: string) => {
+  return http.request<any>("get", "/api/booking/status", {
+    params: { orderId }
+  });
+};
+
 /** 获取用户订单 */
 export const getUserOrders = (userId: string) => {
   return http.request<any>("get", "/api/booking/my-orders", {